@@ -29,11 +29,11 @@ public enum DataType implements Serializable {
         return id;
     }
 
+    private static final DataType[] TYPES_BY_ID = createTypesById();
+
     public static DataType of(final int id) {
-        for(final DataType dataType : values()) {
-            if(dataType.id == id) {
-                return dataType;
-            }
+        if(id >= 0 && id < TYPES_BY_ID.length && TYPES_BY_ID[id] != null) {
+            return TYPES_BY_ID[id];
         }
         throw new IllegalArgumentException("No such enum object for DataType id: " + id);
     }
@@ -45,4 +45,17 @@ public enum DataType implements Serializable {
         }
         return symbols;
     }
+
+    private static DataType[] createTypesById() {
+        int maxId = 0;
+        for(final DataType dataType : values()) {
+            maxId = Math.max(maxId, dataType.id);
+        }
+        final DataType[] types = new DataType[maxId + 1];
+        for(final DataType dataType : values()) {
+            types[dataType.id] = dataType;
+        }
+        return types;
+    }
+
 }
@@ -1,16 +1,24 @@
 package com.mercari.solution.module.sink;
 
+import com.google.cloud.spanner.Struct;
+import com.google.datastore.v1.Entity;
+import com.google.firestore.v1.Document;
 import com.google.gson.Gson;
 import com.mercari.solution.config.SinkConfig;
 import com.mercari.solution.module.FCollection;
 import com.mercari.solution.module.SinkModule;
 import com.mercari.solution.util.converter.ToStatementConverter;
 import com.mercari.solution.util.gcp.JdbcUtil;
+import com.mercari.solution.util.schema.*;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.ListCoder;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.io.jdbc.JdbcIO;
 import org.apache.beam.sdk.transforms.*;
+import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
 import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.Row;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,11 +28,15 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class JdbcSink implements SinkModule {
 
     private static final Logger LOG = LoggerFactory.getLogger(JdbcSink.class);
 
+    // PostgreSQL limits the number of bind parameters in a statement to 32767
+    private static final int MAX_STATEMENT_PARAMETERS = 32767;
+
     private static class JdbcSinkParameters implements Serializable {
 
         private String table;
@@ -39,6 +51,13 @@ public class JdbcSink implements SinkModule {
         private Integer batchSize;
         private String op;
 
+        // Parameters for pipelined write mode
+        private Integer writerThreads;
+        private Integer maxConnections;
+        private Integer maxQueuedBatches;
+        private Long batchBytes;
+        private Boolean multiRowStatement;
+
         public String getTable() {
             return table;
         }
@@ -83,6 +102,30 @@ public class JdbcSink implements SinkModule {
             return op;
         }
 
+        public Integer getWriterThreads() {
+            return writerThreads;
+        }
+
+        public Integer getMaxConnections() {
+            return maxConnections;
+        }
+
+        public Integer getMaxQueuedBatches() {
+            return maxQueuedBatches;
+        }
+
+        public Long getBatchBytes() {
+            return batchBytes;
+        }
+
+        public Boolean getMultiRowStatement() {
+            return multiRowStatement;
+        }
+
+        public boolean isPipelined() {
+            return writerThreads != null;
+        }
+
 
         private void validate() {
             final List<String> errorMessages = new ArrayList<>();
@@ -101,6 +144,21 @@ public class JdbcSink implements SinkModule {
             if(password == null) {
                 errorMessages.add("Parameter must contain password");
             }
+            if(batchSize != null && batchSize < 1) {
+                errorMessages.add("Parameter batchSize must be over zero");
+            }
+            if(writerThreads != null && writerThreads < 1) {
+                errorMessages.add("Parameter writerThreads must be over zero");
+            }
+            if(maxConnections != null && maxConnections < 1) {
+                errorMessages.add("Parameter maxConnections must be over zero");
+            }
+            if(maxQueuedBatches != null && maxQueuedBatches < 1) {
+                errorMessages.add("Parameter maxQueuedBatches must be over zero");
+            }
+            if(writerThreads == null && (batchBytes != null || multiRowStatement != null)) {
+                errorMessages.add("Parameter batchBytes and multiRowStatement require writerThreads");
+            }
 
             if(errorMessages.size() > 0) {
                 throw new IllegalArgumentException(String.join(", ", errorMessages));
@@ -123,6 +181,17 @@ public class JdbcSink implements SinkModule {
             if(keyFields == null) {
                 keyFields = new ArrayList<>();
             }
+            if(writerThreads != null) {
+                if(maxConnections == null) {
+                    maxConnections = writerThreads;
+                }
+                if(maxQueuedBatches == null) {
+                    maxQueuedBatches = writerThreads * 2;
+                }
+                if(multiRowStatement == null) {
+                    multiRowStatement = false;
+                }
+            }
         }
     }
 
@@ -149,11 +218,11 @@ public class JdbcSink implements SinkModule {
         parameters.setDefaults();
 
         final JdbcWrite write = switch (collection.getDataType()) {
-            case AVRO -> new JdbcWrite<>(collection, parameters, ToStatementConverter::convertRecord);
-            case ROW -> new JdbcWrite<>(collection, parameters, ToStatementConverter::convertRow);
-            case STRUCT -> new JdbcWrite<>(collection, parameters, ToStatementConverter::convertStruct);
-            case DOCUMENT -> new JdbcWrite<>(collection, parameters, ToStatementConverter::convertDocument);
-            case ENTITY -> new JdbcWrite<>(collection, parameters, ToStatementConverter::convertEntity);
+            case AVRO -> new JdbcWrite<GenericRecord>(collection, parameters, ToStatementConverter::convertRecord, ToStatementConverter::convertRecord, AvroSchemaUtil::getAsString);
+            case ROW -> new JdbcWrite<Row>(collection, parameters, ToStatementConverter::convertRow, ToStatementConverter::convertRow, RowSchemaUtil::getAsString);
+            case STRUCT -> new JdbcWrite<Struct>(collection, parameters, ToStatementConverter::convertStruct, ToStatementConverter::convertStruct, StructSchemaUtil::getAsString);
+            case DOCUMENT -> new JdbcWrite<Document>(collection, parameters, ToStatementConverter::convertDocument, ToStatementConverter::convertDocument, DocumentSchemaUtil::getAsString);
+            case ENTITY -> new JdbcWrite<Entity>(collection, parameters, ToStatementConverter::convertEntity, ToStatementConverter::convertEntity, EntitySchemaUtil::getAsString);
             default -> throw new IllegalArgumentException("Not supported input type: " + collection.getDataType());
         };
         PCollection output = (PCollection) (collection.getCollection().apply(config.getName(), write));
@@ -171,15 +240,21 @@ public class JdbcSink implements SinkModule {
         private final JdbcSinkParameters parameters;
 
         private final JdbcIO.PreparedStatementSetter<InputT> formatter;
+        private final StatementSetter<InputT> offsetFormatter;
+        private final SchemaUtil.StringGetter<InputT> stringGetter;
 
         private JdbcWrite(
                 final FCollection<?> inputCollection,
                 final JdbcSinkParameters parameters,
-                final JdbcIO.PreparedStatementSetter<InputT> formatter) {
+                final JdbcIO.PreparedStatementSetter<InputT> formatter,
+                final StatementSetter<InputT> offsetFormatter,
+                final SchemaUtil.StringGetter<InputT> stringGetter) {
 
             this.inputCollection = inputCollection;
             this.parameters = parameters;
             this.formatter = formatter;
+            this.offsetFormatter = offsetFormatter;
+            this.stringGetter = stringGetter;
         }
 
         public PCollection<Void> expand(final PCollection<InputT> input) {
@@ -215,6 +290,32 @@ public class JdbcSink implements SinkModule {
                     JdbcUtil.OP.valueOf(parameters.getOp()), db,
                     parameters.getKeyFields());
 
+            if(parameters.isPipelined()) {
+                final int fieldSize = inputCollection.getAvroSchema().getFields().size();
+                final int rowsPerStatement;
+                if(parameters.getMultiRowStatement()) {
+                    rowsPerStatement = Math.max(1, Math.min(parameters.getBatchSize(), MAX_STATEMENT_PARAMETERS / Math.max(1, fieldSize)));
+                } else {
+                    rowsPerStatement = 1;
+                }
+                final String multiRowStatementString = JdbcUtil.createStatement(
+                        parameters.getTable(), inputCollection.getAvroSchema(),
+                        JdbcUtil.OP.valueOf(parameters.getOp()), db,
+                        parameters.getKeyFields(), rowsPerStatement);
+                // rows with the same key must not appear twice in one multi-row upsert statement
+                final boolean deduplicate = rowsPerStatement > 1
+                        && JdbcUtil.OP.INSERT_OR_UPDATE.equals(JdbcUtil.OP.valueOf(parameters.getOp()))
+                        && parameters.getKeyFields() != null && !parameters.getKeyFields().isEmpty();
+
+                return tableReady.apply("WriteJdbc", ParDo.of(new PipelinedWriteDoFn<>(
+                        parameters.getDriver(), parameters.getUrl(), parameters.getUser(), parameters.getPassword(),
+                        statementString, multiRowStatementString, rowsPerStatement, fieldSize,
+                        parameters.getBatchSize(), parameters.getBatchBytes(),
+                        parameters.getWriterThreads(), parameters.getMaxConnections(), parameters.getMaxQueuedBatches(),
+                        offsetFormatter, input.getCoder(),
+                        deduplicate ? stringGetter : null, parameters.getKeyFields())));
+            }
+
             return tableReady.apply("WriteJdbc", ParDo.of(new WriteDoFn<>(
                     parameters.getDriver(), parameters.getUrl(), parameters.getUser(), parameters.getPassword(),
                     statementString, parameters.getBatchSize(), formatter)));
@@ -225,6 +326,8 @@ public class JdbcSink implements SinkModule {
                 return JdbcUtil.DB.MYSQL;
             } else if(driver.contains("postgresql")) {
                 return JdbcUtil.DB.POSTGRESQL;
+            } else if(driver.contains("h2")) {
+                return JdbcUtil.DB.H2;
             } else {
                 throw new IllegalStateException("Not supported JDBC driver: " + driver);
             }
@@ -337,6 +440,216 @@ public class JdbcSink implements SinkModule {
         }
     }
 
+    private interface StatementSetter<T> extends Serializable {
+        void setParameters(T element, PreparedStatement statement, int offset) throws SQLException;
+    }
+
+    /**
+     * Buffers elements into batches cut by row count or estimated byte size, and hands them to writer threads
+     * shared in the worker through a bounded queue. Each writer thread borrows a connection from the shared pool,
+     * executes and commits the batch, so element processing is not blocked by database round trips.
+     * All batches submitted in a bundle are waited at finishBundle, and any failure fails the bundle to be retried.
+     */
+    private static class PipelinedWriteDoFn<T> extends DoFn<T, Void> {
+
+        private static final Map<String, ExecutorService> executors = new ConcurrentHashMap<>();
+
+        private final String driver;
+        private final String url;
+        private final String user;
+        private final String password;
+        private final String statement;
+        private final String multiRowStatement;
+        private final int rowsPerStatement;
+        private final int fieldSize;
+        private final int batchSize;
+        private final Long batchBytes;
+        private final int writerThreads;
+        private final int maxConnections;
+        private final int maxQueuedBatches;
+        private final StatementSetter<T> setter;
+        private final Coder<T> coder;
+        private final SchemaUtil.StringGetter<T> keyGetter;
+        private final List<String> keyFields;
+
+        private transient DataSource dataSource;
+        private transient ExecutorService executor;
+
+        private transient List<T> buffer;
+        private transient List<Future<Integer>> futures;
+        private transient ByteSizeObserver observer;
+
+        PipelinedWriteDoFn(final String driver, final String url, final String user, final String password,
+                           final String statement, final String multiRowStatement,
+                           final int rowsPerStatement, final int fieldSize,
+                           final int batchSize, final Long batchBytes,
+                           final int writerThreads, final int maxConnections, final int maxQueuedBatches,
+                           final StatementSetter<T> setter, final Coder<T> coder,
+                           final SchemaUtil.StringGetter<T> keyGetter, final List<String> keyFields) {
+
+            this.driver = driver;
+            this.url = url;
+            this.user = user;
+            this.password = password;
+            this.statement = statement;
+            this.multiRowStatement = multiRowStatement;
+            this.rowsPerStatement = rowsPerStatement;
+            this.fieldSize = fieldSize;
+            this.batchSize = batchSize;
+            this.batchBytes = batchBytes;
+            this.writerThreads = writerThreads;
+            this.maxConnections = maxConnections;
+            this.maxQueuedBatches = maxQueuedBatches;
+            this.setter = setter;
+            this.coder = coder;
+            this.keyGetter = keyGetter;
+            this.keyFields = keyFields;
+        }
+
+        @Setup
+        public void setup() {
+            this.dataSource = JdbcUtil.getOrCreateSharedDataSource(driver, url, user, password, maxConnections);
+            final String key = String.join("\n", driver, url, user, Integer.toString(writerThreads), Integer.toString(maxQueuedBatches));
+            this.executor = executors.computeIfAbsent(key, k -> createExecutor(writerThreads, maxQueuedBatches));
+            this.observer = new ByteSizeObserver();
+        }
+
+        @StartBundle
+        public void startBundle() {
+            this.buffer = new ArrayList<>();
+            this.futures = new ArrayList<>();
+            this.observer.size = 0;
+        }
+
+        @ProcessElement
+        public void processElement(ProcessContext c) throws Exception {
+            buffer.add(c.element());
+            if(batchBytes != null) {
+                coder.registerByteSizeObserver(c.element(), observer);
+                observer.advance();
+            }
+            if(buffer.size() >= batchSize || (batchBytes != null && observer.size >= batchBytes)) {
+                submit();
+                checkCompleted();
+            }
+        }
+
+        @FinishBundle
+        public void finishBundle() throws Exception {
+            if(!buffer.isEmpty()) {
+                submit();
+            }
+            Exception exception = null;
+            int count = 0;
+            for(final Future<Integer> future : futures) {
+                try {
+                    count += future.get();
+                } catch (ExecutionException e) {
+                    if(exception == null) {
+                        exception = e;
+                    }
+                }
+            }
+            futures.clear();
+            if(exception != null) {
+                throw new RuntimeException("Failed to write batch to jdbc", exception.getCause());
+            }
+            LOG.debug("Written rows: " + count);
+        }
+
+        private void submit() {
+            final List<T> batch = buffer;
+            this.buffer = new ArrayList<>();
+            this.observer.size = 0;
+            this.futures.add(executor.submit(() -> write(batch)));
+        }
+
+        // Fail fast if a batch already failed, and release references to completed batches
+        private void checkCompleted() throws Exception {
+            final Iterator<Future<Integer>> iterator = futures.iterator();
+            while(iterator.hasNext()) {
+                final Future<Integer> future = iterator.next();
+                if(!future.isDone()) {
+                    continue;
+                }
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Failed to write batch to jdbc", e.getCause());
+                }
+                iterator.remove();
+            }
+        }
+
+        private int write(final List<T> elements) throws SQLException {
+            // keyGetter is set only for multi-row upsert, where the last row of the same key wins as in single-row execution
+            final List<T> batch = keyGetter == null ? elements : JdbcUtil.deduplicateByKey(elements, keyGetter, keyFields);
+            try(final Connection connection = dataSource.getConnection()) {
+                try {
+                    final int multiRowSize = rowsPerStatement > 1 ? (batch.size() / rowsPerStatement) * rowsPerStatement : 0;
+                    if(multiRowSize > 0) {
+                        try(final PreparedStatement preparedStatement = connection.prepareStatement(multiRowStatement)) {
+                            for(int i=0; i<multiRowSize; i+=rowsPerStatement) {
+                                preparedStatement.clearParameters();
+                                for(int row=0; row<rowsPerStatement; row++) {
+                                    setter.setParameters(batch.get(i + row), preparedStatement, row * fieldSize);
+                                }
+                                preparedStatement.addBatch();
+                            }
+                            preparedStatement.executeBatch();
+                        }
+                    }
+                    if(multiRowSize < batch.size()) {
+                        try(final PreparedStatement preparedStatement = connection.prepareStatement(statement)) {
+                            for(int i=multiRowSize; i<batch.size(); i++) {
+                                preparedStatement.clearParameters();
+                                setter.setParameters(batch.get(i), preparedStatement, 0);
+                                preparedStatement.addBatch();
+                            }
+                            preparedStatement.executeBatch();
+                        }
+                    }
+                    connection.commit();
+                    return batch.size();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+        }
+
+        private static ExecutorService createExecutor(final int threads, final int queueSize) {
+            final ThreadFactory threadFactory = runnable -> {
+                final Thread thread = new Thread(runnable, "jdbc-sink-writer");
+                thread.setDaemon(true);
+                return thread;
+            };
+            // Block the caller when the queue is full, to apply backpressure to element processing
+            final RejectedExecutionHandler blockingHandler = (runnable, executor) -> {
+                try {
+                    executor.getQueue().put(runnable);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting jdbc writer queue", e);
+                }
+            };
+            return new ThreadPoolExecutor(
+                    threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), threadFactory, blockingHandler);
+        }
+
+        private static class ByteSizeObserver extends ElementByteSizeObserver {
+
+            private long size = 0;
+
+            @Override
+            protected void reportElementSize(long elementByteSize) {
+                size += elementByteSize;
+            }
+        }
+
+    }
+
     private static class TablePrepareDoFn extends DoFn<List<String>, String> {
 
         private static final Logger LOG = LoggerFactory.getLogger(TablePrepareDoFn.class);
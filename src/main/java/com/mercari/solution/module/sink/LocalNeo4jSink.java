@@ -40,6 +40,7 @@ public class LocalNeo4jSink implements SinkModule {
         private Integer bufferSize;
         private Neo4jUtil.Format format;
         private Boolean useGDS;
+        private Integer compressionWorkers;
 
         private List<String> groupFields;
         private String tempDirectory;
@@ -88,6 +89,10 @@ public class LocalNeo4jSink implements SinkModule {
             return useGDS;
         }
 
+        public Integer getCompressionWorkers() {
+            return compressionWorkers;
+        }
+
         public List<String> getGroupFields() {
             return groupFields;
         }
@@ -122,6 +127,9 @@ public class LocalNeo4jSink implements SinkModule {
                     errorMessages.add("localNeo4j sink module `conf` parameter must be gcs path (must start with gs://).");
                 }
             }
+            if(this.compressionWorkers != null && this.compressionWorkers < 0) {
+                errorMessages.add("localNeo4j sink module `compressionWorkers` parameter must not be negative.");
+            }
             if((nodes == null || nodes.isEmpty()) && (relationships == null || relationships.isEmpty())) {
                 errorMessages.add("localNeo4j sink module requires `nodes` or `relationships` parameter.");
             } else {
@@ -179,6 +187,9 @@ public class LocalNeo4jSink implements SinkModule {
             if(this.useGDS == null) {
                 this.useGDS = false;
             }
+            if(this.compressionWorkers == null) {
+                this.compressionWorkers = 0;
+            }
         }
 
     }
@@ -270,7 +281,7 @@ public class LocalNeo4jSink implements SinkModule {
                                     parameters.getNodes(), parameters.getRelationships(),
                                     parameters.getSetupCyphers(), parameters.getTeardownCyphers(),
                                     parameters.getBufferSize(), parameters.getFormat(), parameters.getUseGDS(),
-                                    inputNames)));
+                                    parameters.getCompressionWorkers(), inputNames)));
 
             return writeResult.getPerDestinationOutputFilenames();
         }
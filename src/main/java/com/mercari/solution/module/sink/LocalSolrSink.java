@@ -38,6 +38,8 @@ public class LocalSolrSink implements SinkModule {
         private List<CoreParameter> cores;
         private List<String> groupFields;
         private String tempDirectory;
+        private Integer shards;
+        private Integer maxSegments;
 
         public String getInput() {
             return input;
@@ -59,6 +61,14 @@ public class LocalSolrSink implements SinkModule {
             return tempDirectory;
         }
 
+        public Integer getShards() {
+            return shards;
+        }
+
+        public Integer getMaxSegments() {
+            return maxSegments;
+        }
+
         public void validate(String name) {
             final List<String> errorMessages = new ArrayList<>();
             if(this.output == null) {
@@ -71,6 +81,9 @@ public class LocalSolrSink implements SinkModule {
                     errorMessages.addAll(this.cores.get(i).validate(name, i));
                 }
             }
+            if(this.shards != null && this.shards < 1) {
+                errorMessages.add("localSolr sink module: " + name + ".shards must be over zero.");
+            }
 
             if(errorMessages.size() > 0) {
                 throw new IllegalArgumentException(String.join(", ", errorMessages));
@@ -84,6 +97,12 @@ public class LocalSolrSink implements SinkModule {
             if(this.groupFields == null) {
                 this.groupFields = new ArrayList<>();
             }
+            if(this.shards == null) {
+                this.shards = 1;
+            }
+            if(this.maxSegments == null) {
+                this.maxSegments = 1;
+            }
             for(final CoreParameter coreParameter : this.cores) {
                 coreParameter.setDefaults();
             }
@@ -286,6 +305,8 @@ public class LocalSolrSink implements SinkModule {
         private String output;
         private List<String> groupFields;
         private String tempDirectory;
+        private Integer shards;
+        private Integer maxSegments;
         private List<Core> cores;
 
         private final List<TupleTag<?>> tags;
@@ -307,6 +328,8 @@ public class LocalSolrSink implements SinkModule {
             this.output = parameters.getOutput();
             this.groupFields = parameters.getGroupFields();
             this.tempDirectory = parameters.getTempDirectory();
+            this.shards = parameters.getShards();
+            this.maxSegments = parameters.getMaxSegments();
             this.cores = parameters.cores.stream()
                     .map(c -> c.toCore(avroSchemaStrings))
                     .collect(Collectors.toList());
@@ -333,6 +356,10 @@ public class LocalSolrSink implements SinkModule {
                         .setCoder(union.getCoder());
             }
 
+            if(shards > 1) {
+                return writeSharded(input);
+            }
+
             final FileIO.Write<String, UnionValue> write = ZipFileUtil.createSingleFileWrite(
                     output,
                     groupFields,
@@ -345,6 +372,39 @@ public class LocalSolrSink implements SinkModule {
 
             return writeResult.getPerDestinationOutputFilenames();
         }
+
+        /**
+         * Documents of each destination are split into shards and partial indexes are built in parallel.
+         * Then partial indexes of the destination are merged into one index by IndexWriter#addIndexes.
+         */
+        private PCollection<KV> writeSharded(final PCollection<UnionValue> input) {
+            final String shardOutput = Optional.ofNullable(tempDirectory)
+                    .map(d -> d.endsWith("/") ? d : d + "/")
+                    .orElseGet(() -> StorageUtil.removeDirSuffix(output)) + name + "-shards/";
+
+            final FileIO.Write<String, UnionValue> shardWrite = ZipFileUtil.createShardedFileWrite(
+                    shardOutput,
+                    groupFields,
+                    tempDirectory,
+                    shards,
+                    SchemaUtil.createGroupKeysFunction(UnionValue::getAsString, groupFields));
+            final WriteFilesResult<String> shardResult = input
+                    .apply("WriteShards", shardWrite.via(SolrSink2.partial(
+                            cores,
+                            inputNames)));
+
+            final FileIO.Write<String, KV<String, String>> mergeWrite = ZipFileUtil.createSingleFileWrite(
+                    output,
+                    groupFields,
+                    tempDirectory,
+                    KV::getKey);
+            final WriteFilesResult mergeResult = shardResult.getPerDestinationOutputFilenames()
+                    .apply("Merge", mergeWrite.via(SolrSink2.merge(
+                            cores,
+                            maxSegments)));
+
+            return mergeResult.getPerDestinationOutputFilenames();
+        }
     }
 
 }
@@ -34,6 +34,17 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 
@@ -61,6 +72,10 @@ public class SpannerSink implements SinkModule {
         private Integer groupingFactor;
         private Options.RpcPriority priority;
 
+        // Parameters for pipelined write mode
+        private Integer writerThreads;
+        private Integer maxQueuedBatches;
+
         private List<String> fields;
         private List<String> maskFields;
         private Boolean exclude;
@@ -175,6 +190,18 @@ public class SpannerSink implements SinkModule {
             return priority;
         }
 
+        public Integer getWriterThreads() {
+            return writerThreads;
+        }
+
+        public Integer getMaxQueuedBatches() {
+            return maxQueuedBatches;
+        }
+
+        public boolean isPipelined() {
+            return writerThreads != null;
+        }
+
         public Integer getNodeCount() {
             return nodeCount;
         }
@@ -224,6 +251,22 @@ public class SpannerSink implements SinkModule {
                 }
             }
 
+            if(this.writerThreads != null) {
+                if(this.writerThreads < 1) {
+                    errorMessages.add("Parameter writerThreads must be over zero");
+                }
+                if(isTuple) {
+                    errorMessages.add("Parameter writerThreads is not supported for tuple input");
+                } else {
+                    switch (dataType) {
+                        case MUTATION, MUTATIONGROUP, UNIFIEDMUTATION -> errorMessages.add("Parameter writerThreads is not supported for input type: " + dataType);
+                    }
+                }
+            }
+            if(this.maxQueuedBatches != null && this.maxQueuedBatches < 1) {
+                errorMessages.add("Parameter maxQueuedBatches must be over zero");
+            }
+
             if(!errorMessages.isEmpty()) {
                 throw new IllegalArgumentException(String.join(", ", errorMessages));
             }
@@ -272,6 +315,10 @@ public class SpannerSink implements SinkModule {
                 this.groupingFactor = 1000;
             }
 
+            if(this.writerThreads != null && this.maxQueuedBatches == null) {
+                this.maxQueuedBatches = this.writerThreads * 2;
+            }
+
             if(this.flattenFailures == null) {
                 this.flattenFailures = true;
             }
@@ -600,7 +647,7 @@ public class SpannerSink implements SinkModule {
             }
 
             // Custom SpannerWrite for DirectRunner
-            if(OptionUtil.isDirectRunner(input)) {
+            if(OptionUtil.isDirectRunner(input) && !parameters.isPipelined()) {
                 if(waits == null) {
                     return mutationTableReady.apply("WriteSpanner", ParDo
                             .of(new WriteMutationDoFn(projectId, instanceId, databaseId, 500, parameters.getEmulator())));
@@ -614,7 +661,7 @@ public class SpannerSink implements SinkModule {
                 }
             }
 
-            final SpannerWriteResult writeResult;
+            final PCollection<Void> output;
             if((waits != null && !waits.isEmpty()) || parameters.getNodeCount() > 0) {
 
                 final List<PCollection<?>> wait = new ArrayList<>();
@@ -634,10 +681,9 @@ public class SpannerSink implements SinkModule {
                     nodeCount = input.getPipeline().apply("Dummy", Create.of(-1));
                 }
 
-                writeResult = mutationTableReady
+                output = write(mutationTableReady
                         .apply("WaitForSpannerSetup", Wait.on(wait))
-                        .setCoder(mutationTableReady.getCoder())
-                        .apply("WriteSpanner", write);
+                        .setCoder(mutationTableReady.getCoder()), write);
 
                 if(parameters.getNodeCount() > 0) {
                     final PCollection<Integer> targetNodeCount;
@@ -648,15 +694,26 @@ public class SpannerSink implements SinkModule {
                         targetNodeCount = nodeCount;
                     }
                     targetNodeCount
-                            .apply("WaitForWriteSpanner", Wait.on(writeResult.getOutput()))
+                            .apply("WaitForWriteSpanner", Wait.on(output))
                             .apply("ScaleDownSpanner", ParDo.of(new SpannerScaleDoFn(
                                     parameters.getProjectId(), parameters.getInstanceId(), 0)));
                 }
             } else {
-                writeResult = mutationTableReady.apply("WriteSpanner", write);
+                output = write(mutationTableReady, write);
             }
 
-            return writeResult.getOutput();
+            return output;
+        }
+
+        private PCollection<Void> write(final PCollection<Mutation> mutations, final SpannerIO.Write write) {
+            if(parameters.isPipelined()) {
+                return mutations.apply("WriteSpanner", ParDo.of(new PipelinedWriteMutationDoFn(
+                        parameters.getProjectId(), parameters.getInstanceId(), parameters.getDatabaseId(), parameters.getEmulator(),
+                        parameters.getPriority(), parameters.getMaxNumRows(), parameters.getMaxNumMutations(),
+                        parameters.getBatchSizeBytes(), parameters.getGroupingFactor(),
+                        parameters.getWriterThreads(), parameters.getMaxQueuedBatches())));
+            }
+            return mutations.apply("WriteSpanner", write).getOutput();
         }
 
         private List<String> buildDdls(final String projectId, final String instanceId, final String databaseId, final String table,
@@ -1817,6 +1874,206 @@ public class SpannerSink implements SinkModule {
 
     }
 
+    /**
+     * Buffers mutations, sorts them by table and primary key, and cuts them into commits under the row count,
+     * cell count and byte size limits. Commits are handed to writer threads shared in the worker through a bounded queue,
+     * so several commits run concurrently and element processing blocks only when the queue is full.
+     * Aborted commits are retried, and all commits submitted in a bundle are waited at finishBundle.
+     */
+    private static class PipelinedWriteMutationDoFn extends DoFn<Mutation, Void> {
+
+        private static final Logger LOG = LoggerFactory.getLogger(PipelinedWriteMutationDoFn.class);
+
+        private static final Map<String, ExecutorService> executors = new ConcurrentHashMap<>();
+
+        private static final int MAX_ABORTED_RETRIES = 10;
+        private static final long MAX_RETRY_DELAY_MILLIS = 32000L;
+
+        private final String projectId;
+        private final String instanceId;
+        private final String databaseId;
+        private final Boolean emulator;
+        private final Options.RpcPriority priority;
+        private final Long maxNumRows;
+        private final Long maxNumMutations;
+        private final Long batchSizeBytes;
+        private final Integer groupingFactor;
+        private final Integer writerThreads;
+        private final Integer maxQueuedBatches;
+
+        private transient DatabaseClient client;
+        private transient ExecutorService executor;
+        private transient Map<String, List<String>> primaryKeys;
+        private transient boolean primaryKeysRefreshed;
+
+        private transient List<Mutation> buffer;
+        private transient long bufferCells;
+        private transient long bufferBytes;
+        private transient List<Future<Integer>> futures;
+
+        PipelinedWriteMutationDoFn(final String projectId, final String instanceId, final String databaseId,
+                                   final Boolean emulator, final Options.RpcPriority priority,
+                                   final Long maxNumRows, final Long maxNumMutations, final Long batchSizeBytes,
+                                   final Integer groupingFactor, final Integer writerThreads, final Integer maxQueuedBatches) {
+
+            this.projectId = projectId;
+            this.instanceId = instanceId;
+            this.databaseId = databaseId;
+            this.emulator = emulator;
+            this.priority = priority;
+            this.maxNumRows = maxNumRows;
+            this.maxNumMutations = maxNumMutations;
+            this.batchSizeBytes = batchSizeBytes;
+            this.groupingFactor = groupingFactor;
+            this.writerThreads = writerThreads;
+            this.maxQueuedBatches = maxQueuedBatches;
+        }
+
+        @Setup
+        public void setup() {
+            final Spanner spanner = SpannerUtil.getOrCreateSharedSpanner(projectId, writerThreads, !emulator, emulator);
+            this.client = spanner.getDatabaseClient(DatabaseId.of(projectId, instanceId, databaseId));
+            final String key = String.join("\n", projectId, instanceId, databaseId, Integer.toString(writerThreads), Integer.toString(maxQueuedBatches));
+            this.executor = executors.computeIfAbsent(key, k -> createExecutor(writerThreads, maxQueuedBatches));
+            this.primaryKeys = null;
+            this.primaryKeysRefreshed = false;
+        }
+
+        @StartBundle
+        public void startBundle() {
+            this.buffer = new ArrayList<>();
+            this.bufferCells = 0;
+            this.bufferBytes = 0;
+            this.futures = new ArrayList<>();
+        }
+
+        @ProcessElement
+        public void processElement(ProcessContext c) throws Exception {
+            final Mutation mutation = c.element();
+            buffer.add(mutation);
+            bufferCells += SpannerUtil.countMutationCells(mutation);
+            bufferBytes += SpannerUtil.estimateMutationSize(mutation);
+            // Sort mutations of several commits together, in the same way as groupingFactor of SpannerIO
+            if(buffer.size() >= maxNumRows * groupingFactor
+                    || bufferCells >= maxNumMutations * groupingFactor
+                    || bufferBytes >= batchSizeBytes * groupingFactor) {
+                submit();
+                checkCompleted();
+            }
+        }
+
+        @FinishBundle
+        public void finishBundle() throws Exception {
+            if(!buffer.isEmpty()) {
+                submit();
+            }
+            Exception exception = null;
+            int count = 0;
+            for(final Future<Integer> future : futures) {
+                try {
+                    count += future.get();
+                } catch (ExecutionException e) {
+                    if(exception == null) {
+                        exception = e;
+                    }
+                }
+            }
+            futures.clear();
+            if(exception != null) {
+                throw new RuntimeException("Failed to write mutations to spanner", exception.getCause());
+            }
+            LOG.debug("Written mutations: " + count);
+        }
+
+        private void submit() {
+            final List<List<Mutation>> batches = SpannerUtil.createMutationBatches(
+                    buffer, getPrimaryKeys(buffer), maxNumRows, maxNumMutations, batchSizeBytes);
+            this.buffer = new ArrayList<>();
+            this.bufferCells = 0;
+            this.bufferBytes = 0;
+            for(final List<Mutation> batch : batches) {
+                this.futures.add(executor.submit(() -> write(batch)));
+            }
+        }
+
+        // Fail fast if a commit already failed, and release references to completed commits
+        private void checkCompleted() throws Exception {
+            final Iterator<Future<Integer>> iterator = futures.iterator();
+            while(iterator.hasNext()) {
+                final Future<Integer> future = iterator.next();
+                if(!future.isDone()) {
+                    continue;
+                }
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Failed to write mutations to spanner", e.getCause());
+                }
+                iterator.remove();
+            }
+        }
+
+        private int write(final List<Mutation> batch) throws InterruptedException {
+            int attempt = 0;
+            while(true) {
+                try {
+                    client.writeWithOptions(batch, Options.priority(priority));
+                    return batch.size();
+                } catch (SpannerException e) {
+                    if(!ErrorCode.ABORTED.equals(e.getErrorCode()) || ++attempt > MAX_ABORTED_RETRIES) {
+                        throw e;
+                    }
+                    final long backoff = Math.min(MAX_RETRY_DELAY_MILLIS, 100L << Math.min(attempt, 16));
+                    final long delay = e.getRetryDelayInMillis() > 0 ? e.getRetryDelayInMillis() : ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1);
+                    LOG.warn("Retry aborted commit of " + batch.size() + " mutations, attempt: " + attempt + ", delay millis: " + delay);
+                    Thread.sleep(delay);
+                }
+            }
+        }
+
+        // Primary keys are loaded lazily because the table may be created after setup
+        private Map<String, List<String>> getPrimaryKeys(final List<Mutation> mutations) {
+            final boolean missing = primaryKeys == null || mutations.stream()
+                    .map(Mutation::getTable)
+                    .anyMatch(table -> !primaryKeys.containsKey(table));
+            if(missing && !primaryKeysRefreshed) {
+                try {
+                    final Map<String, List<String>> keys = new HashMap<>();
+                    SpannerUtil.getPrimaryFieldsFromDatabase(projectId, instanceId, databaseId, emulator)
+                            .forEach((table, fields) -> keys.put(table, fields.stream().map(Type.StructField::getName).toList()));
+                    primaryKeysRefreshed = primaryKeys != null;
+                    primaryKeys = keys;
+                } catch (Exception e) {
+                    LOG.warn("Failed to get primary keys of database: " + databaseId + ", mutations are grouped only by table. cause: " + e.getMessage());
+                    primaryKeysRefreshed = true;
+                    primaryKeys = new HashMap<>();
+                }
+            }
+            return primaryKeys;
+        }
+
+        private static ExecutorService createExecutor(final int threads, final int queueSize) {
+            final ThreadFactory threadFactory = runnable -> {
+                final Thread thread = new Thread(runnable, "spanner-sink-writer");
+                thread.setDaemon(true);
+                return thread;
+            };
+            // Block the caller when the queue is full, to apply backpressure to element processing
+            final RejectedExecutionHandler blockingHandler = (runnable, executor) -> {
+                try {
+                    executor.getQueue().put(runnable);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting spanner writer queue", e);
+                }
+            };
+            return new ThreadPoolExecutor(
+                    threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), threadFactory, blockingHandler);
+        }
+
+    }
+
     private static class WriteMutationDoFn extends DoFn<Mutation, Void> {
 
         private static final Logger LOG = LoggerFactory.getLogger(WriteMutationDoFn.class);
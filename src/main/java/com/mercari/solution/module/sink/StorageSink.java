@@ -2,6 +2,8 @@ package com.mercari.solution.module.sink;
 
 import com.google.cloud.spanner.Struct;
 import com.google.cloud.spanner.Type;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import com.google.datastore.v1.Entity;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
@@ -50,6 +52,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 
@@ -891,12 +894,38 @@ public class StorageSink implements SinkModule {
     public static class JsonSchemaDetector extends PTransform<PCollection<String>, PCollection<String>> {
 
         private final Double mapRate;
+        private final DetectMode mode;
+        private final Double samplingRate;
+
+        public enum DetectMode {
+            column,
+            sketch
+        }
 
         JsonSchemaDetector(final Double mapRate) {
+            this(mapRate, DetectMode.column, 1.0D);
+        }
+
+        JsonSchemaDetector(final Double mapRate, final DetectMode mode, final Double samplingRate) {
             this.mapRate = mapRate;
+            this.mode = mode;
+            this.samplingRate = samplingRate;
+            if(samplingRate == null || samplingRate <= 0 || samplingRate > 1) {
+                throw new IllegalArgumentException("JsonSchemaDetector samplingRate must be in (0, 1] but was: " + samplingRate);
+            }
+            if(DetectMode.column.equals(mode) && samplingRate < 1) {
+                throw new IllegalArgumentException("JsonSchemaDetector samplingRate is supported only for sketch mode");
+            }
         }
 
         public PCollection<String> expand(final PCollection<String> input) {
+            if(DetectMode.sketch.equals(mode)) {
+                return input
+                        .apply("JsonToSchemaSketch", ParDo.of(new SchemaSketchDoFn(samplingRate)))
+                        .apply("MergeSchemaSketch", Combine.globally(new SchemaSketchCombineFn()).withoutDefaults())
+                        .apply("ConvertToSchema", ParDo.of(new SketchSchemaDoFn(mapRate)));
+            }
+
             final PCollectionView<Long> counts = input
                     .apply("Count", Count.globally())
                     .apply("AsSingletonView", View.asSingleton());
@@ -923,17 +952,17 @@ public class StorageSink implements SinkModule {
                 }
             }
 
-            private void setJsonObject(final List<Column> columns, final String id, final String path, final JsonObject jsonObject) {
+            static void setJsonObject(final List<Column> columns, final String id, final String path, final JsonObject jsonObject) {
                 for(final Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
                     setJsonElement(columns, id, path + "/" + entry.getKey(), entry.getValue());
                 }
             }
 
-            private void setJsonElement(final List<Column> columns, final String id, final String path, final JsonElement jsonElement) {
+            private static void setJsonElement(final List<Column> columns, final String id, final String path, final JsonElement jsonElement) {
                 setJsonElement(columns, id, path, jsonElement, false);
             }
 
-            private void setJsonElement(final List<Column> columns, final String id, final String path, final JsonElement jsonElement, boolean inArray) {
+            private static void setJsonElement(final List<Column> columns, final String id, final String path, final JsonElement jsonElement, boolean inArray) {
                 if(jsonElement.isJsonNull()) {
                     if(!inArray) {
                         columns.add(Column.of(id, path, "null", null));
@@ -969,7 +998,7 @@ public class StorageSink implements SinkModule {
                 }
             }
 
-            private String getElementType(final JsonElement element) {
+            private static String getElementType(final JsonElement element) {
                 if(element.isJsonNull()) {
                     return "null";
                 } else if(element.isJsonPrimitive()) {
@@ -991,6 +1020,19 @@ public class StorageSink implements SinkModule {
 
             @Override
             public ColumnSchema addInput(final ColumnSchema accum, final Column input) {
+                return add(accum, input);
+            }
+
+            @Override
+            public ColumnSchema mergeAccumulators(final Iterable<ColumnSchema> accums) {
+                final ColumnSchema merged = createAccumulator();
+                for(final ColumnSchema columnSchema : accums) {
+                    merge(merged, columnSchema);
+                }
+                return merged;
+            }
+
+            static ColumnSchema add(final ColumnSchema accum, final Column input) {
                 if(accum.getPath() == null) {
                     accum.setPath(input.getPath());
                 }
@@ -1003,18 +1045,15 @@ public class StorageSink implements SinkModule {
                 return accum;
             }
 
-            @Override
-            public ColumnSchema mergeAccumulators(final Iterable<ColumnSchema> accums) {
-                final ColumnSchema merged = createAccumulator();
-                for(final ColumnSchema columnSchema : accums) {
-                    if(merged.getPath() == null) {
-                        merged.setPath(columnSchema.getPath());
-                    }
-                    merged.getTypes().addAll(columnSchema.getTypes());
-                    merged.getDataTypes().addAll(columnSchema.getDataTypes());
-                    merged.getElementTypes().addAll(columnSchema.getElementTypes());
-                    merged.setCount(merged.getCount() + columnSchema.getCount());
+            static ColumnSchema merge(final ColumnSchema merged, final ColumnSchema columnSchema) {
+                if(merged.getPath() == null) {
+                    merged.setPath(columnSchema.getPath());
                 }
+                merged.getTypes().addAll(columnSchema.getTypes());
+                merged.getDataTypes().addAll(columnSchema.getDataTypes());
+                merged.getElementTypes().addAll(columnSchema.getElementTypes());
+                merged.setCount(merged.getCount() + columnSchema.getCount());
+                merged.mergeValueHashes(columnSchema);
                 return merged;
             }
 
@@ -1050,6 +1089,17 @@ public class StorageSink implements SinkModule {
                     columnSchemas.add(kv.getValue());
                 }
 
+                final org.apache.avro.Schema schema = createSchema(columnSchemas, count, mapRate);
+                final String schemaString = schema.toString();
+                LOG.info(schemaString);
+                c.output(schemaString);
+            }
+
+            static org.apache.avro.Schema createSchema(
+                    final List<ColumnSchema> columnSchemas,
+                    final Long count,
+                    final Double mapRate) {
+
                 final ColumnSchema root = new ColumnSchema();
                 root.setPath("");
                 root.setTypes(new HashSet<>());
@@ -1059,19 +1109,18 @@ public class StorageSink implements SinkModule {
 
                 LOG.info("ColumnSize: " + columnSchemas.size());
                 for(ColumnSchema cs : columnSchemas) {
-                    LOG.info(cs.path + " " + cs.types + " " + cs.dataTypes + " " + cs.elementTypes + " " + cs.count);
+                    LOG.info(cs.path + " " + cs.types + " " + cs.dataTypes + " " + cs.elementTypes + " " + cs.count
+                            + (cs.valueHashes == null ? "" : " " + cs.getDistinctCountEstimate()));
                 }
 
-                final org.apache.avro.Schema schema = convertSchema(root, columnSchemas, count);
-                final String schemaString = schema.toString();
-                LOG.info(schemaString);
-                c.output(schemaString);
+                return convertSchema(root, columnSchemas, count, mapRate);
             }
 
-            private org.apache.avro.Schema convertSchema(
+            private static org.apache.avro.Schema convertSchema(
                     final ColumnSchema parentColumn,
                     final List<ColumnSchema> descendantColumns,
-                    final Long count) {
+                    final Long count,
+                    final Double mapRate) {
 
                 final String type = mergeTypes(parentColumn.getTypes());
                 switch (type) {
@@ -1108,7 +1157,7 @@ public class StorageSink implements SinkModule {
                         final double countMean = StatUtils.mean(childrenColumns.stream().mapToDouble(ColumnSchema::getCount).toArray());
                         final boolean containsInvalidName = childrenColumns.stream()
                                 .map(ColumnSchema::getPath)
-                                .anyMatch(c -> !AvroSchemaUtil.isValidFieldName(c));
+                                .anyMatch(c -> !AvroSchemaUtil.isValidFieldName(getName(c)));
 
                         final boolean isMap = containsInvalidName || (countMean / count) < mapRate;
                         if(isMap) {
@@ -1119,7 +1168,7 @@ public class StorageSink implements SinkModule {
                                             getName(cs.getPath()),
                                             convertSchema(cs, descendantColumns.stream()
                                                     .filter(ccs -> ccs.getPath().startsWith(cs.getPath() + "/"))
-                                                    .collect(Collectors.toList()), count),
+                                                    .collect(Collectors.toList()), count, mapRate),
                                             null,
                                             (Object)null,
                                             org.apache.avro.Schema.Field.Order.IGNORE))
@@ -1141,7 +1190,7 @@ public class StorageSink implements SinkModule {
                             elementColumnSchema.getTypes().add(elementType);
                             final org.apache.avro.Schema elementSchema = convertSchema(elementColumnSchema, descendantColumns.stream()
                                     .filter(cs -> cs.getPath().startsWith(elementColumnSchema.getPath() + "/"))
-                                    .collect(Collectors.toList()), count);
+                                    .collect(Collectors.toList()), count, mapRate);
                             elementSchemas.add(elementSchema);
                         }
                         return org.apache.avro.Schema.createArray(elementSchemas.get(0));
@@ -1211,9 +1260,137 @@ public class StorageSink implements SinkModule {
 
         }
 
+        /**
+         * Folds sampled lines of a bundle into one local schema sketch, so that only one sketch per bundle is shuffled.
+         */
+        private static class SchemaSketchDoFn extends DoFn<String, SchemaSketch> {
+
+            private final Double samplingRate;
+
+            private transient SchemaSketch sketch;
+
+            SchemaSketchDoFn(final Double samplingRate) {
+                this.samplingRate = samplingRate;
+            }
+
+            @StartBundle
+            public void startBundle() {
+                this.sketch = new SchemaSketch();
+            }
+
+            @ProcessElement
+            public void processElement(ProcessContext c) {
+                if(samplingRate < 1 && ThreadLocalRandom.current().nextDouble() >= samplingRate) {
+                    return;
+                }
+                final JsonObject jsonObject = new Gson().fromJson(c.element(), JsonObject.class);
+                final List<Column> columns = new ArrayList<>();
+                ColumnDoFn.setJsonObject(columns, "", "", jsonObject);
+                sketch.add(columns);
+            }
+
+            @FinishBundle
+            public void finishBundle(FinishBundleContext c) {
+                if(sketch.getCount() > 0) {
+                    c.output(sketch, GlobalWindow.INSTANCE.maxTimestamp(), GlobalWindow.INSTANCE);
+                }
+                this.sketch = null;
+            }
+
+        }
+
+        private static class SchemaSketchCombineFn extends Combine.CombineFn<SchemaSketch, SchemaSketch, SchemaSketch> {
+
+            @Override
+            public SchemaSketch createAccumulator() { return new SchemaSketch(); }
+
+            @Override
+            public SchemaSketch addInput(final SchemaSketch accum, final SchemaSketch input) {
+                return accum.merge(input);
+            }
+
+            @Override
+            public SchemaSketch mergeAccumulators(final Iterable<SchemaSketch> accums) {
+                final SchemaSketch merged = createAccumulator();
+                for(final SchemaSketch accum : accums) {
+                    merged.merge(accum);
+                }
+                return merged;
+            }
+
+            @Override
+            public SchemaSketch extractOutput(final SchemaSketch accum) {
+                return accum;
+            }
+
+        }
+
+        private static class SketchSchemaDoFn extends DoFn<SchemaSketch, String> {
+
+            private final Double mapRate;
+
+            SketchSchemaDoFn(final Double mapRate) {
+                this.mapRate = mapRate;
+            }
+
+            @ProcessElement
+            public void processElement(ProcessContext c) {
+                final SchemaSketch sketch = c.element();
+                final List<ColumnSchema> columnSchemas = new ArrayList<>(sketch.getColumns().values());
+                final org.apache.avro.Schema schema = SchemaDoFn.createSchema(columnSchemas, sketch.getCount(), mapRate);
+                final String schemaString = schema.toString();
+                LOG.info("Detected schema from {} sampled lines: {}", sketch.getCount(), schemaString);
+                c.output(schemaString);
+            }
+
+        }
+
+        @DefaultCoder(AvroCoder.class)
+        private static class SchemaSketch {
+
+            private HashMap<String, ColumnSchema> columns;
+            private Long count;
+
+            public Map<String, ColumnSchema> getColumns() {
+                return columns;
+            }
+
+            public Long getCount() {
+                return count;
+            }
+
+            public SchemaSketch() {
+                this.columns = new HashMap<>();
+                this.count = 0L;
+            }
+
+            public void add(final List<Column> lineColumns) {
+                for(final Column column : lineColumns) {
+                    final ColumnSchema columnSchema = columns.computeIfAbsent(column.getPath(), k -> new ColumnSchema());
+                    JsonAvroSchemaDetectorPerKeyFn.add(columnSchema, column);
+                    if(column.getValueHash() != null) {
+                        columnSchema.addValueHash(column.getValueHash());
+                    }
+                }
+                this.count = this.count + 1;
+            }
+
+            public SchemaSketch merge(final SchemaSketch other) {
+                for(final Map.Entry<String, ColumnSchema> entry : other.columns.entrySet()) {
+                    final ColumnSchema columnSchema = columns.computeIfAbsent(entry.getKey(), k -> new ColumnSchema());
+                    JsonAvroSchemaDetectorPerKeyFn.merge(columnSchema, entry.getValue());
+                }
+                this.count = this.count + other.count;
+                return this;
+            }
+
+        }
+
         @DefaultCoder(AvroCoder.class)
         private static class Column {
 
+            private static final HashFunction VALUE_HASH = Hashing.murmur3_128();
+
             private String id;
             private String path;
             private String type;
@@ -1221,6 +1398,8 @@ public class StorageSink implements SinkModule {
             private String dataType;
             @Nullable
             private HashSet<String> elementTypes;
+            // used only to fold columns into local sketch, not encoded
+            private transient Long valueHash;
 
             public String getId() {
                 return id;
@@ -1262,6 +1441,10 @@ public class StorageSink implements SinkModule {
                 this.elementTypes = elementTypes;
             }
 
+            public Long getValueHash() {
+                return valueHash;
+            }
+
             public static Column of(final String id, final String path, final String type, final String value) {
                 return of(id, path, type, value, null);
             }
@@ -1273,6 +1456,9 @@ public class StorageSink implements SinkModule {
                 column.setType(type);
                 column.setElementTypes(elementTypes);
                 column.setDataType(getDataType(value));
+                if(value != null) {
+                    column.valueHash = VALUE_HASH.hashUnencodedChars(value).asLong();
+                }
                 return column;
             }
 
@@ -1307,6 +1493,8 @@ public class StorageSink implements SinkModule {
         @DefaultCoder(AvroCoder.class)
         private static class ColumnSchema {
 
+            private static final int MAX_VALUE_HASHES = 256;
+
             @Nullable
             private String path;
             private HashSet<String> types;
@@ -1318,6 +1506,10 @@ public class StorageSink implements SinkModule {
             @Nullable
             private Long count;
 
+            // smallest hashes of primitive values to estimate the number of distinct values (k minimum values)
+            @Nullable
+            private ArrayList<Long> valueHashes;
+
             public String getPath() {
                 return path;
             }
@@ -1365,6 +1557,45 @@ public class StorageSink implements SinkModule {
                 this.count = 0L;
             }
 
+            public void addValueHash(final long hash) {
+                if(valueHashes == null) {
+                    valueHashes = new ArrayList<>();
+                }
+                final int index = Collections.binarySearch(valueHashes, hash);
+                if(index >= 0) {
+                    return;
+                }
+                final int position = -index - 1;
+                if(position >= MAX_VALUE_HASHES) {
+                    return;
+                }
+                valueHashes.add(position, hash);
+                if(valueHashes.size() > MAX_VALUE_HASHES) {
+                    valueHashes.remove(valueHashes.size() - 1);
+                }
+            }
+
+            public void mergeValueHashes(final ColumnSchema other) {
+                if(other.valueHashes == null) {
+                    return;
+                }
+                for(final Long hash : other.valueHashes) {
+                    addValueHash(hash);
+                }
+            }
+
+            public long getDistinctCountEstimate() {
+                if(valueHashes == null) {
+                    return 0L;
+                }
+                if(valueHashes.size() < MAX_VALUE_HASHES) {
+                    return valueHashes.size();
+                }
+                // the k-th smallest hash mapped to (0, 1] from the signed long range
+                final double kth = ((double) valueHashes.get(MAX_VALUE_HASHES - 1) - (double) Long.MIN_VALUE) / Math.pow(2, 64);
+                return Math.round((MAX_VALUE_HASHES - 1) / Math.max(kth, Double.MIN_VALUE));
+            }
+
         }
 
     }
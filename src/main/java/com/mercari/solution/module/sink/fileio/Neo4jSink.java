@@ -25,6 +25,7 @@ import java.util.List;
 public class Neo4jSink implements FileIO.Sink<UnionValue> {
 
     private static final String NEO4J_HOME = "/neo4j/";
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024 * 1024;
     private static final Logger LOG = LoggerFactory.getLogger(Neo4jSink.class);
 
     private final String name;
@@ -38,6 +39,7 @@ public class Neo4jSink implements FileIO.Sink<UnionValue> {
     private final String conf;
     private final Neo4jUtil.Format format;
     private final Boolean useGDS;
+    private final Integer compressionWorkers;
     private final List<String> inputNames;
 
     private final Counter counter;
@@ -57,6 +59,7 @@ public class Neo4jSink implements FileIO.Sink<UnionValue> {
                       final Integer bufferSize,
                       final Neo4jUtil.Format format,
                       final Boolean useGDS,
+                      final Integer compressionWorkers,
                       final List<String> inputNames) {
 
         this.name = name;
@@ -70,6 +73,7 @@ public class Neo4jSink implements FileIO.Sink<UnionValue> {
         this.bufferSize = bufferSize;
         this.format = format;
         this.useGDS = useGDS;
+        this.compressionWorkers = compressionWorkers;
         this.inputNames = inputNames;
 
         this.counter = Metrics.counter(name, "processedCount");
@@ -87,9 +91,10 @@ public class Neo4jSink implements FileIO.Sink<UnionValue> {
             final Integer bufferSize,
             final Neo4jUtil.Format format,
             final Boolean useGDS,
+            final Integer compressionWorkers,
             final List<String> inputNames) {
 
-        return new Neo4jSink(name, input, database, conf, nodes, relationships, setupCyphers, teardownCyphers, bufferSize, format, useGDS, inputNames);
+        return new Neo4jSink(name, input, database, conf, nodes, relationships, setupCyphers, teardownCyphers, bufferSize, format, useGDS, compressionWorkers, inputNames);
     }
 
     @Override
@@ -134,7 +139,7 @@ public class Neo4jSink implements FileIO.Sink<UnionValue> {
         setup();
 
         this.buffer = new ArrayList<>();
-        this.outputStream = Channels.newOutputStream(channel);
+        this.outputStream = new BufferedOutputStream(Channels.newOutputStream(channel), DEFAULT_BUFFER_SIZE);
     }
 
     @Override
@@ -150,7 +155,7 @@ public class Neo4jSink implements FileIO.Sink<UnionValue> {
         flushBuffer();
         teardown();
         switch (format) {
-            case dump -> Neo4jUtil.dump(NEO4J_HOME, database, outputStream);
+            case dump -> Neo4jUtil.dump(NEO4J_HOME, database, outputStream, compressionWorkers);
             case zip -> ZipFileUtil.writeZipFile(outputStream, NEO4J_HOME);
             default -> throw new IllegalArgumentException("Not supported neo4j format: " + format);
         }
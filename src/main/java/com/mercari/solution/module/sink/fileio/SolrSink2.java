@@ -12,9 +12,13 @@ import com.mercari.solution.util.pipeline.union.UnionValue;
 import com.mercari.solution.util.schema.SolrSchemaUtil;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.beam.sdk.io.FileIO;
+import org.apache.beam.sdk.io.FileSystems;
+import org.apache.beam.sdk.io.fs.ResourceId;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.Row;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.core.CoreContainer;
 import org.apache.solr.core.SolrCore;
@@ -25,55 +29,80 @@ import org.slf4j.LoggerFactory;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 public class SolrSink2 implements FileIO.Sink<UnionValue> {
 
     private static final String SOLR_HOME = "/solr/";
     private static final String SOLR_XML_DEFAULT = "<solr></solr>";
+    // index directory of each core relative to the solr home, written in partial index files for the merge step
+    private static final String INDEX_DIRS_FILE = "index-dirs.properties";
 
     private static final Logger LOG = LoggerFactory.getLogger(SolrSink.class);
 
     private final List<LocalSolrSink.Core> cores;
     private final List<String> inputNames;
+    private final boolean partial;
 
     private int count = 0;
+    private transient String solrHome;
+    private transient CoreContainer container;
     private transient Map<String, SolrCore> solrCores;
     private transient Map<String, SolrIndexWriter> writers;
     private transient Map<String, List<String>> fields;
     private transient OutputStream outputStream;
 
-    private SolrSink2(final List<LocalSolrSink.Core> cores, final List<String> inputNames) {
+    private SolrSink2(final List<LocalSolrSink.Core> cores, final List<String> inputNames, final boolean partial) {
         this.cores = cores;
         this.inputNames = inputNames;
+        this.partial = partial;
     }
 
     public static SolrSink2 of(
             final List<LocalSolrSink.Core> cores,
             final List<String> inputNames) {
 
-        return new SolrSink2(cores, inputNames);
+        return new SolrSink2(cores, inputNames, false);
     }
 
-    @Override
-    public void open(WritableByteChannel channel) throws IOException {
+    /**
+     * Sink to build a partial index of a shard, to be merged by {@link Merge}.
+     * Each instance builds the index in its own solr home, so that shards can be built in parallel in a worker.
+     */
+    public static SolrSink2 partial(
+            final List<LocalSolrSink.Core> cores,
+            final List<String> inputNames) {
 
-        final Path solrPath = Paths.get(SOLR_HOME);
-        solrPath.toFile().mkdir();
+        return new SolrSink2(cores, inputNames, true);
+    }
 
-        // Write solr.xml
-        try (final FileWriter filewriter = new FileWriter(SOLR_HOME + "solr.xml")) {
-            filewriter.write(SOLR_XML_DEFAULT);
-        }
+    /**
+     * Sink to merge partial indexes built by {@link #partial(List, List)} into an index.
+     * Each element is the path of the partial index zip file.
+     */
+    public static Merge merge(
+            final List<LocalSolrSink.Core> cores,
+            final Integer maxSegments) {
+
+        return new Merge(cores, maxSegments);
+    }
+
+    @Override
+    public void open(WritableByteChannel channel) throws IOException {
 
+        this.solrHome = partial ? Files.createTempDirectory("solr").toString() + "/" : SOLR_HOME;
         if(solrCores == null) {
             solrCores = new HashMap<>();
         }
@@ -84,23 +113,98 @@ public class SolrSink2 implements FileIO.Sink<UnionValue> {
             fields = new HashMap<>();
         }
 
+        this.container = createCores(solrHome, cores, solrCores, writers);
+        for(LocalSolrSink.Core core : cores) {
+            this.fields.put(core.getName(), SolrSchemaUtil.getFieldNames(core.getSchema()));
+        }
+
+        this.outputStream = Channels.newOutputStream(channel);
+    }
+
+    @Override
+    public void write(UnionValue element) throws IOException {
+        final String input = inputNames.get(element.getIndex());
+        final String coreName = cores.stream().filter(s -> s.getInput().equals(input)).map(LocalSolrSink.Core::getName).findAny().orElseThrow();
+        final List<String> fieldNames = fields.get(coreName);
+        final SolrInputDocument solrDoc = switch (element.getType()) {
+            case AVRO -> RecordToSolrDocumentConverter.convert((GenericRecord) element.getValue(), fieldNames);
+            case ROW -> RowToSolrDocumentConverter.convert((Row) element.getValue(), fieldNames);
+            case STRUCT -> StructToSolrDocumentConverter.convert((Struct) element.getValue(), fieldNames);
+            case DOCUMENT -> DocumentToSolrDocumentConverter.convert((com.google.firestore.v1.Document) element.getValue(), fieldNames);
+            case ENTITY -> EntityToSolrDocumentConverter.convert((Entity) element.getValue(), fieldNames);
+            default -> throw new RuntimeException("Not supported type: " + element.getType());
+        };
+        final Document doc = DocumentBuilder.toDocument(solrDoc, this.solrCores.get(coreName).getLatestSchema());
+        this.writers.get(coreName).addDocument(doc);
+        this.count += 1;
+        if (this.count % 10000 == 0) {
+            LOG.info(String.format("processed documents: %d", this.count));
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        LOG.info(String.format("LocalSolr processed documents: %d", this.count));
+        final Properties indexDirs = new Properties();
+        for(LocalSolrSink.Core core : cores) {
+            final long start = Instant.now().toEpochMilli();
+            this.writers.get(core.getName()).commit();
+            if(!partial) {
+                // segments of partial indexes are merged once at the merge step
+                this.writers.get(core.getName()).forceMerge(1, true);
+            }
+            this.writers.get(core.getName()).close();
+            final long millisec = Instant.now().toEpochMilli() - start;
+
+            final Path indexDirPath = Paths.get(this.solrCores.get(core.getName()).getIndexDir());
+            indexDirs.setProperty(core.getName(), Paths.get(solrHome).relativize(indexDirPath).toString());
+            LOG.info(String.format("Core: %s Finished to create index at [%s], took %d ms.", core.getName(), indexDirPath.toFile().getAbsolutePath(), millisec));
+        }
+
+        if(partial) {
+            try(final OutputStream os = Files.newOutputStream(Paths.get(solrHome + INDEX_DIRS_FILE))) {
+                indexDirs.store(os, "index directories relative to solr home");
+            }
+        }
+        ZipFileUtil.writeZipFile(outputStream, solrHome);
+        if(partial) {
+            container.shutdown();
+            ZipFileUtil.deleteDirectory(solrHome);
+        }
+        LOG.info("Finished to upload documents!");
+    }
+
+    private static CoreContainer createCores(
+            final String solrHome,
+            final List<LocalSolrSink.Core> cores,
+            final Map<String, SolrCore> solrCores,
+            final Map<String, SolrIndexWriter> writers) throws IOException {
+
+        final Path solrPath = Paths.get(solrHome);
+        solrPath.toFile().mkdir();
+
+        // Write solr.xml
+        try (final FileWriter filewriter = new FileWriter(solrHome + "solr.xml")) {
+            filewriter.write(SOLR_XML_DEFAULT);
+        }
+
         final CoreContainer container = CoreContainer.createAndLoad(solrPath);
         for(LocalSolrSink.Core core : cores) {
-            final Path corePath = Paths.get(SOLR_HOME + core.getName());
-            final Path confPath = Paths.get(SOLR_HOME + core.getName() + "/conf");
-            final Path langPath = Paths.get(SOLR_HOME + core.getName() + "/conf/lang");
+            final Path corePath = Paths.get(solrHome + core.getName());
+            final Path confPath = Paths.get(solrHome + core.getName() + "/conf");
+            final Path langPath = Paths.get(solrHome + core.getName() + "/conf/lang");
             corePath.toFile().mkdir();
             confPath.toFile().mkdir();
             langPath.toFile().mkdir();
 
             // Write schema.xml
-            try (final FileWriter filewriter = new FileWriter(SOLR_HOME + core.getName() + "/conf/schema.xml")) {
+            try (final FileWriter filewriter = new FileWriter(solrHome + core.getName() + "/conf/schema.xml")) {
                 LOG.info("core: " + core.getName() + ", schema.xml: " + core.getSchema());
                 filewriter.write(core.getSchema());
             }
 
             // Write solrconfig.xml
-            try (final FileWriter filewriter = new FileWriter(SOLR_HOME + core.getName() + "/conf/solrconfig.xml")) {
+            try (final FileWriter filewriter = new FileWriter(solrHome + core.getName() + "/conf/solrconfig.xml")) {
                 LOG.info("core: " + core.getName() + ", solrconfig.xml: " + core.getConfig());
                 filewriter.write(core.getConfig());
             }
@@ -111,7 +215,7 @@ public class SolrSink2 implements FileIO.Sink<UnionValue> {
                 for(final KV<String,String> confFilePath : core.getCustomConfigFiles()) {
                     final String fileName = confFilePath.getKey();
                     final String fileContent = StorageUtil.readString(storage, confFilePath.getValue());
-                    try (final FileWriter filewriter = new FileWriter(SOLR_HOME + core.getName() + "/conf/" + fileName)) {
+                    try (final FileWriter filewriter = new FileWriter(solrHome + core.getName() + "/conf/" + fileName)) {
                         LOG.info("core: " + core.getName() + ", custom config file: " + fileContent);
                         filewriter.write(fileContent);
                     }
@@ -128,54 +232,95 @@ public class SolrSink2 implements FileIO.Sink<UnionValue> {
                 solrCore = container.create(core.getName(), new HashMap<>());
                 create = true;
             }
-            this.solrCores.put(core.getName(), solrCore);
+            solrCores.put(core.getName(), solrCore);
             final SolrIndexWriter writer = SolrUtil.createWriter(solrCore, core.getName(), create);
-            this.writers.put(core.getName(), writer);
+            writers.put(core.getName(), writer);
+        }
+        return container;
+    }
 
-            this.fields.put(core.getName(), SolrSchemaUtil.getFieldNames(core.getSchema()));
+    public static class Merge implements FileIO.Sink<KV<String, String>> {
+
+        private static final String SHARDS_DIR = "_shards/";
+
+        private final List<LocalSolrSink.Core> cores;
+        private final Integer maxSegments;
+
+        private transient String solrHome;
+        private transient CoreContainer container;
+        private transient Map<String, SolrIndexWriter> writers;
+        private transient List<String> shardDirs;
+        private transient List<Properties> shardIndexDirs;
+        private transient OutputStream outputStream;
+
+        private Merge(final List<LocalSolrSink.Core> cores, final Integer maxSegments) {
+            this.cores = cores;
+            this.maxSegments = maxSegments;
         }
 
-        this.outputStream = Channels.newOutputStream(channel);
-    }
+        @Override
+        public void open(WritableByteChannel channel) throws IOException {
+            this.solrHome = Files.createTempDirectory("solr").toString() + "/";
+            this.writers = new HashMap<>();
+            this.container = createCores(solrHome, cores, new HashMap<>(), writers);
+            this.shardDirs = new ArrayList<>();
+            this.shardIndexDirs = new ArrayList<>();
+            this.outputStream = Channels.newOutputStream(channel);
+        }
 
-    @Override
-    public void write(UnionValue element) throws IOException {
-        final String input = inputNames.get(element.getIndex());
-        final String coreName = cores.stream().filter(s -> s.getInput().equals(input)).map(LocalSolrSink.Core::getName).findAny().orElseThrow();
-        final List<String> fieldNames = fields.get(coreName);
-        final SolrInputDocument solrDoc = switch (element.getType()) {
-            case AVRO -> RecordToSolrDocumentConverter.convert((GenericRecord) element.getValue(), fieldNames);
-            case ROW -> RowToSolrDocumentConverter.convert((Row) element.getValue(), fieldNames);
-            case STRUCT -> StructToSolrDocumentConverter.convert((Struct) element.getValue(), fieldNames);
-            case DOCUMENT -> DocumentToSolrDocumentConverter.convert((com.google.firestore.v1.Document) element.getValue(), fieldNames);
-            case ENTITY -> EntityToSolrDocumentConverter.convert((Entity) element.getValue(), fieldNames);
-            default -> throw new RuntimeException("Not supported type: " + element.getType());
-        };
-        final Document doc = DocumentBuilder.toDocument(solrDoc, this.solrCores.get(coreName).getLatestSchema());
-        this.writers.get(coreName).addDocument(doc);
-        this.count += 1;
-        if (this.count % 10000 == 0) {
-            LOG.info(String.format("processed documents: %d", this.count));
+        @Override
+        public void write(KV<String, String> element) throws IOException {
+            final String shardDir = solrHome + SHARDS_DIR + shardDirs.size() + "/";
+            final ResourceId resourceId = FileSystems.matchNewResource(element.getValue(), false);
+            try(final InputStream is = Channels.newInputStream(FileSystems.open(resourceId))) {
+                ZipFileUtil.unzip(is, shardDir);
+            }
+            final Properties indexDirs = new Properties();
+            try(final InputStream is = Files.newInputStream(Paths.get(shardDir + INDEX_DIRS_FILE))) {
+                indexDirs.load(is);
+            }
+            this.shardDirs.add(shardDir);
+            this.shardIndexDirs.add(indexDirs);
+            LOG.info("LocalSolr downloaded partial index: " + element.getValue());
         }
-    }
 
-    @Override
-    public void flush() throws IOException {
-        LOG.info(String.format("LocalSolr processed documents: %d", this.count));
-        for(LocalSolrSink.Core core : cores) {
-            final long start = Instant.now().toEpochMilli();
-            this.writers.get(core.getName()).commit();
-            this.writers.get(core.getName()).forceMerge(1, true);
-            this.writers.get(core.getName()).close();
-            final long millisec = Instant.now().toEpochMilli() - start;
+        @Override
+        public void flush() throws IOException {
+            for(final LocalSolrSink.Core core : cores) {
+                final long start = Instant.now().toEpochMilli();
+                final SolrIndexWriter writer = this.writers.get(core.getName());
+                final List<Directory> directories = new ArrayList<>();
+                for(int i=0; i<shardDirs.size(); i++) {
+                    final String indexDir = shardIndexDirs.get(i).getProperty(core.getName());
+                    if(indexDir == null) {
+                        throw new IllegalStateException("Partial index: " + shardDirs.get(i) + " does not contain core: " + core.getName());
+                    }
+                    directories.add(FSDirectory.open(Paths.get(shardDirs.get(i), indexDir)));
+                }
+                try {
+                    writer.addIndexes(directories.toArray(new Directory[0]));
+                } finally {
+                    for(final Directory directory : directories) {
+                        directory.close();
+                    }
+                }
+                if(maxSegments != null && maxSegments > 0) {
+                    writer.forceMerge(maxSegments, true);
+                }
+                writer.commit();
+                writer.close();
+                final long millisec = Instant.now().toEpochMilli() - start;
+                LOG.info(String.format("Core: %s Finished to merge %d partial indexes, took %d ms.", core.getName(), shardDirs.size(), millisec));
+            }
 
-            final String indexDir = SOLR_HOME + core.getName();
-            final Path indexDirPath = Paths.get(indexDir);
-            LOG.info(String.format("Core: %s Finished to create index at [%s], took %d ms.", core.getName(), indexDirPath.toFile().getAbsolutePath(), millisec));
+            // partial indexes are not included in the merged index file
+            ZipFileUtil.deleteDirectory(solrHome + SHARDS_DIR);
+            ZipFileUtil.writeZipFile(outputStream, solrHome);
+            container.shutdown();
+            ZipFileUtil.deleteDirectory(solrHome);
+            LOG.info("Finished to upload merged index!");
         }
 
-        ZipFileUtil.writeZipFile(outputStream, SOLR_HOME);
-        LOG.info("Finished to upload documents!");
     }
 
 }
\ No newline at end of file
@@ -13,6 +13,7 @@ import com.mercari.solution.util.OptionUtil;
 import com.mercari.solution.util.TemplateUtil;
 import com.mercari.solution.util.converter.RowToRecordConverter;
 import com.mercari.solution.util.pipeline.select.SelectFunction;
+import com.mercari.solution.util.pipeline.select.SelectPlan;
 import com.mercari.solution.util.pipeline.union.UnionCoder;
 import com.mercari.solution.util.pipeline.union.UnionValue;
 import com.mercari.solution.util.schema.AvroSchemaUtil;
@@ -697,7 +698,7 @@ public class CreateSource implements SourceModule {
 
             private final String conditionJsons;
 
-            private transient Filter.ConditionNode conditions;
+            private transient Filter.CompiledCondition conditions;
 
             FilterDoFn(final String conditionJsons) {
                 this.conditionJsons = conditionJsons;
@@ -705,13 +706,13 @@ public class CreateSource implements SourceModule {
 
             @Setup
             public void setup() {
-                this.conditions = Filter.parse(new Gson().fromJson(conditionJsons, JsonElement.class));
+                this.conditions = Filter.compile(Filter.parse(new Gson().fromJson(conditionJsons, JsonElement.class)));
             }
 
             @ProcessElement
             public void processElement(ProcessContext c) {
                 final UnionValue element = c.element();
-                if(Filter.filter(element, UnionValue::getFieldValue, conditions)) {
+                if(conditions.test(element, UnionValue::getFieldValue)) {
                     c.output(element);
                 }
             }
@@ -725,6 +726,7 @@ public class CreateSource implements SourceModule {
             private final String flattenField;
 
             private transient Object runtimeSchema;
+            private transient SelectPlan selectPlan;
 
             SelectDoFn(
                     final DataType outputType,
@@ -741,11 +743,8 @@ public class CreateSource implements SourceModule {
             @Setup
             public void setup() {
                 this.runtimeSchema = UnionValue.convertRowSchema(inputSchema, outputType);
-                if(!selectFunctions.isEmpty()) {
-                    for(final SelectFunction selectFunction : selectFunctions) {
-                        selectFunction.setup();
-                    }
-                }
+                this.selectPlan = SelectPlan.of(selectFunctions, outputType, outputType);
+                this.selectPlan.setup();
             }
 
             @ProcessElement
@@ -754,11 +753,12 @@ public class CreateSource implements SourceModule {
                 if(element == null) {
                     return;
                 }
-                final Map<String, Object> values = SelectFunction.apply(selectFunctions, element, outputType, c.timestamp());
+                selectPlan.apply(element, c.timestamp());
                 if(flattenField == null) {
-                    final ElementT output = UnionValue.create(runtimeSchema, values, outputType);
+                    final ElementT output = selectPlan.create(runtimeSchema, (schema, values) -> UnionValue.create(schema, values, outputType));
                     c.output(output);
                 } else {
+                    final Map<String, Object> values = selectPlan.getValues();
                     final List<?> flattenList = Optional.ofNullable((List<?>) values.get(flattenField)).orElseGet(ArrayList::new);
                     for(final Object value : flattenList) {
                         final Map<String, Object> flattenValues = new HashMap<>(values);
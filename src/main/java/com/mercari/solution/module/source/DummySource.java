@@ -4,7 +4,10 @@ import com.google.cloud.ByteArray;
 import com.google.cloud.Date;
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.Mutation;
-import com.google.common.hash.Hashing;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Value;
+import com.google.common.primitives.Longs;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -17,10 +20,13 @@ import com.mercari.solution.util.OptionUtil;
 import com.mercari.solution.util.TemplateUtil;
 import com.mercari.solution.util.converter.*;
 import com.mercari.solution.util.schema.AvroSchemaUtil;
+import com.mercari.solution.util.schema.RowSchemaUtil;
 import com.mercari.solution.util.schema.SchemaUtil;
 import freemarker.template.Template;
+import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.beam.sdk.coders.RowCoder;
+import org.apache.beam.sdk.coders.SerializableCoder;
 import org.apache.beam.sdk.extensions.avro.coders.AvroCoder;
 import org.apache.beam.sdk.io.GenerateSequence;
 import org.apache.beam.sdk.io.gcp.spanner.MutationGroup;
@@ -29,15 +35,16 @@ import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.values.*;
-import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.hadoop.hbase.exceptions.IllegalArgumentIOException;
-import org.joda.time.LocalDateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.*;
 
 
@@ -47,6 +54,7 @@ public class DummySource implements SourceModule {
 
     private static class DummySourceParameters implements Serializable {
 
+        private Mode mode;
         private JsonObject template;
         private Long throughput;
         private Long interval;
@@ -65,9 +73,17 @@ public class DummySource implements SourceModule {
         private String mutationPrimaryField;
         private List<String> mutationOtherFields;
 
+        // for generator mode
+        private Long seed;
+        private List<DummyFieldParameters> fields;
+
         // output type
         private OutputType outputType;
 
+        public Mode getMode() {
+            return mode;
+        }
+
         public JsonObject getTemplate() {
             return template;
         }
@@ -116,6 +132,14 @@ public class DummySource implements SourceModule {
             return mutationOtherFields;
         }
 
+        public Long getSeed() {
+            return seed;
+        }
+
+        public List<DummyFieldParameters> getFields() {
+            return fields;
+        }
+
         public OutputType getOutputType() {
             return outputType;
         }
@@ -123,8 +147,19 @@ public class DummySource implements SourceModule {
 
         public void validate(PInput input) {
             final List<String> errorMessages = new ArrayList<>();
-            if(template == null || (!template.isJsonObject() && !template.isJsonArray())) {
-                errorMessages.add("dummy source module config requires template parameter");
+            if(Mode.generator.equals(mode)) {
+                if(fields != null) {
+                    for(int i=0; i<fields.size(); i++) {
+                        errorMessages.addAll(fields.get(i).validate("fields[" + i + "]"));
+                    }
+                }
+            } else {
+                if(template == null || (!template.isJsonObject() && !template.isJsonArray())) {
+                    errorMessages.add("dummy source module config requires template parameter");
+                }
+                if(OutputType.struct.equals(outputType)) {
+                    errorMessages.add("dummy source module supports outputType struct only for generator mode");
+                }
             }
             if(OptionUtil.isStreaming(input)) {
                 if(throughput == null) {
@@ -165,6 +200,15 @@ public class DummySource implements SourceModule {
         }
 
         public void setDefaults() {
+            if(mode == null) {
+                mode = Mode.template;
+            }
+            if(fields == null) {
+                fields = new ArrayList<>();
+            }
+            for(final DummyFieldParameters field : fields) {
+                field.setDefaults();
+            }
             if(sequenceFrom == null) {
                 sequenceFrom = 0L;
             }
@@ -187,9 +231,106 @@ public class DummySource implements SourceModule {
 
     }
 
+    private static class DummyFieldParameters implements Serializable {
+
+        private String name;
+        private Distribution distribution;
+        private String min;
+        private String max;
+        private Long cardinality;
+        private Double exponent;
+        private String prefix;
+        private Integer length;
+        private List<String> hotKeys;
+        private Double hotKeyRate;
+        private Double nullRate;
+        private Integer arraySize;
+
+        // for nested row field
+        private List<DummyFieldParameters> fields;
+
+        public List<String> validate(final String path) {
+            final List<String> errorMessages = new ArrayList<>();
+            if(name == null) {
+                errorMessages.add("dummy source module " + path + ".name must not be null");
+            }
+            if(cardinality != null && cardinality < 1) {
+                errorMessages.add("dummy source module " + path + ".cardinality must be over zero");
+            }
+            if(exponent != null && exponent <= 0) {
+                errorMessages.add("dummy source module " + path + ".exponent must be over zero");
+            }
+            if(length != null && length < 0) {
+                errorMessages.add("dummy source module " + path + ".length must not be negative");
+            }
+            if(arraySize != null && arraySize < 0) {
+                errorMessages.add("dummy source module " + path + ".arraySize must not be negative");
+            }
+            if(nullRate != null && (nullRate < 0 || nullRate > 1)) {
+                errorMessages.add("dummy source module " + path + ".nullRate must be between 0 and 1");
+            }
+            if(hotKeyRate != null && (hotKeyRate < 0 || hotKeyRate > 1)) {
+                errorMessages.add("dummy source module " + path + ".hotKeyRate must be between 0 and 1");
+            }
+            if(fields != null) {
+                for(int i=0; i<fields.size(); i++) {
+                    errorMessages.addAll(fields.get(i).validate(path + ".fields[" + i + "]"));
+                }
+            }
+            return errorMessages;
+        }
+
+        public void setDefaults() {
+            if(distribution == null) {
+                distribution = Distribution.uniform;
+            }
+            if(exponent == null) {
+                exponent = 1.0D;
+            }
+            if(prefix == null) {
+                prefix = "";
+            }
+            if(length == null) {
+                length = 16;
+            }
+            if(hotKeys == null) {
+                hotKeys = new ArrayList<>();
+            }
+            if(hotKeyRate == null) {
+                hotKeyRate = hotKeys.isEmpty() ? 0D : 0.5D;
+            }
+            if(nullRate == null) {
+                nullRate = 0D;
+            }
+            if(arraySize == null) {
+                arraySize = 10;
+            }
+            if(fields == null) {
+                fields = new ArrayList<>();
+            }
+            for(final DummyFieldParameters field : fields) {
+                field.setDefaults();
+            }
+        }
+
+    }
+
+    private enum Mode {
+        template,
+        generator
+    }
+
+    private enum Distribution {
+        uniform,
+        zipf,
+        sequence,
+        eventtime
+    }
+
     private enum OutputType {
         row,
         avro,
+        struct,
         mutation,
         mutationGroup
     }
@@ -213,13 +354,15 @@ public class DummySource implements SourceModule {
 
     public static FCollection<?> dummy(final PBegin begin, final SourceConfig config, final DummySourceParameters parameters) {
         final Schema schema = SourceConfig.convertSchema(config.getSchema());
+        final boolean generator = Mode.generator.equals(parameters.getMode());
         switch (parameters.getOutputType()) {
             case row -> {
-                final DummyStream<Schema, Schema, Row> dummyStream = new DummyStream<>(
-                        parameters,
-                        schema,
-                        s -> s,
-                        JsonToRowConverter::convert);
+                final PTransform<PBegin, PCollection<Row>> dummyStream;
+                if(generator) {
+                    dummyStream = new DummyGeneratorStream<>(parameters, schema, OutputType.row);
+                } else {
+                    dummyStream = new DummyStream<>(parameters, schema, s -> s, JsonToRowConverter::convert);
+                }
                 final PCollection<Row> dummies = begin
                         .apply(config.getName(), dummyStream)
                         .setCoder(RowCoder.of(schema));
@@ -228,23 +371,33 @@ public class DummySource implements SourceModule {
             }
             case avro -> {
                 final org.apache.avro.Schema avroSchema = RowToRecordConverter.convertSchema(schema);
-                final DummyStream<String, org.apache.avro.Schema, GenericRecord> dummyStream = new DummyStream<>(
-                        parameters,
-                        avroSchema.toString(),
-                        AvroSchemaUtil::convertSchema,
-                        JsonToRecordConverter::convert);
+                final PTransform<PBegin, PCollection<GenericRecord>> dummyStream;
+                if(generator) {
+                    dummyStream = new DummyGeneratorStream<>(parameters, schema, OutputType.avro);
+                } else {
+                    dummyStream = new DummyStream<>(parameters, avroSchema.toString(), AvroSchemaUtil::convertSchema, JsonToRecordConverter::convert);
+                }
                 final PCollection<GenericRecord> dummies = begin
                         .apply(config.getName(), dummyStream)
                         .setCoder(AvroCoder.of(avroSchema));
                 return FCollection
                         .of(config.getName(), dummies, DataType.AVRO, avroSchema);
             }
+            case struct -> {
+                final Type type = RowToMutationConverter.convertSchema(schema);
+                final PCollection<Struct> dummies = begin
+                        .apply(config.getName(), new DummyGeneratorStream<Struct>(parameters, schema, OutputType.struct))
+                        .setCoder(SerializableCoder.of(Struct.class));
+                return FCollection
+                        .of(config.getName(), dummies, DataType.STRUCT, type);
+            }
             case mutationGroup -> {
-                final DummyStream<Schema, Schema, Row> dummyStream = new DummyStream<>(
-                        parameters,
-                        schema,
-                        s -> s,
-                        JsonToRowConverter::convert);
+                final PTransform<PBegin, PCollection<Row>> dummyStream;
+                if(generator) {
+                    dummyStream = new DummyGeneratorStream<>(parameters, schema, OutputType.row);
+                } else {
+                    dummyStream = new DummyStream<>(parameters, schema, s -> s, JsonToRowConverter::convert);
+                }
                 final PCollection<MutationGroup> dummies = begin
                         .apply(config.getName(), dummyStream)
                         .setCoder(RowCoder.of(schema))
@@ -263,6 +416,18 @@ public class DummySource implements SourceModule {
         }
     }
 
+    private static GenerateSequence createGenerateSequence(final DummySourceParameters parameters) {
+        GenerateSequence generateSequence = GenerateSequence.from(parameters.getSequenceFrom());
+        if(parameters.getThroughput() != null) {
+            generateSequence = generateSequence
+                    .withRate(parameters.getThroughput(), DateTimeUtil.getDuration(parameters.getIntervalUnit(), parameters.getInterval()));
+        }
+        if(parameters.getSequenceTo() != null) {
+            generateSequence = generateSequence.to(parameters.getSequenceTo());
+        }
+        return generateSequence;
+    }
+
     private static class DummyStream<InputSchemaT, RuntimeSchemaT, ElementT> extends PTransform<PBegin, PCollection<ElementT>> {
 
         private static final Logger LOG = LoggerFactory.getLogger(DummyStream.class);
@@ -272,10 +437,7 @@ public class DummySource implements SourceModule {
         private final SchemaUtil.SchemaConverter<InputSchemaT, RuntimeSchemaT> schemaConverter;
         private final SchemaUtil.JsonConverter<RuntimeSchemaT,ElementT> jsonConverter;
 
-        private final Long throughput;
-        private final Long interval;
-        private final DateTimeUtil.TimeUnit intervalUnit;
-        private final Long sequenceFrom;
+        private final GenerateSequence generateSequence;
         private final Long sequenceTo;
 
         private DummyStream(final DummySourceParameters parameters,
@@ -284,10 +446,7 @@ public class DummySource implements SourceModule {
                             final SchemaUtil.JsonConverter<RuntimeSchemaT, ElementT> jsonConverter) {
 
             this.templateString = parameters.getTemplate().toString();
-            this.throughput = parameters.getThroughput();
-            this.interval = parameters.getInterval();
-            this.intervalUnit = parameters.getIntervalUnit();
-            this.sequenceFrom = parameters.getSequenceFrom();
+            this.generateSequence = createGenerateSequence(parameters);
             this.sequenceTo = parameters.getSequenceTo();
 
             this.inputSchema = inputSchema;
@@ -297,14 +456,6 @@ public class DummySource implements SourceModule {
         }
 
         public PCollection<ElementT> expand(final PBegin begin) {
-
-            GenerateSequence generateSequence = GenerateSequence
-                    .from(sequenceFrom)
-                    .withRate(throughput, DateTimeUtil.getDuration(intervalUnit, interval));
-            if(sequenceTo != null) {
-                generateSequence = generateSequence.to(sequenceTo);
-            }
-
             final PCollection<Long> sequence = begin.apply("GenerateSequence", generateSequence);
             return sequence
                     .apply("GenerateDummies", ParDo.of(new DummyGenerateDoFn<>(
@@ -446,368 +597,804 @@ public class DummySource implements SourceModule {
 
     }
 
-    private interface DummyGenerator {
+    private static class DummyGeneratorStream<ElementT> extends PTransform<PBegin, PCollection<ElementT>> {
+
+        private static final Logger LOG = LoggerFactory.getLogger(DummyGeneratorStream.class);
+
+        private final Schema schema;
+        private final OutputType outputType;
+        private final List<DummyFieldParameters> fields;
+        private final Long seed;
+        private final GenerateSequence generateSequence;
+        private final Long sequenceTo;
+
+        private DummyGeneratorStream(final DummySourceParameters parameters,
+                                     final Schema schema,
+                                     final OutputType outputType) {
+
+            this.schema = schema;
+            this.outputType = outputType;
+            this.fields = parameters.getFields();
+            this.seed = parameters.getSeed();
+            this.generateSequence = createGenerateSequence(parameters);
+            this.sequenceTo = parameters.getSequenceTo();
+
+            // compile once on pipeline construction to report illegal field settings early
+            DummyRecordGenerator.of(schema, fields, outputType);
+        }
+
+        public PCollection<ElementT> expand(final PBegin begin) {
+            final PCollection<Long> sequence = begin.apply("GenerateSequence", generateSequence);
+            return sequence
+                    .apply("GenerateDummies", ParDo.of(new DummyRecordGenerateDoFn<>(
+                            schema, fields, outputType, seed, sequenceTo)));
+        }
+
+        private static class DummyRecordGenerateDoFn<ElementT> extends DoFn<Long, ElementT> {
+
+            private final Schema schema;
+            private final List<DummyFieldParameters> fields;
+            private final OutputType outputType;
+            private final Long seed;
+            private final Long sequenceTo;
+
+            private transient DummyRecordGenerator generator;
+            private transient DummyRandom random;
+
+            DummyRecordGenerateDoFn(final Schema schema,
+                                    final List<DummyFieldParameters> fields,
+                                    final OutputType outputType,
+                                    final Long seed,
+                                    final Long sequenceTo) {
+
+                this.schema = schema;
+                this.fields = fields;
+                this.outputType = outputType;
+                this.seed = seed;
+                this.sequenceTo = sequenceTo;
+            }
+
+            @Setup
+            public void setup() {
+                this.generator = DummyRecordGenerator.of(schema, fields, outputType);
+                this.random = new DummyRandom(seed != null ? seed : new Random().nextLong());
+            }
+
+            @ProcessElement
+            public void processElement(final ProcessContext c) {
+                final long sequence = Objects.requireNonNull(c.element());
+                if(sequenceTo != null && sequenceTo < sequence) {
+                    LOG.warn("skip duplicated sequence: " + sequence);
+                    return;
+                }
+                final ElementT output = (ElementT) generator.generate(sequence, c.timestamp().getMillis() * 1000L, random);
+                c.output(output);
+            }
+
+        }
+
+    }
+
+    /**
+     * Builds row, avro record or struct directly from typed field generators compiled from the schema.
+     * Values of each top level field are drawn from a random stream derived from the seed, sequence and field index,
+     * so the output for a sequence is deterministic for a given seed regardless of bundling.
+     */
+    private static class DummyRecordGenerator {
+
+        private final OutputType outputType;
+        private final Schema schema;
+        private final org.apache.avro.Schema avroSchema;
+        private final String[] names;
+        private final Schema.FieldType[] types;
+        private final DummyGenerator[] generators;
+
+        private DummyRecordGenerator(final OutputType outputType,
+                                     final Schema schema,
+                                     final org.apache.avro.Schema avroSchema,
+                                     final DummyGenerator[] generators) {
+
+            this.outputType = outputType;
+            this.schema = schema;
+            this.avroSchema = avroSchema;
+            this.names = schema.getFieldNames().toArray(new String[0]);
+            this.types = schema.getFields().stream().map(Schema.Field::getType).toArray(Schema.FieldType[]::new);
+            this.generators = generators;
+        }
+
+        static DummyRecordGenerator of(final Schema schema,
+                                       final List<DummyFieldParameters> fields,
+                                       final OutputType outputType) {
+
+            final org.apache.avro.Schema avroSchema = OutputType.avro.equals(outputType) ? RowToRecordConverter.convertSchema(schema) : null;
+            return of(schema, avroSchema, fields, outputType);
+        }
+
+        private static DummyRecordGenerator of(final Schema schema,
+                                               final org.apache.avro.Schema avroSchema,
+                                               final List<DummyFieldParameters> fields,
+                                               final OutputType outputType) {
+
+            final Map<String, DummyFieldParameters> parametersMap = new HashMap<>();
+            for(final DummyFieldParameters field : fields) {
+                if(!schema.hasField(field.name)) {
+                    throw new IllegalArgumentException("dummy source module generator field: " + field.name + " does not exist in schema: " + schema);
+                }
+                parametersMap.put(field.name, field);
+            }
+
+            final DummyGenerator[] generators = new DummyGenerator[schema.getFieldCount()];
+            for(int i=0; i<schema.getFieldCount(); i++) {
+                final Schema.Field field = schema.getField(i);
+                final DummyFieldParameters parameters = Optional
+                        .ofNullable(parametersMap.get(field.getName()))
+                        .orElseGet(() -> {
+                            final DummyFieldParameters defaultParameters = new DummyFieldParameters();
+                            defaultParameters.name = field.getName();
+                            defaultParameters.setDefaults();
+                            return defaultParameters;
+                        });
+                final org.apache.avro.Schema fieldAvroSchema = avroSchema == null ? null : AvroSchemaUtil.unnestUnion(avroSchema.getField(field.getName()).schema());
+                generators[i] = DummyGenerator.of(field.getType(), field.getName(), parameters, fieldAvroSchema, outputType);
+            }
+            return new DummyRecordGenerator(outputType, schema, avroSchema, generators);
+        }
 
-        Random random = new Random();
+        Object generate(final long sequence, final long timestampMicros, final DummyRandom random) {
+            return create(sequence, timestampMicros, random, true);
+        }
 
-        static DummyGenerator of(String fieldType, String fieldName, boolean isPrimary, boolean isNullable, List<String> range, int randomRate) {
-            if(fieldType.startsWith("STRING") || fieldType.startsWith("BYTES")) {
-                final String sizeString = fieldType.substring(fieldType.indexOf("(") + 1, fieldType.indexOf(")"));
-                final Integer lengthLimit = "MAX".equals(sizeString) ? Integer.MAX_VALUE : Integer.valueOf(sizeString);
-                if(fieldType.startsWith("BYTES")) {
-                    return new BytesDummyGenerator(fieldName, lengthLimit, isPrimary, isNullable, randomRate);
+        private Object create(final long sequence, final long timestampMicros, final DummyRandom random, final boolean top) {
+            switch (outputType) {
+                case struct -> {
+                    final Struct.Builder builder = Struct.newBuilder();
+                    for(int i=0; i<generators.length; i++) {
+                        if(top) {
+                            random.reset(sequence, i);
+                        }
+                        final Object value = generators[i].generateValue(sequence, timestampMicros, random);
+                        builder.set(names[i]).to(toStructValue(types[i], value));
+                    }
+                    return builder.build();
+                }
+                case avro -> {
+                    final GenericData.Record record = new GenericData.Record(avroSchema);
+                    for(int i=0; i<generators.length; i++) {
+                        if(top) {
+                            random.reset(sequence, i);
+                        }
+                        final Object value = generators[i].generateValue(sequence, timestampMicros, random);
+                        record.put(i, toAvroValue(types[i], value));
+                    }
+                    return record;
+                }
+                default -> {
+                    final List<Object> values = new ArrayList<>(generators.length);
+                    for(int i=0; i<generators.length; i++) {
+                        if(top) {
+                            random.reset(sequence, i);
+                        }
+                        final Object value = generators[i].generateValue(sequence, timestampMicros, random);
+                        values.add(toRowValue(types[i], value));
+                    }
+                    return Row.withSchema(schema).attachValues(values);
                 }
-                return new StringDummyGenerator(fieldName, lengthLimit, range, isPrimary, isNullable, randomRate);
-            } else if(fieldType.equals("INT64")) {
-                return new IntDummyGenerator(fieldName, range, isPrimary, isNullable, randomRate);
-            } else if(fieldType.equals("FLOAT64")) {
-                return new FloatDummyGenerator(fieldName, range, isPrimary, isNullable, randomRate);
-            } else if(fieldType.equals("BOOL")) {
-                return new BoolDummyGenerator(fieldName, isNullable, randomRate);
-            } else if(fieldType.equals("DATE")) {
-                return new DateDummyGenerator(fieldName, range, isPrimary, isNullable, randomRate);
-            } else if(fieldType.equals("TIMESTAMP")) {
-                return new TimestampDummyGenerator(fieldName, range, isPrimary, isNullable, randomRate);
-            } else if(fieldType.startsWith("ARRAY")) {
-                final String arrayType = fieldType.substring(fieldType.indexOf("<") + 1, fieldType.indexOf(">"));
-                final DummyGenerator elementGenerator = of(arrayType, fieldName, false, isNullable, range, randomRate);
-                return new ArrayDummyGenerator(fieldName, elementGenerator, isNullable, randomRate);
             }
-            throw new IllegalArgumentException(String.format("Illegal fieldType: %s, %s", fieldType, fieldName));
         }
 
-        static boolean randomNull(boolean isNullable, int randomRate) {
-            return isNullable && random.nextInt(100) < randomRate;
+        private static Object toRowValue(final Schema.FieldType fieldType, final Object value) {
+            if(value == null) {
+                return null;
+            }
+            return switch (fieldType.getTypeName()) {
+                case INT32 -> ((Long) value).intValue();
+                case FLOAT -> ((Double) value).floatValue();
+                case DATETIME -> new org.joda.time.Instant(((Long) value) / 1000L);
+                case LOGICAL_TYPE -> LocalDate.ofEpochDay((Long) value);
+                case ARRAY, ITERABLE -> ((List<Object>) value).stream()
+                        .map(v -> toRowValue(fieldType.getCollectionElementType(), v))
+                        .toList();
+                default -> value;
+            };
         }
 
-        static <T> List<T> generateValues(DummyGenerator generator, long value) {
-            final List<T> randomValues = new ArrayList<>();
-            for(int i=0; i<10; i++) {
-                final T randomValue = (T)generator.generateValue(value);
-                randomValues.add(randomValue);
+        private static Object toAvroValue(final Schema.FieldType fieldType, final Object value) {
+            if(value == null) {
+                return null;
             }
-            return randomValues;
+            return switch (fieldType.getTypeName()) {
+                case INT32 -> ((Long) value).intValue();
+                case FLOAT -> ((Double) value).floatValue();
+                case BYTES -> ByteBuffer.wrap((byte[]) value);
+                case LOGICAL_TYPE -> ((Long) value).intValue();
+                case ARRAY, ITERABLE -> ((List<Object>) value).stream()
+                        .map(v -> toAvroValue(fieldType.getCollectionElementType(), v))
+                        .toList();
+                default -> value;
+            };
+        }
+
+        private static Value toStructValue(final Schema.FieldType fieldType, final Object value) {
+            return switch (fieldType.getTypeName()) {
+                case INT32, INT64 -> Value.int64((Long) value);
+                case FLOAT, DOUBLE -> Value.float64((Double) value);
+                case STRING -> Value.string((String) value);
+                case BOOLEAN -> Value.bool((Boolean) value);
+                case BYTES -> Value.bytes(value == null ? null : ByteArray.copyFrom((byte[]) value));
+                case DATETIME -> Value.timestamp(value == null ? null : Timestamp.ofTimeMicroseconds((Long) value));
+                case LOGICAL_TYPE -> Value.date(value == null ? null : toDate((Long) value));
+                case ARRAY, ITERABLE -> {
+                    final List<Object> values = (List<Object>) value;
+                    final Schema.FieldType elementType = fieldType.getCollectionElementType();
+                    yield switch (elementType.getTypeName()) {
+                        case INT32, INT64 -> Value.int64Array((List<Long>) (List<?>) values);
+                        case FLOAT, DOUBLE -> Value.float64Array((List<Double>) (List<?>) values);
+                        case STRING -> Value.stringArray((List<String>) (List<?>) values);
+                        case BOOLEAN -> Value.boolArray((List<Boolean>) (List<?>) values);
+                        case BYTES -> Value.bytesArray(values == null ? null : values.stream()
+                                .map(v -> ByteArray.copyFrom((byte[]) v))
+                                .toList());
+                        case DATETIME -> Value.timestampArray(values == null ? null : values.stream()
+                                .map(v -> Timestamp.ofTimeMicroseconds((Long) v))
+                                .toList());
+                        case LOGICAL_TYPE -> Value.dateArray(values == null ? null : values.stream()
+                                .map(v -> toDate((Long) v))
+                                .toList());
+                        default -> throw new IllegalArgumentException("dummy source module generator does not support array element type: " + elementType + " for outputType struct");
+                    };
+                }
+                default -> throw new IllegalArgumentException("dummy source module generator does not support field type: " + fieldType + " for outputType struct");
+            };
+        }
+
+        private static Date toDate(final long epochDay) {
+            final LocalDate localDate = LocalDate.ofEpochDay(epochDay);
+            return Date.fromYearMonthDay(localDate.getYear(), localDate.getMonthValue(), localDate.getDayOfMonth());
+        }
+
+    }
+
+    /**
+     * SplitMix64 based random stream. Reset for each sequence and field so that values are reproducible from the seed.
+     */
+    private static final class DummyRandom {
+
+        private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+        private static final long STREAM_GAMMA = 0xbf58476d1ce4e5b9L;
+
+        private final long seed;
+        private long state;
+
+        DummyRandom(final long seed) {
+            this.seed = seed;
+            this.state = seed;
+        }
+
+        void reset(final long sequence, final int stream) {
+            this.state = mix64(mix64(seed + sequence * GOLDEN_GAMMA) + (stream + 1) * STREAM_GAMMA);
         }
 
-        Object generateValue(long value);
+        long nextLong() {
+            return mix64(state += GOLDEN_GAMMA);
+        }
 
-        Mutation.WriteBuilder putDummyValue(Mutation.WriteBuilder builder, long value);
+        long nextLong(final long bound) {
+            return Long.remainderUnsigned(nextLong(), bound);
+        }
 
-        Mutation.WriteBuilder putDummyValues(Mutation.WriteBuilder builder, long value);
+        double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+        private static long mix64(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
 
     }
 
-    private static class StringDummyGenerator implements DummyGenerator {
-
-        private final String fieldName;
-        private final List<String> range;
-        private final Integer maxLength;
-        private final Boolean isPrimary;
-        private final Boolean isNullable;
-        private final int randomRate;
-
-        public StringDummyGenerator(String fieldName, Integer maxLength, List<String> range, Boolean isPrimary, Boolean isNullable, int randomRate) {
-            this.fieldName = fieldName;
-            if(range != null && range.size() == 1 && NumberUtils.isNumber(range.get(0))) {
-                List<String> r = new ArrayList<>();
-                for(int i=0; i<Integer.valueOf(range.get(0)); i++) {
-                    String randomString = UUID.randomUUID().toString() + UUID.randomUUID().toString();
-                    randomString = maxLength > randomString.length() ? randomString : randomString.substring(0, maxLength);
-                    r.add(randomString);
+    /**
+     * Zipf distributed rank sampler over [1, n] using rejection-inversion (Hormann and Derflinger),
+     * which needs neither a table nor per sample loops over n.
+     */
+    private static class ZipfSampler {
+
+        private final long n;
+        private final double exponent;
+        private final double hIntegralX1;
+        private final double hIntegralN;
+        private final double s;
+
+        ZipfSampler(final long n, final double exponent) {
+            this.n = n;
+            this.exponent = exponent;
+            this.hIntegralX1 = hIntegral(1.5D) - 1D;
+            this.hIntegralN = hIntegral(n + 0.5D);
+            this.s = 2D - hIntegralInverse(hIntegral(2.5D) - h(2D));
+        }
+
+        long sample(final DummyRandom random) {
+            while(true) {
+                final double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+                final double x = hIntegralInverse(u);
+                long k = (long)(x + 0.5D);
+                if(k < 1) {
+                    k = 1;
+                } else if(k > n) {
+                    k = n;
+                }
+                if(k - x <= s || u >= hIntegral(k + 0.5D) - h(k)) {
+                    return k;
                 }
-                this.range = r;
-            } else {
-                this.range = range;
             }
-            this.maxLength = maxLength;
-            this.isPrimary = isPrimary;
-            this.isNullable = isNullable;
-            this.randomRate = randomRate;
         }
 
-        public String generateValue(long value) {
-            if(!isPrimary && DummyGenerator.randomNull(this.isNullable, this.randomRate)) {
-                return null;
+        private double hIntegral(final double x) {
+            final double logX = Math.log(x);
+            return helper2((1D - exponent) * logX) * logX;
+        }
+
+        private double h(final double x) {
+            return Math.exp(-exponent * Math.log(x));
+        }
+
+        private double hIntegralInverse(final double x) {
+            double t = x * (1D - exponent);
+            if(t < -1D) {
+                t = -1D;
             }
-            final String randomString = range != null && range.size() > 0 ?
-                    range.get(random.nextInt(range.size())) :
-                    UUID.randomUUID().toString() + UUID.randomUUID().toString();
-            return maxLength > randomString.length() ? randomString : randomString.substring(0, maxLength);
+            return Math.exp(helper1(t) * x);
         }
 
-        public Mutation.WriteBuilder putDummyValue(Mutation.WriteBuilder builder, long value) {
-            final String randomString = generateValue(value);
-            return builder.set(this.fieldName).to(randomString);
+        private static double helper1(final double x) {
+            if(Math.abs(x) > 1e-8) {
+                return Math.log1p(x) / x;
+            } else {
+                return 1D - x * (0.5D - x * (1D / 3D - 0.25D * x));
+            }
         }
 
-        public Mutation.WriteBuilder putDummyValues(Mutation.WriteBuilder builder, long value) {
-            final List<String> randomValues = DummyGenerator.generateValues(this, value);
-            return builder.set(this.fieldName).toStringArray(randomValues);
+        private static double helper2(final double x) {
+            if(Math.abs(x) > 1e-8) {
+                return Math.expm1(x) / x;
+            } else {
+                return 1D + x * 0.5D * (1D + x * 1D / 3D * (1D + 0.25D * x));
+            }
         }
 
     }
 
-    private static class BytesDummyGenerator implements DummyGenerator {
+    private interface DummyGenerator {
 
-        private final String fieldName;
-        private final Integer maxLength;
-        private final Boolean isPrimary;
-        private final Boolean isNullable;
-        private final int randomRate;
+        static DummyGenerator of(final Schema.FieldType fieldType,
+                                 final String fieldName,
+                                 final DummyFieldParameters parameters,
+                                 final org.apache.avro.Schema avroSchema,
+                                 final OutputType outputType) {
 
-        public BytesDummyGenerator(String fieldName, Integer maxLength, Boolean isPrimary, Boolean isNullable, int randomRate) {
-            this.fieldName = fieldName;
-            this.maxLength = maxLength;
-            this.isPrimary = isPrimary;
-            this.isNullable = isNullable;
-            this.randomRate = randomRate;
+            final DummyGenerator generator = create(fieldType, fieldName, parameters, avroSchema, outputType);
+            if(fieldType.getNullable() && parameters.nullRate > 0) {
+                return new NullableDummyGenerator(generator, parameters.nullRate);
+            }
+            return generator;
         }
 
-        public ByteArray generateValue(long value) {
-            if(!isPrimary && DummyGenerator.randomNull(this.isNullable, this.randomRate)) {
-                return null;
+        private static DummyGenerator create(final Schema.FieldType fieldType,
+                                             final String fieldName,
+                                             final DummyFieldParameters parameters,
+                                             final org.apache.avro.Schema avroSchema,
+                                             final OutputType outputType) {
+
+            switch (fieldType.getTypeName()) {
+                case ARRAY, ITERABLE -> {
+                    final org.apache.avro.Schema elementAvroSchema = avroSchema == null ? null : AvroSchemaUtil.unnestUnion(avroSchema.getElementType());
+                    final DummyGenerator elementGenerator = create(fieldType.getCollectionElementType(), fieldName, parameters, elementAvroSchema, outputType);
+                    return new ArrayDummyGenerator(elementGenerator, parameters.arraySize);
+                }
+                case ROW -> {
+                    if(OutputType.struct.equals(outputType)) {
+                        throw new IllegalArgumentException(String.format("Illegal fieldType: %s, %s for outputType struct", fieldType, fieldName));
+                    }
+                    if(!parameters.hotKeys.isEmpty()) {
+                        throw new IllegalArgumentException(String.format("Field: %s, hotKeys is not supported for row field", fieldName));
+                    }
+                    return new RowDummyGenerator(DummyRecordGenerator.of(fieldType.getRowSchema(), avroSchema, parameters.fields, outputType));
+                }
+            }
+
+            final DummyGenerator generator = switch (fieldType.getTypeName()) {
+                case INT32 -> new IntDummyGenerator(fieldName, parameters, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                case INT64 -> new IntDummyGenerator(fieldName, parameters, Long.MIN_VALUE, Long.MAX_VALUE);
+                case FLOAT, DOUBLE -> new FloatDummyGenerator(fieldName, parameters);
+                case STRING -> new StringDummyGenerator(fieldName, parameters);
+                case BYTES -> new BytesDummyGenerator(fieldName, parameters);
+                case BOOLEAN -> new BoolDummyGenerator(fieldName, parameters);
+                case DATETIME -> new TimestampDummyGenerator(fieldName, parameters);
+                case LOGICAL_TYPE -> {
+                    if(RowSchemaUtil.isLogicalTypeDate(fieldType)) {
+                        yield new DateDummyGenerator(fieldName, parameters);
+                    }
+                    throw new IllegalArgumentException(String.format("Illegal fieldType: %s, %s", fieldType, fieldName));
+                }
+                default -> throw new IllegalArgumentException(String.format("Illegal fieldType: %s, %s", fieldType, fieldName));
+            };
+
+            if(parameters.hotKeys.isEmpty() || parameters.hotKeyRate <= 0) {
+                return generator;
+            }
+            final List<Object> hotValues = new ArrayList<>();
+            for(final String hotKey : parameters.hotKeys) {
+                hotValues.add(generator.parseValue(hotKey));
+            }
+            return new HotKeyDummyGenerator(generator, hotValues, parameters.hotKeyRate);
+        }
+
+        Object generateValue(long sequence, long timestampMicros, DummyRandom random);
+
+        default Object parseValue(final String text) {
+            throw new IllegalArgumentException("hotKeys is not supported for generator: " + getClass().getSimpleName());
+        }
+
+    }
+
+    /**
+     * Draws an index from the configured distribution, which typed generators map to their values.
+     * The sequence distribution returns the sequence modulo cardinality.
+     */
+    private static abstract class IndexDummyGenerator implements DummyGenerator {
+
+        private final Distribution distribution;
+        private final long cardinality;
+        private final ZipfSampler zipf;
+
+        IndexDummyGenerator(final String fieldName, final DummyFieldParameters parameters, final long cardinality) {
+            if(Distribution.eventtime.equals(parameters.distribution)) {
+                throw new IllegalArgumentException(String.format("Field: %s, distribution eventtime is supported only for timestamp field", fieldName));
             }
-            final byte[] randomBytes = this.isPrimary ? Long.toString(value).getBytes() : Hashing.sha512().hashLong(value).asBytes();
-            return ByteArray.copyFrom(randomBytes.length < maxLength ? randomBytes : Arrays.copyOf(randomBytes, maxLength));
+            this.distribution = parameters.distribution;
+            this.cardinality = Math.max(1L, parameters.cardinality == null ? cardinality : Math.min(parameters.cardinality, cardinality));
+            this.zipf = Distribution.zipf.equals(distribution) ? new ZipfSampler(this.cardinality, parameters.exponent) : null;
         }
 
-        public Mutation.WriteBuilder putDummyValue(Mutation.WriteBuilder builder, long value) {
-            return builder.set(this.fieldName).to(generateValue(value));
+        long nextIndex(final long sequence, final DummyRandom random) {
+            return switch (distribution) {
+                case sequence -> Long.remainderUnsigned(sequence, cardinality);
+                case zipf -> zipf.sample(random) - 1;
+                default -> random.nextLong(cardinality);
+            };
         }
 
-        public Mutation.WriteBuilder putDummyValues(Mutation.WriteBuilder builder, long value) {
-            final List<ByteArray> randomValues = DummyGenerator.generateValues(this, value);
-            return builder.set(this.fieldName).toBytesArray(randomValues);
+        long getCardinality() {
+            return cardinality;
+        }
+
+        static long range(final long min, final long max) {
+            try {
+                return Math.subtractExact(max, min);
+            } catch (ArithmeticException e) {
+                return Long.MAX_VALUE;
+            }
         }
 
     }
 
-    private static class IntDummyGenerator implements DummyGenerator {
+    private static class IntDummyGenerator extends IndexDummyGenerator {
 
-        private final Random random;
-        private final String fieldName;
-        private final Long min;
-        private final Long max;
-        private final Boolean isPrimary;
-        private final Boolean isNullable;
-        private final int randomRate;
+        private final long min;
+        private final long lowerBound;
+        private final long upperBound;
 
-        public IntDummyGenerator(String fieldName, List<String> range, Boolean isPrimary, Boolean isNullable, int randomRate) {
-            this.random = new Random();
-            this.fieldName = fieldName;
-            this.min = range != null && range.size() > 0 ? Long.valueOf(range.get(0)) : 0L;
-            this.max = range != null && range.size() > 1 ? Long.valueOf(range.get(1)) : Long.MAX_VALUE;
-            this.isPrimary = isPrimary;
-            this.isNullable = isNullable;
-            this.randomRate = randomRate;
+        IntDummyGenerator(final String fieldName, final DummyFieldParameters parameters, final long lowerBound, final long upperBound) {
+            this(fieldName, parameters, parameters.min == null ? 0L : Long.parseLong(parameters.min),
+                    parameters.max == null ? upperBound : Long.parseLong(parameters.max), lowerBound, upperBound);
         }
 
-        public Long generateValue(long value) {
-            if(!isPrimary && DummyGenerator.randomNull(this.isNullable, this.randomRate)) {
-                return null;
+        private IntDummyGenerator(final String fieldName, final DummyFieldParameters parameters,
+                                  final long min, final long max, final long lowerBound, final long upperBound) {
+            super(fieldName, parameters, range(min, max));
+            if(min >= max || min < lowerBound || max > upperBound) {
+                throw new IllegalArgumentException(String.format("Field: %s, illegal range min: %d, max: %d", fieldName, min, max));
             }
-            return isPrimary ? value : Math.abs(random.nextLong()) % (this.max - this.min) + this.min;
+            this.min = min;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
         }
 
-        public Mutation.WriteBuilder putDummyValue(Mutation.WriteBuilder builder, long value) {
-            return builder.set(this.fieldName).to(generateValue(value));
+        @Override
+        public Long generateValue(long sequence, long timestampMicros, DummyRandom random) {
+            return min + nextIndex(sequence, random);
         }
 
-        public Mutation.WriteBuilder putDummyValues(Mutation.WriteBuilder builder, long value) {
-            List<Long> randomValues = DummyGenerator.generateValues(this, value);
-            return builder.set(this.fieldName).toInt64Array(randomValues);
+        @Override
+        public Object parseValue(final String text) {
+            final long value = Long.parseLong(text);
+            if(value < lowerBound || value > upperBound) {
+                throw new IllegalArgumentException("hotKey: " + text + " is out of range");
+            }
+            return value;
         }
+
     }
 
-    private static class FloatDummyGenerator implements DummyGenerator {
+    private static class FloatDummyGenerator extends IndexDummyGenerator {
 
-        private final Random random;
-        private final String fieldName;
-        private final Double min;
-        private final Double max;
-        private final Boolean isPrimary;
-        private final Boolean isNullable;
-        private final int randomRate;
+        private final double min;
+        private final double max;
+        private final double step;
+        private final boolean continuous;
 
-        public FloatDummyGenerator(String fieldName, List<String> range, Boolean isPrimary, Boolean isNullable, int randomRate) {
-            this.random = new Random();
-            this.fieldName = fieldName;
-            this.min = range != null && range.size() > 0 ? Double.valueOf(range.get(0)) : Double.MIN_VALUE;
-            this.max = range != null && range.size() > 1 ? Double.valueOf(range.get(1)) : Double.MAX_VALUE;
-            this.isPrimary = isPrimary;
-            this.isNullable = isNullable;
-            this.randomRate = randomRate;
+        FloatDummyGenerator(final String fieldName, final DummyFieldParameters parameters) {
+            super(fieldName, parameters, Long.MAX_VALUE);
+            this.min = parameters.min == null ? 0D : Double.parseDouble(parameters.min);
+            this.max = parameters.max == null ? 1D : Double.parseDouble(parameters.max);
+            if(min >= max) {
+                throw new IllegalArgumentException(String.format("Field: %s, illegal range min: %s, max: %s", fieldName, min, max));
+            }
+            this.continuous = Distribution.uniform.equals(parameters.distribution) && parameters.cardinality == null;
+            // index i of cardinality n is mapped to min + i * (max - min) / n, so values stay in [min, max)
+            this.step = (max - min) / getCardinality();
         }
 
-        public Double generateValue(long value) {
-            if(!isPrimary && DummyGenerator.randomNull(this.isNullable, this.randomRate)) {
-                return null;
+        @Override
+        public Double generateValue(long sequence, long timestampMicros, DummyRandom random) {
+            if(continuous) {
+                return min + random.nextDouble() * (max - min);
             }
-            return isPrimary ? (double)value : random.nextDouble() * (max - min) + min;
+            return min + nextIndex(sequence, random) * step;
         }
 
-        public Mutation.WriteBuilder putDummyValue(Mutation.WriteBuilder builder, long value) {
-            return builder.set(this.fieldName).to(generateValue(value));
+        @Override
+        public Object parseValue(final String text) {
+            return Double.parseDouble(text);
         }
 
-        public Mutation.WriteBuilder putDummyValues(Mutation.WriteBuilder builder, long value) {
-            final List<Double> randomValues = DummyGenerator.generateValues(this, value);
-            return builder.set(this.fieldName).toFloat64Array(randomValues);
+    }
+
+    private static class StringDummyGenerator extends IndexDummyGenerator {
+
+        private static final char[] ALPHANUMERIC = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+        private final String prefix;
+        private final int length;
+        private final boolean random;
+
+        StringDummyGenerator(final String fieldName, final DummyFieldParameters parameters) {
+            super(fieldName, parameters, Long.MAX_VALUE);
+            this.prefix = parameters.prefix;
+            this.length = parameters.length;
+            this.random = Distribution.uniform.equals(parameters.distribution) && parameters.cardinality == null;
+        }
+
+        @Override
+        public String generateValue(long sequence, long timestampMicros, DummyRandom random) {
+            if(!this.random) {
+                return prefix + nextIndex(sequence, random);
+            }
+            // 10 alphanumeric characters are taken from each 63 bit random value
+            final char[] chars = new char[length];
+            long bits = 0;
+            for(int i=0; i<length; i++) {
+                if(i % 10 == 0) {
+                    bits = random.nextLong() >>> 1;
+                }
+                chars[i] = ALPHANUMERIC[(int)(bits % ALPHANUMERIC.length)];
+                bits /= ALPHANUMERIC.length;
+            }
+            return prefix + new String(chars);
+        }
+
+        @Override
+        public Object parseValue(final String text) {
+            return text;
         }
 
     }
 
-    private static class BoolDummyGenerator implements DummyGenerator {
+    private static class BytesDummyGenerator extends IndexDummyGenerator {
 
-        private final Random random;
-        private final String fieldName;
-        private final Boolean isNullable;
-        private final int randomRate;
+        private final int length;
+        private final boolean random;
 
-        public BoolDummyGenerator(String fieldName, Boolean isNullable, int randomRate) {
-            this.random = new Random();
-            this.fieldName = fieldName;
-            this.isNullable = isNullable;
-            this.randomRate = randomRate;
+        BytesDummyGenerator(final String fieldName, final DummyFieldParameters parameters) {
+            super(fieldName, parameters, Long.MAX_VALUE);
+            this.length = parameters.length;
+            this.random = Distribution.uniform.equals(parameters.distribution) && parameters.cardinality == null;
         }
 
-        public Boolean generateValue(long value) {
-            if(DummyGenerator.randomNull(this.isNullable, this.randomRate)) {
-                return null;
+        @Override
+        public byte[] generateValue(long sequence, long timestampMicros, DummyRandom random) {
+            if(!this.random) {
+                return Longs.toByteArray(nextIndex(sequence, random));
+            }
+            final byte[] bytes = new byte[length];
+            long bits = 0;
+            for(int i=0; i<length; i++) {
+                if(i % 8 == 0) {
+                    bits = random.nextLong();
+                }
+                bytes[i] = (byte) bits;
+                bits >>>= 8;
             }
-            return this.random.nextBoolean();
+            return bytes;
+        }
+
+        @Override
+        public Object parseValue(final String text) {
+            return text.getBytes(StandardCharsets.UTF_8);
+        }
+
+    }
+
+    private static class BoolDummyGenerator extends IndexDummyGenerator {
+
+        BoolDummyGenerator(final String fieldName, final DummyFieldParameters parameters) {
+            super(fieldName, parameters, 2L);
         }
 
-        public Mutation.WriteBuilder putDummyValue(Mutation.WriteBuilder builder, long value) {
-            return builder.set(this.fieldName).to(generateValue(value));
+        @Override
+        public Boolean generateValue(long sequence, long timestampMicros, DummyRandom random) {
+            return nextIndex(sequence, random) == 0;
         }
 
-        public Mutation.WriteBuilder putDummyValues(Mutation.WriteBuilder builder, long value) {
-            List<Boolean> randomValues = DummyGenerator.generateValues(this, value);
-            return builder.set(this.fieldName).toBoolArray(randomValues);
+        @Override
+        public Object parseValue(final String text) {
+            return Boolean.valueOf(text);
         }
 
     }
 
-    private static class DateDummyGenerator implements DummyGenerator {
-
-        private final Random random;
-        private final String fieldName;
-        private final Integer bound;
-        private final LocalDateTime startDate;
-        private final Boolean isPrimary;
-        private final Boolean isNullable;
-        private final int randomRate;
-
-        public DateDummyGenerator(String fieldName, List<String> range, Boolean isPrimary, Boolean isNullable, int randomRate) {
-            this.random = new Random();
-            this.fieldName = fieldName;
-            final String startDateStr = range != null && range.size() > 0 ? range.get(0) : "1970-01-01T00:00:00";
-            final String endDateStr = range != null && range.size() > 1 ? range.get(1) : "2020-12-31T23:59:59";
-            this.startDate = LocalDateTime.parse(startDateStr.length() == 10 ? startDateStr + "T00:00:00" : startDateStr);
-            final LocalDateTime ldt2 = LocalDateTime.parse(endDateStr.length() == 10 ? endDateStr + "T00:00:00" : endDateStr);
-            this.bound = 0;// (int)(ChronoUnit.DAYS.between(this.startDate.toLocalDate(), ldt2.toLocalDate()));
-            this.isPrimary = isPrimary;
-            this.isNullable = isNullable;
-            this.randomRate = randomRate;
-        }
-
-        public Date generateValue(long value) {
-            if(!isPrimary && DummyGenerator.randomNull(this.isNullable, this.randomRate)) {
-                return null;
+    private static class DateDummyGenerator extends IndexDummyGenerator {
+
+        private static final String DEFAULT_MIN = "1970-01-01";
+        private static final String DEFAULT_MAX = "2020-12-31";
+
+        private final long minEpochDay;
+
+        DateDummyGenerator(final String fieldName, final DummyFieldParameters parameters) {
+            this(fieldName, parameters,
+                    DateTimeUtil.toLocalDate(Optional.ofNullable(parameters.min).orElse(DEFAULT_MIN)).toEpochDay(),
+                    DateTimeUtil.toLocalDate(Optional.ofNullable(parameters.max).orElse(DEFAULT_MAX)).toEpochDay());
+        }
+
+        private DateDummyGenerator(final String fieldName, final DummyFieldParameters parameters, final long minEpochDay, final long maxEpochDay) {
+            super(fieldName, parameters, maxEpochDay - minEpochDay);
+            if(minEpochDay >= maxEpochDay) {
+                throw new IllegalArgumentException(String.format("Field: %s, illegal range min: %s, max: %s", fieldName, parameters.min, parameters.max));
             }
-            //final LocalDateTime nextDate = this.startDate.plusDays(isPrimary ? value : (long)this.random.nextInt(this.bound));
-            //return Date.fromYearMonthDay(nextDate.getYear(), nextDate.getMonthValue(), nextDate.getDayOfMonth());
-            return null;
+            this.minEpochDay = minEpochDay;
         }
 
-        public Mutation.WriteBuilder putDummyValue(Mutation.WriteBuilder builder, long value) {
-            return builder.set(fieldName).to(generateValue(value));
+        @Override
+        public Long generateValue(long sequence, long timestampMicros, DummyRandom random) {
+            return minEpochDay + nextIndex(sequence, random);
         }
 
-        public Mutation.WriteBuilder putDummyValues(Mutation.WriteBuilder builder, long value) {
-            final List<Date> randomValues = DummyGenerator.generateValues(this, value);
-            return builder.set(this.fieldName).toDateArray(randomValues);
+        @Override
+        public Object parseValue(final String text) {
+            return DateTimeUtil.toLocalDate(text).toEpochDay();
         }
 
     }
 
     private static class TimestampDummyGenerator implements DummyGenerator {
 
-        private final Random random;
-        private final String fieldName;
-        private final Long bound;
-        private final LocalDateTime startDateTime;
-        private final Boolean isPrimary;
-        private final Boolean isNullable;
-        private final int randomRate;
-
-        public TimestampDummyGenerator(String fieldName, List<String> range, Boolean isPrimary, Boolean isNullable, int randomRate) {
-            this.random = new Random();
-            this.fieldName = fieldName;
-            final String startDateStr = range != null && range.size() > 0 ? range.get(0) : "1970-01-01T00:00:00";
-            final String endDateStr = range != null && range.size() > 1 ? range.get(1) : "2020-12-31T23:59:59";
-            this.startDateTime = LocalDateTime.parse(startDateStr.length() == 10 ? startDateStr + "T00:00:00" : startDateStr);
-            final LocalDateTime endDateTime = LocalDateTime.parse(endDateStr.length() == 10 ? endDateStr + "T00:00:00" : endDateStr);
-            this.bound = 0L;//java.time.Duration.between(this.startDateTime, endDateTime).getSeconds();
-            this.isPrimary = isPrimary;
-            this.isNullable = isNullable;
-            this.randomRate = randomRate;
-        }
-
-        public Timestamp generateValue(long value) {
-            final LocalDateTime nextTime;
-            if(this.isPrimary) {
-                //nextTime = this.startDateTime.plusSeconds(value);
-                //return Timestamp.ofTimeSecondsAndNanos(nextTime.toEpochSecond(ZoneOffset.UTC),0);
-            } else if(DummyGenerator.randomNull(this.isNullable, this.randomRate)) {
-                return null;
+        private static final String DEFAULT_MIN = "1970-01-01T00:00:00Z";
+        private static final String DEFAULT_MAX = "2020-12-31T23:59:59Z";
+
+        private final boolean eventtime;
+        private final long minEpochMicros;
+        private final IndexDummyGenerator seconds;
+
+        TimestampDummyGenerator(final String fieldName, final DummyFieldParameters parameters) {
+            this.eventtime = Distribution.eventtime.equals(parameters.distribution);
+            this.minEpochMicros = DateTimeUtil.toEpochMicroSecond(Optional.ofNullable(parameters.min).orElse(DEFAULT_MIN));
+            final long maxEpochMicros = DateTimeUtil.toEpochMicroSecond(Optional.ofNullable(parameters.max).orElse(DEFAULT_MAX));
+            if(minEpochMicros >= maxEpochMicros) {
+                throw new IllegalArgumentException(String.format("Field: %s, illegal range min: %s, max: %s", fieldName, parameters.min, parameters.max));
+            }
+            // values other than eventtime are drawn in seconds
+            if(eventtime) {
+                this.seconds = null;
             } else {
-                //nextTime = this.startDateTime.plusSeconds(Math.abs(this.random.nextLong()) % this.bound);
-                //return Timestamp.ofTimeSecondsAndNanos(nextTime.toEpochSecond(ZoneOffset.UTC),0);
+                this.seconds = new IndexDummyGenerator(fieldName, parameters, Math.max(1L, (maxEpochMicros - minEpochMicros) / 1000_000L)) {
+                    @Override
+                    public Object generateValue(long sequence, long timestampMicros, DummyRandom random) {
+                        return nextIndex(sequence, random);
+                    }
+                };
             }
-            return null;
         }
 
-        public Mutation.WriteBuilder putDummyValue(Mutation.WriteBuilder builder, long value) {
-            return builder.set(fieldName).to(generateValue(value));
+        @Override
+        public Long generateValue(long sequence, long timestampMicros, DummyRandom random) {
+            if(eventtime) {
+                return timestampMicros;
+            }
+            return minEpochMicros + seconds.nextIndex(sequence, random) * 1000_000L;
         }
 
-        public Mutation.WriteBuilder putDummyValues(Mutation.WriteBuilder builder, long value) {
-            final List<Timestamp> randomValues = DummyGenerator.generateValues(this, value);
-            return builder.set(this.fieldName).toTimestampArray(randomValues);
+        @Override
+        public Object parseValue(final String text) {
+            return DateTimeUtil.toEpochMicroSecond(text);
         }
 
     }
 
-
     private static class ArrayDummyGenerator implements DummyGenerator {
 
-        private final String fieldName;
         private final DummyGenerator elementGenerator;
-        private final Boolean isNullable;
-        private final int randomRate;
+        private final int size;
 
-        public ArrayDummyGenerator(String fieldName, DummyGenerator elementGenerator, Boolean isNullable, int randomRate) {
-            this.fieldName = fieldName;
+        ArrayDummyGenerator(final DummyGenerator elementGenerator, final int size) {
             this.elementGenerator = elementGenerator;
-            this.isNullable = isNullable;
-            this.randomRate = randomRate;
+            this.size = size;
         }
 
-        public List generateValue(long value) {
-            if(DummyGenerator.randomNull(this.isNullable, this.randomRate)) {
-                return null;
+        @Override
+        public List<Object> generateValue(long sequence, long timestampMicros, DummyRandom random) {
+            final List<Object> values = new ArrayList<>(size);
+            for(int i=0; i<size; i++) {
+                values.add(elementGenerator.generateValue(sequence, timestampMicros, random));
+            }
+            return values;
+        }
+
+    }
+
+    private static class RowDummyGenerator implements DummyGenerator {
+
+        private final DummyRecordGenerator recordGenerator;
+
+        RowDummyGenerator(final DummyRecordGenerator recordGenerator) {
+            this.recordGenerator = recordGenerator;
+        }
+
+        @Override
+        public Object generateValue(long sequence, long timestampMicros, DummyRandom random) {
+            return recordGenerator.create(sequence, timestampMicros, random, false);
+        }
+
+    }
+
+    private static class HotKeyDummyGenerator implements DummyGenerator {
+
+        private final DummyGenerator generator;
+        private final List<Object> hotValues;
+        private final double rate;
+
+        HotKeyDummyGenerator(final DummyGenerator generator, final List<Object> hotValues, final double rate) {
+            this.generator = generator;
+            this.hotValues = hotValues;
+            this.rate = rate;
+        }
+
+        @Override
+        public Object generateValue(long sequence, long timestampMicros, DummyRandom random) {
+            if(random.nextDouble() < rate) {
+                return hotValues.get((int) random.nextLong(hotValues.size()));
             }
-            return DummyGenerator.generateValues(elementGenerator, value);
+            return generator.generateValue(sequence, timestampMicros, random);
         }
 
-        public Mutation.WriteBuilder putDummyValue(Mutation.WriteBuilder builder, long value) {
-            return elementGenerator.putDummyValues(builder, value);
+    }
+
+    private static class NullableDummyGenerator implements DummyGenerator {
+
+        private final DummyGenerator generator;
+        private final double rate;
+
+        NullableDummyGenerator(final DummyGenerator generator, final double rate) {
+            this.generator = generator;
+            this.rate = rate;
         }
 
-        public Mutation.WriteBuilder putDummyValues(Mutation.WriteBuilder builder, long value) {
-            throw new IllegalArgumentException(String.format("Field: %s, Impossible Nested Array (Array in Array) for Cloud Spanner.", fieldName));
+        @Override
+        public Object generateValue(long sequence, long timestampMicros, DummyRandom random) {
+            if(random.nextDouble() < rate) {
+                return null;
+            }
+            return generator.generateValue(sequence, timestampMicros, random);
         }
 
     }
@@ -64,6 +64,7 @@ public class JdbcSource implements SourceModule {
         private Integer fetchSize;
         private Integer splitSize;
         private Boolean enableSplit;
+        private SplitStrategy splitStrategy;
 
         public String getUrl() {
             return url;
@@ -121,6 +122,10 @@ public class JdbcSource implements SourceModule {
             return enableSplit;
         }
 
+        public SplitStrategy getSplitStrategy() {
+            return splitStrategy;
+        }
+
         public void validate() {
 
             final List<String> errorMessages = new ArrayList<>();
@@ -180,6 +185,9 @@ public class JdbcSource implements SourceModule {
             if(enableSplit == null) {
                 enableSplit = false;
             }
+            if(splitStrategy == null) {
+                splitStrategy = SplitStrategy.quantile;
+            }
         }
 
         public void replaceParameters() {
@@ -211,6 +219,11 @@ public class JdbcSource implements SourceModule {
 
     }
 
+    private enum SplitStrategy implements Serializable {
+        uniform,
+        quantile
+    }
+
     public static class PrepareParameterQuery implements Serializable {
 
         private String query;
@@ -584,6 +597,7 @@ public class JdbcSource implements SourceModule {
             protected final String fields;
             protected final List<String> excludeFields;
             protected final Integer fetchSize;
+            protected final boolean enableSplit;
 
             protected final String outputSchemaString;
 
@@ -605,6 +619,7 @@ public class JdbcSource implements SourceModule {
                 this.fields = parameters.getFields();
                 this.excludeFields = parameters.getExcludeFields();
                 this.fetchSize = parameters.getFetchSize();
+                this.enableSplit = parameters.getEnableSplit();
 
                 this.outputSchemaString = outputSchemaString;
             }
@@ -651,6 +666,9 @@ public class JdbcSource implements SourceModule {
                     final JdbcUtil.IndexPosition stopPosition,
                     final RestrictionTracker<JdbcUtil.IndexRange, JdbcUtil.IndexPosition> tracker) throws IOException {
 
+                // When split is enabled, each record is claimed so that the range can be split while reading a page
+                final boolean claimRecords = tracker != null && enableSplit;
+
                 int lastFetchCount = fetchSize;
                 while(lastFetchCount == fetchSize) {
 
@@ -660,9 +678,11 @@ public class JdbcSource implements SourceModule {
                         }
                     }
 
+                    // Stop position may be changed by dynamic splitting
+                    final JdbcUtil.IndexPosition currentStopPosition = tracker != null ? tracker.currentRestriction().getTo() : stopPosition;
                     final String preparedQuery = JdbcUtil.createSeekPreparedQuery(
                             startPosition,
-                            stopPosition,
+                            currentStopPosition,
                             fields,
                             table,
                             parameterFieldNames,
@@ -674,24 +694,23 @@ public class JdbcSource implements SourceModule {
                         int paramIndexOffset = JdbcUtil.setStatementParameters(
                                 statement, startPosition.getOffsets(), parameterFieldsMap, 1);
                         JdbcUtil.setStatementParameters(
-                                statement, stopPosition.getOffsets(), parameterFieldsMap, paramIndexOffset);
+                                statement, currentStopPosition.getOffsets(), parameterFieldsMap, paramIndexOffset);
 
                         int count = 0;
                         final Instant start = Instant.now();
                         try (final ResultSet resultSet = statement.executeQuery()) {
                             while (resultSet.next()) {
                                 final GenericRecord record = ResultSetToRecordConverter.convert(outputSchema, resultSet);
+                                if(claimRecords) {
+                                    if(!tracker.tryClaim(JdbcUtil.IndexPosition.of(createOffsets(record), false))) {
+                                        return;
+                                    }
+                                }
                                 c.output(record);
                                 count++;
 
                                 if(resultSet.isLast()) {
-                                    final List<JdbcUtil.IndexOffset> latestOffsets = new ArrayList<>();
-                                    for (final Schema.Field field : parameterFields) {
-                                        final Schema fieldSchema = AvroSchemaUtil.unnestUnion(field.schema());
-                                        final Object fieldValue = record.get(field.name());
-                                        final Boolean isCaseSensitive = Boolean.valueOf(field.getProp("isCaseSensitive"));
-                                        latestOffsets.add(JdbcUtil.IndexOffset.of(field.name(), fieldSchema.getType(), true, fieldValue, isCaseSensitive));
-                                    }
+                                    final List<JdbcUtil.IndexOffset> latestOffsets = createOffsets(record);
                                     startPosition.setIsOpen(true);
                                     startPosition.setOffsets(latestOffsets);
                                     startPosition.setCount(startPosition.getCount() + count);
@@ -711,6 +730,17 @@ public class JdbcSource implements SourceModule {
                 }
             }
 
+            protected List<JdbcUtil.IndexOffset> createOffsets(final GenericRecord record) {
+                final List<JdbcUtil.IndexOffset> offsets = new ArrayList<>();
+                for (final Schema.Field field : parameterFields) {
+                    final Schema fieldSchema = AvroSchemaUtil.unnestUnion(field.schema());
+                    final Object fieldValue = record.get(field.name());
+                    final Boolean isCaseSensitive = Boolean.valueOf(field.getProp("isCaseSensitive"));
+                    offsets.add(JdbcUtil.IndexOffset.of(field.name(), fieldSchema.getType(), true, fieldValue, isCaseSensitive));
+                }
+                return offsets;
+            }
+
             protected JdbcUtil.IndexRange createInitialIndexRange(final List<String> parameterFieldNames) throws SQLException, IOException {
 
                 final String firstFieldName = parameterFieldNames.get(0);
@@ -822,14 +852,17 @@ public class JdbcSource implements SourceModule {
         public class TableReadRangeDoFn extends TableReadDoFn {
 
             private static final int DEFAULT_FETCH_SIZE = 50_000;
+            // Number of sampled quantiles per split range, used as split points for dynamic splitting
+            private static final int QUANTILES_PER_SPLIT = 8;
+            private static final long MIN_SAMPLE_SIZE = 10_000L;
 
-            private final boolean enableSplit;
             private final Integer splitSize;
+            private final SplitStrategy splitStrategy;
 
             TableReadRangeDoFn(final JdbcSourceParameters parameters, final String outputSchemaString) {
                 super(parameters, outputSchemaString);
-                this.enableSplit = parameters.getEnableSplit();
                 this.splitSize = parameters.getSplitSize();
+                this.splitStrategy = parameters.getSplitStrategy();
             }
 
             @Setup
@@ -873,19 +906,24 @@ public class JdbcSource implements SourceModule {
                     OutputReceiver<JdbcUtil.IndexRange> out) throws Exception {
 
                 if(enableSplit) {
-                    final List<JdbcUtil.IndexRange> ranges = JdbcUtil.splitIndexRange(
-                            null,
-                            restriction.getFrom().getOffsets(),
-                            restriction.getTo().getOffsets(),
-                            splitSize);
+                    final List<JdbcUtil.IndexRange> ranges = switch (splitStrategy) {
+                        case quantile -> splitByQuantiles(restriction);
+                        case uniform -> JdbcUtil.splitIndexRange(
+                                null,
+                                restriction.getFrom().getOffsets(),
+                                restriction.getTo().getOffsets(),
+                                splitSize);
+                    };
                     LOG.info("Batch split restriction: " + restriction + ". size: " + ranges.size() + " for batch mode");
                     if(ranges.size() < 2) {
                         out.output(restriction);
+                        return;
                     }
                     int i=0;
                     for(final JdbcUtil.IndexRange range : ranges) {
-                        final double ratio = restriction.getRatio() / ranges.size();
-                        range.setRatio(ratio);
+                        if(splitStrategy == SplitStrategy.uniform) {
+                            range.setRatio(restriction.getRatio() / ranges.size());
+                        }
                         out.output(range);
                         LOG.info("Restriction " + i + ": " + range.toString());
                         i++;
@@ -903,6 +941,31 @@ public class JdbcSource implements SourceModule {
                 return new IndexRangeTracker(this.enableSplit, restriction, 0L);
             }
 
+            private List<JdbcUtil.IndexRange> splitByQuantiles(final JdbcUtil.IndexRange restriction) {
+                final String firstFieldName = parameterFieldNames.get(0).split(":")[0];
+                final int quantileNum = splitSize * QUANTILES_PER_SPLIT;
+                try {
+                    final JdbcUtil.DB db = JdbcUtil.extractDbFromDriver(driver);
+                    final List<Object> quantiles = JdbcUtil.sampleQuantiles(
+                            connection, db, table, firstFieldName, quantileNum, Math.max(MIN_SAMPLE_SIZE, quantileNum * 100L));
+                    if(quantiles.size() > 0) {
+                        return JdbcUtil.splitIndexRangeByQuantiles(
+                                restriction.getFrom().getOffsets(),
+                                restriction.getTo().getOffsets(),
+                                quantiles,
+                                splitSize);
+                    }
+                } catch (final Exception e) {
+                    LOG.warn("Failed to sample quantiles of field: " + firstFieldName + " in table: " + table + ", cause: " + e.getMessage());
+                }
+                LOG.info("Split restriction uniformly instead of quantiles: " + restriction);
+                return JdbcUtil.splitIndexRange(
+                        null,
+                        restriction.getFrom().getOffsets(),
+                        restriction.getTo().getOffsets(),
+                        splitSize);
+            }
+
             //@GetSize
             public double getSize(@Restriction JdbcUtil.IndexRange restriction) throws Exception {
                 return 0.5D;//getRecordCountAndSize(file, restriction).getSize();
@@ -947,26 +1010,22 @@ public class JdbcSource implements SourceModule {
             @Override
             public SplitResult<JdbcUtil.IndexRange> trySplit(double fractionOfRemainder) {
                 if(enableSplit) {
-                    LOG.info("Try split restriction: " + range.toString());
+                    LOG.info("Try split restriction: " + range.toString() + " at fraction: " + fractionOfRemainder + " of remainder after: " + lastClaimedOffset);
                     final List<JdbcUtil.IndexRange> newRanges = JdbcUtil
-                            .splitIndexRange(null, range.getFrom().getOffsets(), range.getTo().getOffsets(), 2);
+                            .splitIndexRangeRemainder(range, lastClaimedOffset, fractionOfRemainder);
                     if(newRanges.size() <= 1) {
                         LOG.info("Failed to split restriction:" + range.toString());
                         return null;
                     }
-                    LOG.info("Succeeded to split restriction size: " + newRanges.size());
-                    final double ratio = range.getRatio() / 2.0D;
-                    final JdbcUtil.IndexRange firstRange = newRanges.get(0);
-                    final JdbcUtil.IndexRange secondRange = newRanges.get(1);
-                    firstRange.setRatio(ratio);
-                    secondRange.setRatio(ratio);
-                    LOG.info("Restriction 1: " + firstRange.toString());
-                    LOG.info("Restriction 2: " + secondRange.toString());
-
-                    return SplitResult.of(newRanges.get(0), newRanges.get(1));
+                    final JdbcUtil.IndexRange primaryRange = newRanges.get(0);
+                    final JdbcUtil.IndexRange residualRange = newRanges.get(1);
+                    LOG.info("Succeeded to split restriction. primary: " + primaryRange + ", residual: " + residualRange);
+                    this.range = primaryRange;
+                    return SplitResult.of(primaryRange, residualRange);
                 }
                 LOG.info("Not split restriction: " + this.range.toString());
-                return null;            }
+                return null;
+            }
 
             @Override
             public void checkDone() throws IllegalStateException {
@@ -986,7 +1045,21 @@ public class JdbcSource implements SourceModule {
 
             @Override
             public Progress getProgress() {
-                return Progress.from(0.8, 0.2);
+                final List<JdbcUtil.IndexOffset> boundaries = range.getBoundaries();
+                if(boundaries == null || boundaries.size() == 0) {
+                    return Progress.from(0.8, 0.2);
+                }
+                // Sampled boundaries divide the range into intervals with approximately same rows
+                int completed = 0;
+                if(lastClaimedOffset != null) {
+                    final JdbcUtil.IndexOffset claimedOffset = lastClaimedOffset.getOffsets().get(0);
+                    for(final JdbcUtil.IndexOffset boundary : boundaries) {
+                        if(!boundary.isGreaterThan(claimedOffset)) {
+                            completed++;
+                        }
+                    }
+                }
+                return Progress.from(completed, boundaries.size() + 1 - completed);
             }
         }
 
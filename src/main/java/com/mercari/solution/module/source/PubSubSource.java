@@ -36,6 +36,7 @@ import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class PubSubSource implements SourceModule {
@@ -52,6 +53,7 @@ public class PubSubSource implements SourceModule {
         private OutputType outputType;
 
         private String messageName;
+        private List<String> fields;
 
         private String messageTopicField;
         private String messageIdField;
@@ -87,6 +89,10 @@ public class PubSubSource implements SourceModule {
             return messageName;
         }
 
+        public List<String> getFields() {
+            return fields;
+        }
+
         public String getMessageTopicField() {
             return messageTopicField;
         }
@@ -153,6 +159,9 @@ public class PubSubSource implements SourceModule {
             if(validateUnnecessaryJsonField == null) {
                 validateUnnecessaryJsonField = false;
             }
+            if(fields == null) {
+                fields = new ArrayList<>();
+            }
         }
 
         public static PubSubSourceParameters of(final SourceConfig config, final PBegin begin) {
@@ -226,6 +235,12 @@ public class PubSubSource implements SourceModule {
                 if(!descriptors.containsKey(parameters.getMessageName())) {
                     throw new IllegalArgumentException("protobuf descriptors does not contains messageName: " + parameters.getMessageName() + " in descriptors: " + descriptors.keySet());
                 }
+                final Descriptors.Descriptor descriptor = descriptors.get(parameters.getMessageName());
+                for(final String field : parameters.getFields()) {
+                    if(ProtoSchemaUtil.getField(descriptor, field) == null) {
+                        throw new IllegalArgumentException("protobuf message: " + parameters.getMessageName() + " does not contains field: " + field);
+                    }
+                }
                 switch (parameters.getOutputType()) {
                     case avro -> {
                         final PubSubStream<GenericRecord> stream = new PubSubStream<>(config, parameters);
@@ -385,7 +400,7 @@ public class PubSubSource implements SourceModule {
                     final Descriptors.Descriptor descriptor = descriptors.get(parameters.getMessageName());
                     switch (parameters.getOutputType()) {
                         case avro -> {
-                            final SchemaBuilder.FieldAssembler<Schema> avroSchemaBuilder = ProtoToRecordConverter.convertSchemaBuilder(descriptor);
+                            final SchemaBuilder.FieldAssembler<Schema> avroSchemaBuilder = ProtoToRecordConverter.convertSchemaBuilder(descriptor, parameters.getFields());
                             final Schema avroSchema = createSchema(avroSchemaBuilder, parameters);
                             final TupleTag<GenericRecord> outputAvroTag = new TupleTag<>() {};
                             final PCollectionTuple tuple = pubsubMessages
@@ -402,7 +417,7 @@ public class PubSubSource implements SourceModule {
                             failures = tuple.get(failuresTag);
                         }
                         case row -> {
-                            final org.apache.beam.sdk.schemas.Schema.Builder rowSchemaBuilder = ProtoToRowConverter.convertSchemaBuilder(descriptor);
+                            final org.apache.beam.sdk.schemas.Schema.Builder rowSchemaBuilder = ProtoToRowConverter.convertSchemaBuilder(descriptor, parameters.getFields());
                             final org.apache.beam.sdk.schemas.Schema rowSchema = createSchema(rowSchemaBuilder, parameters);
                             final TupleTag<Row> outputRowTag = new TupleTag<>() {};
                             final PCollectionTuple tuple = pubsubMessages
@@ -576,9 +591,6 @@ public class PubSubSource implements SourceModule {
 
     private static class ProtoToRowDoFn extends DoFn<PubsubMessage, Row> {
 
-        private static final Map<String, Descriptors.Descriptor> descriptors = new HashMap<>();// Collections.synchronizedMap(new HashMap<>());
-        private static final Map<String, JsonFormat.Printer> printers = new HashMap<>();
-
         private final TupleTag<PubsubMessage> failuresTag;
         private final boolean sendDeadletter;
 
@@ -592,6 +604,9 @@ public class PubSubSource implements SourceModule {
         private final String messageOrderingKeyField;
         private final Map<String, String> messageAttributesFields;
 
+        private transient ProtoWireDecoder decoder;
+        private transient JsonFormat.Printer printer;
+
         ProtoToRowDoFn(final PubSubSourceParameters parameters,
                        final String descriptorPath,
                        final org.apache.beam.sdk.schemas.Schema schema,
@@ -616,7 +631,10 @@ public class PubSubSource implements SourceModule {
         public void setup() {
             LOG.info("Start setup ProtoToRow DoFn thread id: {}", Thread.currentThread().getId());
             long start = Instant.now().toEpochMilli();
-            final Descriptors.Descriptor descriptor = getOrLoadDescriptor(descriptors, printers, messageName, descriptorPath);
+            final ProtoDescriptor protoDescriptor = getOrLoadDescriptor(messageName, descriptorPath);
+            final Descriptors.Descriptor descriptor = protoDescriptor.descriptor;
+            this.decoder = ProtoWireDecoder.of(descriptor, schema.getFieldNames());
+            this.printer = protoDescriptor.printer;
             long end = Instant.now().toEpochMilli();
             LOG.info("Finished setup ProtoToRow DoFn {} ms, thread id: {}, with descriptor: {}", (end - start), Thread.currentThread().getId(), descriptor.getFullName());
         }
@@ -630,12 +648,7 @@ public class PubSubSource implements SourceModule {
             }
             final byte[] content = message.getPayload();
             try {
-                final Descriptors.Descriptor descriptor = Optional
-                        .ofNullable(descriptors.get(messageName))
-                        .orElseGet(() -> getOrLoadDescriptor(descriptors, printers, messageName, descriptorPath));
-                final JsonFormat.Printer printer = printers.get(messageName);
-
-                final Row.FieldValueBuilder builder = ProtoToRowConverter.convertBuilder(schema, descriptor, content, printer);
+                final Row.FieldValueBuilder builder = ProtoToRowConverter.convertBuilder(schema, decoder, content, printer);
                 if(messageTopicField != null) {
                     builder.withFieldValue(messageTopicField, message.getTopic());
                 }
@@ -668,9 +681,6 @@ public class PubSubSource implements SourceModule {
 
     private static class ProtoToRecordDoFn extends DoFn<PubsubMessage, GenericRecord> {
 
-        private static final Map<String, Descriptors.Descriptor> descriptors = new HashMap<>();
-        private static final Map<String, JsonFormat.Printer> printers = new HashMap<>();
-
         private final TupleTag<PubsubMessage> failuresTag;
         private final boolean sendDeadletter;
 
@@ -685,6 +695,8 @@ public class PubSubSource implements SourceModule {
         private final Map<String, String> messageAttributesFields;
 
         private transient Schema schema;
+        private transient ProtoWireDecoder decoder;
+        private transient JsonFormat.Printer printer;
 
 
         ProtoToRecordDoFn(final PubSubSourceParameters parameters,
@@ -712,7 +724,10 @@ public class PubSubSource implements SourceModule {
             LOG.info("Start setup ProtoToRecord DoFn thread id: {}", Thread.currentThread().getId());
             this.schema = AvroSchemaUtil.convertSchema(avroSchemaString);
             long start = Instant.now().toEpochMilli();
-            final Descriptors.Descriptor descriptor = getOrLoadDescriptor(descriptors, printers, messageName, descriptorPath);
+            final ProtoDescriptor protoDescriptor = getOrLoadDescriptor(messageName, descriptorPath);
+            final Descriptors.Descriptor descriptor = protoDescriptor.descriptor;
+            this.decoder = ProtoWireDecoder.of(descriptor, schema.getFields().stream().map(Schema.Field::name).toList());
+            this.printer = protoDescriptor.printer;
             long end = Instant.now().toEpochMilli();
             LOG.info("Finished setup ProtoToRecord DoFn {} ms, thread id: {}, with descriptor: {}", (end - start), Thread.currentThread().getId(), descriptor.getFullName());
         }
@@ -725,11 +740,7 @@ public class PubSubSource implements SourceModule {
             }
             final byte[] content = message.getPayload();
             try {
-                final Descriptors.Descriptor descriptor = Optional
-                        .ofNullable(descriptors.get(messageName))
-                        .orElseGet(() -> getOrLoadDescriptor(descriptors, printers, messageName, descriptorPath));
-                final JsonFormat.Printer printer = printers.get(messageName);
-                final GenericRecordBuilder recordBuilder = ProtoToRecordConverter.convertBuilder(schema, descriptor, content, printer);
+                final GenericRecordBuilder recordBuilder = ProtoToRecordConverter.convertBuilder(schema, decoder, content, printer);
 
                 if(messageTopicField != null) {
                     recordBuilder.set(messageTopicField, message.getTopic());
@@ -778,52 +789,44 @@ public class PubSubSource implements SourceModule {
 
     }
 
-    synchronized static private Descriptors.Descriptor getOrLoadDescriptor(
-            final Map<String, Descriptors.Descriptor> descriptors,
-            final Map<String, JsonFormat.Printer> printers,
-            final String messageName,
-            final String path) {
+    // Descriptors shared by DoFn instances in the same worker, keyed by descriptor file path and message name
+    private static final Map<String, ProtoDescriptor> DESCRIPTORS = new ConcurrentHashMap<>();
 
-        if(descriptors.containsKey(messageName)) {
-            final Descriptors.Descriptor descriptor = descriptors.get(messageName);
-            if(descriptor != null) {
-                return descriptor;
-            } else {
-                descriptors.remove(messageName);
-            }
+    private static class ProtoDescriptor {
+
+        private final Descriptors.Descriptor descriptor;
+        private final JsonFormat.Printer printer;
+
+        private ProtoDescriptor(final Descriptors.Descriptor descriptor, final JsonFormat.Printer printer) {
+            this.descriptor = descriptor;
+            this.printer = printer;
         }
-        loadDescriptor(descriptors, printers, messageName, path);
-        return descriptors.get(messageName);
+
     }
 
-    synchronized static private void loadDescriptor(
-            final Map<String, Descriptors.Descriptor> descriptors,
-            final Map<String, JsonFormat.Printer> printers,
+    private static ProtoDescriptor getOrLoadDescriptor(
             final String messageName,
             final String descriptorPath) {
 
-        if(descriptors.containsKey(messageName) && descriptors.get(messageName) == null) {
-            descriptors.remove(messageName);
-        }
+        return DESCRIPTORS.computeIfAbsent(descriptorPath + "#" + messageName, k -> loadDescriptor(messageName, descriptorPath));
+    }
 
-        if(!descriptors.containsKey(messageName)) {
-            final byte[] bytes = StorageUtil.readBytes(descriptorPath);
-            final Map<String, Descriptors.Descriptor> map = ProtoSchemaUtil.getDescriptors(bytes);
-            if(!map.containsKey(messageName)) {
-                throw new IllegalArgumentException();
-            }
+    private static ProtoDescriptor loadDescriptor(
+            final String messageName,
+            final String descriptorPath) {
 
-            descriptors.put(messageName, map.get(messageName));
+        final byte[] bytes = StorageUtil.readBytes(descriptorPath);
+        final Map<String, Descriptors.Descriptor> map = ProtoSchemaUtil.getDescriptors(bytes);
+        if(!map.containsKey(messageName)) {
+            throw new IllegalArgumentException("protobuf descriptors does not contains messageName: " + messageName + " in descriptor file: " + descriptorPath);
+        }
 
-            final JsonFormat.TypeRegistry.Builder builder = JsonFormat.TypeRegistry.newBuilder();
-            map.forEach((k, v) -> builder.add(v));
-            final JsonFormat.Printer printer = JsonFormat.printer().usingTypeRegistry(builder.build());
-            printers.put(messageName, printer);
+        final JsonFormat.TypeRegistry.Builder builder = JsonFormat.TypeRegistry.newBuilder();
+        map.forEach((k, v) -> builder.add(v));
+        final JsonFormat.Printer printer = JsonFormat.printer().usingTypeRegistry(builder.build());
 
-            LOG.info("setup pubsub source module. protoMessage: {} loaded", messageName);
-        } else {
-            LOG.info("setup pubsub source module protoMessage: {} skipped loading", messageName);
-        }
+        LOG.info("setup pubsub source module. protoMessage: {} loaded", messageName);
+        return new ProtoDescriptor(map.get(messageName), printer);
     }
 
 }
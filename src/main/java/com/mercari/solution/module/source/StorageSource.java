@@ -13,6 +13,7 @@ import org.apache.avro.generic.GenericRecord;
 import org.apache.beam.sdk.extensions.avro.coders.AvroCoder;
 import org.apache.beam.sdk.extensions.avro.io.AvroIO;
 import org.apache.beam.sdk.io.Compression;
+import org.apache.beam.sdk.io.FileIO;
 import org.apache.beam.sdk.io.TextIO;
 import org.apache.beam.sdk.io.parquet.ParquetIO;
 import org.apache.beam.sdk.schemas.Schema;
@@ -20,7 +21,11 @@ import org.apache.beam.sdk.transforms.*;
 import org.apache.beam.sdk.values.*;
 import software.amazon.awssdk.services.s3.S3Client;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 
@@ -33,6 +38,7 @@ public class StorageSource implements SourceModule {
         private String compression;
         private String filterPrefix;
         private String targetFormat;
+        private Boolean multilineRecord;
 
         // for AWS S3
         private String s3AccessKey;
@@ -59,6 +65,10 @@ public class StorageSource implements SourceModule {
             return targetFormat;
         }
 
+        public Boolean getMultilineRecord() {
+            return multilineRecord;
+        }
+
         public String getS3AccessKey() {
             return s3AccessKey;
         }
@@ -76,6 +86,8 @@ public class StorageSource implements SourceModule {
             final List<String> errorMessages = new ArrayList<>();
             if(this.format == null) {
                 errorMessages.add("Storage module: " + name + " requires parameter format");
+            } else if(this.multilineRecord != null && this.multilineRecord && !Format.csv.equals(this.format)) {
+                errorMessages.add("Storage module: " + name + " parameter multilineRecord is only supported for csv format");
             }
 
             if(errorMessages.size() > 0) {
@@ -84,7 +96,9 @@ public class StorageSource implements SourceModule {
         }
 
         public void setDefaults() {
-
+            if(this.multilineRecord == null) {
+                this.multilineRecord = false;
+            }
         }
     }
 
@@ -213,6 +227,7 @@ public class StorageSource implements SourceModule {
         private StorageTextAvroBatchSource(final SourceConfig config) {
             this.inputSchema = config.getSchema();
             this.parameters = new Gson().fromJson(config.getParameters(), StorageSourceParameters.class);
+            this.parameters.setDefaults();
             this.timestampAttribute = config.getTimestampAttribute();
             this.timestampDefault = config.getTimestampDefault();
         }
@@ -233,21 +248,7 @@ public class StorageSource implements SourceModule {
                         this.schema = SourceConfig.convertAvroSchema(inputSchema);
                     }
 
-                    TextIO.Read read = TextIO.read().from(parameters.getInput());
-                    if (parameters.getCompression() != null) {
-                        read = read.withCompression(Compression
-                                .valueOf(parameters.getCompression().trim().toUpperCase()));
-                    }
-
-                    final PCollection<String> lines;
-                    if (parameters.getFilterPrefix() != null) {
-                        final String filterPrefix = parameters.getFilterPrefix();
-                        lines = begin
-                                .apply("ReadLine", read)
-                                .apply("FilterPrefix", Filter.by(s -> !s.startsWith(filterPrefix)));
-                    } else {
-                        lines = begin.apply("ReadLine", read);
-                    }
+                    final PCollection<String> lines = readLines(begin, parameters);
 
                     records = lines
                             .apply("ConvertToRecord",ParDo.of(new ToRecordDoFn(format, this.schema.toString())))
@@ -285,6 +286,7 @@ public class StorageSource implements SourceModule {
         private StorageTextRowBatchSource(final SourceConfig config) {
             this.inputSchema = config.getSchema();
             this.parameters = new Gson().fromJson(config.getParameters(), StorageSourceParameters.class);
+            this.parameters.setDefaults();
             this.timestampAttribute = config.getTimestampAttribute();
             this.timestampDefault = config.getTimestampDefault();
         }
@@ -296,38 +298,23 @@ public class StorageSource implements SourceModule {
             switch (format) {
                 case csv:
                 case json: {
-                    final SerializableFunction<String, Row> func;
+                    final PCollection<String> lines = readLines(begin, parameters);
+
+                    PCollection<Row> rows;
                     if (this.inputSchema == null || (inputSchema.getAvroSchema() == null && inputSchema.getFields() == null)) {
                         this.schema = TextToRowConverter.DEFAULT_SCHEMA;
-                        func = TextToRowConverter::convert;
-                    } else if (Format.csv.equals(format)) {
-                        this.schema = SourceConfig.convertSchema(inputSchema);
-                        func = r -> CsvToRowConverter.convert(schema, r);
+                        rows = lines
+                                .apply("ConvertToRow", MapElements
+                                        .into(TypeDescriptor.of(Row.class))
+                                        .via(TextToRowConverter::convert))
+                                .setRowSchema(schema);
                     } else {
                         this.schema = SourceConfig.convertSchema(inputSchema);
-                        func = r -> JsonToRowConverter.convert(schema, r);
-                    }
-
-                    TextIO.Read read = TextIO.read().from(parameters.getInput());
-                    if (parameters.getCompression() != null) {
-                        read = read.withCompression(Compression
-                                .valueOf(parameters.getCompression().trim().toUpperCase()));
+                        rows = lines
+                                .apply("ConvertToRow", ParDo.of(new ToRowDoFn(format, schema)))
+                                .setRowSchema(schema);
                     }
 
-                    final PCollection<String> lines;
-                    if (parameters.getFilterPrefix() != null) {
-                        final String filterPrefix = parameters.getFilterPrefix();
-                        lines = begin
-                                .apply("ReadLine", read)
-                                .apply("FilterPrefix", Filter.by(s -> !s.startsWith(filterPrefix)));
-                    } else {
-                        lines = begin.apply("ReadLine", read);
-                    }
-
-                    PCollection<Row> rows = lines
-                            .apply("ConvertToRow", MapElements.into(TypeDescriptor.of(Row.class)).via(func))
-                            .setRowSchema(schema);
-
                     if(timestampAttribute == null) {
                         return rows;
                     } else {
@@ -355,12 +342,62 @@ public class StorageSource implements SourceModule {
 
     }
 
+    private static PCollection<String> readLines(final PBegin begin, final StorageSourceParameters parameters) {
+        final PCollection<String> lines;
+        if(parameters.getMultilineRecord()) {
+            FileIO.ReadMatches readMatches = FileIO.readMatches();
+            if (parameters.getCompression() != null) {
+                readMatches = readMatches.withCompression(Compression
+                        .valueOf(parameters.getCompression().trim().toUpperCase()));
+            }
+            lines = begin
+                    .apply("MatchFiles", FileIO.match().filepattern(parameters.getInput()))
+                    .apply("ReadMatches", readMatches)
+                    .apply("ReadRecord", ParDo.of(new ReadCsvRecordDoFn()));
+        } else {
+            TextIO.Read read = TextIO.read().from(parameters.getInput());
+            if (parameters.getCompression() != null) {
+                read = read.withCompression(Compression
+                        .valueOf(parameters.getCompression().trim().toUpperCase()));
+            }
+            lines = begin.apply("ReadLine", read);
+        }
+
+        if (parameters.getFilterPrefix() != null) {
+            final String filterPrefix = parameters.getFilterPrefix();
+            return lines.apply("FilterPrefix", Filter.by(s -> !s.startsWith(filterPrefix)));
+        } else {
+            return lines;
+        }
+    }
+
+    /**
+     * Reads csv records from whole files, so that quoted values containing line breaks are kept in one record.
+     * Each file is read by a single worker.
+     */
+    private static class ReadCsvRecordDoFn extends DoFn<FileIO.ReadableFile, String> {
+
+        @ProcessElement
+        public void processElement(ProcessContext c) throws IOException {
+            try(final BufferedReader reader = new BufferedReader(
+                    Channels.newReader(c.element().open(), StandardCharsets.UTF_8))) {
+                String record;
+                while((record = CsvTokenizer.readRecord(reader)) != null) {
+                    c.output(record);
+                }
+            }
+        }
+
+    }
+
     private static class ToRecordDoFn extends DoFn<String, GenericRecord> {
 
         private final Format format;
         private final String schemaString;
 
         private transient org.apache.avro.Schema schema;
+        private transient CsvToRecordConverter.Decoder csvDecoder;
+        private transient JsonToRecordConverter.Decoder jsonDecoder;
 
         ToRecordDoFn(final Format format, final String schemaString) {
             if(!Format.csv.equals(format) && !Format.json.equals(format)) {
@@ -373,14 +410,63 @@ public class StorageSource implements SourceModule {
         @Setup
         public void setup() {
             this.schema = new org.apache.avro.Schema.Parser().parse(this.schemaString);
+            if(Format.csv.equals(format)) {
+                this.csvDecoder = new CsvToRecordConverter.Decoder(schema);
+            } else {
+                this.jsonDecoder = new JsonToRecordConverter.Decoder(schema);
+            }
+        }
+
+        @ProcessElement
+        public void processElement(ProcessContext c) {
+            final GenericRecord record;
+            if(Format.csv.equals(format)) {
+                record = csvDecoder.decode(c.element());
+            } else {
+                record = jsonDecoder.decode(c.element());
+            }
+            if(record != null) {
+                c.output(record);
+            }
+        }
+
+    }
+
+    private static class ToRowDoFn extends DoFn<String, Row> {
+
+        private final Format format;
+        private final Schema schema;
+
+        private transient CsvToRowConverter.Decoder csvDecoder;
+        private transient JsonToRowConverter.Decoder jsonDecoder;
+
+        ToRowDoFn(final Format format, final Schema schema) {
+            if(!Format.csv.equals(format) && !Format.json.equals(format)) {
+                throw new IllegalArgumentException("Storage module not support text format: " + format);
+            }
+            this.format = format;
+            this.schema = schema;
+        }
+
+        @Setup
+        public void setup() {
+            if(Format.csv.equals(format)) {
+                this.csvDecoder = new CsvToRowConverter.Decoder(schema);
+            } else {
+                this.jsonDecoder = new JsonToRowConverter.Decoder(schema);
+            }
         }
 
         @ProcessElement
         public void processElement(ProcessContext c) {
+            final Row row;
             if(Format.csv.equals(format)) {
-                c.output(CsvToRecordConverter.convert(schema, c.element()));
+                row = csvDecoder.decode(c.element());
             } else {
-                c.output(JsonToRecordConverter.convert(schema, c.element()));
+                row = jsonDecoder.decode(c.element());
+            }
+            if(row != null) {
+                c.output(row);
             }
         }
 
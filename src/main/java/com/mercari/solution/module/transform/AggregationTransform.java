@@ -14,9 +14,12 @@ import com.mercari.solution.util.converter.RowToRecordConverter;
 import com.mercari.solution.util.pipeline.TriggerUtil;
 import com.mercari.solution.util.pipeline.WindowUtil;
 import com.mercari.solution.util.pipeline.aggregation.Accumulator;
+import com.mercari.solution.util.pipeline.aggregation.AccumulatorLayout;
 import com.mercari.solution.util.pipeline.aggregation.Aggregator;
 import com.mercari.solution.util.pipeline.aggregation.Aggregators;
+import com.mercari.solution.util.pipeline.aggregation.HotKeyFanout;
 import com.mercari.solution.util.pipeline.select.SelectFunction;
+import com.mercari.solution.util.pipeline.select.SelectPlan;
 import com.mercari.solution.util.pipeline.union.Union;
 import com.mercari.solution.util.pipeline.union.UnionValue;
 import com.mercari.solution.util.schema.*;
@@ -56,6 +59,9 @@ public class AggregationTransform implements TransformModule {
         private AggregationLimit limit;
 
         private Integer fanout;
+        private Integer hotKeyFanout;
+        private Double hotKeyRatio;
+        private Boolean compactAccumulator;
 
         private Boolean outputEmpty;
         private Boolean outputPaneInfo;
@@ -98,6 +104,18 @@ public class AggregationTransform implements TransformModule {
             return fanout;
         }
 
+        public Integer getHotKeyFanout() {
+            return hotKeyFanout;
+        }
+
+        public Double getHotKeyRatio() {
+            return hotKeyRatio;
+        }
+
+        public Boolean getCompactAccumulator() {
+            return compactAccumulator;
+        }
+
         public Boolean getOutputEmpty() {
             return outputEmpty;
         }
@@ -148,6 +166,20 @@ public class AggregationTransform implements TransformModule {
             if(this.limit != null) {
                 errorMessages.addAll(this.limit.validate(name));
             }
+            if(this.hotKeyFanout != null) {
+                if(this.fanout != null) {
+                    errorMessages.add("Aggregation transform module[" + name + "].hotKeyFanout parameter must not be specified with fanout.");
+                }
+                if(this.groupFields == null || this.groupFields.isEmpty()) {
+                    errorMessages.add("Aggregation transform module[" + name + "].hotKeyFanout parameter requires groupFields.");
+                }
+                if(this.hotKeyFanout < 2) {
+                    errorMessages.add("Aggregation transform module[" + name + "].hotKeyFanout parameter must be over 1.");
+                }
+            }
+            if(this.hotKeyRatio != null && (this.hotKeyRatio <= 0 || this.hotKeyRatio > 1)) {
+                errorMessages.add("Aggregation transform module[" + name + "].hotKeyRatio parameter must be in (0, 1].");
+            }
 
             if(!errorMessages.isEmpty()) {
                 throw new IllegalArgumentException(String.join(", ", errorMessages));
@@ -172,6 +204,12 @@ public class AggregationTransform implements TransformModule {
                 this.limit.setDefaults();
             }
 
+            if(this.hotKeyRatio == null) {
+                this.hotKeyRatio = 0.01D;
+            }
+            if(this.compactAccumulator == null) {
+                this.compactAccumulator = false;
+            }
             if(this.outputEmpty == null) {
                 this.outputEmpty = false;
             }
@@ -417,6 +455,10 @@ public class AggregationTransform implements TransformModule {
         private final WindowUtil.AccumulationMode accumulationMode;
         private final AggregationLimit limit;
         private final Integer fanout;
+        private final Integer hotKeyFanout;
+        private final boolean withSketches;
+        private final Double hotKeyRatio;
+        private final AccumulatorLayout accumulatorLayout;
 
         private final Boolean outputEmpty;
         private final Boolean outputPaneInfo;
@@ -456,6 +498,14 @@ public class AggregationTransform implements TransformModule {
             this.aggregatorsMap = aggregatorsMap;
             this.limit = parameters.getLimit();
             this.fanout = parameters.getFanout();
+            this.hotKeyFanout = parameters.getHotKeyFanout();
+            this.hotKeyRatio = parameters.getHotKeyRatio();
+            if(parameters.getCompactAccumulator()) {
+                this.accumulatorLayout = AccumulatorLayout.of(aggregatorsMap.values());
+            } else {
+                this.accumulatorLayout = null;
+            }
+            this.withSketches = aggregatorsMap.values().stream().anyMatch(Aggregators::hasSketches);
 
             this.outputEmpty = parameters.getOutputEmpty();
             this.outputPaneInfo = parameters.getOutputPaneInfo();
@@ -522,19 +572,24 @@ public class AggregationTransform implements TransformModule {
                     .apply("WithWindow", window);
 
             final PCollection<KV<String,Accumulator>> output;
-            if(fanout != null) {
+            if(hotKeyFanout != null) {
+                output = withKey
+                        .apply("AggregateHotKeyFanOut", Combine
+                                .<String, UnionValue, Accumulator>perKey(new AggregationCombineFn(inputNames, aggregatorsMap, accumulatorLayout, withSketches))
+                                .withHotKeyFanout(HotKeyFanout.of(hotKeyFanout, hotKeyRatio)));
+            } else if(fanout != null) {
                 output = withKey
                         .apply("AggregateFanOut", Combine
-                                .<String, UnionValue, Accumulator>perKey(new AggregationCombineFn(inputNames, aggregatorsMap))
+                                .<String, UnionValue, Accumulator>perKey(new AggregationCombineFn(inputNames, aggregatorsMap, accumulatorLayout, withSketches))
                                 .withHotKeyFanout(fanout));
             } else {
                 output = withKey
                         .apply("Aggregate", Combine
-                                .perKey(new AggregationCombineFn(inputNames, aggregatorsMap)));
+                                .perKey(new AggregationCombineFn(inputNames, aggregatorsMap, accumulatorLayout, withSketches)));
             }
 
             return output
-                    .setCoder(KvCoder.of(StringUtf8Coder.of(), Accumulator.coder()))
+                    .setCoder(KvCoder.of(StringUtf8Coder.of(), Accumulator.coder(accumulatorLayout, withSketches)))
                     .apply("Filter", ParDo.of(new AggregationOutputWithKeyDoFn(
                             inputOutputSchema, schemaConverter, valueConverter, valueCreator,
                             groupFields, filterJson, selectFunctions,
@@ -551,18 +606,18 @@ public class AggregationTransform implements TransformModule {
             if(fanout != null) {
                 output = flatten
                         .apply("AggregateFanOut", Combine
-                                .globally(new AggregationCombineFn(inputNames, aggregatorsMap))
+                                .globally(new AggregationCombineFn(inputNames, aggregatorsMap, accumulatorLayout, withSketches))
                                 .withFanout(fanout)
                                 .withoutDefaults());
             } else {
                 output = flatten
                         .apply("Aggregate", Combine
-                                .globally(new AggregationCombineFn(inputNames, aggregatorsMap))
+                                .globally(new AggregationCombineFn(inputNames, aggregatorsMap, accumulatorLayout, withSketches))
                                 .withoutDefaults());
             }
 
             return output
-                    .setCoder(Accumulator.coder())
+                    .setCoder(Accumulator.coder(accumulatorLayout, withSketches))
                     .apply("Filter", ParDo.of(new AggregationOutputFlattenDoFn(
                             inputOutputSchema, schemaConverter, valueConverter, valueCreator,
                             groupFields, filterJson, selectFunctions,
@@ -574,14 +629,20 @@ public class AggregationTransform implements TransformModule {
 
             private final List<String> inputNames;
             private final Map<String, Aggregators> aggregatorsMap;
+            private final AccumulatorLayout accumulatorLayout;
+            private final boolean withSketches;
 
             private transient Map<String, Aggregators> aggregators;
 
             AggregationCombineFn(final List<String> inputNames,
-                                 final Map<String, Aggregators> aggregatorsMap) {
+                                 final Map<String, Aggregators> aggregatorsMap,
+                                 final AccumulatorLayout accumulatorLayout,
+                                 final boolean withSketches) {
 
                 this.inputNames = inputNames;
                 this.aggregatorsMap = aggregatorsMap;
+                this.accumulatorLayout = accumulatorLayout;
+                this.withSketches = withSketches;
             }
 
             private void init() {
@@ -591,14 +652,14 @@ public class AggregationTransform implements TransformModule {
                             .stream()
                             .collect(Collectors.toMap(
                                     Map.Entry::getKey,
-                                    e -> e.getValue().setup()));
+                                    e -> e.getValue().setup(accumulatorLayout)));
                 }
             }
 
             @Override
             public Accumulator createAccumulator() {
                 init();
-                return Accumulator.of();
+                return Accumulator.of(accumulatorLayout);
             }
 
             @Override
@@ -611,7 +672,7 @@ public class AggregationTransform implements TransformModule {
             @Override
             public Accumulator mergeAccumulators(final Iterable<Accumulator> accums) {
                 init();
-                Accumulator accumulator = Accumulator.of();
+                Accumulator accumulator = Accumulator.of(accumulatorLayout);
                 for(final Aggregators a : aggregators.values()) {
                     accumulator = a.mergeAccumulators(accumulator, accums);
                 }
@@ -625,7 +686,7 @@ public class AggregationTransform implements TransformModule {
 
             @Override
             public Coder<Accumulator> getAccumulatorCoder(CoderRegistry registry, Coder<UnionValue> input) {
-                return Accumulator.coder();
+                return Accumulator.coder(accumulatorLayout, withSketches);
             }
 
         }
@@ -709,7 +770,9 @@ public class AggregationTransform implements TransformModule {
             private final DataType outputType;
 
             private transient RuntimeSchemaT runtimeSchema;
-            private transient Filter.ConditionNode conditionNode;
+            private transient Filter.CompiledCondition conditionNode;
+            private transient SelectPlan selectPlan;
+            private transient List<AccumulatorLayout.Key> groupKeys;
 
             AggregationOutputDoFn(final InputSchemaT inputSchema,
                                   final SchemaUtil.SchemaConverter<InputSchemaT,RuntimeSchemaT> schemaConverter,
@@ -740,17 +803,20 @@ public class AggregationTransform implements TransformModule {
             protected void setup() {
                 this.runtimeSchema = schemaConverter.convert(inputSchema);
                 for(final Aggregators aggregators : aggregatorsMap.values()) {
-                    aggregators.setup();
+                    aggregators.setup(accumulatorLayout);
+                }
+                this.groupKeys = new ArrayList<>();
+                for(final Schema.Field groupField : groupFields) {
+                    this.groupKeys.add(AccumulatorLayout.key(accumulatorLayout, groupField.getType(), groupField.getName()));
                 }
                 if(filterJson != null) {
                     final JsonElement filterElement = new Gson().fromJson(filterJson, JsonElement.class);
                     if(!filterElement.isJsonNull()) {
-                        this.conditionNode = Filter.parse(filterElement);
+                        this.conditionNode = Filter.compile(Filter.parse(filterElement));
                     }
                 }
-                for(SelectFunction selectFunction: selectFunctions) {
-                    selectFunction.setup();
-                }
+                this.selectPlan = SelectPlan.of(selectFunctions, null, outputType);
+                this.selectPlan.setup();
             }
 
             protected void process(Accumulator accumulator, ProcessContext c, String key) {
@@ -765,10 +831,10 @@ public class AggregationTransform implements TransformModule {
 
                 Map<String, Object> values = new HashMap<>();
                 // set common fields values
-                for(final Schema.Field groupField : groupFields) {
-                    final Object primitiveValue = accumulator.get(groupField.getType(), groupField.getName());
-                    final Object value = valueConverter.convertPrimitive(groupField.getType(), primitiveValue);
-                    values.put(groupField.getName(), value);
+                for(final AccumulatorLayout.Key groupKey : groupKeys) {
+                    final Object primitiveValue = accumulator.get(groupKey);
+                    final Object value = valueConverter.convertPrimitive(groupKey.getFieldType(), primitiveValue);
+                    values.put(groupKey.getName(), value);
                 }
 
                 // set aggregation values
@@ -787,10 +853,10 @@ public class AggregationTransform implements TransformModule {
                     values.put("paneTiming", c.pane().getTiming().name());
                 }
 
-                values = SelectFunction.apply(selectFunctions, values, outputType, c.timestamp());
+                selectPlan.apply(values, c.timestamp());
 
-                if(conditionNode == null || Filter.filter(conditionNode, values)) {
-                    final T output = valueCreator.create(runtimeSchema, values);
+                if(conditionNode == null || conditionNode.test(values)) {
+                    final T output = selectPlan.create(runtimeSchema, valueCreator);
                     c.output(KV.of(key, output));
                 }
 
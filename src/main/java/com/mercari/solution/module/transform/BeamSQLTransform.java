@@ -161,6 +161,14 @@ public class BeamSQLTransform implements TransformModule {
                     .registerUdaf("MDT_COUNT_DISTINCT_STRING", new AggregateFunctions.CountDistinctStringFn())
                     .registerUdaf("MDT_COUNT_DISTINCT_FLOAT64", new AggregateFunctions.CountDistinctFloat64Fn())
                     .registerUdaf("MDT_COUNT_DISTINCT_INT64", new AggregateFunctions.CountDistinctInt64Fn())
+                    .registerUdaf("MDT_APPROX_COUNT_DISTINCT_STRING", new AggregateFunctions.ApproxCountDistinctStringFn())
+                    .registerUdaf("MDT_APPROX_COUNT_DISTINCT_FLOAT64", new AggregateFunctions.ApproxCountDistinctFloat64Fn())
+                    .registerUdaf("MDT_APPROX_COUNT_DISTINCT_INT64", new AggregateFunctions.ApproxCountDistinctInt64Fn())
+                    .registerUdaf("MDT_APPROX_QUANTILES_FLOAT64", new AggregateFunctions.ApproxQuantilesFloat64Fn())
+                    .registerUdaf("MDT_APPROX_QUANTILES_INT64", new AggregateFunctions.ApproxQuantilesInt64Fn())
+                    .registerUdaf("MDT_APPROX_MEDIAN_FLOAT64", new AggregateFunctions.ApproxMedianFloat64Fn())
+                    .registerUdaf("MDT_APPROX_MEDIAN_INT64", new AggregateFunctions.ApproxMedianInt64Fn())
+                    .registerUdaf("MDT_APPROX_TOP_STRING", new AggregateFunctions.ApproxTopStringFn())
                     );
         }
     }
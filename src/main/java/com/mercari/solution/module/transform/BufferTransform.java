@@ -20,14 +20,14 @@ import org.apache.avro.generic.GenericRecordBuilder;
 import org.apache.beam.sdk.coders.*;
 import org.apache.beam.sdk.extensions.avro.coders.AvroCoder;
 import org.apache.beam.sdk.schemas.Schema;
-import org.apache.beam.sdk.state.StateSpec;
-import org.apache.beam.sdk.state.StateSpecs;
-import org.apache.beam.sdk.state.ValueState;
+import org.apache.beam.sdk.state.*;
 import org.apache.beam.sdk.transforms.*;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.Row;
+import org.apache.beam.sdk.values.TimestampedValue;
 import org.apache.beam.sdk.values.TypeDescriptors;
+import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,6 +50,7 @@ public class BufferTransform implements TransformModule {
         private List<String> bufferFields;
         private String bufferedField;
         private Boolean ascending;
+        private StateType stateType;
 
         public BufferType getType() {
             return type;
@@ -79,6 +80,10 @@ public class BufferTransform implements TransformModule {
             return ascending;
         }
 
+        public StateType getStateType() {
+            return stateType;
+        }
+
         private void validate() {
 
             final List<String> errorMessages = new ArrayList<>();
@@ -106,6 +111,9 @@ public class BufferTransform implements TransformModule {
             if(ascending == null) {
                 ascending = true;
             }
+            if(stateType == null) {
+                stateType = StateType.value;
+            }
 
             if(type.equals(BufferType.fields)) {
                 size = size + 1;
@@ -120,6 +128,12 @@ public class BufferTransform implements TransformModule {
         fields
     }
 
+    private enum StateType implements Serializable {
+        value,
+        orderedList,
+        bag
+    }
+
     public String getName() {
         return "buffer";
     }
@@ -752,25 +766,39 @@ public class BufferTransform implements TransformModule {
                         .setCoder(KvCoder.of(StringUtf8Coder.of(), input.getCoder()));
             }
 
-            final PCollection<T> output;
-            if(OptionUtil.isStreaming(input.getPipeline().getOptions())) {
-                output = withKey.apply("StreamingTransform", ParDo
-                        .of(new BufferStreamingDoFn<>(
+            final boolean isStreaming = OptionUtil.isStreaming(input.getPipeline().getOptions());
+            final DoFn<KV<String, T>, T> doFn = switch (parameters.getStateType()) {
+                case value -> isStreaming
+                        ? new BufferStreamingDoFn<>(
                                 parameters.getSize(), parameters.getBufferFields(), parameters.getBufferedField(), parameters.getAscending(),
-                                inputSchema, outputSchema, schemaConverter, selector, buffering, coder)));
-            } else {
-                output = withKey.apply("BatchTransform", ParDo
-                        .of(new BufferBatchDoFn<>(
+                                inputSchema, outputSchema, schemaConverter, selector, buffering, coder)
+                        : new BufferBatchDoFn<>(
                                 parameters.getSize(), parameters.getBufferFields(), parameters.getBufferedField(), parameters.getAscending(),
-                                inputSchema, outputSchema, schemaConverter, selector, buffering, coder)));
-            }
+                                inputSchema, outputSchema, schemaConverter, selector, buffering, coder);
+                case orderedList -> isStreaming
+                        ? new OrderedListBufferStreamingDoFn<>(
+                                parameters.getSize(), parameters.getBufferFields(), parameters.getBufferedField(), parameters.getAscending(),
+                                inputSchema, outputSchema, schemaConverter, selector, buffering, coder)
+                        : new OrderedListBufferBatchDoFn<>(
+                                parameters.getSize(), parameters.getBufferFields(), parameters.getBufferedField(), parameters.getAscending(),
+                                inputSchema, outputSchema, schemaConverter, selector, buffering, coder);
+                case bag -> isStreaming
+                        ? new BagBufferStreamingDoFn<>(
+                                parameters.getSize(), parameters.getBufferFields(), parameters.getBufferedField(), parameters.getAscending(),
+                                inputSchema, outputSchema, schemaConverter, selector, buffering, coder)
+                        : new BagBufferBatchDoFn<>(
+                                parameters.getSize(), parameters.getBufferFields(), parameters.getBufferedField(), parameters.getAscending(),
+                                inputSchema, outputSchema, schemaConverter, selector, buffering, coder);
+            };
 
-            return output;
+            return withKey.apply(isStreaming ? "StreamingTransform" : "BatchTransform", ParDo.of(doFn));
         }
 
         private static abstract class BufferDoFn<T, InputSchemaT, RuntimeSchemaT> extends DoFn<KV<String, T>, T> {
 
             static final String STATEID_VALUES = "values";
+            static final String STATEID_SEQUENCE = "sequence";
+            static final String STATEID_COUNT = "count";
 
             private final Integer size;
             private final List<String> bufferFields;
@@ -837,6 +865,91 @@ public class BufferTransform implements TransformModule {
                 }
                 valuesState.write(buffer);
             }
+
+            /**
+             * Elements are added to the ordered list with the arrival sequence number as the sort key,
+             * so that the buffered elements are read by range and the expired ones are cleared by range without rewriting the list.
+             */
+            void process(final ProcessContext c,
+                         final ValueState<Long> sequenceState,
+                         final OrderedListState<T> valuesState) {
+
+                final T element = c.element().getValue();
+                final T selected = selector.convert(runtimeInputSchema, element);
+                final T base = selector.convert(runtimeOutputSchema, element);
+
+                final long sequence = Optional.ofNullable(sequenceState.read()).orElse(0L);
+                final Instant from = Instant.ofEpochMilli(Math.max(0L, sequence - size));
+                final Instant to = Instant.ofEpochMilli(sequence);
+                final List<T> buffer = new ArrayList<>(size + 1);
+                for(final TimestampedValue<T> value : valuesState.readRange(from, to)) {
+                    buffer.add(value.getValue());
+                }
+                buffer.add(selected);
+                if(!ascending) {
+                    Collections.reverse(buffer);
+                }
+
+                final T output = buffering.convert(runtimeOutputSchema, base, size, buffer, bufferFields, bufferedField);
+                c.output(output);
+
+                valuesState.add(TimestampedValue.of(selected, to));
+                if(sequence >= size) {
+                    valuesState.clearRange(Instant.ofEpochMilli(0L), Instant.ofEpochMilli(sequence - size + 1));
+                }
+                sequenceState.write(sequence + 1);
+            }
+
+            /**
+             * Elements are appended to the bag with the arrival sequence number,
+             * and the bag is compacted to the latest elements only after it grows to twice the buffer size.
+             */
+            void process(final ProcessContext c,
+                         final ValueState<Long> sequenceState,
+                         final ValueState<Long> countState,
+                         final BagState<KV<Long, T>> valuesState) {
+
+                final T element = c.element().getValue();
+                final T selected = selector.convert(runtimeInputSchema, element);
+                final T base = selector.convert(runtimeOutputSchema, element);
+
+                final long sequence = Optional.ofNullable(sequenceState.read()).orElse(0L);
+                final long count = Optional.ofNullable(countState.read()).orElse(0L);
+                final List<KV<Long, T>> values = new ArrayList<>();
+                for(final KV<Long, T> value : valuesState.read()) {
+                    if(value.getKey() >= sequence - size) {
+                        values.add(value);
+                    }
+                }
+                values.sort(Comparator.comparing(KV::getKey));
+
+                final List<T> buffer = new ArrayList<>(values.size() + 1);
+                for(final KV<Long, T> value : values) {
+                    buffer.add(value.getValue());
+                }
+                buffer.add(selected);
+                if(!ascending) {
+                    Collections.reverse(buffer);
+                }
+
+                final T output = buffering.convert(runtimeOutputSchema, base, size, buffer, bufferFields, bufferedField);
+                c.output(output);
+
+                if(count + 1 > 2L * size) {
+                    valuesState.clear();
+                    for(final KV<Long, T> value : values) {
+                        if(value.getKey() > sequence - size) {
+                            valuesState.add(value);
+                        }
+                    }
+                    valuesState.add(KV.of(sequence, selected));
+                    countState.write((long) Math.min(size, sequence + 1));
+                } else {
+                    valuesState.add(KV.of(sequence, selected));
+                    countState.write(count + 1);
+                }
+                sequenceState.write(sequence + 1);
+            }
         }
 
         private static class BufferBatchDoFn<T, InputSchemaT, RuntimeSchemaT> extends BufferDoFn<T, InputSchemaT, RuntimeSchemaT> {
@@ -906,6 +1019,164 @@ public class BufferTransform implements TransformModule {
             }
         }
 
+        private static class OrderedListBufferBatchDoFn<T, InputSchemaT, RuntimeSchemaT> extends BufferDoFn<T, InputSchemaT, RuntimeSchemaT> {
+
+            @StateId(STATEID_SEQUENCE)
+            private final StateSpec<ValueState<Long>> sequence;
+            @StateId(STATEID_VALUES)
+            private final StateSpec<OrderedListState<T>> values;
+
+            OrderedListBufferBatchDoFn(final Integer size,
+                                       final List<String> bufferFields,
+                                       final String bufferedField,
+                                       final Boolean ascending,
+                                       final InputSchemaT inputSchema,
+                                       final InputSchemaT outputSchema,
+                                       final SchemaUtil.SchemaConverter<InputSchemaT, RuntimeSchemaT> schemaConverter,
+                                       final Selector<T, RuntimeSchemaT> selector,
+                                       final Buffering<T,RuntimeSchemaT> buffering,
+                                       final Coder<T> coder) {
+
+                super(size, bufferFields, bufferedField, ascending, inputSchema, outputSchema, schemaConverter, selector, buffering);
+                this.sequence = StateSpecs.value(VarLongCoder.of());
+                this.values = StateSpecs.orderedList(coder);
+            }
+
+            @Setup
+            public void setup() {
+                super.setup();
+            }
+
+            @ProcessElement
+            @RequiresTimeSortedInput
+            public void processElement(final ProcessContext c,
+                                       final @StateId(STATEID_SEQUENCE) ValueState<Long> sequenceState,
+                                       final @StateId(STATEID_VALUES) OrderedListState<T> valuesState) {
+
+                process(c, sequenceState, valuesState);
+            }
+        }
+
+        private static class OrderedListBufferStreamingDoFn<T, InputSchemaT, RuntimeSchemaT> extends BufferDoFn<T, InputSchemaT, RuntimeSchemaT> {
+
+            @StateId(STATEID_SEQUENCE)
+            private final StateSpec<ValueState<Long>> sequence;
+            @StateId(STATEID_VALUES)
+            private final StateSpec<OrderedListState<T>> values;
+
+            OrderedListBufferStreamingDoFn(final Integer size,
+                                           final List<String> bufferFields,
+                                           final String bufferedField,
+                                           final Boolean ascending,
+                                           final InputSchemaT inputSchema,
+                                           final InputSchemaT outputSchema,
+                                           final SchemaUtil.SchemaConverter<InputSchemaT, RuntimeSchemaT> schemaConverter,
+                                           final Selector<T, RuntimeSchemaT> selector,
+                                           final Buffering<T,RuntimeSchemaT> buffering,
+                                           final Coder<T> coder) {
+
+                super(size, bufferFields, bufferedField, ascending, inputSchema, outputSchema, schemaConverter, selector, buffering);
+                this.sequence = StateSpecs.value(VarLongCoder.of());
+                this.values = StateSpecs.orderedList(coder);
+            }
+
+            @Setup
+            public void setup() {
+                super.setup();
+            }
+
+            @ProcessElement
+            public void processElement(final ProcessContext c,
+                                       final @StateId(STATEID_SEQUENCE) ValueState<Long> sequenceState,
+                                       final @StateId(STATEID_VALUES) OrderedListState<T> valuesState) {
+
+                process(c, sequenceState, valuesState);
+            }
+        }
+
+        private static class BagBufferBatchDoFn<T, InputSchemaT, RuntimeSchemaT> extends BufferDoFn<T, InputSchemaT, RuntimeSchemaT> {
+
+            @StateId(STATEID_SEQUENCE)
+            private final StateSpec<ValueState<Long>> sequence;
+            @StateId(STATEID_COUNT)
+            private final StateSpec<ValueState<Long>> count;
+            @StateId(STATEID_VALUES)
+            private final StateSpec<BagState<KV<Long, T>>> values;
+
+            BagBufferBatchDoFn(final Integer size,
+                               final List<String> bufferFields,
+                               final String bufferedField,
+                               final Boolean ascending,
+                               final InputSchemaT inputSchema,
+                               final InputSchemaT outputSchema,
+                               final SchemaUtil.SchemaConverter<InputSchemaT, RuntimeSchemaT> schemaConverter,
+                               final Selector<T, RuntimeSchemaT> selector,
+                               final Buffering<T,RuntimeSchemaT> buffering,
+                               final Coder<T> coder) {
+
+                super(size, bufferFields, bufferedField, ascending, inputSchema, outputSchema, schemaConverter, selector, buffering);
+                this.sequence = StateSpecs.value(VarLongCoder.of());
+                this.count = StateSpecs.value(VarLongCoder.of());
+                this.values = StateSpecs.bag(KvCoder.of(VarLongCoder.of(), coder));
+            }
+
+            @Setup
+            public void setup() {
+                super.setup();
+            }
+
+            @ProcessElement
+            @RequiresTimeSortedInput
+            public void processElement(final ProcessContext c,
+                                       final @StateId(STATEID_SEQUENCE) ValueState<Long> sequenceState,
+                                       final @StateId(STATEID_COUNT) ValueState<Long> countState,
+                                       final @StateId(STATEID_VALUES) BagState<KV<Long, T>> valuesState) {
+
+                process(c, sequenceState, countState, valuesState);
+            }
+        }
+
+        private static class BagBufferStreamingDoFn<T, InputSchemaT, RuntimeSchemaT> extends BufferDoFn<T, InputSchemaT, RuntimeSchemaT> {
+
+            @StateId(STATEID_SEQUENCE)
+            private final StateSpec<ValueState<Long>> sequence;
+            @StateId(STATEID_COUNT)
+            private final StateSpec<ValueState<Long>> count;
+            @StateId(STATEID_VALUES)
+            private final StateSpec<BagState<KV<Long, T>>> values;
+
+            BagBufferStreamingDoFn(final Integer size,
+                                   final List<String> bufferFields,
+                                   final String bufferedField,
+                                   final Boolean ascending,
+                                   final InputSchemaT inputSchema,
+                                   final InputSchemaT outputSchema,
+                                   final SchemaUtil.SchemaConverter<InputSchemaT, RuntimeSchemaT> schemaConverter,
+                                   final Selector<T, RuntimeSchemaT> selector,
+                                   final Buffering<T,RuntimeSchemaT> buffering,
+                                   final Coder<T> coder) {
+
+                super(size, bufferFields, bufferedField, ascending, inputSchema, outputSchema, schemaConverter, selector, buffering);
+                this.sequence = StateSpecs.value(VarLongCoder.of());
+                this.count = StateSpecs.value(VarLongCoder.of());
+                this.values = StateSpecs.bag(KvCoder.of(VarLongCoder.of(), coder));
+            }
+
+            @Setup
+            public void setup() {
+                super.setup();
+            }
+
+            @ProcessElement
+            public void processElement(final ProcessContext c,
+                                       final @StateId(STATEID_SEQUENCE) ValueState<Long> sequenceState,
+                                       final @StateId(STATEID_COUNT) ValueState<Long> countState,
+                                       final @StateId(STATEID_VALUES) BagState<KV<Long, T>> valuesState) {
+
+                process(c, sequenceState, countState, valuesState);
+            }
+        }
+
     }
 
     private interface Selector<T, SchemaT> extends Serializable {
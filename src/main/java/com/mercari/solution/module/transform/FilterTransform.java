@@ -15,6 +15,7 @@ import com.mercari.solution.util.Filter;
 import com.mercari.solution.util.converter.RowToMutationConverter;
 import com.mercari.solution.util.converter.RowToRecordConverter;
 import com.mercari.solution.util.pipeline.select.SelectFunction;
+import com.mercari.solution.util.pipeline.select.SelectPlan;
 import com.mercari.solution.util.schema.*;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.beam.sdk.coders.RowCoder;
@@ -340,7 +341,7 @@ public class FilterTransform implements TransformModule {
             private final String conditionJsons;
             private final SchemaUtil.ValueGetter<T> valueGetter;
 
-            private transient Filter.ConditionNode conditions;
+            private transient Filter.CompiledCondition conditions;
 
             FilterDoFn(final String conditionJsons,
                        final SchemaUtil.ValueGetter<T> valueGetter) {
@@ -351,13 +352,13 @@ public class FilterTransform implements TransformModule {
 
             @Setup
             public void setup() {
-                this.conditions = Filter.parse(new Gson().fromJson(conditionJsons, JsonElement.class));
+                this.conditions = Filter.compile(Filter.parse(new Gson().fromJson(conditionJsons, JsonElement.class)));
             }
 
             @ProcessElement
             public void processElement(ProcessContext c) {
                 final T element = c.element();
-                if(Filter.filter(element, valueGetter, conditions)) {
+                if(conditions.test(element, valueGetter)) {
                     c.output(element);
                 }
             }
@@ -374,6 +375,7 @@ public class FilterTransform implements TransformModule {
             private final String flattenField;
 
             private transient RuntimeSchemaT schema;
+            private transient SelectPlan selectPlan;
 
             SelectDoFn(final InputSchemaT inputSchema,
                        final SchemaUtil.SchemaConverter<InputSchemaT, RuntimeSchemaT> schemaConverter,
@@ -395,19 +397,19 @@ public class FilterTransform implements TransformModule {
             @Setup
             public void setup() {
                 this.schema = schemaConverter.convert(inputSchema);
-                for(SelectFunction selectFunction: selectFunctions) {
-                    selectFunction.setup();
-                }
+                this.selectPlan = SelectPlan.of(selectFunctions, inputType, outputType);
+                this.selectPlan.setup();
             }
 
             @ProcessElement
             public void processElement(ProcessContext c) {
                 final T element = c.element();
-                final Map<String, Object> values = SelectFunction.apply(selectFunctions, element, inputType, outputType, c.timestamp());
+                selectPlan.apply(element, c.timestamp());
                 if(flattenField == null) {
-                    final T output = valueCreator.create(schema, values);
+                    final T output = selectPlan.create(schema, valueCreator);
                     c.output(output);
                 } else {
+                    final Map<String, Object> values = selectPlan.getValues();
                     final List<?> flattenList = Optional.ofNullable((List<?>) values.get(flattenField)).orElseGet(ArrayList::new);
                     for(final Object value : flattenList) {
                         final Map<String, Object> flattenValues = new HashMap<>(values);
@@ -16,6 +16,7 @@ import com.mercari.solution.util.converter.JsonToRecordConverter;
 import com.mercari.solution.util.converter.JsonToRowConverter;
 import com.mercari.solution.util.converter.RowToRecordConverter;
 import com.mercari.solution.util.pipeline.select.SelectFunction;
+import com.mercari.solution.util.pipeline.select.SelectPlan;
 import com.mercari.solution.util.pipeline.union.Union;
 import com.mercari.solution.util.pipeline.union.UnionValue;
 import com.mercari.solution.util.schema.AvroSchemaUtil;
@@ -31,6 +32,7 @@ import org.apache.beam.sdk.schemas.Schema;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.values.*;
 import org.joda.time.Duration;
 import org.joda.time.Instant;
@@ -38,15 +40,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.net.ConnectException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 public class HttpTransform implements TransformModule {
@@ -64,6 +71,7 @@ public class HttpTransform implements TransformModule {
 
         private DataType outputType;
         private Boolean failFast;
+        private Boolean async;
 
         public static HttpTransformParameters of(
                 final JsonElement jsonElement,
@@ -115,6 +123,9 @@ public class HttpTransform implements TransformModule {
             if(failFast == null) {
                 this.failFast = false;
             }
+            if(async == null) {
+                this.async = false;
+            }
             if(outputType == null) {
                 this.outputType = OptionUtil.isStreaming(input) ? DataType.ROW : DataType.AVRO;
             }
@@ -128,12 +139,26 @@ public class HttpTransform implements TransformModule {
             private String body;
             private Map<String, String> headers;
 
+            // async mode parameters
+            private Integer maxInFlight;
+            private Integer cacheSize;
+            private Integer cacheTtlSecond;
+
             public List<String> validate(String name) {
                 final List<String> errorMessages = new ArrayList<>();
 
                 if(this.endpoint == null) {
                     errorMessages.add("http transform module[" + name + "].endpoint must not be null.");
                 }
+                if(this.maxInFlight != null && this.maxInFlight < 1) {
+                    errorMessages.add("http transform module[" + name + "].request.maxInFlight must be over zero.");
+                }
+                if(this.cacheSize != null && this.cacheSize < 0) {
+                    errorMessages.add("http transform module[" + name + "].request.cacheSize must not be negative.");
+                }
+                if(this.cacheTtlSecond != null && this.cacheTtlSecond < 1) {
+                    errorMessages.add("http transform module[" + name + "].request.cacheTtlSecond must be over zero.");
+                }
 
                 return errorMessages;
             }
@@ -148,6 +173,15 @@ public class HttpTransform implements TransformModule {
                 if(this.headers == null) {
                     this.headers = new HashMap<>();
                 }
+                if(this.maxInFlight == null) {
+                    this.maxInFlight = 64;
+                }
+                if(this.cacheSize == null) {
+                    this.cacheSize = 0;
+                }
+                if(this.cacheTtlSecond == null) {
+                    this.cacheTtlSecond = 300;
+                }
             }
 
         }
@@ -404,6 +438,7 @@ public class HttpTransform implements TransformModule {
         private final HttpTransformParameters.ResponseParameters response;
         private final HttpTransformParameters.RetryParameters retry;
         private final Integer timeoutSecond;
+        private final Boolean async;
         private final List<SelectFunction> selectFunctions;
 
         private final SchemaUtil.SchemaConverter<Schema,RuntimeSchemaT> schemaConverter;
@@ -440,6 +475,7 @@ public class HttpTransform implements TransformModule {
             this.response = parameters.response;
             this.retry = parameters.retry;
             this.timeoutSecond = parameters.timeoutSecond;
+            this.async = parameters.async;
             this.selectFunctions = selectFunctions;
 
             this.inputTags = inputTags;
@@ -465,10 +501,24 @@ public class HttpTransform implements TransformModule {
 
             final PCollection<UnionValue> unionValues = inputs
                     .apply("Union", Union.flatten(inputTags, inputTypes, inputNames));
+            final SchemaUtil.PrimitiveValueConverter valueConverter = DataType.ROW.equals(outputType)
+                    ? RowSchemaUtil::convertPrimitive : AvroSchemaUtil::convertPrimitive;
 
             final HttpCaller<RuntimeSchemaT,T> caller = new HttpCaller<>(
                     name, request, response, retry, timeoutSecond, selectFunctions,
                     schemaConverter, jsonConverter, valueCreator, responseSchema, outputSchema, outputType);
+
+            if(async) {
+                final PCollectionTuple outputs = unionValues
+                        .apply("AsyncHttpCall", ParDo
+                                .of(new AsyncHttpDoFn<>(name, caller, request, retry.backoff,
+                                        failureSchema, schemaConverter, valueCreator, valueConverter, failureTag))
+                                .withOutputTags(outputTag, TupleTagList.of(failureTag)));
+                return PCollectionTuple
+                        .of(outputTag, outputs.get(outputTag).setCoder(responseCoder))
+                        .and(failureTag, outputs.get(failureTag));
+            }
+
             RequestResponseIO<UnionValue, T> requestResponseIO = RequestResponseIO
                     .ofCallerAndSetupTeardown(caller, responseCoder)
                     .withTimeout(Duration.standardSeconds(timeoutSecond));
@@ -476,7 +526,7 @@ public class HttpTransform implements TransformModule {
             final Result<T> httpResult = unionValues.apply("HttpCall", requestResponseIO);
             final PCollection<T> output = httpResult.getResponses();
             final PCollection<T> errors = httpResult.getFailures()
-                    .apply("Failures", ParDo.of(new FailureDoFn<>(failureSchema, schemaConverter, valueCreator)));
+                    .apply("Failures", ParDo.of(new FailureDoFn<>(failureSchema, schemaConverter, valueCreator, valueConverter)));
 
             return PCollectionTuple
                     .of(outputTag, output)
@@ -507,10 +557,11 @@ public class HttpTransform implements TransformModule {
 
             private transient RuntimeSchemaT runtimeOutputSchema;
             private transient RuntimeSchemaT runtimeResponseSchema;
+            private transient SelectPlan selectPlan;
 
             private transient HttpClient client;
-            private transient String idToken;
-            private transient String accessToken;
+            private transient volatile String idToken;
+            private transient volatile String accessToken;
 
             private transient Template templateEndpoint;
             private transient Map<String,Template> templateParams;
@@ -599,9 +650,8 @@ public class HttpTransform implements TransformModule {
                     this.accessToken = getAccessToken();
                 }
 
-                for(final SelectFunction selectFunction : selectFunctions) {
-                    selectFunction.setup();
-                }
+                this.selectPlan = SelectPlan.of(selectFunctions, outputType, outputType);
+                this.selectPlan.setup();
             }
 
             @Override
@@ -612,99 +662,128 @@ public class HttpTransform implements TransformModule {
             @Override
             public T call(UnionValue unionValue) throws UserCodeExecutionException {
                 try {
-                    HttpResponse.BodyHandler<?> bodyHandler = switch (response.format) {
-                        case text, json -> HttpResponse.BodyHandlers.ofString();
-                        case bytes -> HttpResponse.BodyHandlers.ofByteArray();
-                    };
+                    final HttpResponse.BodyHandler<?> bodyHandler = bodyHandler();
 
                     HttpResponse<?> httpResponse = sendRequest(unionValue, bodyHandler);
-                    if(httpResponse.statusCode() == 401
-                            && (tokenTypes.contains(TokenType.id) || tokenTypes.contains(TokenType.access))) {
-
-                        if(tokenTypes.contains(TokenType.id)) {
-                            LOG.info("Try to reacquire id token");
-                            this.idToken = getIdToken(request.endpoint);
-                        }
-                        if(tokenTypes.contains(TokenType.access)) {
-                            LOG.info("Try to reacquire access token");
-                            this.accessToken = getAccessToken();
-                        }
+                    if(isUnauthorized(httpResponse)) {
+                        reacquireTokens();
                         httpResponse = sendRequest(unionValue, bodyHandler);
                     }
+                    return convert(httpResponse);
+                } catch (URISyntaxException e) {
+                    throw new UserCodeExecutionException(e);
+                } catch (IOException | InterruptedException e) {
+                    throw new RuntimeException(e);
+                } catch (Throwable e) {
+                    throw new RuntimeException("Failed to send request", e);
+                }
+            }
 
-                    final boolean acceptable = response.acceptableStatusCodes.contains(httpResponse.statusCode());
-                    if(httpResponse.statusCode() >= 400 && httpResponse.statusCode() < 500) {
-                        if(!acceptable) {
-                            final String errorMessage = "Illegal response code: " + httpResponse.statusCode() + ", for endpoint: " + request.endpoint + ", response: " + httpResponse.body();
-                            LOG.error(errorMessage);
-                            throw new UserCodeExecutionException(errorMessage);
-                        } else {
-                            LOG.info("Acceptable code: {}", httpResponse.statusCode());
-                        }
+            HttpClient getClient() {
+                return client;
+            }
+
+            HttpResponse.BodyHandler<?> bodyHandler() {
+                return switch (response.format) {
+                    case text, json -> HttpResponse.BodyHandlers.ofString();
+                    case bytes -> HttpResponse.BodyHandlers.ofByteArray();
+                };
+            }
+
+            boolean isUnauthorized(final HttpResponse<?> httpResponse) {
+                return httpResponse.statusCode() == 401
+                        && (tokenTypes.contains(TokenType.id) || tokenTypes.contains(TokenType.access));
+            }
+
+            synchronized void reacquireTokens() throws UserCodeExecutionException {
+                if(tokenTypes.contains(TokenType.id)) {
+                    LOG.info("Try to reacquire id token");
+                    this.idToken = getIdToken(request.endpoint);
+                }
+                if(tokenTypes.contains(TokenType.access)) {
+                    LOG.info("Try to reacquire access token");
+                    this.accessToken = getAccessToken();
+                }
+            }
+
+            /**
+             * Converts response to output. Responses with status code in 4xx not included in acceptableStatusCodes are treated as errors.
+             */
+            T convert(final HttpResponse<?> httpResponse) throws UserCodeExecutionException {
+                final boolean acceptable = response.acceptableStatusCodes.contains(httpResponse.statusCode());
+                if(httpResponse.statusCode() >= 400 && httpResponse.statusCode() < 500) {
+                    if(!acceptable) {
+                        final String errorMessage = "Illegal response code: " + httpResponse.statusCode() + ", for endpoint: " + request.endpoint + ", response: " + httpResponse.body();
+                        LOG.error(errorMessage);
+                        throw new UserCodeExecutionException(errorMessage);
+                    } else {
+                        LOG.info("Acceptable code: {}", httpResponse.statusCode());
                     }
+                }
 
-                    final T output = switch (this.response.format) {
-                        case text -> {
-                            final String body = (String) httpResponse.body();
-                            final Map<String, Object> values = new HashMap<>();
-                            values.put("statusCode", httpResponse.statusCode());
-                            values.put("body", body);
-                            values.put("headers", httpResponse.headers().map());
-                            values.put("timestamp", DateTimeUtil.toEpochMicroSecond(java.time.Instant.now()));
-                            yield valueCreator.create(runtimeResponseSchema, values);
-                        }
-                        case bytes -> {
-                            final byte[] body = (byte[]) httpResponse.body();
-                            final Map<String, Object> values = new HashMap<>();
-                            values.put("statusCode", httpResponse.statusCode());
-                            values.put("body", body);
-                            values.put("headers", httpResponse.headers().map());
-                            values.put("timestamp", DateTimeUtil.toEpochMicroSecond(java.time.Instant.now()));
-                            yield valueCreator.create(runtimeResponseSchema, values);
+                final T output = switch (this.response.format) {
+                    case text -> {
+                        final String body = (String) httpResponse.body();
+                        final Map<String, Object> values = new HashMap<>();
+                        values.put("statusCode", httpResponse.statusCode());
+                        values.put("body", body);
+                        values.put("headers", httpResponse.headers().map());
+                        values.put("timestamp", DateTimeUtil.toEpochMicroSecond(java.time.Instant.now()));
+                        yield valueCreator.create(runtimeResponseSchema, values);
+                    }
+                    case bytes -> {
+                        final byte[] body = (byte[]) httpResponse.body();
+                        final Map<String, Object> values = new HashMap<>();
+                        values.put("statusCode", httpResponse.statusCode());
+                        values.put("body", body);
+                        values.put("headers", httpResponse.headers().map());
+                        values.put("timestamp", DateTimeUtil.toEpochMicroSecond(java.time.Instant.now()));
+                        yield valueCreator.create(runtimeResponseSchema, values);
+                    }
+                    case json -> {
+                        final String body = (String) httpResponse.body();
+                        JsonElement responseJson = new Gson().fromJson(body, JsonElement.class);
+                        if(!responseJson.isJsonObject()) {
+                            responseJson = new JsonObject();
                         }
-                        case json -> {
-                            final String body = (String) httpResponse.body();
-                            JsonElement responseJson = new Gson().fromJson(body, JsonElement.class);
-                            if(!responseJson.isJsonObject()) {
-                                responseJson = new JsonObject();
-                            }
 
-                            final JsonObject jsonObject = new JsonObject();
-                            jsonObject.addProperty("statusCode", httpResponse.statusCode());
-                            jsonObject.addProperty("timestamp", Instant.now().toString());
-                            final JsonObject headers = new JsonObject();
-                            for(final Map.Entry<String, List<String>> entry : httpResponse.headers().map().entrySet()) {
-                                final JsonArray headerValues = new JsonArray();
-                                entry.getValue().forEach(headerValues::add);
-                                headers.add(entry.getKey(), headerValues);
-                            }
-                            jsonObject.add("headers", headers);
-                            if(Schema.TypeName.ROW.equals(responseSchema.getField("body").getType().getTypeName())) {
-                                jsonObject.add("body", responseJson.getAsJsonObject());
-                            } else {
-                                jsonObject.addProperty("body", responseJson.toString());
-                            }
-                            yield jsonConverter.convert(runtimeResponseSchema, jsonObject);
+                        final JsonObject jsonObject = new JsonObject();
+                        jsonObject.addProperty("statusCode", httpResponse.statusCode());
+                        jsonObject.addProperty("timestamp", Instant.now().toString());
+                        final JsonObject headers = new JsonObject();
+                        for(final Map.Entry<String, List<String>> entry : httpResponse.headers().map().entrySet()) {
+                            final JsonArray headerValues = new JsonArray();
+                            entry.getValue().forEach(headerValues::add);
+                            headers.add(entry.getKey(), headerValues);
                         }
-                    };
-                    if(selectFunctions.isEmpty()) {
-                        return output;
+                        jsonObject.add("headers", headers);
+                        if(Schema.TypeName.ROW.equals(responseSchema.getField("body").getType().getTypeName())) {
+                            jsonObject.add("body", responseJson.getAsJsonObject());
+                        } else {
+                            jsonObject.addProperty("body", responseJson.toString());
+                        }
+                        yield jsonConverter.convert(runtimeResponseSchema, jsonObject);
                     }
-                    final Map<String, Object> primitives = SelectFunction.apply(selectFunctions, output, outputType, outputType, Instant.now());
-                    return valueCreator.create(runtimeOutputSchema, primitives);
-                } catch (URISyntaxException e) {
-                    throw new UserCodeExecutionException(e);
-                } catch (IOException | InterruptedException e) {
-                    throw new RuntimeException(e);
-                } catch (Throwable e) {
-                    throw new RuntimeException("Failed to send request", e);
+                };
+                if(selectPlan.isEmpty()) {
+                    return output;
                 }
+                selectPlan.apply(output, Instant.now());
+                return selectPlan.create(runtimeOutputSchema, valueCreator);
             }
 
             private <ResponseT> HttpResponse<ResponseT> sendRequest(
                     final UnionValue unionValue,
                     final HttpResponse.BodyHandler<ResponseT> bodyHandler) throws Throwable {
 
+                return this.client.send(createRequest(unionValue).request, bodyHandler);
+            }
+
+            /**
+             * Renders request templates with the input values.
+             * The key identifies requests with the same method, endpoint, params and body.
+             */
+            RenderedRequest createRequest(final UnionValue unionValue) throws URISyntaxException {
                 final Map<String, Object> values = unionValue.getMap();
                 TemplateUtil.setFunctions(values);
                 values.put("_id_token", idToken);
@@ -729,7 +808,8 @@ public class HttpTransform implements TransformModule {
                     builder = builder.header(entry.getKey(), headerValue);
                 }
 
-                return this.client.send(builder.build(), bodyHandler);
+                final String key = this.request.method + " " + url + "\n" + bodyText;
+                return new RenderedRequest(builder.build(), key);
             }
 
             private String createEndpoint(final Map<String, Object> values) {
@@ -795,6 +875,273 @@ public class HttpTransform implements TransformModule {
                 access,
                 none
             }
+
+            static class RenderedRequest {
+
+                private final HttpRequest request;
+                private final String key;
+
+                RenderedRequest(final HttpRequest request, final String key) {
+                    this.request = request;
+                    this.key = key;
+                }
+
+            }
+        }
+
+        /**
+         * Sends requests with HttpClient.sendAsync and outputs the responses at the end of the bundle.
+         * The number of requests in flight is limited per worker by request.maxInFlight, identical requests in flight
+         * share one response, and responses are optionally cached for request.cacheTtlSecond.
+         */
+        private static class AsyncHttpDoFn<RuntimeSchemaT,T> extends DoFn<UnionValue, T> {
+
+            private static final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+            private static final Map<String, Map<String, CompletableFuture<HttpResponse<?>>>> inFlightRequests = new ConcurrentHashMap<>();
+            private static final Map<String, ResponseCache> caches = new ConcurrentHashMap<>();
+
+            private final String name;
+            private final HttpCaller<RuntimeSchemaT,T> caller;
+            private final HttpTransformParameters.RequestParameters request;
+            private final HttpTransformParameters.BackoffParameters backoff;
+            private final Schema failureSchema;
+            private final SchemaUtil.SchemaConverter<Schema,RuntimeSchemaT> schemaConverter;
+            private final SchemaUtil.ValueCreator<RuntimeSchemaT,T> valueCreator;
+            private final SchemaUtil.PrimitiveValueConverter valueConverter;
+            private final TupleTag<T> failureTag;
+
+            private transient RuntimeSchemaT runtimeFailureSchema;
+            private transient Semaphore permit;
+            private transient Map<String, CompletableFuture<HttpResponse<?>>> inFlight;
+            private transient ResponseCache cache;
+            private transient List<PendingResponse> pendings;
+
+            AsyncHttpDoFn(
+                    final String name,
+                    final HttpCaller<RuntimeSchemaT,T> caller,
+                    final HttpTransformParameters.RequestParameters request,
+                    final HttpTransformParameters.BackoffParameters backoff,
+                    final Schema failureSchema,
+                    final SchemaUtil.SchemaConverter<Schema,RuntimeSchemaT> schemaConverter,
+                    final SchemaUtil.ValueCreator<RuntimeSchemaT,T> valueCreator,
+                    final SchemaUtil.PrimitiveValueConverter valueConverter,
+                    final TupleTag<T> failureTag) {
+
+                this.name = name;
+                this.caller = caller;
+                this.request = request;
+                this.backoff = backoff;
+                this.failureSchema = failureSchema;
+                this.schemaConverter = schemaConverter;
+                this.valueCreator = valueCreator;
+                this.valueConverter = valueConverter;
+                this.failureTag = failureTag;
+            }
+
+            @Setup
+            public void setup() throws UserCodeExecutionException {
+                this.caller.setup();
+                this.runtimeFailureSchema = schemaConverter.convert(failureSchema);
+                this.permit = permits.computeIfAbsent(name, k -> new Semaphore(request.maxInFlight));
+                this.inFlight = inFlightRequests.computeIfAbsent(name, k -> new ConcurrentHashMap<>());
+                if(request.cacheSize > 0) {
+                    this.cache = caches.computeIfAbsent(name, k -> new ResponseCache(request.cacheSize, request.cacheTtlSecond * 1000L));
+                }
+            }
+
+            @StartBundle
+            public void startBundle() {
+                this.pendings = new ArrayList<>();
+            }
+
+            @ProcessElement
+            public void processElement(final ProcessContext c, final BoundedWindow window) throws InterruptedException {
+                final UnionValue element = c.element();
+                if(element == null) {
+                    return;
+                }
+                final HttpCaller.RenderedRequest renderedRequest;
+                try {
+                    renderedRequest = caller.createRequest(element);
+                } catch (final Throwable e) {
+                    c.output(failureTag, createFailure(element, e));
+                    return;
+                }
+
+                if(cache != null) {
+                    final HttpResponse<?> cached = cache.get(renderedRequest.key);
+                    if(cached != null) {
+                        try {
+                            c.output(caller.convert(cached));
+                        } catch (final Throwable e) {
+                            c.output(failureTag, createFailure(element, e));
+                        }
+                        return;
+                    }
+                }
+
+                CompletableFuture<HttpResponse<?>> future = inFlight.get(renderedRequest.key);
+                if(future == null) {
+                    permit.acquire();
+                    final CompletableFuture<HttpResponse<?>> created = new CompletableFuture<>();
+                    future = inFlight.putIfAbsent(renderedRequest.key, created);
+                    if(future == null) {
+                        future = created;
+                        send(element, renderedRequest, 0, 0L).whenComplete((response, e) -> {
+                            if(e == null && cache != null && isCacheable(response)) {
+                                cache.put(renderedRequest.key, response);
+                            }
+                            inFlight.remove(renderedRequest.key, created);
+                            permit.release();
+                            if(e != null) {
+                                created.completeExceptionally(e);
+                            } else {
+                                created.complete(response);
+                            }
+                        });
+                    } else {
+                        permit.release();
+                    }
+                }
+                pendings.add(new PendingResponse(element, future, c.timestamp(), window));
+            }
+
+            @FinishBundle
+            public void finishBundle(final FinishBundleContext c) {
+                for(final PendingResponse pending : pendings) {
+                    try {
+                        final HttpResponse<?> response = pending.future.join();
+                        c.output(caller.convert(response), pending.timestamp, pending.window);
+                    } catch (final Throwable e) {
+                        final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        c.output(failureTag, createFailure(pending.element, cause), pending.timestamp, pending.window);
+                    }
+                }
+                pendings.clear();
+            }
+
+            private CompletableFuture<HttpResponse<?>> send(
+                    final UnionValue element,
+                    final HttpCaller.RenderedRequest renderedRequest,
+                    final int retries,
+                    final long cumulativeBackoffMillis) {
+
+                return caller.getClient()
+                        .sendAsync(renderedRequest.request, caller.bodyHandler())
+                        .<HttpResponse<?>>thenApply(r -> r)
+                        .thenCompose(response -> {
+                            if(retries == 0 && caller.isUnauthorized(response)) {
+                                try {
+                                    caller.reacquireTokens();
+                                    return send(element, caller.createRequest(element), retries + 1, cumulativeBackoffMillis);
+                                } catch (final Throwable e) {
+                                    return CompletableFuture.failedFuture(e);
+                                }
+                            }
+                            return CompletableFuture.completedFuture(response);
+                        })
+                        .exceptionallyCompose(e -> {
+                            final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                            final long backoffMillis = backoffMillis(retries);
+                            if(!isRetryable(cause)
+                                    || retries >= backoff.maxRetries
+                                    || cumulativeBackoffMillis + backoffMillis > backoff.maxCumulativeBackoffSecond * 1000L) {
+                                return CompletableFuture.failedFuture(cause);
+                            }
+                            LOG.warn("Retry request: {} after {} millis cause: {}", renderedRequest.request.uri(), backoffMillis, cause.getMessage());
+                            final Executor delayed = CompletableFuture.delayedExecutor(backoffMillis, TimeUnit.MILLISECONDS);
+                            return CompletableFuture
+                                    .supplyAsync(() -> renderedRequest, delayed)
+                                    .thenCompose(r -> send(element, r, retries + 1, cumulativeBackoffMillis + backoffMillis));
+                        });
+            }
+
+            private long backoffMillis(final int retries) {
+                final double millis = backoff.initialBackoffSecond * 1000D * Math.pow(backoff.exponent, retries);
+                return (long) Math.min(millis, backoff.maxBackoffSecond * 1000D);
+            }
+
+            private T createFailure(final UnionValue element, final Throwable e) {
+                final StringWriter stackTrace = new StringWriter();
+                e.printStackTrace(new PrintWriter(stackTrace));
+                final Map<String, Object> values = new HashMap<>();
+                values.put("message", e.getMessage());
+                values.put("request", element.toString());
+                values.put("stackTrace", stackTrace.toString());
+                values.put("timestamp", valueConverter.convertPrimitive(Schema.FieldType.DATETIME, Instant.now().getMillis() * 1000L));
+                LOG.error("failure: {}", values.get("message"));
+                return valueCreator.create(runtimeFailureSchema, values);
+            }
+
+            private static boolean isRetryable(final Throwable e) {
+                return e instanceof HttpTimeoutException || e instanceof ConnectException;
+            }
+
+            private static boolean isCacheable(final HttpResponse<?> response) {
+                return response.statusCode() >= 200 && response.statusCode() < 300;
+            }
+
+            private static class PendingResponse {
+
+                private final UnionValue element;
+                private final CompletableFuture<HttpResponse<?>> future;
+                private final Instant timestamp;
+                private final BoundedWindow window;
+
+                PendingResponse(
+                        final UnionValue element,
+                        final CompletableFuture<HttpResponse<?>> future,
+                        final Instant timestamp,
+                        final BoundedWindow window) {
+
+                    this.element = element;
+                    this.future = future;
+                    this.timestamp = timestamp;
+                    this.window = window;
+                }
+
+            }
+
+        }
+
+        /**
+         * Bounded response cache shared by threads on a worker. The least recently used entry is dropped when full.
+         */
+        static class ResponseCache {
+
+            private final long ttlMillis;
+            private final Map<String, KV<Long, HttpResponse<?>>> entries;
+
+            ResponseCache(final int maxSize, final long ttlMillis) {
+                this.ttlMillis = ttlMillis;
+                this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, KV<Long, HttpResponse<?>>> eldest) {
+                        return size() > maxSize;
+                    }
+                };
+            }
+
+            synchronized HttpResponse<?> get(final String key) {
+                final KV<Long, HttpResponse<?>> entry = entries.get(key);
+                if(entry == null) {
+                    return null;
+                }
+                if(entry.getKey() < System.currentTimeMillis()) {
+                    entries.remove(key);
+                    return null;
+                }
+                return entry.getValue();
+            }
+
+            synchronized void put(final String key, final HttpResponse<?> response) {
+                entries.put(key, KV.of(System.currentTimeMillis() + ttlMillis, response));
+            }
+
+            synchronized int size() {
+                return entries.size();
+            }
+
         }
 
         private static class FailureDoFn<RuntimeSchemaT,T> extends DoFn<ApiIOError, T> {
@@ -802,17 +1149,20 @@ public class HttpTransform implements TransformModule {
             private final Schema failureSchema;
             private final SchemaUtil.SchemaConverter<Schema,RuntimeSchemaT> schemaConverter;
             private final SchemaUtil.ValueCreator<RuntimeSchemaT,T> valueCreator;
+            private final SchemaUtil.PrimitiveValueConverter valueConverter;
 
             private transient RuntimeSchemaT runtimeSchema;
 
             FailureDoFn(
                     final Schema failureSchema,
                     final SchemaUtil.SchemaConverter<Schema,RuntimeSchemaT> schemaConverter,
-                    final SchemaUtil.ValueCreator<RuntimeSchemaT,T> valueCreator) {
+                    final SchemaUtil.ValueCreator<RuntimeSchemaT,T> valueCreator,
+                    final SchemaUtil.PrimitiveValueConverter valueConverter) {
 
                 this.failureSchema = failureSchema;
                 this.schemaConverter = schemaConverter;
                 this.valueCreator = valueCreator;
+                this.valueConverter = valueConverter;
             }
 
             @Setup
@@ -830,7 +1180,7 @@ public class HttpTransform implements TransformModule {
                 values.put("message", error.getMessage());
                 values.put("request", error.getRequestAsString());
                 values.put("stackTrace", error.getStackTrace());
-                values.put("timestamp", error.getObservedTimestamp().getMillis() * 1000L);
+                values.put("timestamp", valueConverter.convertPrimitive(Schema.FieldType.DATETIME, error.getObservedTimestamp().getMillis() * 1000L));
                 final T output = valueCreator.create(runtimeSchema, values);
                 LOG.error("failure: {}", output);
                 c.output(output);
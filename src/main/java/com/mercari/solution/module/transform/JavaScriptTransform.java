@@ -15,6 +15,7 @@ import com.mercari.solution.module.FCollection;
 import com.mercari.solution.module.TransformModule;
 import com.mercari.solution.util.DateTimeUtil;
 import com.mercari.solution.util.OptionUtil;
+import com.mercari.solution.util.ScriptUtil;
 import com.mercari.solution.util.converter.EntityToMapConverter;
 import com.mercari.solution.util.converter.RecordToMapConverter;
 import com.mercari.solution.util.converter.RowToMapConverter;
@@ -38,6 +39,7 @@ import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.WithKeys;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.values.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +72,9 @@ public class JavaScriptTransform implements TransformModule {
 
         private Boolean failFast;
 
+        private ExecutionMode executionMode;
+        private Integer bufferSize;
+
         public String getScript() {
             return script;
         }
@@ -110,6 +115,22 @@ public class JavaScriptTransform implements TransformModule {
             this.failFast = failFast;
         }
 
+        public ExecutionMode getExecutionMode() {
+            return executionMode;
+        }
+
+        public void setExecutionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+        }
+
+        public Integer getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(Integer bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
     }
 
     private class Mapping implements Serializable {
@@ -157,6 +178,11 @@ public class JavaScriptTransform implements TransformModule {
         timestamp
     }
 
+    private enum ExecutionMode implements Serializable {
+        standard,
+        compiled
+    }
+
     public String getName() { return "javascript"; }
 
     public Map<String, FCollection<?>> expand(List<FCollection<?>> inputs, TransformConfig config) {
@@ -182,6 +208,7 @@ public class JavaScriptTransform implements TransformModule {
                             outputSchema.toString(),
                             AvroSchemaUtil::convertSchema,
                             RecordToMapConverter::convert,
+                            RecordToMapConverter::getValue,
                             AvroSchemaUtil::getAsString,
                             (Schema s, GenericRecord r, List<Mapping> mappings, Map<String, Object> values) -> {
                                 final GenericRecordBuilder builder = AvroSchemaUtil.copy(r, s);
@@ -240,6 +267,7 @@ public class JavaScriptTransform implements TransformModule {
                             outputSchema,
                             s -> s,
                             RowToMapConverter::convert,
+                            RowToMapConverter::getValue,
                             RowSchemaUtil::getAsString,
                             (org.apache.beam.sdk.schemas.Schema s, Row r, List<Mapping> mappings, Map<String, Object> values) -> {
                                 var builder = RowSchemaUtil.toBuilder(s, r);
@@ -285,6 +313,7 @@ public class JavaScriptTransform implements TransformModule {
                             outputType,
                             s -> s,
                             StructToMapConverter::convert,
+                            StructToMapConverter::getValue,
                             StructSchemaUtil::getAsString,
                             (Type s, Struct r, List<Mapping> mappings, Map<String, Object> values) -> {
                                 var builder = StructSchemaUtil.toBuilder(s, r);
@@ -366,6 +395,7 @@ public class JavaScriptTransform implements TransformModule {
                             outputSchema,
                             s -> s,
                             EntityToMapConverter::convert,
+                            EntityToMapConverter::getValue,
                             EntitySchemaUtil::getAsString,
                             (org.apache.beam.sdk.schemas.Schema s, Entity r, List<Mapping> mappings, Map<String, Object> values) -> {
                                 var builder = EntitySchemaUtil.toBuilder(s, r);
@@ -577,6 +607,9 @@ public class JavaScriptTransform implements TransformModule {
                 }
             }
         }
+        if(parameters.getBufferSize() != null && parameters.getBufferSize() < 1) {
+            errorMessages.add("JavaScriptTransform bufferSize parameter must be over than 0.");
+        }
 
         if(errorMessages.size() > 0) {
             throw new IllegalArgumentException(String.join("\n", errorMessages));
@@ -590,6 +623,12 @@ public class JavaScriptTransform implements TransformModule {
         if(parameters.getFailFast() == null) {
             parameters.setFailFast(true);
         }
+        if(parameters.getExecutionMode() == null) {
+            parameters.setExecutionMode(ExecutionMode.standard);
+        }
+        if(parameters.getBufferSize() == null) {
+            parameters.setBufferSize(ExecutionMode.compiled.equals(parameters.getExecutionMode()) ? 100 : 1);
+        }
     }
 
     public static class Transform<ElementT,InputSchemaT,RuntimeSchemaT> extends PTransform<PCollection<ElementT>, PCollectionTuple> {
@@ -603,6 +642,7 @@ public class JavaScriptTransform implements TransformModule {
         private final InputSchemaT inputSchema;
         private final SchemaConverter<InputSchemaT,RuntimeSchemaT> schemaConverter;
         private final MapConverter<ElementT> mapConverter;
+        private final FieldGetter<ElementT> fieldGetter;
         private final StringGetter<ElementT> stringGetter;
         private final FieldSetter<ElementT, RuntimeSchemaT> fieldSetter;
 
@@ -611,6 +651,7 @@ public class JavaScriptTransform implements TransformModule {
                           final InputSchemaT inputSchema,
                           final SchemaConverter<InputSchemaT,RuntimeSchemaT> schemaConverter,
                           final MapConverter<ElementT> mapConverter,
+                          final FieldGetter<ElementT> fieldGetter,
                           final StringGetter<ElementT> stringGetter,
                           final FieldSetter<ElementT, RuntimeSchemaT> fieldSetter) {
 
@@ -618,6 +659,7 @@ public class JavaScriptTransform implements TransformModule {
             this.inputSchema = inputSchema;
             this.schemaConverter = schemaConverter;
             this.mapConverter = mapConverter;
+            this.fieldGetter = fieldGetter;
             this.stringGetter = stringGetter;
             this.fieldSetter = fieldSetter;
         }
@@ -647,29 +689,34 @@ public class JavaScriptTransform implements TransformModule {
                         .setCoder(KvCoder.of(StringUtf8Coder.of(), input.getCoder()));
             }
 
+            final Integer poolSize = OptionUtil.getNumberOfWorkerHarnessThreads(input.getPipeline().getOptions());
+
             final PCollectionTuple tuple;
             if(parameters.getStateUpdateFunction() != null) {
                 if(OptionUtil.isStreaming(input.getPipeline().getOptions())) {
                     tuple = withKey.apply("ExecuteScript", ParDo
                             .of(new ScriptStatefulStreamingDoFn<>(
                                     parameters.getScript(), parameters.getMappings(), parameters.getStateUpdateFunction(),
-                                    schemaConverter, mapConverter, fieldSetter,
-                                    inputSchema, parameters.getFailFast(), tagError))
+                                    schemaConverter, mapConverter, fieldGetter, fieldSetter,
+                                    inputSchema, parameters.getFailFast(), tagError,
+                                    parameters.getExecutionMode(), poolSize))
                             .withOutputTags(tagMain, TupleTagList.of(tagError)));
                 } else {
                     tuple = withKey.apply("ExecuteScript", ParDo
                             .of(new ScriptStatefulBatchDoFn<>(
                                     parameters.getScript(), parameters.getMappings(), parameters.getStateUpdateFunction(),
-                                    schemaConverter, mapConverter, fieldSetter,
-                                    inputSchema, parameters.getFailFast(), tagError))
+                                    schemaConverter, mapConverter, fieldGetter, fieldSetter,
+                                    inputSchema, parameters.getFailFast(), tagError,
+                                    parameters.getExecutionMode(), poolSize))
                             .withOutputTags(tagMain, TupleTagList.of(tagError)));
                 }
             } else {
                 tuple = withKey.apply("ExecuteScript", ParDo
                         .of(new ScriptStatelessDoFn<>(
                                 parameters.getScript(), parameters.getMappings(), parameters.getStateUpdateFunction(),
-                                schemaConverter, mapConverter, fieldSetter,
-                                inputSchema, parameters.getFailFast(), tagError))
+                                schemaConverter, mapConverter, fieldGetter, fieldSetter,
+                                inputSchema, parameters.getFailFast(), tagError,
+                                parameters.getExecutionMode(), poolSize, parameters.getBufferSize()))
                         .withOutputTags(tagMain, TupleTagList.of(tagError)));
             }
 
@@ -685,13 +732,18 @@ public class JavaScriptTransform implements TransformModule {
             private final String stateUpdateFunction;
             private final SchemaConverter<InputSchemaT,RuntimeSchemaT> schemaConverter;
             private final MapConverter<T> mapConverter;
+            private final FieldGetter<T> fieldGetter;
             private final FieldSetter<T, RuntimeSchemaT> fieldSetter;
             private final InputSchemaT inputSchema;
 
             private final Boolean failFast;
             private final TupleTag<T> tagError;
 
+            private final ExecutionMode executionMode;
+            private final Integer poolSize;
+
             private transient Invocable invocable;
+            private transient ScriptUtil.ScriptRunner runner;
             private transient RuntimeSchemaT runtimeSchema;
 
             ScriptDoFn(final String script,
@@ -699,10 +751,13 @@ public class JavaScriptTransform implements TransformModule {
                        final String stateUpdateFunction,
                        final SchemaConverter<InputSchemaT,RuntimeSchemaT> schemaConverter,
                        final MapConverter<T> mapConverter,
+                       final FieldGetter<T> fieldGetter,
                        final FieldSetter<T, RuntimeSchemaT> fieldSetter,
                        final InputSchemaT inputSchema,
                        final Boolean failFast,
-                       final TupleTag<T> tagError) {
+                       final TupleTag<T> tagError,
+                       final ExecutionMode executionMode,
+                       final Integer poolSize) {
 
                 this.script = script;
                 this.mappings = mappings;
@@ -710,11 +765,15 @@ public class JavaScriptTransform implements TransformModule {
 
                 this.schemaConverter = schemaConverter;
                 this.mapConverter = mapConverter;
+                this.fieldGetter = fieldGetter;
                 this.fieldSetter = fieldSetter;
                 this.inputSchema = inputSchema;
 
                 this.failFast = failFast;
                 this.tagError = tagError;
+
+                this.executionMode = executionMode;
+                this.poolSize = poolSize;
             }
 
             void setup() throws ScriptException {
@@ -725,16 +784,35 @@ public class JavaScriptTransform implements TransformModule {
                 } else {
                     scriptText = script;
                 }
-                final ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
-                engine.eval(scriptText);
-                this.invocable = (Invocable) engine;
+                if(ExecutionMode.compiled.equals(executionMode)) {
+                    // Runners are shared between DoFn instances on the worker, at most one per harness thread is kept idle.
+                    final int size = poolSize != null && poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+                    this.runner = ScriptUtil.borrow(ScriptUtil.ENGINE_NAME_JAVASCRIPT, scriptText, size);
+                    this.invocable = runner.getInvocable();
+                } else {
+                    final ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
+                    engine.eval(scriptText);
+                    this.invocable = (Invocable) engine;
+                }
+            }
+
+            void teardown() {
+                ScriptUtil.release(runner);
+                this.runner = null;
+            }
+
+            Map<String, Object> createInput(final T input) {
+                if(ExecutionMode.compiled.equals(executionMode)) {
+                    return new ScriptUtil.FieldAccessorMap<>(input, fieldGetter::getValue, mapConverter::convert);
+                }
+                return mapConverter.convert(input);
             }
 
             void processElement(final ProcessContext c,
                                 final ValueState<Map<String, Double>> valueState) throws NoSuchMethodException {
 
                 final T input = c.element().getValue();
-                final Map<String, Object> mapInput = mapConverter.convert(input);
+                final Map<String, Object> mapInput = createInput(input);
                 Map<String, Double> states;
                 if(stateUpdateFunction != null) {
                     states = Optional.ofNullable(valueState.read()).orElse(new HashMap<>());
@@ -822,6 +900,55 @@ public class JavaScriptTransform implements TransformModule {
                 c.output(output);
             }
 
+            List<BufferedOutput<T>> processBuffer(final List<BufferedElement<T>> elements) throws NoSuchMethodException {
+
+                final List<Map<String, Object>> mapInputs = new ArrayList<>(elements.size());
+                final List<Map<String, Object>> outputsList = new ArrayList<>(elements.size());
+                for(final BufferedElement<T> element : elements) {
+                    mapInputs.add(createInput(element.element));
+                    outputsList.add(new HashMap<>());
+                }
+
+                // Execute scripts function by function over buffered elements
+                final List<BufferedOutput<T>> results = new ArrayList<>();
+                for(final Mapping mapping : mappings) {
+                    for(int i=0; i<elements.size(); i++) {
+                        final BufferedElement<T> element = elements.get(i);
+                        final Map<String, Object> mapInput = mapInputs.get(i);
+                        try {
+                            final Object result = this.invocable.invokeFunction(mapping.getFunction(), mapInput);
+                            final Object output = convert(mapping, result);
+                            outputsList.get(i).put(mapping.getOutputField(), output);
+                            mapInput.put(mapping.getOutputField(), output);
+                        } catch (NoSuchMethodException e) {
+                            final String message = "Not found function: " + mapping.getFunction() + ", in script: \n" + script;
+                            throw new NoSuchMethodException(message);
+                        } catch (ScriptException e) {
+                            final String message = "Script error for function: " + mapping.getFunction();
+                            if(failFast) {
+                                throw new IllegalStateException(message, e);
+                            }
+                            LOG.error(message + ", cause: " + e.getMessage());
+                            results.add(new BufferedOutput<>(tagError, element.element, element.timestamp, element.window));
+                        } catch (Exception e) {
+                            final String message = "Script internal error for function: " + mapping.getFunction();
+                            if(failFast) {
+                                throw new IllegalStateException(message, e);
+                            }
+                            LOG.error(message + ", cause: " + e.getMessage());
+                            results.add(new BufferedOutput<>(tagError, element.element, element.timestamp, element.window));
+                        }
+                    }
+                }
+
+                for(int i=0; i<elements.size(); i++) {
+                    final BufferedElement<T> element = elements.get(i);
+                    final T output = fieldSetter.setValues(runtimeSchema, element.element, mappings, outputsList.get(i));
+                    results.add(new BufferedOutput<>(null, output, element.timestamp, element.window));
+                }
+                return results;
+            }
+
             private Object convert(final Mapping mapping, final Object value) {
                 if(value == null) {
                     return null;
@@ -979,12 +1106,16 @@ public class JavaScriptTransform implements TransformModule {
                                     final String stateUpdateFunction,
                                     final SchemaConverter<InputSchemaT,RuntimeSchemaT> schemaConverter,
                                     final MapConverter<T> mapConverter,
+                                    final FieldGetter<T> fieldGetter,
                                     final FieldSetter<T, RuntimeSchemaT> fieldSetter,
                                     final InputSchemaT inputSchema,
                                     final Boolean failFast,
-                                    final TupleTag<T> tagError) {
+                                    final TupleTag<T> tagError,
+                                    final ExecutionMode executionMode,
+                                    final Integer poolSize) {
 
-                super(script, mappings, stateUpdateFunction, schemaConverter, mapConverter, fieldSetter, inputSchema, failFast, tagError);
+                super(script, mappings, stateUpdateFunction, schemaConverter, mapConverter, fieldGetter, fieldSetter,
+                        inputSchema, failFast, tagError, executionMode, poolSize);
                 this.stateSpec = StateSpecs.value(MapCoder.of(StringUtf8Coder.of(), DoubleCoder.of()));
             }
 
@@ -993,6 +1124,11 @@ public class JavaScriptTransform implements TransformModule {
                 super.setup();
             }
 
+            @Teardown
+            public void teardown() {
+                super.teardown();
+            }
+
             @ProcessElement
             @RequiresTimeSortedInput
             public void processElement(final ProcessContext c,
@@ -1014,12 +1150,16 @@ public class JavaScriptTransform implements TransformModule {
                                         final String stateUpdateFunction,
                                         final SchemaConverter<InputSchemaT,RuntimeSchemaT> schemaConverter,
                                         final MapConverter<T> mapConverter,
+                                        final FieldGetter<T> fieldGetter,
                                         final FieldSetter<T, RuntimeSchemaT> fieldSetter,
                                         final InputSchemaT inputSchema,
                                         final Boolean failFast,
-                                        final TupleTag<T> tagError) {
+                                        final TupleTag<T> tagError,
+                                        final ExecutionMode executionMode,
+                                        final Integer poolSize) {
 
-                super(script, mappings, stateUpdateFunction, schemaConverter, mapConverter, fieldSetter, inputSchema, failFast, tagError);
+                super(script, mappings, stateUpdateFunction, schemaConverter, mapConverter, fieldGetter, fieldSetter,
+                        inputSchema, failFast, tagError, executionMode, poolSize);
                 this.stateSpec = StateSpecs.value(MapCoder.of(StringUtf8Coder.of(), DoubleCoder.of()));
             }
 
@@ -1028,6 +1168,11 @@ public class JavaScriptTransform implements TransformModule {
                 super.setup();
             }
 
+            @Teardown
+            public void teardown() {
+                super.teardown();
+            }
+
             @ProcessElement
             public void processElement(final ProcessContext c,
                                        final @StateId(STATEID_STATES) ValueState<Map<String,Double>> state)
@@ -1040,29 +1185,115 @@ public class JavaScriptTransform implements TransformModule {
 
         private static class ScriptStatelessDoFn<T,InputSchemaT,RuntimeSchemaT> extends ScriptDoFn<T,InputSchemaT,RuntimeSchemaT> {
 
+            private final Integer bufferSize;
+            private final boolean buffering;
+
+            private transient List<BufferedElement<T>> buffer;
+            private transient List<BufferedOutput<T>> outputs;
+
             ScriptStatelessDoFn(final String script,
                                 final List<Mapping> mappings,
                                 final String stateUpdateFunction,
                                 final SchemaConverter<InputSchemaT,RuntimeSchemaT> schemaConverter,
                                 final MapConverter<T> mapConverter,
+                                final FieldGetter<T> fieldGetter,
                                 final FieldSetter<T, RuntimeSchemaT> fieldSetter,
                                 final InputSchemaT inputSchema,
                                 final Boolean failFast,
-                                final TupleTag<T> tagError) {
-
-                super(script, mappings, stateUpdateFunction, schemaConverter, mapConverter, fieldSetter, inputSchema, failFast, tagError);
+                                final TupleTag<T> tagError,
+                                final ExecutionMode executionMode,
+                                final Integer poolSize,
+                                final Integer bufferSize) {
+
+                super(script, mappings, stateUpdateFunction, schemaConverter, mapConverter, fieldGetter, fieldSetter,
+                        inputSchema, failFast, tagError, executionMode, poolSize);
+                this.bufferSize = bufferSize;
+                this.buffering = ExecutionMode.compiled.equals(executionMode) && bufferSize > 1;
             }
 
             @Setup
             public void setup() throws ScriptException {
                 super.setup();
+                this.buffer = new ArrayList<>();
+                this.outputs = new ArrayList<>();
+            }
+
+            @Teardown
+            public void teardown() {
+                super.teardown();
+            }
+
+            @StartBundle
+            public void startBundle(final StartBundleContext c) {
+                this.buffer.clear();
+                this.outputs.clear();
+            }
+
+            @FinishBundle
+            public void finishBundle(final FinishBundleContext c) throws NoSuchMethodException {
+                flush();
+                for(final BufferedOutput<T> output : outputs) {
+                    if(output.tag == null) {
+                        c.output(output.value, output.timestamp, output.window);
+                    } else {
+                        c.output(output.tag, output.value, output.timestamp, output.window);
+                    }
+                }
+                outputs.clear();
             }
 
             @ProcessElement
-            public void processElement(final ProcessContext c)
+            public void processElement(final ProcessContext c,
+                                       final BoundedWindow window)
                     throws NoSuchMethodException {
 
-                super.processElement(c, null);
+                if(!buffering) {
+                    super.processElement(c, null);
+                    return;
+                }
+
+                buffer.add(new BufferedElement<>(c.element().getValue(), c.timestamp(), window));
+                if(buffer.size() >= bufferSize) {
+                    flush();
+                }
+            }
+
+            private void flush() throws NoSuchMethodException {
+                if(buffer.isEmpty()) {
+                    return;
+                }
+                outputs.addAll(processBuffer(buffer));
+                buffer.clear();
+            }
+
+        }
+
+        private static class BufferedElement<T> {
+
+            private final T element;
+            private final org.joda.time.Instant timestamp;
+            private final BoundedWindow window;
+
+            BufferedElement(final T element, final org.joda.time.Instant timestamp, final BoundedWindow window) {
+                this.element = element;
+                this.timestamp = timestamp;
+                this.window = window;
+            }
+
+        }
+
+        private static class BufferedOutput<T> {
+
+            private final TupleTag<T> tag;
+            private final T value;
+            private final org.joda.time.Instant timestamp;
+            private final BoundedWindow window;
+
+            BufferedOutput(final TupleTag<T> tag, final T value, final org.joda.time.Instant timestamp, final BoundedWindow window) {
+                this.tag = tag;
+                this.value = value;
+                this.timestamp = timestamp;
+                this.window = window;
             }
 
         }
@@ -1078,6 +1309,10 @@ public class JavaScriptTransform implements TransformModule {
         Map<String, Object> convert(T element);
     }
 
+    private interface FieldGetter<T> extends Serializable {
+        Object getValue(T element, String field);
+    }
+
     private interface StringGetter<T> extends Serializable {
         String getAsString(T element, String field);
     }
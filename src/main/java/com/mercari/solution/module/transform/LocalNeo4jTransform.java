@@ -35,7 +35,6 @@ import org.neo4j.graphdb.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
@@ -127,6 +126,8 @@ public class LocalNeo4jTransform implements TransformModule {
         private Boolean useGDS;
         private Boolean mutable;
         private Integer bufferSize;
+        private Integer compressionWorkers;
+        private Integer uploadBufferSize;
 
         public String getPath() {
             return path;
@@ -168,11 +169,25 @@ public class LocalNeo4jTransform implements TransformModule {
             return bufferSize;
         }
 
+        public Integer getCompressionWorkers() {
+            return compressionWorkers;
+        }
+
+        public Integer getUploadBufferSize() {
+            return uploadBufferSize;
+        }
+
         public List<String> validate(final String name, final List<String> inputNames) {
             final List<String> errorMessages = new ArrayList<>();
             if(this.path == null) {
                 errorMessages.add("localNeo4j[" + name + "].index.path must not be null.");
             }
+            if(this.compressionWorkers != null && this.compressionWorkers < 0) {
+                errorMessages.add("localNeo4j[" + name + "].index.compressionWorkers must not be negative.");
+            }
+            if(this.uploadBufferSize != null && this.uploadBufferSize < 1) {
+                errorMessages.add("localNeo4j[" + name + "].index.uploadBufferSize must be over zero.");
+            }
             if((nodes == null || nodes.isEmpty()) && (relationships == null || relationships.isEmpty())) {
                 errorMessages.add("localNeo4j[" + name + "] transform module requires `nodes` or `relationships` parameter.");
             } else {
@@ -225,6 +240,12 @@ public class LocalNeo4jTransform implements TransformModule {
             if(bufferSize == null) {
                 bufferSize = 500;
             }
+            if(compressionWorkers == null) {
+                compressionWorkers = 0;
+            }
+            if(uploadBufferSize == null) {
+                uploadBufferSize = 8 * 1024 * 1024;
+            }
         }
 
     }
@@ -236,8 +257,11 @@ public class LocalNeo4jTransform implements TransformModule {
         private List<String> fields;
         private String cypher;
         private SourceConfig.InputSchema schema;
+        private Boolean parameterized;
+        private Integer batchSize;
         private List<String> requiredFields;
         private transient Template cypherTemplate;
+        private transient String unwindCypher;
 
         public String getName() {
             return name;
@@ -259,6 +283,14 @@ public class LocalNeo4jTransform implements TransformModule {
             return schema;
         }
 
+        public Boolean getParameterized() {
+            return parameterized;
+        }
+
+        public Integer getBatchSize() {
+            return batchSize;
+        }
+
         public List<String> getRequiredFields() {
             return requiredFields;
         }
@@ -267,6 +299,10 @@ public class LocalNeo4jTransform implements TransformModule {
             return cypherTemplate;
         }
 
+        public String getUnwindCypher() {
+            return unwindCypher;
+        }
+
         public List<String> validate(String name, int i, final List<String> inputNames) {
             final List<String> errorMessages = new ArrayList<>();
             if(this.name == null) {
@@ -283,6 +319,9 @@ public class LocalNeo4jTransform implements TransformModule {
             if(this.schema == null) {
                 errorMessages.add("localNeo4j[" + name + "].queries[" + i + "].schema must not be null.");
             }
+            if(this.batchSize != null && this.batchSize < 1) {
+                errorMessages.add("localNeo4j[" + name + "].queries[" + i + "].batchSize must be over zero.");
+            }
             return errorMessages;
         }
 
@@ -290,9 +329,25 @@ public class LocalNeo4jTransform implements TransformModule {
             if(fields == null) {
                 fields = new ArrayList<>();
             }
+            if(parameterized == null) {
+                parameterized = false;
+            }
+            if(batchSize == null) {
+                batchSize = 100;
+            }
             requiredFields = new ArrayList<>(this.fields);
-            final List<String> cypherTemplateArgs = TemplateUtil.extractTemplateArgs(cypher, inputSchema);
-            for(final String arg : cypherTemplateArgs) {
+            final List<String> cypherArgs;
+            if(parameterized) {
+                cypherArgs = Neo4jUtil.extractParameterNames(cypher);
+                for(final String arg : cypherArgs) {
+                    if(!inputSchema.hasField(arg)) {
+                        throw new IllegalArgumentException("localNeo4j.queries[" + name + "].cypher parameter: " + arg + " does not exist in input schema: " + inputSchema);
+                    }
+                }
+            } else {
+                cypherArgs = TemplateUtil.extractTemplateArgs(cypher, inputSchema);
+            }
+            for(final String arg : cypherArgs) {
                 if(!requiredFields.contains(arg)) {
                     requiredFields.add(arg);
                 }
@@ -300,7 +355,11 @@ public class LocalNeo4jTransform implements TransformModule {
         }
 
         public void setup() {
-            this.cypherTemplate = TemplateUtil.createStrictTemplate(name + "Cypher", cypher);
+            if(parameterized) {
+                this.unwindCypher = Neo4jUtil.createUnwindCypher(cypher);
+            } else {
+                this.cypherTemplate = TemplateUtil.createStrictTemplate(name + "Cypher", cypher);
+            }
         }
 
     }
@@ -573,6 +632,7 @@ public class LocalNeo4jTransform implements TransformModule {
             private final TimestampConverter timestampConverter;
 
             private static GraphDatabaseService graphDB;
+            private transient Map<String, TupleTag<T>> outputTags;
             private transient Map<String, RuntimeSchemaT> outputRuntimeSchemas;
             private transient Map<String, RuntimeSchemaT> outputResultRuntimeSchemas;
             private transient RuntimeSchemaT outputFailureRuntimeSchema;
@@ -604,6 +664,8 @@ public class LocalNeo4jTransform implements TransformModule {
             }
 
             protected void setupQuery() {
+                this.outputTags = outputNames.entrySet().stream()
+                        .collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey));
                 this.outputRuntimeSchemas = this.outputSchemas.entrySet().stream()
                         .collect(Collectors.toMap(Map.Entry::getKey, e -> schemaConverter.convert(e.getValue())));
                 this.outputResultRuntimeSchemas = this.outputSchemas.entrySet().stream()
@@ -627,11 +689,7 @@ public class LocalNeo4jTransform implements TransformModule {
                 }
 
                 //ZipFileUtil.uploadZipFile(this.indexPath, index.path);
-                final ByteArrayOutputStream os = new ByteArrayOutputStream();
-                Neo4jUtil.dump(this.indexPath, index.getDatabase(), os);
-                os.flush();
-                os.close();
-                StorageUtil.writeBytes(this.index.getPath(), os.toByteArray(), "application/zstd", new HashMap<>(), new HashMap<>());
+                Neo4jUtil.dump(this.indexPath, index.getDatabase(), index.getPath(), index.getCompressionWorkers(), index.getUploadBufferSize());
             }
 
             protected void query(final ProcessContext c) {
@@ -645,12 +703,19 @@ public class LocalNeo4jTransform implements TransformModule {
                         }
 
                         final Map<String, Object> input = unionValue.getMap(query.getRequiredFields());
-                        final String cypher = TemplateUtil.executeStrictTemplate(query.getCypherTemplate(), input);
-
-                        try(final Result result = tx.execute(cypher)) {
-                            final TupleTag<T> outputTag = outputNames.entrySet().stream().filter(e -> e.getValue().equals(query.getName())).map(e -> e.getKey()).findAny().get();
-                            final T output = createOutput(query, input, cypher, result, timestamp.getMillis());
-                            c.output(outputTag, output);
+                        final String cypher = query.getParameterized()
+                                ? query.getCypher()
+                                : TemplateUtil.executeStrictTemplate(query.getCypherTemplate(), input);
+
+                        try(final Result result = query.getParameterized()
+                                ? tx.execute(cypher, Neo4jUtil.formatParameters(input))
+                                : tx.execute(cypher)) {
+                            final List<Map<String, Object>> results = new ArrayList<>();
+                            while(result.hasNext()) {
+                                results.add(result.next());
+                            }
+                            final T output = createOutput(query, input, cypher, results, timestamp.getMillis());
+                            c.output(outputTags.get(query.getName()), output);
                         } catch (final Throwable e) {
                             final String message = "Failed to execute cypher: " + cypher + ". cause: " + e.getMessage();
                             LOG.error(message);
@@ -665,6 +730,58 @@ public class LocalNeo4jTransform implements TransformModule {
                 }
             }
 
+            /**
+             * Executes the parameterized query for the buffered inputs in one UNWIND query and transaction,
+             * and outputs results to their originating inputs. If the query fails, inputs are queried one by one.
+             */
+            protected void queryBatch(final QueryDefinition query, final List<QueryInput> inputs, final Emitter<T> emitter) {
+                if(inputs.isEmpty()) {
+                    return;
+                }
+
+                final List<Map<String, Object>> values = new ArrayList<>(inputs.size());
+                for(final QueryInput input : inputs) {
+                    values.add(input.values);
+                }
+
+                final List<T> outputs = new ArrayList<>(inputs.size());
+                try(final Transaction tx = graphDB.beginTx()) {
+                    final List<List<Map<String, Object>>> results = Neo4jUtil.queryBatch(tx, query.getUnwindCypher(), values);
+                    for(int i=0; i<inputs.size(); i++) {
+                        final QueryInput input = inputs.get(i);
+                        outputs.add(createOutput(query, input.values, query.getCypher(), results.get(i), input.timestamp.getMillis()));
+                    }
+                } catch (final Throwable e) {
+                    LOG.warn("Failed to execute batch cypher: " + query.getUnwindCypher() + ", size: " + inputs.size() + ". cause: " + e.getMessage());
+                    for(final QueryInput input : inputs) {
+                        querySingle(query, input, emitter);
+                    }
+                    return;
+                }
+
+                final TupleTag<T> outputTag = outputTags.get(query.getName());
+                for(int i=0; i<inputs.size(); i++) {
+                    emitter.output(outputTag, outputs.get(i), inputs.get(i).timestamp);
+                }
+            }
+
+            private void querySingle(final QueryDefinition query, final QueryInput input, final Emitter<T> emitter) {
+                try(final Transaction tx = graphDB.beginTx();
+                    final Result result = tx.execute(query.getCypher(), Neo4jUtil.formatParameters(input.values))) {
+
+                    final List<Map<String, Object>> results = new ArrayList<>();
+                    while(result.hasNext()) {
+                        results.add(result.next());
+                    }
+                    final T output = createOutput(query, input.values, query.getCypher(), results, input.timestamp.getMillis());
+                    emitter.output(outputTags.get(query.getName()), output, input.timestamp);
+                } catch (final Throwable e) {
+                    LOG.error("Failed to execute cypher: " + query.getCypher() + ". cause: " + e.getMessage());
+                    final T outputFailure = createFailure(input.inputName, "query", query.getCypher(), input.timestamp.getMillis(), e);
+                    emitter.output(outputFailureTag, outputFailure, input.timestamp);
+                }
+            }
+
             protected void index(final List<UnionValue> buffer) {
                 Neo4jUtil.index(graphDB, buffer, index.getNodes(), index.getRelationships(), inputNames);
                 buffer.clear();
@@ -679,12 +796,11 @@ public class LocalNeo4jTransform implements TransformModule {
                 return false;
             }
 
-            private T createOutput(QueryDefinition query, Map<String, Object> input, String cypher, Result result, long epochMillis) {
+            private T createOutput(QueryDefinition query, Map<String, Object> input, String cypher, List<Map<String, Object>> results, long epochMillis) {
                 // create results
                 final RuntimeSchemaT outputResultSchema = outputResultRuntimeSchemas.get(query.getName());
                 final List<T> outputResults = new ArrayList<>();
-                while(result.hasNext()) {
-                    final Map<String, Object> resultValues = result.next();
+                for(final Map<String, Object> resultValues : results) {
                     final T outputResult = neo4jValueCreator.create(outputResultSchema, resultValues);
                     outputResults.add(outputResult);
                 }
@@ -763,6 +879,8 @@ public class LocalNeo4jTransform implements TransformModule {
 
         private class Neo4jQueryDoFn extends Neo4jDoFn {
 
+            private transient Map<String, List<QueryInput>> buffers;
+
             Neo4jQueryDoFn(final String name,
                            final List<String> inputNames,
                            final Map<String, Schema> outputSchemas,
@@ -789,17 +907,62 @@ public class LocalNeo4jTransform implements TransformModule {
 
             }
 
+            @StartBundle
+            public void startBundle() {
+                this.buffers = new HashMap<>();
+            }
+
             @ProcessElement
             public void processElement(final ProcessContext c) {
 
                 final UnionValue input = c.element().getValue();
-                if(isQueryInput(input)) {
-                    query(c);
-                } else {
+                if(!isQueryInput(input)) {
                     LOG.info("not query input: " + input + " for inputNames: " + inputNames);
+                    return;
+                }
+                if(!isBatchQueryInput(input)) {
+                    query(c);
+                    return;
+                }
+
+                // parameterized queries are buffered in the bundle and executed in batches
+                final String inputName = inputNames.get(input.getIndex());
+                for(final QueryDefinition query : queries) {
+                    if(!inputName.equals(query.getInput())) {
+                        continue;
+                    }
+                    final List<QueryInput> buffer = buffers.computeIfAbsent(query.getName(), k -> new ArrayList<>());
+                    buffer.add(new QueryInput(inputName, input.getMap(query.getRequiredFields()), c.timestamp()));
+                    if(buffer.size() >= query.getBatchSize()) {
+                        // outputs of the elements buffered before are emitted with the timestamp of current element
+                        queryBatch(query, buffer, (tag, output, timestamp) -> c.output(tag, output));
+                        buffer.clear();
+                    }
                 }
             }
 
+            @FinishBundle
+            public void finishBundle(final FinishBundleContext c) {
+                for(final QueryDefinition query : queries) {
+                    final List<QueryInput> buffer = buffers.get(query.getName());
+                    if(buffer == null) {
+                        continue;
+                    }
+                    queryBatch(query, buffer, (tag, output, timestamp) -> c.output(tag, output, timestamp, GlobalWindow.INSTANCE));
+                    buffer.clear();
+                }
+            }
+
+            private boolean isBatchQueryInput(final UnionValue input) {
+                final String inputName = inputNames.get(input.getIndex());
+                for(final QueryDefinition query : queries) {
+                    if(inputName.equals(query.getInput()) && (!query.getParameterized() || query.getBatchSize() <= 1)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
         }
 
         private class Neo4jQueryAndIndexDoFn extends Neo4jDoFn {
@@ -978,4 +1141,22 @@ public class LocalNeo4jTransform implements TransformModule {
         Object toTimestampValue(long epochMillis);
     }
 
+    private interface Emitter<T> {
+        void output(TupleTag<T> tag, T output, Instant timestamp);
+    }
+
+    private static class QueryInput {
+
+        private final String inputName;
+        private final Map<String, Object> values;
+        private final Instant timestamp;
+
+        QueryInput(final String inputName, final Map<String, Object> values, final Instant timestamp) {
+            this.inputName = inputName;
+            this.values = values;
+            this.timestamp = timestamp;
+        }
+
+    }
+
 }
\ No newline at end of file
@@ -11,7 +11,6 @@ import com.mercari.solution.module.TransformModule;
 import com.mercari.solution.util.OptionUtil;
 import com.mercari.solution.util.converter.*;
 import com.mercari.solution.util.domain.ml.ONNXRuntimeUtil;
-import com.mercari.solution.util.gcp.StorageUtil;
 import com.mercari.solution.util.pipeline.select.SelectFunction;
 import com.mercari.solution.util.pipeline.union.Union;
 import com.mercari.solution.util.pipeline.union.UnionValue;
@@ -23,12 +22,15 @@ import org.apache.beam.sdk.coders.RowCoder;
 import org.apache.beam.sdk.extensions.avro.coders.AvroCoder;
 import org.apache.beam.sdk.schemas.Schema;
 import org.apache.beam.sdk.transforms.*;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.values.*;
 import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -147,8 +149,8 @@ public class ONNXTransform implements TransformModule {
             final List<String> errorMessages = new ArrayList<>();
             if(this.path == null) {
                 errorMessages.add("onnx transform module[" + name + "].model.path parameter must not be null.");
-            } else if(!path.startsWith("gs://")) {
-                errorMessages.add("onnx transform module[" + name + "].model.path must start with gs://");
+            } else if(!path.startsWith("gs://") && !Files.exists(Path.of(path))) {
+                errorMessages.add("onnx transform module[" + name + "].model.path must start with gs:// or be a local file path");
             }
             return errorMessages;
         }
@@ -374,6 +376,7 @@ public class ONNXTransform implements TransformModule {
                         parameters.getModel(),
                         inferenceSettings,
                         parameters.getBufferSize(),
+                        parameters.getBufferIntervalSeconds(),
                         s -> s,
                         OnnxToRowConverter::convert,
                         inputTags,
@@ -419,6 +422,7 @@ public class ONNXTransform implements TransformModule {
                         parameters.getModel(),
                         inferenceSettings,
                         parameters.getBufferSize(),
+                        parameters.getBufferIntervalSeconds(),
                         AvroSchemaUtil::convertSchema,
                         OnnxToRecordConverter::convert,
                         inputTags,
@@ -459,6 +463,7 @@ public class ONNXTransform implements TransformModule {
         private final ModelParameter model;
         private final List<InferenceSetting> inferences;
         private final Integer bufferSize;
+        private final Integer bufferIntervalSeconds;
         private final List<String> groupFields;
         private final SchemaUtil.SchemaConverter<InputSchemaT, RuntimeSchemaT> schemaConverter;
         private final OnnxValueConverter onnxValueConverter;
@@ -477,6 +482,7 @@ public class ONNXTransform implements TransformModule {
                   final ModelParameter model,
                   final List<InferenceSetting> inferences,
                   final Integer bufferSize,
+                  final Integer bufferIntervalSeconds,
                   final SchemaUtil.SchemaConverter<InputSchemaT, RuntimeSchemaT> schemaConverter,
                   final OnnxValueConverter onnxValueConverter,
                   final List<TupleTag<?>> inputTags,
@@ -492,6 +498,7 @@ public class ONNXTransform implements TransformModule {
             this.model = model;
             this.inferences = inferences;
             this.bufferSize = bufferSize;
+            this.bufferIntervalSeconds = bufferIntervalSeconds;
 
             this.groupFields = new ArrayList<>();
             this.schemaConverter = schemaConverter;
@@ -521,7 +528,7 @@ public class ONNXTransform implements TransformModule {
                     .apply("Union", Union.flatten(inputTags, inputTypes, inputNames))
                     .apply("Reshuffle", Reshuffle.viaRandomKey())
                     .apply("Inference", ParDo.of(new InferenceDoFn<>(
-                                    name, model, inferences, bufferSize,
+                                    name, model, inferences, bufferSize, bufferIntervalSeconds,
                                     schemaConverter, onnxValueConverter,
                                     outputType, outputTags, outputSchemas, outputFailureTag, outputFailureSchema))
                             .withOutputTags(mainTupleTag, tupleTagList));
@@ -533,6 +540,7 @@ public class ONNXTransform implements TransformModule {
             private final ModelParameter model;
             private final List<InferenceSetting> inferences;
             private final Integer bufferSize;
+            private final Integer bufferIntervalSeconds;
 
             private final SchemaUtil.SchemaConverter<InputSchemaT,RuntimeSchemaT> schemaConverter;
             private final OnnxValueConverter onnxValueConverter;
@@ -549,9 +557,13 @@ public class ONNXTransform implements TransformModule {
 
             private transient List<RuntimeSchemaT> outputSchemas;
             private transient OrtEnvironment environment;
+            private transient OrtSession session;
             private static final Map<String, OrtSession> sessions = new HashMap<>();// Collections.synchronizedMap(new HashMap<>());
+            // number of DoFn instances using the session. the session is closed when the last instance is torn down.
+            private static final Map<String, Integer> sessionReferences = new HashMap<>();
 
-            private transient List<UnionValue> buffer;
+            private transient boolean batchable;
+            private transient Map<BoundedWindow, WindowBuffer> buffers;
 
 
             public InferenceDoFn(
@@ -559,6 +571,7 @@ public class ONNXTransform implements TransformModule {
                     final ModelParameter model,
                     final List<InferenceSetting> inferences,
                     final Integer bufferSize,
+                    final Integer bufferIntervalSeconds,
                     final SchemaUtil.SchemaConverter<InputSchemaT,RuntimeSchemaT> schemaConverter,
                     final OnnxValueConverter onnxValueConverter,
                     final DataType outputType,
@@ -571,6 +584,7 @@ public class ONNXTransform implements TransformModule {
                 this.model = model;
                 this.inferences = inferences;
                 this.bufferSize = bufferSize;
+                this.bufferIntervalSeconds = bufferIntervalSeconds;
 
                 this.schemaConverter = schemaConverter;
                 this.onnxValueConverter = onnxValueConverter;
@@ -611,9 +625,13 @@ public class ONNXTransform implements TransformModule {
                         .collect(Collectors.toList());
 
                 this.environment = OrtEnvironment.getEnvironment();
-                createSession(name, model, environment);
-
-                this.buffer = new ArrayList<>();
+                this.session = getOrCreateSession(name, model, environment);
+                this.batchable = ONNXRuntimeUtil.isBatchable(session.getInputInfo())
+                        && ONNXRuntimeUtil.isBatchable(session.getOutputInfo());
+                if(bufferSize > 1 && !batchable) {
+                    LOG.warn("onnx module: " + name + " model does not have dynamic batch dimension. bufferSize: " + bufferSize + " is ignored");
+                }
+                this.buffers = new LinkedHashMap<>();
 
                 for(final InferenceSetting inference : inferences) {
                     inference.setup();
@@ -626,24 +644,28 @@ public class ONNXTransform implements TransformModule {
                 closeSession(name);
             }
 
-            /*
             @StartBundle
             public void startBundle(final StartBundleContext c) {
-                this.buffer.clear();
+                this.buffers.clear();
             }
 
             @FinishBundle
             public void finishBundle(final FinishBundleContext c) throws OrtException {
-                if(buffer.size() > 0) {
-                    inference(buffer, receiver);
-                    buffer.clear();
+                for(final WindowBuffer buffer : buffers.values()) {
+                    if(buffer.elements.isEmpty()) {
+                        continue;
+                    }
+                    for(final BufferedOutput<T> output : inference(buffer.elements)) {
+                        c.output(output.tag, output.value, output.timestamp, output.window);
+                    }
                 }
+                buffers.clear();
             }
-             */
 
             @ProcessElement
             public void processElement(
                     final ProcessContext c,
+                    final BoundedWindow window,
                     final MultiOutputReceiver receiver) throws OrtException {
 
                 final UnionValue element = c.element();
@@ -651,24 +673,40 @@ public class ONNXTransform implements TransformModule {
                     return;
                 }
 
-                /*
-                buffer.add(element);
-                if(buffer.size() >= bufferSize) {
-                    inference(buffer, receiver);
-                    buffer.clear();
+                if(bufferSize <= 1 || !batchable) {
+                    final List<BufferedOutput<T>> results = inference(List.of(new BufferedElement(element, c.timestamp(), window)));
+                    for(final BufferedOutput<T> result : results) {
+                        receiver.get(result.tag).output(result.value);
+                    }
+                    return;
                 }
-                 */
 
-                inference(List.of(element), receiver, c.timestamp());
+                final WindowBuffer buffer = buffers.computeIfAbsent(window, w -> new WindowBuffer());
+                if(buffer.elements.isEmpty()) {
+                    buffer.startMillis = System.currentTimeMillis();
+                }
+                buffer.elements.add(new BufferedElement(element, c.timestamp(), window));
+                if(buffer.elements.size() >= bufferSize
+                        || System.currentTimeMillis() - buffer.startMillis >= bufferIntervalSeconds * 1000L) {
+                    // emit the micro-batch as soon as it completes. every buffered element shares the current window.
+                    for(final BufferedOutput<T> result : inference(buffer.elements)) {
+                        receiver.get(result.tag).outputWithTimestamp(result.value, result.timestamp);
+                    }
+                    buffer.elements.clear();
+                }
+            }
 
+            @Override
+            public org.joda.time.Duration getAllowedTimestampSkew() {
+                // buffered outputs keep their own timestamps, which may precede the element that completed the batch.
+                return org.joda.time.Duration.millis(Long.MAX_VALUE);
             }
 
-            private void inference(
-                    final List<UnionValue> unionValues,
-                    final MultiOutputReceiver receiver,
-                    final Instant timestamp)
-                    throws OrtException {
+            private List<BufferedOutput<T>> inference(final List<BufferedElement> elements) throws OrtException {
 
+                final List<UnionValue> unionValues = elements.stream()
+                        .map(e -> e.unionValue)
+                        .toList();
                 final List<Map<String,Object>> updatesList = unionValues.stream()
                         .map(UnionValue::asPrimitiveMap)
                         .toList();
@@ -691,10 +729,16 @@ public class ONNXTransform implements TransformModule {
                         }
                     }
 
-                    final OrtSession session = getOrCreateSession(name, model, environment);
+                    if(targetUnionValues.isEmpty()) {
+                        continue;
+                    }
+
                     final Map<String, OnnxTensor> inputs = UnionValueToOnnxConverter.convert(environment, session.getInputInfo(), targetUnionValues, renameFieldsList);
                     try(final OrtSession.Result result = session.run(inputs, requestedOutputs)) {
-                        final List<Map<String,Object>> updates = onnxValueConverter.convert(result);
+                        final List<Map<String,Object>> updates = onnxValueConverter.convert(result, session.getOutputInfo());
+                        if(updates.size() != targetUnionValues.size()) {
+                            throw new IllegalStateException("onnx module: " + name + " inference output size: " + updates.size() + " does not match input size: " + targetUnionValues.size());
+                        }
                         for(int targetUnionValueIndex=0; targetUnionValueIndex<targetUnionValues.size(); targetUnionValueIndex++) {
                             final Map<String, Object> values = updates.get(targetUnionValueIndex);
                             final Integer unionValueIndex = unionValueIndexMap.get(targetUnionValueIndex);
@@ -711,11 +755,18 @@ public class ONNXTransform implements TransformModule {
                                 updatesList.get(unionValueIndex).putAll(renamedValues);
                             }
                         }
+                    } finally {
+                        for(final OnnxTensor tensor : inputs.values()) {
+                            tensor.close();
+                        }
                     }
                 }
 
+                final List<BufferedOutput<T>> results = new ArrayList<>(unionValues.size());
                 for(int unionValueIndex=0; unionValueIndex<unionValues.size(); unionValueIndex++) {
+                    final BufferedElement element = elements.get(unionValueIndex);
                     final UnionValue unionValue = unionValues.get(unionValueIndex);
+                    final Instant timestamp = element.timestamp;
                     final TupleTag<T> outputTag = outputTags.get(unionValue.getIndex());
                     final Map<String, Object> values = updatesList.get(unionValueIndex);
                     final InferenceSetting inference = inferences.get(unionValue.getIndex());
@@ -728,11 +779,13 @@ public class ONNXTransform implements TransformModule {
                         output = (T) (UnionValue.merge(unionValue, outputSchema, values, outputType));
                     }
 
-                    receiver.get(outputTag).output(output);
+                    results.add(new BufferedOutput<>(outputTag, output, element.timestamp, element.window));
                 }
+                return results;
             }
 
             synchronized static private OrtSession getOrCreateSession(final String name, final ModelParameter model, final OrtEnvironment environment) throws OrtException {
+                sessionReferences.merge(name, 1, Integer::sum);
                 if(sessions.containsKey(name)) {
                     final OrtSession session = sessions.get(name);
                     if(session != null) {
@@ -765,7 +818,7 @@ public class ONNXTransform implements TransformModule {
                             LOG.warn("setup onnx module: " + name + " is creating session. skipped to load extensions library");
                         }
 
-                        final byte[] bytes = StorageUtil.readBytes(model.getPath());
+                        final byte[] bytes = ONNXRuntimeUtil.readModel(model.getPath());
                         final OrtSession session = environment.createSession(bytes, sessionOptions);
                         sessions.put(name, session);
                         LOG.info("setup onnx module: " + name + " created session");
@@ -777,6 +830,12 @@ public class ONNXTransform implements TransformModule {
             }
 
             synchronized static private void closeSession(final String name) {
+                final int references = sessionReferences.getOrDefault(name, 1) - 1;
+                if(references > 0) {
+                    sessionReferences.put(name, references);
+                    return;
+                }
+                sessionReferences.remove(name);
                 if(sessions.containsKey(name)) {
                     try(final OrtSession session = sessions.remove(name);) {
                         LOG.info("teardown onnx module: " + name + " closed session");
@@ -789,8 +848,45 @@ public class ONNXTransform implements TransformModule {
         }
     }
 
+    private static class BufferedElement {
+
+        private final UnionValue unionValue;
+        private final Instant timestamp;
+        private final BoundedWindow window;
+
+        BufferedElement(final UnionValue unionValue, final Instant timestamp, final BoundedWindow window) {
+            this.unionValue = unionValue;
+            this.timestamp = timestamp;
+            this.window = window;
+        }
+
+    }
+
+    private static class WindowBuffer {
+
+        private final List<BufferedElement> elements = new ArrayList<>();
+        private long startMillis;
+
+    }
+
+    private static class BufferedOutput<T> {
+
+        private final TupleTag<T> tag;
+        private final T value;
+        private final Instant timestamp;
+        private final BoundedWindow window;
+
+        BufferedOutput(final TupleTag<T> tag, final T value, final Instant timestamp, final BoundedWindow window) {
+            this.tag = tag;
+            this.value = value;
+            this.timestamp = timestamp;
+            this.window = window;
+        }
+
+    }
+
     private interface OnnxValueConverter extends Serializable {
-        List<Map<String, Object>> convert(OrtSession.Result result);
+        List<Map<String, Object>> convert(OrtSession.Result result, Map<String, NodeInfo> outputsInfo) throws OrtException;
     }
 
 }
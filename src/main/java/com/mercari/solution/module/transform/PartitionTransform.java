@@ -15,6 +15,7 @@ import com.mercari.solution.util.Filter;
 import com.mercari.solution.util.converter.RowToMutationConverter;
 import com.mercari.solution.util.converter.RowToRecordConverter;
 import com.mercari.solution.util.pipeline.select.SelectFunction;
+import com.mercari.solution.util.pipeline.select.SelectPlan;
 import com.mercari.solution.util.schema.*;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.beam.sdk.coders.RowCoder;
@@ -322,20 +323,22 @@ public class PartitionTransform implements TransformModule {
 
         private class PartitionDoFn extends DoFn<T, T> {
 
-            private transient List<KV<TupleTag<T>, Filter.ConditionNode>> conditions;
+            private transient List<KV<TupleTag<T>, Filter.CompiledCondition>> conditions;
             private transient Map<TupleTag<T>, RuntimeSchemaT> runtimeOutputSchemas;
+            private transient Map<TupleTag<T>, SelectPlan> selectPlans;
 
             @Setup
             public void setup() {
                 this.conditions = conditionJsons.stream()
                         .map(kv -> KV.of(
                                 kv.getKey(),
-                                Filter.parse(new Gson().fromJson(kv.getValue(), JsonElement.class))))
+                                Filter.compile(Filter.parse(new Gson().fromJson(kv.getValue(), JsonElement.class)))))
                         .collect(Collectors.toList());
-                for(List<SelectFunction> selectFunctions : selectFunctionsMap.values()) {
-                    for(SelectFunction selectFunction: selectFunctions) {
-                        selectFunction.setup();
-                    }
+                this.selectPlans = new HashMap<>();
+                for(final Map.Entry<TupleTag<T>, List<SelectFunction>> entry : selectFunctionsMap.entrySet()) {
+                    final SelectPlan selectPlan = SelectPlan.of(entry.getValue(), inputType, inputType);
+                    selectPlan.setup();
+                    this.selectPlans.put(entry.getKey(), selectPlan);
                 }
 
                 this.runtimeOutputSchemas = outputSchemas.entrySet()
@@ -349,17 +352,17 @@ public class PartitionTransform implements TransformModule {
             public void processElement(ProcessContext c) {
                 final T element = c.element();
                 boolean output = false;
-                for (final KV<TupleTag<T>, Filter.ConditionNode> condition : conditions) {
+                for (final KV<TupleTag<T>, Filter.CompiledCondition> condition : conditions) {
                     if (condition.getKey() == null) {
                         continue;
                     }
-                    if (Filter.filter(element, valueGetter, condition.getValue())) {
-                        final List<SelectFunction> selectFunctions = selectFunctionsMap.get(condition.getKey());
+                    if (condition.getValue().test(element, valueGetter)) {
+                        final SelectPlan selectPlan = selectPlans.get(condition.getKey());
                         final T result;
-                        if(selectFunctions.size() > 0) {
+                        if(!selectPlan.isEmpty()) {
                             final RuntimeSchemaT schema = runtimeOutputSchemas.get(condition.getKey());
-                            final Map<String, Object> values = SelectFunction.apply(selectFunctions, element, inputType, inputType, c.timestamp());
-                            result = valueCreator.create(schema, values);
+                            selectPlan.apply(element, c.timestamp());
+                            result = selectPlan.create(schema, valueCreator);
                         } else {
                             result = element;
                         }
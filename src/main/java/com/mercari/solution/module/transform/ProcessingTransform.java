@@ -1029,7 +1029,7 @@ public class ProcessingTransform implements TransformModule {
                 super(name, fields, processors, bufferSizes, bufferTypes, bufferSizeUnits, targetSources);
 
                 this.bufferSpec = StateSpecs.value(ProcessingBuffer.coder());
-                this.stateSpec = StateSpecs.value(SerializableCoder.of(ProcessingState.class));
+                this.stateSpec = StateSpecs.value(ProcessingState.coder());
                 this.bufferUpdateIntervalCounterSpec = StateSpecs.value(VarIntCoder.of());
             }
 
@@ -1071,7 +1071,7 @@ public class ProcessingTransform implements TransformModule {
                 super(name, fields, processors, bufferSizes, bufferTypes, bufferSizeUnits, targetSources);
 
                 this.bufferSpec = StateSpecs.value(ProcessingBuffer.coder());
-                this.stateSpec = StateSpecs.value(SerializableCoder.of(ProcessingState.class));
+                this.stateSpec = StateSpecs.value(ProcessingState.coder());
                 this.bufferUpdateIntervalCounterSpec = StateSpecs.value(VarIntCoder.of());
             }
 
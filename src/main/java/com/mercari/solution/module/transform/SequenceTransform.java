@@ -22,8 +22,13 @@ import org.apache.avro.generic.GenericRecord;
 import org.apache.beam.sdk.coders.*;
 import org.apache.beam.sdk.extensions.avro.coders.AvroCoder;
 import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.state.OrderedListState;
 import org.apache.beam.sdk.state.StateSpec;
 import org.apache.beam.sdk.state.StateSpecs;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.state.Timer;
+import org.apache.beam.sdk.state.TimerSpec;
+import org.apache.beam.sdk.state.TimerSpecs;
 import org.apache.beam.sdk.state.ValueState;
 import org.apache.beam.sdk.transforms.*;
 import org.apache.beam.sdk.transforms.windowing.*;
@@ -48,6 +53,7 @@ public class SequenceTransform implements TransformModule {
         private String inputName;
         private String stateName;
         private JsonElement sequence;
+        private ProcessingMode processingMode;
 
         public List<String> getGroupFields() {
             return groupFields;
@@ -65,6 +71,10 @@ public class SequenceTransform implements TransformModule {
             return sequence;
         }
 
+        public ProcessingMode getProcessingMode() {
+            return processingMode;
+        }
+
         public void validate() {
             final List<String> errorMessages = new ArrayList<>();
             if(this.sequence == null || this.sequence.isJsonNull()) {
@@ -79,10 +89,18 @@ public class SequenceTransform implements TransformModule {
             if(this.groupFields == null) {
                 this.groupFields = new ArrayList<>();
             }
+            if(this.processingMode == null) {
+                this.processingMode = ProcessingMode.buffer;
+            }
         }
 
     }
 
+    public enum ProcessingMode implements Serializable {
+        buffer,
+        eventTime
+    }
+
     @Override
     public String getName() {
         return "sequence";
@@ -143,6 +161,7 @@ public class SequenceTransform implements TransformModule {
                             parameters.getInputName(),
                             null,
                             parameters.getGroupFields(),
+                            parameters.getProcessingMode(),
                             sequencers,
                             input.getSchema(),
                             stateRowSchema,
@@ -182,6 +201,7 @@ public class SequenceTransform implements TransformModule {
                                     parameters.getInputName(),
                                     parameters.getStateName(),
                                     parameters.getGroupFields(),
+                                    parameters.getProcessingMode(),
                                     sequencers,
                                     input.getSchema(),
                                     stateRowSchema,
@@ -225,6 +245,7 @@ public class SequenceTransform implements TransformModule {
                                     parameters.getInputName(),
                                     parameters.getStateName(),
                                     parameters.getGroupFields(),
+                                    parameters.getProcessingMode(),
                                     sequencers,
                                     input.getSchema(),
                                     stateRowSchema,
@@ -281,6 +302,7 @@ public class SequenceTransform implements TransformModule {
                             parameters.getInputName(),
                             null,
                             parameters.getGroupFields(),
+                            parameters.getProcessingMode(),
                             sequencers,
                             input.getAvroSchema().toString(),
                             stateAvroSchema.toString(),
@@ -320,6 +342,7 @@ public class SequenceTransform implements TransformModule {
                                     parameters.getInputName(),
                                     parameters.getStateName(),
                                     parameters.getGroupFields(),
+                                    parameters.getProcessingMode(),
                                     sequencers,
                                     input.getAvroSchema().toString(),
                                     stateAvroSchema.toString(),
@@ -362,6 +385,7 @@ public class SequenceTransform implements TransformModule {
                                     parameters.getInputName(),
                                     parameters.getStateName(),
                                     parameters.getGroupFields(),
+                                    parameters.getProcessingMode(),
                                     sequencers,
                                     input.getAvroSchema().toString(),
                                     stateAvroSchema.toString(),
@@ -418,6 +442,7 @@ public class SequenceTransform implements TransformModule {
                             parameters.getInputName(),
                             null,
                             parameters.getGroupFields(),
+                            parameters.getProcessingMode(),
                             sequencers,
                             input.getSpannerType(),
                             stateType,
@@ -458,6 +483,7 @@ public class SequenceTransform implements TransformModule {
                                     parameters.getInputName(),
                                     parameters.getStateName(),
                                     parameters.getGroupFields(),
+                                    parameters.getProcessingMode(),
                                     sequencers,
                                     input.getSpannerType(),
                                     stateType,
@@ -518,6 +544,7 @@ public class SequenceTransform implements TransformModule {
         private final TupleTag<StateT> inputStateTag;
 
         private final List<String> groupFields;
+        private final ProcessingMode processingMode;
         private final List<Sequencer> sequencers;
 
         private final InputSchemaT inputSchema;
@@ -553,6 +580,7 @@ public class SequenceTransform implements TransformModule {
                         final String inputName,
                         final String stateName,
                         final List<String> groupFields,
+                        final ProcessingMode processingMode,
                         final List<Sequencer> sequencers,
                         final InputSchemaT inputSchema,
                         final InputSchemaT stateSchema,
@@ -586,6 +614,7 @@ public class SequenceTransform implements TransformModule {
             this.inputName = inputName;
             this.stateName = stateName;
             this.groupFields = groupFields;
+            this.processingMode = processingMode;
             this.sequencers = sequencers;
 
             this.inputSchema = inputSchema;
@@ -631,6 +660,7 @@ public class SequenceTransform implements TransformModule {
                         inputName,
                         stateName,
                         groupFields,
+                        processingMode,
                         sequencers,
                         stateStateSchema,
                         stateOutputSchema,
@@ -667,6 +697,7 @@ public class SequenceTransform implements TransformModule {
                     inputName,
                     stateName,
                     groupFields,
+                    processingMode,
                     sequencers,
                     stateSchema,
                     outputSchema,
@@ -734,6 +765,7 @@ public class SequenceTransform implements TransformModule {
         public final TupleTag<T> outputStateTag;
 
         private final List<String> groupFields;
+        private final ProcessingMode processingMode;
         private final List<Sequencer> sequencers;
 
         private final InputSchemaT stateSchema;
@@ -754,6 +786,7 @@ public class SequenceTransform implements TransformModule {
                   final String inputName,
                   final String stateName,
                   final List<String> groupFields,
+                  final ProcessingMode processingMode,
                   final List<Sequencer> sequencers,
                   final InputSchemaT stateSchema,
                   final InputSchemaT outputSchema,
@@ -773,6 +806,7 @@ public class SequenceTransform implements TransformModule {
             this.stateName = stateName;
 
             this.groupFields = groupFields;
+            this.processingMode = processingMode;
             this.sequencers = sequencers;
 
             this.stateSchema = stateSchema;
@@ -799,7 +833,14 @@ public class SequenceTransform implements TransformModule {
 
             final String processName;
             final SequenceDoFn<InputSchemaT,RuntimeSchemaT,T> dofn;
-            if(PCollection.IsBounded.BOUNDED.equals(input.isBounded())) {
+            if(OptionUtil.isStreaming(input) && ProcessingMode.eventTime.equals(processingMode)) {
+                final boolean bounded = PCollection.IsBounded.BOUNDED.equals(input.isBounded());
+                processName = "ProcessSequenceEventTime";
+                dofn = new SequenceEventTimeDoFn(nested, inputName, stateName, groupFields, sequencers,
+                        stateSchema, outputSchema, stateFields, schemaConverter,
+                        valueGetter, valueCreator, valuesSetter, stringGetter, timestampConverter,
+                        inputCoder, stateCoder, bounded, outputMainTag, outputStateTag);
+            } else if(PCollection.IsBounded.BOUNDED.equals(input.isBounded())) {
                 if(OptionUtil.isStreaming(input)) {
                     processName = "ProcessSequenceStreamingBatch";
                     dofn = new SequenceStreamingBatchDoFn(nested, inputName, stateName, groupFields, sequencers,
@@ -932,6 +973,43 @@ public class SequenceTransform implements TransformModule {
                     final ValueState<Long> timestampState,
                     final boolean outputState) {
 
+                final T newState = process(element, timestamp, outputReceiver, valueState.read(), timestampState, outputState);
+                if(newState != null) {
+                    valueState.write(newState);
+                }
+            }
+
+            /**
+             * Applies sequencers to the inputs sorted by event time, reading and writing the state only once for the batch.
+             */
+            protected void processElements(
+                    final String key,
+                    final Iterable<TimestampedValue<T>> elements,
+                    final MultiOutputReceiver outputReceiver,
+                    final ValueState<T> valueState,
+                    final ValueState<Long> timestampState) {
+
+                final T currentState = valueState.read();
+                T state = currentState;
+                for(final TimestampedValue<T> element : elements) {
+                    final T newState = process(KV.of(key, element.getValue()), element.getTimestamp(), outputReceiver, state, timestampState, false);
+                    if(newState != null) {
+                        state = newState;
+                    }
+                }
+                if(state != currentState) {
+                    valueState.write(state);
+                }
+            }
+
+            private T process(
+                    final KV<String, T> element,
+                    final Instant timestamp,
+                    final MultiOutputReceiver outputReceiver,
+                    final T currentState,
+                    final ValueState<Long> timestampState,
+                    final boolean outputState) {
+
                 final T input;
                 final T state;
                 if(nested) {
@@ -945,14 +1023,14 @@ public class SequenceTransform implements TransformModule {
                             final Long stateCreatedMillis = Optional.ofNullable(timestampState.read()).orElse(0L);
                             if (timestamp.getMillis() < stateCreatedMillis) {
                                 LOG.warn("input timestamp: " + timestamp + " is lesser than state timestamp: " + DateTimeUtil.toJodaInstant(stateCreatedMillis));
-                                return;
+                                return null;
                             }
                         }
                         input = getNestedInput(merged, inputName);
-                        state = getState(valueState, merged, stateName);
+                        state = getState(currentState, merged, stateName);
                     } else if(sourceName.equals(stateName)) {
                         input = null;
-                        state = getState(valueState, merged, stateName);
+                        state = getState(currentState, merged, stateName);
                         if(timestampState != null) {
                             final Long stateCreatedMillis = (Long) valueGetter.getValue(state, "__timestamp");
                             timestampState.write(stateCreatedMillis);
@@ -962,7 +1040,7 @@ public class SequenceTransform implements TransformModule {
                     }
                 } else {
                     input = element.getValue();
-                    state = getState(valueState, null, stateName);
+                    state = getState(currentState, null, stateName);
                 }
 
                 final Map<String, Object> updatingValues = new HashMap<>();
@@ -989,19 +1067,18 @@ public class SequenceTransform implements TransformModule {
                     updatingValues.put(groupField, valueGetter.getValue(input != null ? input : state, groupField));
                 }
                 final T newState = updateState(state, updatingValues);
-                valueState.write(newState);
 
                 if(outputState) {
                     outputReceiver.get(outputStateTag).output(newState);
                 }
+                return newState;
             }
 
             T updateState(final T state, final Map<String,Object> values) {
                 return valuesSetter.setValues(runtimeStateSchema, state, values);
             }
 
-            private T getState(final ValueState<T> valueState, final T input, final String stateInputName) {
-                final T state = valueState.read();
+            private T getState(final T state, final T input, final String stateInputName) {
                 if(state != null) {
                     return state;
                 } else if(nested) {
@@ -1241,6 +1318,174 @@ public class SequenceTransform implements TransformModule {
 
         }
 
+        private class SequenceEventTimeDoFn extends SequenceDoFn<InputSchemaT,RuntimeSchemaT,T> {
+
+            private static final String STATE_ID_KEY = "sequenceEventTimeKey";
+            private static final String STATE_ID_BUFFER = "sequenceEventTimeBuffer";
+            private static final String STATE_ID_STATE_TIMESTAMP = "sequenceEventTimeStateTimestamp";
+            private static final String STATE_ID_TIMER_TIMESTAMP = "sequenceEventTimeTimerTimestamp";
+            private static final String STATE_ID_LAST_TIMESTAMP = "sequenceEventTimeLastTimestamp";
+            private static final String TIMER_ID = "sequenceEventTimeTimer";
+
+            @StateId(STATE_ID_KEY)
+            private final StateSpec<ValueState<String>> keySpec;
+            @StateId(STATE_ID_BUFFER)
+            private final StateSpec<OrderedListState<T>> bufferSpec;
+            @StateId(STATE_ID_STATE)
+            private final StateSpec<ValueState<T>> stateSpec;
+            @StateId(STATE_ID_STATE_TIMESTAMP)
+            private final StateSpec<ValueState<Long>> stateTimestampSpec;
+            @StateId(STATE_ID_TIMER_TIMESTAMP)
+            private final StateSpec<ValueState<Long>> timerTimestampSpec;
+            @StateId(STATE_ID_LAST_TIMESTAMP)
+            private final StateSpec<ValueState<Long>> lastTimestampSpec;
+            @TimerId(TIMER_ID)
+            private final TimerSpec timerSpec;
+
+            private final boolean bounded;
+
+            SequenceEventTimeDoFn(final Boolean nested,
+                                  final String inputName,
+                                  final String stateName,
+                                  final List<String> groupFields,
+                                  final List<Sequencer> sequencers,
+                                  final InputSchemaT inputSchema,
+                                  final InputSchemaT inputStateSchema,
+                                  final List<String> stateFields,
+                                  final SchemaUtil.SchemaConverter<InputSchemaT, RuntimeSchemaT> schemaConverter,
+                                  final SchemaUtil.ValueGetter<T> valueGetter,
+                                  final SchemaUtil.ValueCreator<RuntimeSchemaT,T> valueCreator,
+                                  final SchemaUtil.ValuesSetter<RuntimeSchemaT,T> valuesSetter,
+                                  final SchemaUtil.StringGetter<T> stringGetter,
+                                  final SchemaUtil.TimestampConverter timestampConverter,
+                                  final Coder<T> inputCoder,
+                                  final Coder<T> stateCoder,
+                                  final boolean bounded,
+                                  final TupleTag<T> outputMainTag,
+                                  final TupleTag<T> outputStateTag) {
+
+                super(nested, inputName, stateName, groupFields, sequencers,
+                        inputSchema, inputStateSchema, stateFields, schemaConverter,
+                        valueGetter, valueCreator, valuesSetter, stringGetter, timestampConverter,
+                        outputMainTag, outputStateTag);
+
+                this.keySpec = StateSpecs.value(StringUtf8Coder.of());
+                this.bufferSpec = StateSpecs.orderedList(inputCoder);
+                this.stateSpec = StateSpecs.value(stateCoder);
+                this.stateTimestampSpec = StateSpecs.value(VarLongCoder.of());
+                this.timerTimestampSpec = StateSpecs.value(VarLongCoder.of());
+                this.lastTimestampSpec = StateSpecs.value(VarLongCoder.of());
+                this.timerSpec = TimerSpecs.timer(TimeDomain.EVENT_TIME);
+                this.bounded = bounded;
+            }
+
+            @Setup
+            public void setup() {
+                super.setup();
+            }
+
+            @ProcessElement
+            public void processElement(
+                    final @Element KV<String, T> element,
+                    final @Timestamp Instant timestamp,
+                    final @StateId(STATE_ID_KEY) ValueState<String> keySpec,
+                    final @StateId(STATE_ID_BUFFER) OrderedListState<T> bufferSpec,
+                    final @AlwaysFetched @StateId(STATE_ID_TIMER_TIMESTAMP) ValueState<Long> timerTimestampSpec,
+                    final @TimerId(TIMER_ID) Timer timer) {
+
+                keySpec.write(element.getKey());
+                bufferSpec.add(TimestampedValue.of(element.getValue(), timestamp));
+
+                // keep the timer at the earliest pending input, so that inputs are processed as soon as the watermark passes them
+                final Long timerMillis = timerTimestampSpec.read();
+                if(timerMillis == null || timestamp.getMillis() < timerMillis) {
+                    timer.set(timestamp);
+                    timerTimestampSpec.write(timestamp.getMillis());
+                }
+            }
+
+            @OnTimer(TIMER_ID)
+            public void onTimer(
+                    final @Timestamp Instant timestamp,
+                    final DoFn.MultiOutputReceiver outputReceiver,
+                    final @AlwaysFetched @StateId(STATE_ID_KEY) ValueState<String> keySpec,
+                    final @StateId(STATE_ID_BUFFER) OrderedListState<T> bufferSpec,
+                    final @AlwaysFetched @StateId(STATE_ID_STATE) ValueState<T> stateSpec,
+                    final @StateId(STATE_ID_STATE_TIMESTAMP) ValueState<Long> stateTimestampSpec,
+                    final @StateId(STATE_ID_TIMER_TIMESTAMP) ValueState<Long> timerTimestampSpec,
+                    final @StateId(STATE_ID_LAST_TIMESTAMP) ValueState<Long> lastTimestampSpec,
+                    final @TimerId(TIMER_ID) Timer timer) {
+
+                final String key = keySpec.read();
+                if(key == null) {
+                    LOG.error("onTimer: key is null");
+                    return;
+                }
+
+                // inputs up to the timer timestamp are complete because the watermark has passed it
+                final Instant limit = timestamp.plus(Duration.millis(1));
+                final Iterable<TimestampedValue<T>> inputs = bufferSpec.readRange(BoundedWindow.TIMESTAMP_MIN_VALUE, limit);
+                processElements(key, inputs, outputReceiver, stateSpec, stateTimestampSpec);
+                bufferSpec.clearRange(BoundedWindow.TIMESTAMP_MIN_VALUE, limit);
+                lastTimestampSpec.write(timestamp.getMillis());
+
+                final Iterator<TimestampedValue<T>> pending = bufferSpec.readRange(limit, BoundedWindow.TIMESTAMP_MAX_VALUE).iterator();
+                if(pending.hasNext()) {
+                    final Instant next = pending.next().getTimestamp();
+                    timer.set(next);
+                    timerTimestampSpec.write(next.getMillis());
+                } else {
+                    timerTimestampSpec.clear();
+                }
+            }
+
+            @OnWindowExpiration
+            public void onWindowExpiration(
+                    final DoFn.MultiOutputReceiver outputReceiver,
+                    final @AlwaysFetched @StateId(STATE_ID_KEY) ValueState<String> keySpec,
+                    final @StateId(STATE_ID_BUFFER) OrderedListState<T> bufferSpec,
+                    final @AlwaysFetched @StateId(STATE_ID_STATE) ValueState<T> stateSpec,
+                    final @StateId(STATE_ID_STATE_TIMESTAMP) ValueState<Long> stateTimestampSpec,
+                    final @StateId(STATE_ID_TIMER_TIMESTAMP) ValueState<Long> timerTimestampSpec,
+                    final @AlwaysFetched @StateId(STATE_ID_LAST_TIMESTAMP) ValueState<Long> lastTimestampSpec) {
+
+                final String key = keySpec.read();
+                if(key == null) {
+                    LOG.error("onWindowExpiration: key is null");
+                    return;
+                }
+
+                // process inputs left by timers not fired before the expiration
+                processElements(key, bufferSpec.read(), outputReceiver, stateSpec, stateTimestampSpec);
+
+                if(bounded) {
+                    final T state = stateSpec.read();
+                    if(state == null) {
+                        LOG.error("onWindowExpiration: state is null");
+                    } else {
+                        final Map<String,Object> values = new HashMap<>();
+                        final Long lastMillis = lastTimestampSpec.read();
+                        values.put("__timestamp", lastMillis != null ? lastMillis : new Instant().getMillis());
+                        final T updatedState = updateState(state, values);
+                        outputReceiver.get(super.outputStateTag).output(updatedState);
+                    }
+                }
+
+                keySpec.clear();
+                bufferSpec.clear();
+                stateSpec.clear();
+                stateTimestampSpec.clear();
+                timerTimestampSpec.clear();
+                lastTimestampSpec.clear();
+            }
+
+            @Teardown
+            public void teardown() {
+                super.teardown();
+            }
+
+        }
+
     }
 
     private static Schema createSequenceStateSchema(final List<Sequencer> sequencers, final Schema inputSchema, final List<String> groupFields) {
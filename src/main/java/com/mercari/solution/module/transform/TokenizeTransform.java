@@ -14,6 +14,7 @@ import com.mercari.solution.util.schema.EntitySchemaUtil;
 import com.mercari.solution.util.schema.RowSchemaUtil;
 import com.mercari.solution.util.schema.StructSchemaUtil;
 import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.beam.sdk.coders.*;
 import org.apache.beam.sdk.extensions.avro.coders.AvroCoder;
@@ -38,8 +39,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.io.StringReader;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 
@@ -47,6 +48,10 @@ public class TokenizeTransform implements TransformModule {
 
     private static final Logger LOG = LoggerFactory.getLogger(TokenizeTransform.class);
 
+    // Number of token fields, Japanese tokenizer adds part of speech, inflection, base form and reading fields
+    private static final int TOKEN_FIELD_SIZE = 4;
+    private static final int JAPANESE_TOKEN_FIELD_SIZE = 10;
+
     private class TokenizeTransformParameters implements Serializable {
 
         private List<TokenizeParameter> fields;
@@ -93,6 +98,7 @@ public class TokenizeTransform implements TransformModule {
             private List<TokenAnalyzer.CharFilterConfig> charFilters;
             private TokenAnalyzer.TokenizerConfig tokenizer;
             private List<TokenAnalyzer.TokenFilterConfig> filters;
+            private Boolean columnar;
 
             public String getName() {
                 return name;
@@ -134,6 +140,14 @@ public class TokenizeTransform implements TransformModule {
                 this.filters = filters;
             }
 
+            public Boolean getColumnar() {
+                return columnar;
+            }
+
+            public void setColumnar(Boolean columnar) {
+                this.columnar = columnar;
+            }
+
             public List<String> validate(int n) {
                 final List<String> errorMessages = new ArrayList<>();
                 if (this.name == null) {
@@ -171,6 +185,9 @@ public class TokenizeTransform implements TransformModule {
 
             public void setDefault() {
                 this.tokenizer.setDefault();
+                if(this.columnar == null) {
+                    this.columnar = false;
+                }
 
                 if(this.charFilters == null) {
                     this.charFilters = new ArrayList<>();
@@ -218,9 +235,15 @@ public class TokenizeTransform implements TransformModule {
                     final Schema.Builder builder = RowSchemaUtil.toBuilder(input.getSchema());
                     final Map<String, Schema> inputFieldSchemas = new HashMap<>();
                     for(final TokenizeTransformParameters.TokenizeParameter field : parameters.getFields()) {
-                        final Schema fieldSchema = createOutputSchema(field);
-                        builder.addField(field.getName(), Schema.FieldType.array(Schema.FieldType.row(fieldSchema)).withNullable(true));
-                        inputFieldSchemas.put(field.getName(), fieldSchema);
+                        if(field.getColumnar()) {
+                            final Schema fieldSchema = createColumnarOutputSchema(field);
+                            builder.addField(field.getName(), Schema.FieldType.row(fieldSchema).withNullable(true));
+                            inputFieldSchemas.put(field.getName(), fieldSchema);
+                        } else {
+                            final Schema fieldSchema = createOutputSchema(field);
+                            builder.addField(field.getName(), Schema.FieldType.array(Schema.FieldType.row(fieldSchema)).withNullable(true));
+                            inputFieldSchemas.put(field.getName(), fieldSchema);
+                        }
                     }
                     final Schema outputSchema = builder.build();
                     final Transform<Row, Schema, Schema> transform = new Transform<>(
@@ -230,7 +253,7 @@ public class TokenizeTransform implements TransformModule {
                             s -> s,
                             RowSchemaUtil::getAsString,
                             RowSchemaUtil::merge,
-                            RowSchemaUtil::create);
+                            (s, values) -> Row.withSchema(s).attachValues(values));
                     final PCollection<Row> output = inputCollection.getCollection()
                             .apply(name, transform)
                             .setCoder(RowCoder.of(outputSchema));
@@ -242,11 +265,19 @@ public class TokenizeTransform implements TransformModule {
                     final SchemaBuilder.FieldAssembler<org.apache.avro.Schema> builder = AvroSchemaUtil.toBuilder(input.getAvroSchema());
                     final Map<String, String> inputFieldSchemas = new HashMap<>();
                     for(final TokenizeTransformParameters.TokenizeParameter field : parameters.getFields()) {
-                        final org.apache.avro.Schema fieldSchema = createOutputAvroSchema(field);
-                        builder.name(field.getName())
-                                .type(org.apache.avro.Schema.createArray(fieldSchema))
-                                .noDefault();
-                        inputFieldSchemas.put(field.getName(), fieldSchema.toString());
+                        if(field.getColumnar()) {
+                            final org.apache.avro.Schema fieldSchema = createColumnarOutputAvroSchema(field);
+                            builder.name(field.getName())
+                                    .type(fieldSchema)
+                                    .noDefault();
+                            inputFieldSchemas.put(field.getName(), fieldSchema.toString());
+                        } else {
+                            final org.apache.avro.Schema fieldSchema = createOutputAvroSchema(field);
+                            builder.name(field.getName())
+                                    .type(org.apache.avro.Schema.createArray(fieldSchema))
+                                    .noDefault();
+                            inputFieldSchemas.put(field.getName(), fieldSchema.toString());
+                        }
                     }
                     final org.apache.avro.Schema outputSchema = builder.endRecord();
                     final Transform<GenericRecord, String, org.apache.avro.Schema> transform = new Transform<>(
@@ -256,7 +287,13 @@ public class TokenizeTransform implements TransformModule {
                             AvroSchemaUtil::convertSchema,
                             AvroSchemaUtil::getAsString,
                             AvroSchemaUtil::merge,
-                            AvroSchemaUtil::create);
+                            (s, values) -> {
+                                final GenericData.Record record = new GenericData.Record(s);
+                                for(int i=0; i<values.length; i++) {
+                                    record.put(i, values[i]);
+                                }
+                                return record;
+                            });
                     final PCollection<GenericRecord> output = inputCollection.getCollection()
                             .apply(name, transform)
                             .setCoder(AvroCoder.of(outputSchema));
@@ -264,6 +301,7 @@ public class TokenizeTransform implements TransformModule {
                     break;
                 }
                 case STRUCT: {
+                    validateColumnar(parameters, input.getDataType());
                     final FCollection<Struct> inputCollection = (FCollection<Struct>) input;
                     final List<Type.StructField> fields = new ArrayList<>(input.getSpannerType().getStructFields());
                     final Map<String, Type> inputFieldSchemas = new HashMap<>();
@@ -280,7 +318,7 @@ public class TokenizeTransform implements TransformModule {
                             t -> t,
                             StructSchemaUtil::getAsString,
                             StructSchemaUtil::merge,
-                            StructSchemaUtil::create);
+                            TokenizeTransform::createTokenStruct);
                     final PCollection<Struct> output = inputCollection.getCollection()
                             .apply(name, transform)
                             .setCoder(SerializableCoder.of(Struct.class));
@@ -288,6 +326,7 @@ public class TokenizeTransform implements TransformModule {
                     break;
                 }
                 case ENTITY: {
+                    validateColumnar(parameters, input.getDataType());
                     final FCollection<Entity> inputCollection = (FCollection<Entity>) input;
                     final Schema.Builder builder = RowSchemaUtil.toBuilder(input.getSchema());
                     final Map<String, Schema> inputFieldSchemas = new HashMap<>();
@@ -304,7 +343,7 @@ public class TokenizeTransform implements TransformModule {
                             s -> s,
                             EntitySchemaUtil::getAsString,
                             EntitySchemaUtil::merge,
-                            EntitySchemaUtil::create);
+                            TokenizeTransform::createTokenEntity);
                     final PCollection<Entity> output = inputCollection.getCollection()
                             .apply(name, transform)
                             .setCoder(SerializableCoder.of(Entity.class));
@@ -329,7 +368,7 @@ public class TokenizeTransform implements TransformModule {
 
         private final StringGetter<T> stringGetter;
         private final ValuesSetter<T, RuntimeSchemaT> valuesSetter;
-        private final ValueCreator<T, RuntimeSchemaT> valueCreator;
+        private final TokenCreator<T, RuntimeSchemaT> tokenCreator;
 
         private Transform(final TokenizeTransformParameters parameters,
                           final InputSchemaT inputSchema,
@@ -337,7 +376,7 @@ public class TokenizeTransform implements TransformModule {
                           final SchemaConverter<InputSchemaT, RuntimeSchemaT> schemaConverter,
                           final StringGetter<T> stringGetter,
                           final ValuesSetter<T, RuntimeSchemaT> valuesSetter,
-                          final ValueCreator<T, RuntimeSchemaT> valueCreator) {
+                          final TokenCreator<T, RuntimeSchemaT> tokenCreator) {
 
             this.parameters = parameters;
             this.inputSchema = inputSchema;
@@ -345,7 +384,7 @@ public class TokenizeTransform implements TransformModule {
             this.schemaConverter = schemaConverter;
             this.stringGetter = stringGetter;
             this.valuesSetter = valuesSetter;
-            this.valueCreator = valueCreator;
+            this.tokenCreator = tokenCreator;
         }
 
         @Override
@@ -353,7 +392,7 @@ public class TokenizeTransform implements TransformModule {
             return input
                     .apply("Reshuffle", Reshuffle.viaRandomKey())
                     .apply("Tokenize", ParDo.of(new TokenizeDoFn(
-                            parameters.getFields(), stringGetter, valuesSetter, valueCreator, schemaConverter,
+                            parameters.getFields(), stringGetter, valuesSetter, tokenCreator, schemaConverter,
                             inputSchema, inputFieldSchemas)));
         }
 
@@ -363,7 +402,7 @@ public class TokenizeTransform implements TransformModule {
             private final List<TokenizeTransformParameters.TokenizeParameter> fields;
             private final StringGetter<T> stringGetter;
             private final ValuesSetter<T, RuntimeSchemaT> valuesSetter;
-            private final ValueCreator<T, RuntimeSchemaT> valueCreator;
+            private final TokenCreator<T, RuntimeSchemaT> tokenCreator;
             private final SchemaConverter<InputSchemaT, RuntimeSchemaT> schemaConverter;
             private final InputSchemaT inputSchema;
             private final Map<String, InputSchemaT> inputFieldSchemas;
@@ -375,7 +414,7 @@ public class TokenizeTransform implements TransformModule {
             public TokenizeDoFn(final List<TokenizeTransformParameters.TokenizeParameter> fields,
                                 final StringGetter<T> stringGetter,
                                 final ValuesSetter<T, RuntimeSchemaT> valuesSetter,
-                                final ValueCreator<T, RuntimeSchemaT> valueCreator,
+                                final TokenCreator<T, RuntimeSchemaT> tokenCreator,
                                 final SchemaConverter<InputSchemaT, RuntimeSchemaT> schemaConverter,
                                 final InputSchemaT inputSchema,
                                 final Map<String, InputSchemaT> inputFieldSchemas) {
@@ -383,7 +422,7 @@ public class TokenizeTransform implements TransformModule {
                 this.fields = fields;
                 this.stringGetter = stringGetter;
                 this.valuesSetter = valuesSetter;
-                this.valueCreator = valueCreator;
+                this.tokenCreator = tokenCreator;
                 this.schemaConverter = schemaConverter;
                 this.inputSchema = inputSchema;
                 this.inputFieldSchemas = inputFieldSchemas;
@@ -407,60 +446,78 @@ public class TokenizeTransform implements TransformModule {
                 final Map<String, Object> results = new HashMap<>();
                 for(final TokenizeTransformParameters.TokenizeParameter field : fields) {
                     final String text = stringGetter.getAsString(element, field.getInput());
-                    if(text != null) {
-                        final List<T> tokens = new ArrayList<>();
-                        final Analyzer analyzer = analyzers.get(field.getName());
-                        final List<Map<String, Object>> tokenMaps = extractTokens(analyzer, field.getName(), text, field.getTokenizer().getType());
-                        for(final Map<String, Object> tokenMap : tokenMaps) {
-                            final T token = valueCreator.create(runtimeFieldSchemas.get(field.getName()), tokenMap);
-                            tokens.add(token);
+                    final Analyzer analyzer = analyzers.get(field.getName());
+                    final RuntimeSchemaT fieldSchema = runtimeFieldSchemas.get(field.getName());
+                    final boolean japanese = TokenAnalyzer.TokenizerType.JapaneseTokenizer.equals(field.getTokenizer().getType());
+                    if(field.getColumnar()) {
+                        final Object[] columns = new Object[japanese ? JAPANESE_TOKEN_FIELD_SIZE : TOKEN_FIELD_SIZE];
+                        for(int i=0; i<columns.length; i++) {
+                            columns[i] = new ArrayList<>();
                         }
-                        results.put(field.getName(), tokens);
+                        extractTokens(analyzer, field.getName(), text, japanese, true, values -> {
+                            for(int i=0; i<columns.length; i++) {
+                                ((List<Object>) columns[i]).add(values[i]);
+                            }
+                        });
+                        results.put(field.getName(), tokenCreator.create(fieldSchema, columns));
                     } else {
-                        results.put(field.getName(), new ArrayList<>());
+                        final List<T> tokens = new ArrayList<>();
+                        extractTokens(analyzer, field.getName(), text, japanese, false,
+                                values -> tokens.add(tokenCreator.create(fieldSchema, values)));
+                        results.put(field.getName(), tokens);
                     }
                 }
                 final T output = valuesSetter.setValues(runtimeSchema, element, results);
                 c.output(output);
             }
 
-            private List<Map<String, Object>> extractTokens(final Analyzer analyzer,
-                                                            final String field,
-                                                            final String text,
-                                                            final TokenAnalyzer.TokenizerType type) {
-
-                final List<Map<String, Object>> tokens = new ArrayList<>();
-                try(final TokenStream tokenStream = analyzer.tokenStream(field, new StringReader(text))) {
+            /**
+             * Passes attribute values of each token ordered same as the token schema fields to consumer.
+             * The token stream components and the reader are reused by the analyzer, and the values array is reused between tokens if reuseValues.
+             */
+            private void extractTokens(final Analyzer analyzer,
+                                       final String field,
+                                       final String text,
+                                       final boolean japanese,
+                                       final boolean reuseValues,
+                                       final Consumer<Object[]> consumer) {
+
+                if(text == null) {
+                    return;
+                }
+                final int size = japanese ? JAPANESE_TOKEN_FIELD_SIZE : TOKEN_FIELD_SIZE;
+                try(final TokenStream tokenStream = analyzer.tokenStream(field, text)) {
+                    final CharTermAttribute cta = tokenStream.getAttribute(CharTermAttribute.class);
+                    final OffsetAttribute oa = tokenStream.getAttribute(OffsetAttribute.class);
+                    final TypeAttribute ta = tokenStream.getAttribute(TypeAttribute.class);
+                    final PartOfSpeechAttribute psa = japanese ? tokenStream.getAttribute(PartOfSpeechAttribute.class) : null;
+                    final InflectionAttribute ia = japanese ? tokenStream.getAttribute(InflectionAttribute.class) : null;
+                    final BaseFormAttribute bfa = japanese ? tokenStream.getAttribute(BaseFormAttribute.class) : null;
+                    final ReadingAttribute ra = japanese ? tokenStream.getAttribute(ReadingAttribute.class) : null;
+
+                    Object[] values = reuseValues ? new Object[size] : null;
                     tokenStream.reset();
                     while(tokenStream.incrementToken()) {
-                        final Map<String, Object> token = new HashMap<>();
-                        final CharTermAttribute cta = tokenStream.getAttribute(CharTermAttribute.class);
-                        final OffsetAttribute oa = tokenStream.getAttribute(OffsetAttribute.class);
-                        final TypeAttribute ta = tokenStream.getAttribute(TypeAttribute.class);
-                        token.put("token", cta.toString());
-                        token.put("startOffset", oa.startOffset());
-                        token.put("endOffset", oa.endOffset());
-                        token.put("type", ta.type());
-
-                        if(TokenAnalyzer.TokenizerType.JapaneseTokenizer.equals(type)) {
-                            final PartOfSpeechAttribute psa = tokenStream.getAttribute(PartOfSpeechAttribute.class);
-                            final InflectionAttribute ia = tokenStream.getAttribute(InflectionAttribute.class);
-                            final BaseFormAttribute bfa = tokenStream.getAttribute(BaseFormAttribute.class);
-                            final ReadingAttribute ra = tokenStream.getAttribute(ReadingAttribute.class);
-                            token.put("partOfSpeech", psa.getPartOfSpeech());
-                            token.put("inflectionForm", ia.getInflectionForm());
-                            token.put("inflectionType", ia.getInflectionType());
-                            token.put("baseForm", bfa.getBaseForm());
-                            token.put("pronunciation", ra.getPronunciation());
-                            token.put("reading", ra.getReading());
+                        if(!reuseValues) {
+                            values = new Object[size];
                         }
-
-                        tokens.add(token);
+                        values[0] = cta.toString();
+                        values[1] = oa.startOffset();
+                        values[2] = oa.endOffset();
+                        values[3] = ta.type();
+                        if(japanese) {
+                            values[4] = psa.getPartOfSpeech();
+                            values[5] = ia.getInflectionForm();
+                            values[6] = ia.getInflectionType();
+                            values[7] = bfa.getBaseForm();
+                            values[8] = ra.getPronunciation();
+                            values[9] = ra.getReading();
+                        }
+                        consumer.accept(values);
                     }
                     tokenStream.end();
-                    return tokens;
                 } catch (IOException e) {
-                    return tokens;
+                    LOG.warn("Failed to tokenize field: " + field + ", cause: " + e.getMessage());
                 }
             }
 
@@ -468,6 +525,51 @@ public class TokenizeTransform implements TransformModule {
 
     }
 
+    private static void validateColumnar(final TokenizeTransformParameters parameters, final DataType dataType) {
+        for(final TokenizeTransformParameters.TokenizeParameter field : parameters.getFields()) {
+            if(field.getColumnar()) {
+                throw new IllegalArgumentException("TokenizeTransform field: " + field.getName() + " columnar output is not supported for input type: " + dataType);
+            }
+        }
+    }
+
+    private static Struct createTokenStruct(final Type type, final Object[] values) {
+        final Struct.Builder builder = Struct.newBuilder();
+        final List<Type.StructField> fields = type.getStructFields();
+        for(int i=0; i<fields.size(); i++) {
+            final Type.StructField field = fields.get(i);
+            switch (field.getType().getCode()) {
+                case INT64 -> builder.set(field.getName()).to(values[i] == null ? null : ((Number) values[i]).longValue());
+                default -> builder.set(field.getName()).to((String) values[i]);
+            }
+        }
+        return builder.build();
+    }
+
+    private static Entity createTokenEntity(final Schema schema, final Object[] values) {
+        final Map<String, Object> map = new HashMap<>();
+        for(int i=0; i<values.length; i++) {
+            map.put(schema.getField(i).getName(), values[i]);
+        }
+        return EntitySchemaUtil.create(schema, map);
+    }
+
+    private static Schema createColumnarOutputSchema(final TokenizeTransformParameters.TokenizeParameter parameter) {
+        final Schema.Builder builder = Schema.builder();
+        for(final Schema.Field field : createOutputSchema(parameter).getFields()) {
+            builder.addField(field.getName(), Schema.FieldType.array(field.getType()));
+        }
+        return builder.build();
+    }
+
+    private static org.apache.avro.Schema createColumnarOutputAvroSchema(final TokenizeTransformParameters.TokenizeParameter parameter) {
+        final SchemaBuilder.FieldAssembler<org.apache.avro.Schema> builder = SchemaBuilder.record(parameter.getName()).fields();
+        for(final org.apache.avro.Schema.Field field : createOutputAvroSchema(parameter).getFields()) {
+            builder.name(field.name()).type(org.apache.avro.Schema.createArray(field.schema())).noDefault();
+        }
+        return builder.endRecord();
+    }
+
     //
     private static Schema createOutputSchema(final TokenizeTransformParameters.TokenizeParameter parameter) {
         final Schema.Builder builder = Schema.builder();
@@ -543,8 +645,11 @@ public class TokenizeTransform implements TransformModule {
         T setValues(final SchemaT schema, final T element, final Map<String, ? extends Object> values);
     }
 
-    private interface ValueCreator<T, SchemaT> extends Serializable {
-        T create(final SchemaT schema, final Map<String, Object> values);
+    /**
+     * Creates token value from values ordered same as the fields of schema.
+     */
+    private interface TokenCreator<T, SchemaT> extends Serializable {
+        T create(final SchemaT schema, final Object[] values);
     }
 
 }
@@ -437,6 +437,469 @@ public class Filter implements Serializable {
         }
     }
 
+    /**
+     * Compiles a condition tree into a short-circuiting predicate.
+     * Literals are parsed once per compared type, `in`/`not in` values are held in a hash set,
+     * and every distinct field referenced by the condition is read at most once per element.
+     * The result is not serializable and should be created in DoFn setup.
+     */
+    public static CompiledCondition compile(final ConditionNode condition) {
+        final List<String> variables = new ArrayList<>();
+        final CompiledNode root = compileNode(condition, variables);
+        return new CompiledCondition(root, variables);
+    }
+
+    public static class CompiledCondition {
+
+        private final CompiledNode root;
+        private final String[] variables;
+
+        private CompiledCondition(final CompiledNode root, final List<String> variables) {
+            this.root = root;
+            this.variables = variables.toArray(new String[0]);
+        }
+
+        public List<String> getVariables() {
+            return Arrays.asList(variables);
+        }
+
+        public <T> boolean test(final T element, final SchemaUtil.ValueGetter<T> getter) {
+            return test(element, getter, null);
+        }
+
+        public <T> boolean test(final T element, final SchemaUtil.ValueGetter<T> getter, final Map<String, Object> values) {
+            return test(new ElementSlots<>(variables, element, getter, values));
+        }
+
+        public boolean test(final Map<String, Object> values) {
+            return test(index -> values.get(variables[index]));
+        }
+
+        private boolean test(final Slots slots) {
+            try {
+                return root.test(slots);
+            } catch (final NodeAbortException e) {
+                // root may be a single leaf when the condition has only one child
+                return false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return root.toString();
+        }
+
+    }
+
+    private interface Slots {
+        Object get(int index);
+    }
+
+    private static class ElementSlots<T> implements Slots {
+
+        private static final Object UNLOADED = new Object();
+
+        private final String[] variables;
+        private final T element;
+        private final SchemaUtil.ValueGetter<T> getter;
+        private final Map<String, Object> values;
+        private final Object[] cache;
+
+        ElementSlots(final String[] variables,
+                     final T element,
+                     final SchemaUtil.ValueGetter<T> getter,
+                     final Map<String, Object> values) {
+
+            this.variables = variables;
+            this.element = element;
+            this.getter = getter;
+            this.values = values;
+            this.cache = new Object[variables.length];
+            Arrays.fill(this.cache, UNLOADED);
+        }
+
+        @Override
+        public Object get(final int index) {
+            final Object cached = cache[index];
+            if(cached != UNLOADED) {
+                return cached;
+            }
+            Object value = null;
+            if(values != null) {
+                value = values.get(variables[index]);
+            }
+            if(value == null) {
+                value = getter.getValue(element, variables[index]);
+            }
+            cache[index] = value;
+            return value;
+        }
+
+    }
+
+    private interface CompiledNode {
+        boolean test(Slots slots);
+    }
+
+    /**
+     * Thrown by expression leaves when exp4j rejects the bound variables.
+     * Same as the interpreter, the enclosing node evaluates to false in that case.
+     */
+    private static class NodeAbortException extends RuntimeException {
+
+        private static final NodeAbortException INSTANCE = new NodeAbortException();
+
+        private NodeAbortException() {
+            super(null, null, false, false);
+        }
+
+    }
+
+    private static class ConstantNode implements CompiledNode {
+
+        private final boolean value;
+
+        ConstantNode(final boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(final Slots slots) {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return Boolean.toString(value);
+        }
+
+    }
+
+    private static class AndNode implements CompiledNode {
+
+        private final CompiledNode[] children;
+
+        AndNode(final CompiledNode[] children) {
+            this.children = children;
+        }
+
+        @Override
+        public boolean test(final Slots slots) {
+            try {
+                for(final CompiledNode child : children) {
+                    if(!child.test(slots)) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (final NodeAbortException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "AND" + Arrays.toString(children);
+        }
+
+    }
+
+    private static class OrNode implements CompiledNode {
+
+        private final CompiledNode[] children;
+
+        OrNode(final CompiledNode[] children) {
+            this.children = children;
+        }
+
+        @Override
+        public boolean test(final Slots slots) {
+            try {
+                for(final CompiledNode child : children) {
+                    if(child.test(slots)) {
+                        return true;
+                    }
+                }
+                return false;
+            } catch (final NodeAbortException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "OR" + Arrays.toString(children);
+        }
+
+    }
+
+    private static abstract class LeafNode implements CompiledNode {
+
+        protected final Op op;
+        protected final Literal literal;
+        protected final Set<String> inValues;
+
+        LeafNode(final Op op, final JsonElement value) {
+            this.op = op;
+            this.literal = new Literal(value);
+            if((Op.IN.equals(op) || Op.NOT_IN.equals(op)) && !literal.isNull) {
+                if(!value.isJsonArray()) {
+                    throw new IllegalArgumentException("Condition `in` or `not in` value must be array. json: " + value);
+                }
+                this.inValues = new HashSet<>();
+                for(final JsonElement e : value.getAsJsonArray()) {
+                    this.inValues.add(e.getAsString());
+                }
+            } else {
+                this.inValues = null;
+            }
+        }
+
+        protected abstract Object value(Slots slots);
+
+        @Override
+        public boolean test(final Slots slots) {
+            final Object value = value(slots);
+            if(inValues != null && value != null) {
+                return inValues.contains(value.toString()) == Op.IN.equals(op);
+            }
+            return literal.is(value, op);
+        }
+
+    }
+
+    private static class FieldLeafNode extends LeafNode {
+
+        private final int slot;
+        private final String key;
+
+        FieldLeafNode(final String key, final int slot, final Op op, final JsonElement value) {
+            super(op, value);
+            this.key = key;
+            this.slot = slot;
+        }
+
+        @Override
+        protected Object value(final Slots slots) {
+            return slots.get(slot);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %s", key, op, literal.json);
+        }
+
+    }
+
+    private static class ExpressionLeafNode extends LeafNode {
+
+        private final Expression expression;
+        private final String expressionString;
+        private final String[] names;
+        private final int[] slots;
+
+        ExpressionLeafNode(final ConditionLeaf leaf, final List<String> variables) {
+            super(leaf.getOp(), leaf.getValue());
+            this.expression = ExpressionUtil.createDefaultExpression(leaf.expressionString, leaf.expressionVariables);
+            this.expressionString = leaf.expressionString;
+            this.names = expression.getVariableNames().toArray(new String[0]);
+            this.slots = new int[names.length];
+            for(int i=0; i<names.length; i++) {
+                this.slots[i] = slotOf(names[i], variables);
+            }
+        }
+
+        @Override
+        protected Object value(final Slots values) {
+            for(int i=0; i<names.length; i++) {
+                final Double variable = ExpressionUtil.getAsDouble(values.get(slots[i]), Double.NaN);
+                expression.setVariable(names[i], variable);
+            }
+            try {
+                final double evaluatedValue = expression.evaluate();
+                return Double.isNaN(evaluatedValue) ? null : evaluatedValue;
+            } catch (final IllegalArgumentException e) {
+                throw NodeAbortException.INSTANCE;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("(%s) %s %s", expressionString, op, literal.json);
+        }
+
+    }
+
+    /**
+     * Condition literal whose typed representations are parsed on first use and reused afterwards.
+     */
+    private static class Literal {
+
+        private final JsonElement json;
+        private final boolean isNull;
+
+        private BigDecimal decimalValue;
+        private Boolean booleanValue;
+        private Short shortValue;
+        private Integer intValue;
+        private Long longValue;
+        private Float floatValue;
+        private Double doubleValue;
+        private String stringValue;
+        private java.time.Instant instantValue;
+        private Instant jodaInstantValue;
+        private LocalDate dateValue;
+        private LocalTime timeValue;
+
+        Literal(final JsonElement json) {
+            this.json = json;
+            this.isNull = json == null || json.isJsonNull();
+        }
+
+        boolean is(final Object value, final Op op) {
+            if(value == null) {
+                return isNull && Op.EQUAL.equals(op);
+            } else if(isNull) {
+                return Op.NOT_EQUAL.equals(op);
+            }
+
+            final int c;
+            if(value instanceof String s) {
+                c = s.compareTo(stringValue());
+            } else if(value instanceof Long l) {
+                if(longValue == null) {
+                    longValue = json.getAsLong();
+                }
+                c = l.compareTo(longValue);
+            } else if(value instanceof Double d) {
+                if(d.isNaN() || d.isInfinite()) {
+                    return false;
+                }
+                if(doubleValue == null) {
+                    doubleValue = json.getAsDouble();
+                }
+                c = d.compareTo(doubleValue);
+            } else if(value instanceof Integer i) {
+                if(intValue == null) {
+                    intValue = json.getAsInt();
+                }
+                c = i.compareTo(intValue);
+            } else if(value instanceof Boolean b) {
+                if(booleanValue == null) {
+                    booleanValue = json.getAsBoolean();
+                }
+                c = b.compareTo(booleanValue);
+            } else if(value instanceof Float f) {
+                if(f.isNaN() || f.isInfinite()) {
+                    return false;
+                }
+                if(floatValue == null) {
+                    floatValue = json.getAsFloat();
+                }
+                c = f.compareTo(floatValue);
+            } else if(value instanceof Short s) {
+                if(shortValue == null) {
+                    shortValue = json.getAsShort();
+                }
+                c = s.compareTo(shortValue);
+            } else if(value instanceof Byte
+                    || value instanceof BigInteger
+                    || value instanceof BigDecimal) {
+                if(decimalValue == null) {
+                    decimalValue = json.getAsBigDecimal();
+                }
+                final BigDecimal decimal = value instanceof BigDecimal bd ? bd : new BigDecimal(value.toString());
+                c = decimal.compareTo(decimalValue);
+            } else if(value instanceof java.time.Instant instant) {
+                if(instantValue == null) {
+                    instantValue = DateTimeUtil.toInstant(json.getAsString());
+                }
+                c = instant.compareTo(instantValue);
+            } else if(value instanceof Instant instant) {
+                if(jodaInstantValue == null) {
+                    jodaInstantValue = DateTimeUtil.toJodaInstant(json.getAsString());
+                }
+                c = instant.compareTo(jodaInstantValue);
+            } else if(value instanceof LocalDate date) {
+                if(dateValue == null) {
+                    dateValue = DateTimeUtil.toLocalDate(json.getAsString());
+                }
+                c = date.compareTo(dateValue);
+            } else if(value instanceof LocalTime time) {
+                if(timeValue == null) {
+                    timeValue = DateTimeUtil.toLocalTime(json.getAsString());
+                }
+                c = time.compareTo(timeValue);
+            } else if(value instanceof org.apache.avro.util.Utf8) {
+                c = value.toString().compareTo(stringValue());
+            } else {
+                c = value.toString().compareTo(stringValue());
+                LOG.warn("not matched value: {} to leaf: {}", value, stringValue());
+            }
+
+            return switch (op) {
+                case EQUAL -> c == 0;
+                case NOT_EQUAL -> c != 0;
+                case GREATER -> c > 0;
+                case GREATER_OR_EQUAL -> c >= 0;
+                case LESSER -> c < 0;
+                case LESSER_OR_EQUAL -> c <= 0;
+                case TRUE -> true;
+                case FALSE -> false;
+                default -> throw new IllegalArgumentException("Not supported compare op: " + op);
+            };
+        }
+
+        private String stringValue() {
+            if(stringValue == null) {
+                stringValue = json.getAsString();
+            }
+            return stringValue;
+        }
+
+    }
+
+    private static CompiledNode compileNode(final ConditionNode condition, final List<String> variables) {
+        final List<CompiledNode> children = new ArrayList<>();
+        if(condition.getLeaves() != null) {
+            for(final ConditionLeaf leaf : condition.getLeaves()) {
+                children.add(compileLeaf(leaf, variables));
+            }
+        }
+        if(condition.getNodes() != null) {
+            for(final ConditionNode node : condition.getNodes()) {
+                children.add(compileNode(node, variables));
+            }
+        }
+
+        if(children.isEmpty()) {
+            return new ConstantNode(false);
+        }
+
+        return switch (condition.getType()) {
+            case AND -> children.size() == 1 ? children.get(0) : new AndNode(children.toArray(new CompiledNode[0]));
+            case OR -> children.size() == 1 ? children.get(0) : new OrNode(children.toArray(new CompiledNode[0]));
+            case TRUE -> new ConstantNode(true);
+            case FALSE -> new ConstantNode(false);
+        };
+    }
+
+    private static CompiledNode compileLeaf(final ConditionLeaf leaf, final List<String> variables) {
+        if(leaf.expression != null) {
+            return new ExpressionLeafNode(leaf, variables);
+        }
+        return new FieldLeafNode(leaf.getKey(), slotOf(leaf.getKey(), variables), leaf.getOp(), leaf.getValue());
+    }
+
+    private static int slotOf(final String variable, final List<String> variables) {
+        final int index = variables.indexOf(variable);
+        if(index >= 0) {
+            return index;
+        }
+        variables.add(variable);
+        return variables.size() - 1;
+    }
+
     private static ConditionLeaf createLeaf(final JsonObject jsonObject) {
         if((!jsonObject.has("key") && !jsonObject.has("expression")) || !jsonObject.has("op") || !jsonObject.has("value")) {
             throw new IllegalArgumentException("Simple conditions must contain `key`,`op`,`value`. json: " + jsonObject);
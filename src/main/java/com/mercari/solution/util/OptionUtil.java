@@ -1,5 +1,6 @@
 package com.mercari.solution.util;
 
+import org.apache.beam.runners.dataflow.options.DataflowPipelineDebugOptions;
 import org.apache.beam.runners.dataflow.options.DataflowPipelineOptions;
 import org.apache.beam.sdk.extensions.gcp.options.GcpOptions;
 import org.apache.beam.sdk.options.PipelineOptions;
@@ -69,6 +70,10 @@ public class OptionUtil {
         return input.getPipeline().getOptions().as(DataflowPipelineOptions.class).getMaxNumWorkers();
     }
 
+    public static Integer getNumberOfWorkerHarnessThreads(final PipelineOptions options) {
+        return options.as(DataflowPipelineDebugOptions.class).getNumberOfWorkerHarnessThreads();
+    }
+
     public static String replaceParameter(final String text) {
         final Matcher matcher = PATTERN_OPTION_TIMESTAMP.matcher(text);
         while(matcher.find()) {
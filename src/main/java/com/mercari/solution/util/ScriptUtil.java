@@ -0,0 +1,187 @@
+package com.mercari.solution.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.script.*;
+import java.util.*;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+public class ScriptUtil {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScriptUtil.class);
+
+    public static final String ENGINE_NAME_JAVASCRIPT = "JavaScript";
+
+    // Idle runners shared by DoFn instances in the same worker, keyed by engine name and script text
+    private static final Map<String, BlockingDeque<ScriptRunner>> POOLS = new ConcurrentHashMap<>();
+
+    public static ScriptEngine createEngine(final String engineName) {
+        final ScriptEngine engine = new ScriptEngineManager().getEngineByName(engineName);
+        if(engine == null) {
+            throw new IllegalStateException("Script engine: " + engineName + " is not available. "
+                    + "JSR-223 engine such as nashorn-core or graaljs scriptengine must be in the classpath");
+        }
+        return engine;
+    }
+
+    /**
+     * Takes an idle runner evaluated with the script from the pool, or creates a new one.
+     * The runner must be used by one thread at a time and returned by {@link #release(ScriptRunner)}.
+     */
+    public static ScriptRunner borrow(final String engineName, final String script, final int poolSize) throws ScriptException {
+        final String key = engineName + "\n" + script;
+        final BlockingDeque<ScriptRunner> pool = POOLS.computeIfAbsent(key, k -> new LinkedBlockingDeque<>(Math.max(poolSize, 1)));
+        final ScriptRunner runner = pool.pollFirst();
+        if(runner != null) {
+            return runner;
+        }
+        return ScriptRunner.of(key, engineName, script);
+    }
+
+    public static void release(final ScriptRunner runner) {
+        if(runner == null) {
+            return;
+        }
+        final BlockingDeque<ScriptRunner> pool = POOLS.get(runner.key);
+        if(pool == null || !pool.offerFirst(runner)) {
+            LOG.debug("Discard script runner as pool is full");
+        }
+    }
+
+    public static class ScriptRunner {
+
+        private final String key;
+        private final ScriptEngine engine;
+        private final Invocable invocable;
+
+        private ScriptRunner(final String key, final ScriptEngine engine) {
+            this.key = key;
+            this.engine = engine;
+            this.invocable = (Invocable) engine;
+        }
+
+        static ScriptRunner of(final String key, final String engineName, final String script) throws ScriptException {
+            final ScriptEngine engine = createEngine(engineName);
+            if(engine instanceof Compilable compilable) {
+                final CompiledScript compiledScript = compilable.compile(script);
+                compiledScript.eval();
+            } else {
+                engine.eval(script);
+            }
+            if(!(engine instanceof Invocable)) {
+                throw new IllegalStateException("Script engine: " + engineName + " does not support function invocation");
+            }
+            return new ScriptRunner(key, engine);
+        }
+
+        public ScriptEngine getEngine() {
+            return engine;
+        }
+
+        public Invocable getInvocable() {
+            return invocable;
+        }
+
+        public Object invoke(final String function, final Object... args) throws ScriptException, NoSuchMethodException {
+            return invocable.invokeFunction(function, args);
+        }
+
+    }
+
+    /**
+     * Map view passed to script functions instead of a copy of the whole element.
+     * Field values are converted only when the script reads them, and values put by the script are kept aside.
+     * Operations that need all entries convert the whole element once and work on the copy after that.
+     */
+    public static class FieldAccessorMap<T> extends AbstractMap<String, Object> {
+
+        private final T element;
+        private final BiFunction<T, String, Object> accessor;
+        private final Function<T, Map<String, Object>> converter;
+
+        private Map<String, Object> cache;
+        private Map<String, Object> updates;
+        private Map<String, Object> materialized;
+
+        public FieldAccessorMap(
+                final T element,
+                final BiFunction<T, String, Object> accessor,
+                final Function<T, Map<String, Object>> converter) {
+
+            this.element = element;
+            this.accessor = accessor;
+            this.converter = converter;
+        }
+
+        @Override
+        public Object get(final Object key) {
+            if(materialized != null) {
+                return materialized.get(key);
+            }
+            if(!(key instanceof String field)) {
+                return null;
+            }
+            if(updates != null && updates.containsKey(field)) {
+                return updates.get(field);
+            }
+            if(cache == null) {
+                cache = new HashMap<>();
+            } else if(cache.containsKey(field)) {
+                return cache.get(field);
+            }
+            final Object value = accessor.apply(element, field);
+            cache.put(field, value);
+            return value;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            if(materialized == null && updates != null && updates.containsKey(key)) {
+                return true;
+            }
+            return materialize().containsKey(key);
+        }
+
+        @Override
+        public Object put(final String key, final Object value) {
+            if(materialized != null) {
+                return materialized.put(key, value);
+            }
+            final Object prev = get(key);
+            if(updates == null) {
+                updates = new HashMap<>();
+            }
+            updates.put(key, value);
+            return prev;
+        }
+
+        @Override
+        public Object remove(final Object key) {
+            return materialize().remove(key);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return materialize().entrySet();
+        }
+
+        private Map<String, Object> materialize() {
+            if(materialized == null) {
+                materialized = new HashMap<>(converter.apply(element));
+                if(updates != null) {
+                    materialized.putAll(updates);
+                }
+                cache = null;
+                updates = null;
+            }
+            return materialized;
+        }
+
+    }
+
+}
@@ -2,7 +2,9 @@ package com.mercari.solution.util.converter;
 
 import com.mercari.solution.util.DateTimeUtil;
 import com.mercari.solution.util.schema.AvroSchemaUtil;
+import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.LogicalTypes;
+import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericRecordBuilder;
@@ -49,6 +51,44 @@ public class CsvToRecordConverter {
         }
     }
 
+    /**
+     * Decoder reusing a tokenizer and field schemas resolved at construction, for converting many lines with the same schema.
+     * Not thread safe.
+     */
+    public static class Decoder {
+
+        private final Schema schema;
+        private final List<Schema.Field> fields;
+        private final boolean[] nullables;
+        private final CsvTokenizer tokenizer;
+
+        public Decoder(final Schema schema) {
+            this.schema = schema;
+            this.fields = schema.getFields();
+            this.nullables = new boolean[fields.size()];
+            for(int i=0; i<fields.size(); i++) {
+                nullables[i] = AvroSchemaUtil.isNullable(fields.get(i).schema()) || fields.get(i).hasDefaultValue();
+            }
+            this.tokenizer = new CsvTokenizer();
+        }
+
+        public GenericRecord decode(final String text) {
+            if(tokenizer.tokenize(text) == 0) {
+                return null;
+            }
+            final GenericData.Record record = new GenericData.Record(schema);
+            for(int i=0; i<fields.size(); i++) {
+                final Object value = convertValue(fields.get(i).schema(), tokenizer.get(i));
+                if(value == null && !nullables[i]) {
+                    throw new AvroRuntimeException("Field " + fields.get(i) + " does not accept null values");
+                }
+                record.put(i, value);
+            }
+            return record;
+        }
+
+    }
+
     private static Object convertValue(final Schema schema, final String value) {
         if(value == null) {
             return null;
@@ -44,6 +44,36 @@ public class CsvToRowConverter {
         }
     }
 
+    /**
+     * Decoder reusing a tokenizer and field types resolved at construction, for converting many lines with the same schema.
+     * Not thread safe.
+     */
+    public static class Decoder {
+
+        private final Schema schema;
+        private final List<Schema.Field> fields;
+        private final CsvTokenizer tokenizer;
+
+        public Decoder(final Schema schema) {
+            this.schema = schema;
+            this.fields = schema.getFields();
+            this.tokenizer = new CsvTokenizer();
+        }
+
+        public Row decode(final String text) {
+            if(tokenizer.tokenize(text) == 0) {
+                return null;
+            }
+            final List<Object> values = new ArrayList<>(fields.size());
+            for(int i=0; i<fields.size(); i++) {
+                final Schema.Field field = fields.get(i);
+                values.add(convertValue(field.getType(), field.getOptions(), tokenizer.get(i)));
+            }
+            return Row.withSchema(schema).addValues(values).build();
+        }
+
+    }
+
     private static Object convertValue(final Schema.FieldType fieldType, final Schema.Options fieldOptions, final String value) {
         if(value == null) {
             if(fieldType.getTypeName().isCollectionType()) {
@@ -0,0 +1,141 @@
+package com.mercari.solution.util.converter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reusable tokenizer for RFC4180 style csv records (comma delimiter, double quote encapsulation)
+ * compatible with CSVFormat.DEFAULT. Tokenized values are held in an internal array that is
+ * overwritten by the next call, so an instance must not be shared between threads.
+ */
+public class CsvTokenizer {
+
+    private static final char DELIMITER = ',';
+    private static final char QUOTE = '"';
+
+    private final StringBuilder buffer;
+    private String[] values;
+    private int size;
+
+    public CsvTokenizer() {
+        this.buffer = new StringBuilder();
+        this.values = new String[16];
+        this.size = 0;
+    }
+
+    /**
+     * Splits the record text into values and returns the number of values.
+     * Empty text is treated as an empty line and returns zero.
+     */
+    public int tokenize(final String text) {
+        this.size = 0;
+        if(text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        final int length = text.length();
+        int pos = 0;
+        while(true) {
+            if(pos < length && text.charAt(pos) == QUOTE) {
+                buffer.setLength(0);
+                pos++;
+                while(pos < length) {
+                    final char c = text.charAt(pos);
+                    if(c == QUOTE) {
+                        if(pos + 1 < length && text.charAt(pos + 1) == QUOTE) {
+                            buffer.append(QUOTE);
+                            pos += 2;
+                        } else {
+                            pos++;
+                            break;
+                        }
+                    } else {
+                        buffer.append(c);
+                        pos++;
+                    }
+                }
+                // Be lenient with characters between closing quote and delimiter
+                while(pos < length && text.charAt(pos) != DELIMITER) {
+                    buffer.append(text.charAt(pos));
+                    pos++;
+                }
+                add(buffer.toString());
+            } else {
+                int end = text.indexOf(DELIMITER, pos);
+                if(end < 0) {
+                    end = length;
+                }
+                add(text.substring(pos, end));
+                pos = end;
+            }
+
+            if(pos >= length) {
+                break;
+            }
+            pos++;
+            if(pos == length) {
+                add("");
+                break;
+            }
+        }
+        return size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String get(final int index) {
+        if(index >= size) {
+            return null;
+        }
+        return values[index];
+    }
+
+    /**
+     * Reads one csv record from reader. Lines are joined with line feed while a quoted value is open,
+     * so records containing line breaks in quoted values are returned as one text.
+     * Returns null when the reader reaches the end.
+     */
+    public static String readRecord(final BufferedReader reader) throws IOException {
+        final String line = reader.readLine();
+        if(line == null) {
+            return null;
+        }
+        boolean open = isOddQuotes(line);
+        if(!open) {
+            return line;
+        }
+        final StringBuilder sb = new StringBuilder(line);
+        while(open) {
+            final String next = reader.readLine();
+            if(next == null) {
+                break;
+            }
+            sb.append('\n').append(next);
+            if(isOddQuotes(next)) {
+                open = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    private void add(final String value) {
+        if(size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    private static boolean isOddQuotes(final String text) {
+        int count = 0;
+        for(int i=0; i<text.length(); i++) {
+            if(text.charAt(i) == QUOTE) {
+                count++;
+            }
+        }
+        return count % 2 == 1;
+    }
+
+}
@@ -31,6 +31,13 @@ public class EntityToMapConverter {
         return map;
     }
 
+    public static Object getValue(final Entity entity, final String field) {
+        if(entity == null) {
+            return null;
+        }
+        return getValue(entity.getPropertiesMap().get(field));
+    }
+
     private static Object getValue(final Value value) {
         if(value == null) {
             return null;
@@ -1,9 +1,12 @@
 package com.mercari.solution.util.converter;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.mercari.solution.config.SourceConfig;
 import com.mercari.solution.util.DateTimeUtil;
 import com.mercari.solution.util.schema.AvroSchemaUtil;
+import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.LogicalTypes;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
@@ -14,6 +17,8 @@ import org.joda.time.format.DateTimeFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.nio.ByteBuffer;
@@ -118,6 +123,70 @@ public class JsonToRecordConverter {
         return true;
     }
 
+    /**
+     * Decoder reading json text as a stream and converting values directly into record fields by index,
+     * without building the whole JsonObject tree. Values for fields not in the schema are skipped.
+     * Not thread safe.
+     */
+    public static class Decoder {
+
+        private final Schema schema;
+        private final List<Schema.Field> fields;
+        private final Map<String, Integer> fieldIndexes;
+        private final boolean[] nullables;
+        private final JsonElement[] elements;
+
+        public Decoder(final Schema schema) {
+            this.schema = schema;
+            this.fields = schema.getFields();
+            this.fieldIndexes = new HashMap<>();
+            this.nullables = new boolean[fields.size()];
+            for(int i=0; i<fields.size(); i++) {
+                final Schema.Field field = fields.get(i);
+                final String fieldName = Optional.ofNullable(field.getProp(SourceConfig.OPTION_ORIGINAL_FIELD_NAME)).orElse(field.name());
+                fieldIndexes.put(fieldName, i);
+                nullables[i] = AvroSchemaUtil.isNullable(field.schema()) || field.hasDefaultValue();
+            }
+            this.elements = new JsonElement[fields.size()];
+        }
+
+        public GenericRecord decode(final String text) {
+            if(text == null || text.trim().length() < 2) {
+                return null;
+            }
+            try(final JsonReader reader = new JsonReader(new StringReader(text))) {
+                reader.setLenient(true);
+                if(reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    return convert(schema, text);
+                }
+                Arrays.fill(elements, null);
+                reader.beginObject();
+                while(reader.hasNext()) {
+                    final Integer index = fieldIndexes.get(reader.nextName());
+                    if(index == null) {
+                        reader.skipValue();
+                    } else {
+                        elements[index] = JsonParser.parseReader(reader);
+                    }
+                }
+                reader.endObject();
+            } catch (IOException e) {
+                throw new JsonSyntaxException(e);
+            }
+
+            final GenericData.Record record = new GenericData.Record(schema);
+            for(int i=0; i<fields.size(); i++) {
+                final Object value = convertValue(fields.get(i).schema(), elements[i]);
+                if(value == null && !nullables[i]) {
+                    throw new AvroRuntimeException("Field " + fields.get(i) + " does not accept null values");
+                }
+                record.put(i, value);
+            }
+            return record;
+        }
+
+    }
+
     public static Object convertValue(final Schema schema, final JsonElement jsonElement) {
         if(jsonElement == null || jsonElement.isJsonNull()) {
             if(Schema.Type.ARRAY.equals(schema.getType())) {
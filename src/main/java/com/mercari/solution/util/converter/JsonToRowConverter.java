@@ -1,6 +1,8 @@
 package com.mercari.solution.util.converter;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.mercari.solution.config.SourceConfig;
 import com.mercari.solution.util.DateTimeUtil;
 import com.mercari.solution.util.schema.RowSchemaUtil;
@@ -9,6 +11,8 @@ import org.apache.beam.sdk.values.Row;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -116,6 +120,67 @@ public class JsonToRowConverter {
         return true;
     }
 
+    /**
+     * Decoder reading json text as a stream and converting values directly into row fields by index,
+     * without building the whole JsonObject tree. Values for fields not in the schema are skipped.
+     * Not thread safe.
+     */
+    public static class Decoder {
+
+        private final Schema schema;
+        private final List<Schema.Field> fields;
+        private final Map<String, Integer> fieldIndexes;
+        private final JsonElement[] elements;
+
+        public Decoder(final Schema schema) {
+            this.schema = schema;
+            this.fields = schema.getFields();
+            this.fieldIndexes = new HashMap<>();
+            for(int i=0; i<fields.size(); i++) {
+                final Schema.Field field = fields.get(i);
+                if(field.getOptions().hasOption(SourceConfig.OPTION_ORIGINAL_FIELD_NAME)) {
+                    fieldIndexes.put(field.getOptions().getValue(SourceConfig.OPTION_ORIGINAL_FIELD_NAME), i);
+                } else {
+                    fieldIndexes.put(field.getName(), i);
+                }
+            }
+            this.elements = new JsonElement[fields.size()];
+        }
+
+        public Row decode(final String text) {
+            if(text == null || text.trim().length() < 2) {
+                return null;
+            }
+            try(final JsonReader reader = new JsonReader(new StringReader(text))) {
+                reader.setLenient(true);
+                if(reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    return convert(schema, text);
+                }
+                Arrays.fill(elements, null);
+                reader.beginObject();
+                while(reader.hasNext()) {
+                    final Integer index = fieldIndexes.get(reader.nextName());
+                    if(index == null) {
+                        reader.skipValue();
+                    } else {
+                        elements[index] = JsonParser.parseReader(reader);
+                    }
+                }
+                reader.endObject();
+            } catch (IOException e) {
+                throw new JsonSyntaxException(e);
+            }
+
+            final List<Object> values = new ArrayList<>(fields.size());
+            for(int i=0; i<fields.size(); i++) {
+                final Schema.Field field = fields.get(i);
+                values.add(convertValue(field.getType(), field.getOptions(), elements[i]));
+            }
+            return Row.withSchema(schema).addValues(values).build();
+        }
+
+    }
+
     private static Object convertValue(final Schema.FieldType fieldType, final Schema.Options fieldOptions, final JsonElement jsonElement) {
         if(jsonElement == null || jsonElement.isJsonNull()) {
             if(Schema.TypeName.ARRAY.equals(fieldType.getTypeName())) {
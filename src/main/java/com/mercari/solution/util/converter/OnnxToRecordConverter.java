@@ -1,6 +1,7 @@
 package com.mercari.solution.util.converter;
 
 import ai.onnxruntime.*;
+import com.mercari.solution.util.domain.ml.ONNXRuntimeUtil;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
 
@@ -66,74 +67,45 @@ public class OnnxToRecordConverter {
         return builder.endRecord();
     }
 
-    public static List<Map<String,Object>> convert(final OrtSession.Result result) {
+    public static List<Map<String,Object>> convert(final OrtSession.Result result, final Map<String, NodeInfo> outputsInfo) throws OrtException {
 
         final List<Map<String,Object>> outputs = new ArrayList<>();
 
-        final Iterator<Map.Entry<String, OnnxValue>> iterator = result.iterator();
-        while(iterator.hasNext()) {
-            final Map.Entry<String, OnnxValue> entry = iterator.next();
-            if(entry.getValue() instanceof OnnxTensor) {
-                final OnnxTensor tensor = (OnnxTensor) entry.getValue();
-                final List<?> values = getValues(tensor);
-                for(int i=0; i<values.size(); i++) {
-                    if(i >= outputs.size()) {
-                        outputs.add(new HashMap<>());
-                    }
-                    outputs.get(i).put(entry.getKey(), values);
-                }
-            } else if(entry.getValue().getInfo() instanceof MapInfo) {
-                final MapInfo mapInfo = (MapInfo) entry.getValue().getInfo();
-            } else if(entry.getValue().getInfo() instanceof SequenceInfo) {
-                final SequenceInfo sequenceInfo = (SequenceInfo) entry.getValue().getInfo();
-            } else {
+        for(final Map.Entry<String, OnnxValue> entry : result) {
+            if(!(entry.getValue() instanceof OnnxTensor tensor)) {
                 throw new IllegalArgumentException("Not supported node type: " + entry.getValue().getInfo());
             }
-        }
+            final NodeInfo nodeInfo = outputsInfo.get(entry.getKey());
+            final TensorInfo tensorInfo = nodeInfo == null ? tensor.getInfo() : (TensorInfo) nodeInfo.getInfo();
+            final boolean isScalar = tensorInfo.isScalar() || tensorInfo.getShape()[tensorInfo.getShape().length - 1] == 1;
 
-        return outputs;
-    }
-
-    private static List<?> getValues(final OnnxTensor tensor) {
-        final long[] shape = tensor.getInfo().getShape();
-        final boolean isScalar = tensor.getInfo().isScalar() || shape[shape.length - 1] == 1;
-
-        if(isScalar) {
-            throw new IllegalArgumentException("Not support");
-        } else {
-            switch (tensor.getInfo().type) {
-                case INT32: {
-                    final List<Integer> ints = new ArrayList<>();
-                    for (int i : tensor.getIntBuffer().array()) {
-                        ints.add(i);
-                    }
-                    return ints;
+            final List<List<Object>> rows = ONNXRuntimeUtil.splitBatch(tensor);
+            for(int i=0; i<rows.size(); i++) {
+                if(i >= outputs.size()) {
+                    outputs.add(new HashMap<>());
                 }
-                case INT64: {
-                    final List<Long> longs = new ArrayList<>();
-                    for (long i : tensor.getLongBuffer().array()) {
-                        longs.add(i);
-                    }
-                    return longs;
+                final List<Object> values = new ArrayList<>(rows.get(i).size());
+                for(final Object value : rows.get(i)) {
+                    values.add(convertValue(tensor.getInfo().type, value));
                 }
-                case FLOAT: {
-                    final List<Float> floats = new ArrayList<>();
-                    for (float i : tensor.getFloatBuffer().array()) {
-                        floats.add(i);
-                    }
-                    return floats;
-                }
-                case DOUBLE: {
-                    final List<Double> doubles = new ArrayList<>();
-                    for (double i : tensor.getDoubleBuffer().array()) {
-                        doubles.add(i);
-                    }
-                    return doubles;
+                if(isScalar) {
+                    outputs.get(i).put(entry.getKey(), values.isEmpty() ? null : values.get(0));
+                } else {
+                    outputs.get(i).put(entry.getKey(), values);
                 }
-                default:
-                    throw new IllegalArgumentException();
             }
         }
+
+        return outputs;
+    }
+
+    private static Object convertValue(final OnnxJavaType type, final Object value) {
+        return switch (type) {
+            case INT8 -> ((Byte) value).intValue();
+            case UINT8 -> ((Byte) value) & 0xFF;
+            case INT16 -> ((Short) value).intValue();
+            default -> value;
+        };
     }
 
 }
@@ -1,6 +1,7 @@
 package com.mercari.solution.util.converter;
 
 import ai.onnxruntime.*;
+import com.mercari.solution.util.domain.ml.ONNXRuntimeUtil;
 import org.apache.beam.sdk.schemas.Schema;
 
 import java.util.*;
@@ -71,11 +72,43 @@ public class OnnxToRowConverter {
         return builder.build();
     }
 
-    public static List<Map<String,Object>> convert(final OrtSession.Result result) {
+    public static List<Map<String,Object>> convert(final OrtSession.Result result, final Map<String, NodeInfo> outputsInfo) throws OrtException {
 
         final List<Map<String,Object>> outputs = new ArrayList<>();
 
+        for(final Map.Entry<String, OnnxValue> entry : result) {
+            if(!(entry.getValue() instanceof OnnxTensor tensor)) {
+                throw new IllegalArgumentException("Not supported node type: " + entry.getValue().getInfo());
+            }
+            final NodeInfo nodeInfo = outputsInfo.get(entry.getKey());
+            final TensorInfo tensorInfo = nodeInfo == null ? tensor.getInfo() : (TensorInfo) nodeInfo.getInfo();
+            final boolean isScalar = tensorInfo.isScalar() || tensorInfo.getShape()[tensorInfo.getShape().length - 1] == 1;
+
+            final List<List<Object>> rows = ONNXRuntimeUtil.splitBatch(tensor);
+            for(int i=0; i<rows.size(); i++) {
+                if(i >= outputs.size()) {
+                    outputs.add(new HashMap<>());
+                }
+                final List<Object> values = new ArrayList<>(rows.get(i).size());
+                for(final Object value : rows.get(i)) {
+                    values.add(convertValue(tensor.getInfo().type, value));
+                }
+                if(isScalar) {
+                    outputs.get(i).put(entry.getKey(), values.isEmpty() ? null : values.get(0));
+                } else {
+                    outputs.get(i).put(entry.getKey(), values);
+                }
+            }
+        }
+
         return outputs;
     }
 
+    private static Object convertValue(final OnnxJavaType type, final Object value) {
+        return switch (type) {
+            case UINT8 -> (short) (((Byte) value) & 0xFF);
+            default -> value;
+        };
+    }
+
 }
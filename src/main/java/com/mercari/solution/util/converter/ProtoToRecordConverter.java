@@ -38,6 +38,23 @@ public class ProtoToRecordConverter {
         return schemaFields;
     }
 
+    public static SchemaBuilder.FieldAssembler<Schema> convertSchemaBuilder(final Descriptors.Descriptor messageType, final List<String> fields) {
+        if(fields == null || fields.isEmpty()) {
+            return convertSchemaBuilder(messageType);
+        }
+        final SchemaBuilder.FieldAssembler<Schema> schemaFields = SchemaBuilder
+                .record(messageType.getName())
+                .fields();
+        for(final String fieldName : fields) {
+            final Descriptors.FieldDescriptor field = ProtoSchemaUtil.getField(messageType, fieldName);
+            if(field == null) {
+                throw new IllegalArgumentException("Field: " + fieldName + " is not found in message: " + messageType.getFullName());
+            }
+            schemaFields.name(field.getName()).type(convertSchema(field)).noDefault();
+        }
+        return schemaFields;
+    }
+
     public static GenericRecord convert(final Schema schema,
                                         final Descriptors.Descriptor messageDescriptor,
                                         final byte[] bytes,
@@ -98,6 +115,32 @@ public class ProtoToRecordConverter {
         return builder;
     }
 
+    /**
+     * Converts payload bytes using the decoder compiled for the field names of the schema, without parsing whole message into DynamicMessage.
+     */
+    public static GenericRecordBuilder convertBuilder(
+            final Schema schema,
+            final ProtoWireDecoder decoder,
+            final byte[] bytes,
+            final JsonFormat.Printer printer) {
+
+        try {
+            final Object[] values = decoder.decode(bytes);
+            final GenericRecordBuilder builder = new GenericRecordBuilder(schema);
+            for(int slot=0; slot<decoder.size(); slot++) {
+                final Descriptors.FieldDescriptor fieldDescriptor = decoder.getField(slot);
+                if(fieldDescriptor == null) {
+                    continue;
+                }
+                final Schema.Field field = schema.getFields().get(slot);
+                builder.set(field, convertValue(field.schema(), fieldDescriptor, values[slot], printer, false));
+            }
+            return builder;
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private static Schema convertSchema(Descriptors.FieldDescriptor field) {
         //final boolean nullable = !field.isRequired() && (field.hasDefaultValue() || field.isOptional());
         final Schema elementSchema = switch (field.getJavaType()) {
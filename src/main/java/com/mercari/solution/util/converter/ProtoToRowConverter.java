@@ -36,6 +36,21 @@ public class ProtoToRowConverter {
         return builder;
     }
 
+    public static Schema.Builder convertSchemaBuilder(final Descriptors.Descriptor messageType, final List<String> fields) {
+        if(fields == null || fields.isEmpty()) {
+            return convertSchemaBuilder(messageType);
+        }
+        final Schema.Builder builder = Schema.builder();
+        for(final String fieldName : fields) {
+            final Descriptors.FieldDescriptor field = ProtoSchemaUtil.getField(messageType, fieldName);
+            if(field == null) {
+                throw new IllegalArgumentException("Field: " + fieldName + " is not found in message: " + messageType.getFullName());
+            }
+            builder.addField(field.getName(), convertFieldType(field));
+        }
+        return builder;
+    }
+
     public static Row convert(
             final Schema schema,
             final Descriptors.Descriptor messageDescriptor,
@@ -98,6 +113,31 @@ public class ProtoToRowConverter {
         return Row.withSchema(schema).withFieldValues(values);
     }
 
+    /**
+     * Converts payload bytes using the decoder compiled for the field names of the schema, without parsing whole message into DynamicMessage.
+     */
+    public static Row.FieldValueBuilder convertBuilder(
+            final Schema schema,
+            final ProtoWireDecoder decoder,
+            final byte[] bytes,
+            final JsonFormat.Printer printer) {
+
+        try {
+            final Object[] values = decoder.decode(bytes);
+            final Map<String, Object> fieldValues = new HashMap<>();
+            for(int slot=0; slot<decoder.size(); slot++) {
+                final Descriptors.FieldDescriptor fieldDescriptor = decoder.getField(slot);
+                if(fieldDescriptor == null) {
+                    continue;
+                }
+                fieldValues.put(schema.getField(slot).getName(), convertValue(fieldDescriptor, values[slot], printer));
+            }
+            return Row.withSchema(schema).withFieldValues(fieldValues);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private static Schema.FieldType convertFieldType(Descriptors.FieldDescriptor field) {
         //final boolean nullable = !field.isRequired() && (field.hasDefaultValue() || field.isOptional());
         final Schema.FieldType elementFieldType = switch (field.getJavaType()) {
@@ -0,0 +1,260 @@
+package com.mercari.solution.util.converter;
+
+import com.google.protobuf.*;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Decodes protobuf payload bytes directly from the wire into the values of the selected fields.
+ * Field numbers of the message are compiled once into the slot of the selected field, and fields not selected are skipped without being parsed.
+ * Decoded values are same as DynamicMessage#getField returns, so they can be passed to the existing value converters.
+ * Only the bytes of selected message type fields (nested messages, maps and well-known types) are parsed into DynamicMessage.
+ */
+public class ProtoWireDecoder {
+
+    private static final int MAX_ARRAY_FIELD_NUMBER = 1 << 16;
+
+    private final Descriptors.Descriptor descriptor;
+    private final Descriptors.FieldDescriptor[] fields;
+    private final Object[] defaults;
+    private final boolean[] requireUtf8;
+
+    private final Entry[] entries;
+    private final Map<Integer, Entry> largeEntries;
+
+    private final boolean fallback;
+
+    private ProtoWireDecoder(final Descriptors.Descriptor descriptor, final List<String> fieldNames) {
+        this.descriptor = descriptor;
+        this.fields = new Descriptors.FieldDescriptor[fieldNames.size()];
+        this.defaults = new Object[fieldNames.size()];
+        this.requireUtf8 = new boolean[fieldNames.size()];
+
+        final Map<Integer, Entry> entriesByNumber = new HashMap<>();
+        boolean fallback = false;
+        int maxFieldNumber = 0;
+        for(int slot=0; slot<fieldNames.size(); slot++) {
+            final Descriptors.FieldDescriptor field = descriptor.findFieldByName(fieldNames.get(slot));
+            if(field == null) {
+                continue;
+            }
+            if(field.getType() == Descriptors.FieldDescriptor.Type.GROUP) {
+                fallback = true;
+            }
+            fields[slot] = field;
+            defaults[slot] = getDefaultValue(field);
+            requireUtf8[slot] = field.getType() == Descriptors.FieldDescriptor.Type.STRING
+                    && "proto3".equals(field.getFile().toProto().getSyntax());
+            entriesByNumber.computeIfAbsent(field.getNumber(), n -> new Entry()).slot = slot;
+            maxFieldNumber = Math.max(maxFieldNumber, field.getNumber());
+
+            // A value set to other member of the oneof clears the selected field, as DynamicMessage does.
+            final Descriptors.OneofDescriptor oneof = field.getRealContainingOneof();
+            if(oneof != null) {
+                for(final Descriptors.FieldDescriptor member : oneof.getFields()) {
+                    if(member.getNumber() == field.getNumber()) {
+                        continue;
+                    }
+                    entriesByNumber.computeIfAbsent(member.getNumber(), n -> new Entry()).addClear(slot);
+                    maxFieldNumber = Math.max(maxFieldNumber, member.getNumber());
+                }
+            }
+        }
+        this.fallback = fallback;
+
+        if(maxFieldNumber <= MAX_ARRAY_FIELD_NUMBER) {
+            this.entries = new Entry[maxFieldNumber + 1];
+            for(final Map.Entry<Integer, Entry> entry : entriesByNumber.entrySet()) {
+                this.entries[entry.getKey()] = entry.getValue();
+            }
+            this.largeEntries = null;
+        } else {
+            this.entries = null;
+            this.largeEntries = entriesByNumber;
+        }
+    }
+
+    /**
+     * Compiles the decoding plan of the message for the field names.
+     * The slot of decoded values corresponds to the position of the field name, and is null for names not in the message.
+     */
+    public static ProtoWireDecoder of(final Descriptors.Descriptor descriptor, final List<String> fieldNames) {
+        return new ProtoWireDecoder(descriptor, fieldNames);
+    }
+
+    public Descriptors.Descriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public int size() {
+        return fields.length;
+    }
+
+    public Descriptors.FieldDescriptor getField(final int slot) {
+        return fields[slot];
+    }
+
+    public Object[] decode(final byte[] bytes) throws InvalidProtocolBufferException {
+        final Object[] values = new Object[fields.length];
+        if(fallback) {
+            final DynamicMessage message = DynamicMessage.parseFrom(descriptor, bytes);
+            for(int slot=0; slot<fields.length; slot++) {
+                if(fields[slot] != null) {
+                    values[slot] = message.getField(fields[slot]);
+                }
+            }
+            return values;
+        }
+
+        try {
+            final CodedInputStream input = CodedInputStream.newInstance(bytes);
+            while (true) {
+                final int tag = input.readTag();
+                if(tag == 0) {
+                    break;
+                }
+                final Entry entry = getEntry(WireFormat.getTagFieldNumber(tag));
+                if(entry == null) {
+                    if(!input.skipField(tag)) {
+                        break;
+                    }
+                    continue;
+                }
+                if(entry.clears != null) {
+                    for(final int clear : entry.clears) {
+                        values[clear] = null;
+                    }
+                }
+                if(entry.slot < 0 || !readField(input, tag, entry.slot, values)) {
+                    input.skipField(tag);
+                }
+            }
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e);
+        }
+
+        for(int slot=0; slot<fields.length; slot++) {
+            if(values[slot] == null && fields[slot] != null) {
+                values[slot] = fields[slot].isRepeated() ? new ArrayList<>() : defaults[slot];
+            }
+        }
+        return values;
+    }
+
+    private Entry getEntry(final int fieldNumber) {
+        if(entries != null) {
+            return fieldNumber < entries.length ? entries[fieldNumber] : null;
+        }
+        return largeEntries.get(fieldNumber);
+    }
+
+    private boolean readField(final CodedInputStream input, final int tag, final int slot, final Object[] values) throws IOException {
+        final Descriptors.FieldDescriptor field = fields[slot];
+        final int wireType = WireFormat.getTagWireType(tag);
+        if(field.isRepeated()) {
+            List<Object> list = (List<Object>) values[slot];
+            if(list == null) {
+                list = new ArrayList<>();
+                values[slot] = list;
+            }
+            if(wireType == WireFormat.WIRETYPE_LENGTH_DELIMITED && field.isPackable()) {
+                final int limit = input.pushLimit(input.readRawVarint32());
+                while (input.getBytesUntilLimit() > 0) {
+                    final Object value = readValue(input, slot, null);
+                    if(value != null) {
+                        list.add(value);
+                    }
+                }
+                input.popLimit(limit);
+                return true;
+            }
+            if(wireType != field.getLiteType().getWireType()) {
+                return false;
+            }
+            final Object value = readValue(input, slot, null);
+            if(value != null) {
+                list.add(value);
+            }
+            return true;
+        }
+
+        if(wireType != field.getLiteType().getWireType()) {
+            return false;
+        }
+        final Object value = readValue(input, slot, values[slot]);
+        if(value != null) {
+            values[slot] = value;
+        }
+        return true;
+    }
+
+    private Object readValue(final CodedInputStream input, final int slot, final Object prev) throws IOException {
+        final Descriptors.FieldDescriptor field = fields[slot];
+        return switch (field.getType()) {
+            case DOUBLE -> input.readDouble();
+            case FLOAT -> input.readFloat();
+            case INT64 -> input.readInt64();
+            case UINT64 -> input.readUInt64();
+            case INT32 -> input.readInt32();
+            case FIXED64 -> input.readFixed64();
+            case FIXED32 -> input.readFixed32();
+            case BOOL -> input.readBool();
+            case STRING -> requireUtf8[slot] ? input.readStringRequireUtf8() : input.readString();
+            case BYTES -> input.readBytes();
+            case UINT32 -> input.readUInt32();
+            case SFIXED32 -> input.readSFixed32();
+            case SFIXED64 -> input.readSFixed64();
+            case SINT32 -> input.readSInt32();
+            case SINT64 -> input.readSInt64();
+            case ENUM -> {
+                final int number = input.readEnum();
+                final Descriptors.EnumDescriptor enumType = field.getEnumType();
+                final Descriptors.EnumValueDescriptor value = enumType.findValueByNumber(number);
+                if(value != null || enumType.isClosed()) {
+                    // unknown value of closed enum is kept in unknown fields by DynamicMessage, so the field stays unset
+                    yield value;
+                }
+                yield enumType.findValueByNumberCreatingIfUnknown(number);
+            }
+            case MESSAGE -> {
+                // non repeated message field appeared multiple times is merged
+                final DynamicMessage.Builder builder = prev instanceof DynamicMessage message
+                        ? message.toBuilder()
+                        : DynamicMessage.newBuilder(field.getMessageType());
+                input.readMessage(builder, ExtensionRegistryLite.getEmptyRegistry());
+                yield builder.build();
+            }
+            case GROUP -> throw new IllegalStateException("Not supported group field: " + field.getFullName());
+        };
+    }
+
+    private static Object getDefaultValue(final Descriptors.FieldDescriptor field) {
+        if(field.isRepeated()) {
+            return null;
+        }
+        if(field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+            return DynamicMessage.getDefaultInstance(field.getMessageType());
+        }
+        return field.getDefaultValue();
+    }
+
+    private static class Entry {
+
+        private int slot = -1;
+        private int[] clears;
+
+        private void addClear(final int slot) {
+            if(clears == null) {
+                clears = new int[] { slot };
+            } else {
+                clears = Arrays.copyOf(clears, clears.length + 1);
+                clears[clears.length - 1] = slot;
+            }
+        }
+
+    }
+
+}
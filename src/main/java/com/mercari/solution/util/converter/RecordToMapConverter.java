@@ -33,6 +33,13 @@ public class RecordToMapConverter {
         return map;
     }
 
+    public static Object getValue(final GenericRecord record, final String field) {
+        if(record == null || !record.hasField(field)) {
+            return null;
+        }
+        return getValue(record.getSchema().getField(field).schema(), record.get(field));
+    }
+
     private static Object getValue(final Schema schema, final Object value) {
         if(value == null) {
             return null;
@@ -33,6 +33,13 @@ public class RowToMapConverter {
         return map;
     }
 
+    public static Object getValue(final Row row, final String field) {
+        if(row == null || !row.getSchema().hasField(field)) {
+            return null;
+        }
+        return getValue(row.getSchema().getField(field).getType(), row.getValue(field));
+    }
+
     private static Object getValue(final Schema.FieldType type, final Object value) {
         if(value == null) {
             return null;
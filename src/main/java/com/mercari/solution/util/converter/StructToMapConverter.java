@@ -5,6 +5,7 @@ import com.google.cloud.Date;
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.Struct;
 import com.google.cloud.spanner.Type;
+import com.mercari.solution.util.schema.StructSchemaUtil;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -33,6 +34,14 @@ public class StructToMapConverter {
         return map;
     }
 
+    public static Object getValue(final Struct struct, final String field) {
+        if(struct == null || !StructSchemaUtil.hasField(struct, field)) {
+            return null;
+        }
+        final Type type = struct.getType();
+        return getValue(type.getStructFields().get(type.getFieldIndex(field)), struct);
+    }
+
     private static Object getValue(final Type.StructField field, final Struct struct) {
         if(struct.isNull(field.getName())) {
             return null;
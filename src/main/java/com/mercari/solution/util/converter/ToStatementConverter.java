@@ -33,11 +33,22 @@ public class ToStatementConverter {
         convertRecordWithKeys(record, statement, null);
     }
 
+    public static void convertRecord(final GenericRecord record, final PreparedStatement statement, final int offset) throws SQLException {
+        convertRecordWithKeys(record, statement, null, offset);
+    }
+
     public static void convertRecordWithKeys(
             final GenericRecord record, final PreparedStatement statement,
             final List<String> keyFields) throws SQLException {
+        convertRecordWithKeys(record, statement, keyFields, 0);
+    }
 
-        int index = 1;
+    public static void convertRecordWithKeys(
+            final GenericRecord record, final PreparedStatement statement,
+            final List<String> keyFields,
+            final int offset) throws SQLException {
+
+        int index = offset + 1;
         for(final org.apache.avro.Schema.Field field : record.getSchema().getFields()) {
             final boolean isNull = record.get(field.name()) == null;
             final org.apache.avro.Schema fieldSchema = AvroSchemaUtil.unnestUnion(field.schema());
@@ -150,10 +161,20 @@ public class ToStatementConverter {
         convertRowWithKeys(row, statement, null);
     }
 
+    public static void convertRow(final Row row, final PreparedStatement statement, final int offset) throws SQLException {
+        convertRowWithKeys(row, statement, null, offset);
+    }
+
     public static void convertRowWithKeys(final Row row, final PreparedStatement statement,
                                           final List<String> keyFields) throws SQLException {
+        convertRowWithKeys(row, statement, keyFields, 0);
+    }
+
+    public static void convertRowWithKeys(final Row row, final PreparedStatement statement,
+                                          final List<String> keyFields,
+                                          final int offset) throws SQLException {
 
-        int index = 1;
+        int index = offset + 1;
         for(final Schema.Field field : row.getSchema().getFields()) {
             final boolean isNull = row.getValue(field.getName()) == null;
             if(keyFields != null && keyFields.size() > 0 && !keyFields.contains(field.getName())) {
@@ -254,9 +275,19 @@ public class ToStatementConverter {
         convertStructWithKeys(struct, statement, null);
     }
 
+    public static void convertStruct(final Struct struct, final PreparedStatement statement, final int offset) throws SQLException {
+        convertStructWithKeys(struct, statement, null, offset);
+    }
+
     public static void convertStructWithKeys(final Struct struct, final PreparedStatement statement,
                                              final List<String> keyFields) throws SQLException {
-        int index = 1;
+        convertStructWithKeys(struct, statement, keyFields, 0);
+    }
+
+    public static void convertStructWithKeys(final Struct struct, final PreparedStatement statement,
+                                             final List<String> keyFields,
+                                             final int offset) throws SQLException {
+        int index = offset + 1;
         for(final Type.StructField field : struct.getType().getStructFields()) {
             if(keyFields != null && keyFields.size() > 0 && !keyFields.contains(field.getName())) {
                 continue;
@@ -323,9 +354,19 @@ public class ToStatementConverter {
         convertEntityWithKeys(entity, statement, null);
     }
 
+    public static void convertEntity(final Entity entity, final PreparedStatement statement, final int offset) throws SQLException {
+        convertEntityWithKeys(entity, statement, null, offset);
+    }
+
     public static void convertEntityWithKeys(final Entity entity, final PreparedStatement statement,
                                              final List<String> keyFields) throws SQLException {
-        int index = 1;
+        convertEntityWithKeys(entity, statement, keyFields, 0);
+    }
+
+    public static void convertEntityWithKeys(final Entity entity, final PreparedStatement statement,
+                                             final List<String> keyFields,
+                                             final int offset) throws SQLException {
+        int index = offset + 1;
         for(final Map.Entry<String, Value> entry : entity.getPropertiesMap().entrySet()) {
             if(keyFields != null && keyFields.size() > 0 && !keyFields.contains(entry.getKey())) {
                 continue;
@@ -364,9 +405,19 @@ public class ToStatementConverter {
         convertDocumentWithKeys(document, statement, null);
     }
 
+    public static void convertDocument(final Document document, final PreparedStatement statement, final int offset) throws SQLException {
+        convertDocumentWithKeys(document, statement, null, offset);
+    }
+
     public static void convertDocumentWithKeys(final Document document, final PreparedStatement statement,
                                              final List<String> keyFields) throws SQLException {
-        int index = 1;
+        convertDocumentWithKeys(document, statement, keyFields, 0);
+    }
+
+    public static void convertDocumentWithKeys(final Document document, final PreparedStatement statement,
+                                             final List<String> keyFields,
+                                             final int offset) throws SQLException {
+        int index = offset + 1;
         for(final Map.Entry<String, com.google.firestore.v1.Value> entry : document.getFieldsMap().entrySet()) {
             if(keyFields != null && keyFields.size() > 0 && !keyFields.contains(entry.getKey())) {
                 continue;
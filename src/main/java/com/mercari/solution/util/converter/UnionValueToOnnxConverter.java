@@ -6,10 +6,10 @@ import com.mercari.solution.util.pipeline.union.UnionValue;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.beam.sdk.values.Row;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class UnionValueToOnnxConverter {
 
@@ -23,21 +23,23 @@ public class UnionValueToOnnxConverter {
             final List<UnionValue> values,
             final List<Map<String, String>> renameFieldsList) throws OrtException {
 
+        // renameFieldsList is aligned with values, one rename map per element in the batch
+
         final Map<String, OnnxTensor> tensors = new HashMap<>();
         for(final Map.Entry<String, NodeInfo> entry : inputsInfo.entrySet()) {
             if(entry.getValue().getInfo() instanceof TensorInfo) {
                 final TensorInfo tensorInfo = (TensorInfo) entry.getValue().getInfo();
-                final List<Object> tensorValues = values.stream()
-                        .map(unionValue -> {
-                            final String field;
-                            if(renameFieldsList == null || renameFieldsList.size() <= unionValue.getIndex()) {
-                                field = entry.getKey();
-                            } else {
-                                field = renameFieldsList.get(unionValue.getIndex()).getOrDefault(entry.getKey(), entry.getKey());
-                            }
-                            return getValue(tensorInfo, field, unionValue);
-                        })
-                        .collect(Collectors.toList());
+                final List<Object> tensorValues = new ArrayList<>(values.size());
+                for(int i=0; i<values.size(); i++) {
+                    final UnionValue unionValue = values.get(i);
+                    final String field;
+                    if(renameFieldsList == null || renameFieldsList.size() <= i || renameFieldsList.get(i) == null) {
+                        field = entry.getKey();
+                    } else {
+                        field = renameFieldsList.get(i).getOrDefault(entry.getKey(), entry.getKey());
+                    }
+                    tensorValues.add(getValue(tensorInfo, field, unionValue));
+                }
                 final OnnxTensor tensor = ONNXRuntimeUtil.convertTensor(environment, tensorInfo, tensorValues);
                 tensors.put(entry.getKey(), tensor);
             } else {
@@ -300,6 +300,121 @@ public class LinearModelUtil implements Serializable {
         return standardized;
     }
 
+    /**
+     * Creates parameters for online learning packed in one array: weights of outputSize rows by inputSize columns,
+     * followed by the upper triangle of inputSize x inputSize inverse covariance matrix initialized with delta * I if useCovariance.
+     */
+    public static double[] createOnlineParams(final int inputSize, final int outputSize, final boolean useCovariance, final double delta) {
+        final int weightsSize = inputSize * outputSize;
+        final double[] params = new double[weightsSize + (useCovariance ? inputSize * (inputSize + 1) / 2 : 0)];
+        if(useCovariance) {
+            for(int i=0; i<inputSize; i++) {
+                params[weightsSize + triangleIndex(inputSize, i, i)] = delta;
+            }
+        }
+        return params;
+    }
+
+    public static int onlineParamsSize(final int inputSize, final int outputSize, final boolean useCovariance) {
+        return inputSize * outputSize + (useCovariance ? inputSize * (inputSize + 1) / 2 : 0);
+    }
+
+    /**
+     * Updates weights and inverse covariance in params created by createOnlineParams in place by recursive least squares
+     * with forgetting factor lambda. Cost is O(inputSize^2) per sample regardless of the number of samples seen.
+     * Returns false and leaves params unchanged if the update is numerically unstable.
+     */
+    public static boolean rls(final double[] params, final double[] x, final double[] y, final double lambda, final double[] work) {
+        final int n = x.length;
+        final int m = y.length;
+        final int offset = n * m;
+
+        // work = P x
+        for(int i=0; i<n; i++) {
+            double s = 0;
+            for(int j=0; j<n; j++) {
+                s += params[offset + (i <= j ? triangleIndex(n, i, j) : triangleIndex(n, j, i))] * x[j];
+            }
+            work[i] = s;
+        }
+        double denominator = lambda;
+        for(int i=0; i<n; i++) {
+            denominator += x[i] * work[i];
+        }
+        if(!(denominator > 0) || Double.isInfinite(denominator)) {
+            return false;
+        }
+
+        // gain k = P x / (lambda + x' P x), weights += k * error
+        for(int o=0; o<m; o++) {
+            double error = y[o];
+            for(int i=0; i<n; i++) {
+                error -= params[o * n + i] * x[i];
+            }
+            final double e = error / denominator;
+            for(int i=0; i<n; i++) {
+                params[o * n + i] += work[i] * e;
+            }
+        }
+
+        // P = (P - k x' P) / lambda
+        for(int i=0; i<n; i++) {
+            for(int j=i; j<n; j++) {
+                final int index = offset + triangleIndex(n, i, j);
+                params[index] = (params[index] - work[i] * work[j] / denominator) / lambda;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Updates weights in params in place by one step of stochastic gradient descent on squared error
+     * with L2 penalty alpha. Returns false and leaves params unchanged if the step is not finite.
+     */
+    public static boolean sgd(final double[] params, final double[] x, final double[] y, final double learningRate, final double alpha) {
+        final int n = x.length;
+        final int m = y.length;
+        for(int o=0; o<m; o++) {
+            double error = y[o];
+            for(int i=0; i<n; i++) {
+                error -= params[o * n + i] * x[i];
+            }
+            if(Double.isNaN(error) || Double.isInfinite(error)) {
+                return false;
+            }
+        }
+        for(int o=0; o<m; o++) {
+            double error = y[o];
+            for(int i=0; i<n; i++) {
+                error -= params[o * n + i] * x[i];
+            }
+            for(int i=0; i<n; i++) {
+                params[o * n + i] += learningRate * (error * x[i] - alpha * params[o * n + i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns outputs of weights in params created by createOnlineParams for x.
+     */
+    public static double[] inference(final double[] params, final double[] x, final int outputSize) {
+        final int n = x.length;
+        final double[] outputs = new double[outputSize];
+        for(int o=0; o<outputSize; o++) {
+            double r = 0;
+            for(int i=0; i<n; i++) {
+                r += params[o * n + i] * x[i];
+            }
+            outputs[o] = r;
+        }
+        return outputs;
+    }
+
+    private static int triangleIndex(final int n, final int i, final int j) {
+        return i * n - i * (i - 1) / 2 + (j - i);
+    }
+
     public static class LinearModel implements Model {
 
         private final int inputSize;
@@ -7,8 +7,12 @@ import org.apache.beam.sdk.values.KV;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -99,6 +103,95 @@ public class ONNXRuntimeUtil {
         return stream.collect(Collectors.toList());
     }
 
+    /**
+     * Returns true if every tensor node has a dynamic leading dimension,
+     * so that multiple elements can be stacked into one tensor along the batch axis.
+     */
+    public static boolean isBatchable(final Map<String, NodeInfo> nodesInfo) {
+        for(final NodeInfo nodeInfo : nodesInfo.values()) {
+            if(!(nodeInfo.getInfo() instanceof TensorInfo tensorInfo)) {
+                return false;
+            }
+            final long[] shape = tensorInfo.getShape();
+            if(shape.length == 0 || shape[0] >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits the output tensor along the batch axis and returns the flattened element values of each batch row.
+     */
+    public static List<List<Object>> splitBatch(final OnnxTensor tensor) throws OrtException {
+        final long[] shape = tensor.getInfo().getShape();
+        final List<Object> elements = getElements(tensor);
+        final int rows = shape.length == 0 ? 1 : (int) shape[0];
+        final int rowSize = rows == 0 ? 0 : elements.size() / rows;
+        final List<List<Object>> values = new ArrayList<>(rows);
+        for(int row=0; row<rows; row++) {
+            values.add(elements.subList(row * rowSize, (row + 1) * rowSize));
+        }
+        return values;
+    }
+
+    private static List<Object> getElements(final OnnxTensor tensor) throws OrtException {
+        final List<Object> elements = new ArrayList<>();
+        switch (tensor.getInfo().type) {
+            case BOOL, INT8, UINT8 -> {
+                final ByteBuffer buffer = tensor.getByteBuffer();
+                final boolean bool = OnnxJavaType.BOOL.equals(tensor.getInfo().type);
+                while(buffer.hasRemaining()) {
+                    final byte value = buffer.get();
+                    elements.add(bool ? (Object) (value != 0) : (Object) value);
+                }
+            }
+            case INT16 -> {
+                final ShortBuffer buffer = tensor.getShortBuffer();
+                while(buffer.hasRemaining()) {
+                    elements.add(buffer.get());
+                }
+            }
+            case INT32 -> {
+                final IntBuffer buffer = tensor.getIntBuffer();
+                while(buffer.hasRemaining()) {
+                    elements.add(buffer.get());
+                }
+            }
+            case INT64 -> {
+                final LongBuffer buffer = tensor.getLongBuffer();
+                while(buffer.hasRemaining()) {
+                    elements.add(buffer.get());
+                }
+            }
+            case FLOAT -> {
+                final FloatBuffer buffer = tensor.getFloatBuffer();
+                while(buffer.hasRemaining()) {
+                    elements.add(buffer.get());
+                }
+            }
+            case DOUBLE -> {
+                final DoubleBuffer buffer = tensor.getDoubleBuffer();
+                while(buffer.hasRemaining()) {
+                    elements.add(buffer.get());
+                }
+            }
+            case STRING -> flattenArray(tensor.getValue(), elements);
+            default -> throw new IllegalArgumentException("Not supported output tensor type: " + tensor.getInfo().type);
+        }
+        return elements;
+    }
+
+    private static void flattenArray(final Object value, final List<Object> elements) {
+        if(value instanceof Object[] array) {
+            for(final Object child : array) {
+                flattenArray(child, elements);
+            }
+        } else {
+            elements.add(value);
+        }
+    }
+
     public static String getExtensionsLibraryPath() {
         try {
             final Object result = Class.forName("ai.onnxruntime.extensions.OrtxPackage")
@@ -111,6 +204,17 @@ public class ONNXRuntimeUtil {
 
     }
 
+    public static byte[] readModel(final String path) {
+        if(path.startsWith("gs://")) {
+            return StorageUtil.readBytes(path);
+        }
+        try {
+            return Files.readAllBytes(Path.of(path));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read model: " + path, e);
+        }
+    }
+
     public static KV<Map<String, NodeInfo>, Map<String, NodeInfo>> getNodesInfo(final String model) {
         try(final OrtEnvironment environment = OrtEnvironment.getEnvironment();
             final OrtSession.SessionOptions sessionOptions = new OrtSession.SessionOptions()) {
@@ -123,7 +227,7 @@ public class ONNXRuntimeUtil {
                 LOG.warn("Skip to load extensions library");
             }
 
-            final byte[] bytes = StorageUtil.readBytes(model);
+            final byte[] bytes = readModel(model);
             try(OrtSession session = environment.createSession(bytes, sessionOptions)) {
                 return KV.of(session.getInputInfo(), session.getOutputInfo());
             }
@@ -1,11 +1,15 @@
 package com.mercari.solution.util.domain.search;
 
+import com.github.luben.zstd.ZstdOutputStream;
 import com.google.common.reflect.ClassPath;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.mercari.solution.util.gcp.StorageUtil;
 import com.mercari.solution.util.pipeline.union.UnionValue;
+import org.apache.beam.sdk.io.FileSystems;
+import org.apache.beam.sdk.io.fs.CreateOptions;
+import org.apache.beam.sdk.io.fs.ResourceId;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
@@ -33,6 +37,8 @@ import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
@@ -40,6 +46,7 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 
@@ -210,6 +217,40 @@ public class Neo4jUtil implements Serializable {
         zip
     }
 
+    /**
+     * Same archive format as Neo4j DumpZstdFormatV1 with the fixed number of compression worker threads,
+     * so that the dump can be loaded by neo4j-admin and {@link #load}.
+     */
+    public static class DumpZstdFormat implements CompressionFormat {
+
+        private static final byte[] MAGIC_HEADER = "DZV1".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] ZSTD_HEADER = "zstd".getBytes(StandardCharsets.US_ASCII);
+
+        private final int workers;
+
+        public DumpZstdFormat(final int workers) {
+            this.workers = workers;
+        }
+
+        @Override
+        public OutputStream compress(final OutputStream stream) throws IOException {
+            stream.write(MAGIC_HEADER);
+            final ZstdOutputStream zstd = new ZstdOutputStream(stream);
+            zstd.setChecksum(true);
+            if(workers > 1) {
+                zstd.setWorkers(workers);
+            }
+            zstd.write(ZSTD_HEADER);
+            return zstd;
+        }
+
+        @Override
+        public InputStream decompress(final InputStream stream) throws IOException {
+            return DumpFormatSelector.decompress(() -> stream);
+        }
+
+    }
+
     public static void query(final HttpClient client, final String username, final String password, final String endpoint, final String database, final String cypher) {
         final String url = String.format("%s/db/%s/tx/commit", endpoint, database);
 
@@ -324,8 +365,36 @@ public class Neo4jUtil implements Serializable {
     }
 
     public static void dump(final String neo4jHome, final String databaseName, final OutputStream os) throws IOException {
+        dump(neo4jHome, databaseName, os, 0);
+    }
+
+    /**
+     * Dumps the database into the file of the output path without holding the whole archive in memory.
+     * The archive is written through the bounded buffer into the writable channel of Beam FileSystems,
+     * that is resumable upload for GCS and local file for other paths.
+     */
+    public static void dump(final String neo4jHome, final String databaseName, final String outputPath, final int compressionWorkers, final int bufferSize) throws IOException {
+        final ResourceId resourceId = FileSystems.matchNewResource(outputPath, false);
+        final CreateOptions options = CreateOptions.StandardCreateOptions.builder()
+                .setMimeType("application/zstd")
+                .build();
+        try(final WritableByteChannel channel = FileSystems.create(resourceId, options);
+            final OutputStream os = new BufferedOutputStream(Channels.newOutputStream(channel), bufferSize)) {
+            dump(neo4jHome, databaseName, os, compressionWorkers);
+        }
+        LOG.info("dumped database: " + databaseName + " to: " + outputPath);
+    }
+
+    /**
+     * Dumps the database into the output stream.
+     * If compressionWorkers is over zero, archive is compressed by zstd with the number of worker threads,
+     * otherwise the compression format selected by Neo4j is used.
+     */
+    public static void dump(final String neo4jHome, final String databaseName, final OutputStream os, final int compressionWorkers) throws IOException {
         final DatabaseLayout layout = Neo4jLayout.of(Path.of(neo4jHome)).databaseLayout(databaseName);
-        final CompressionFormat format = DumpFormatSelector.selectFormat();
+        final CompressionFormat format = compressionWorkers > 0
+                ? new DumpZstdFormat(compressionWorkers)
+                : DumpFormatSelector.selectFormat();
         final String lockFile = layout.databaseLockFile().getFileName().toString();
         final String quarantineMarkerFile = layout.quarantineFile().getFileName().toString();
         LOG.info("dump databasePath: " + layout.databaseDirectory().toAbsolutePath()
@@ -450,6 +519,135 @@ public class Neo4jUtil implements Serializable {
         return relationship;
     }
 
+    public static final String UNWIND_ROWS_PARAMETER = "__rows";
+    public static final String UNWIND_ROW_VARIABLE = "__row";
+    public static final String UNWIND_INDEX_FIELD = "__index";
+
+    private static final Pattern PATTERN_RETURN_CLAUSE = Pattern.compile("(?<![\\w.$])RETURN(?!\\w)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Extracts names of parameters ($name) referenced in the cypher, ignoring string literals and quoted names.
+     */
+    public static List<String> extractParameterNames(final String cypher) {
+        final List<String> names = new ArrayList<>();
+        replaceParameters(cypher, name -> {
+            if(!names.contains(name)) {
+                names.add(name);
+            }
+            return "$" + name;
+        });
+        return names;
+    }
+
+    /**
+     * Rewrites the parameterized cypher to process multiple parameter rows in a query.
+     * Parameters ($name) are replaced by fields of each row. If the cypher has a RETURN clause,
+     * results of the row are returned with the row index field, otherwise the query returns no rows.
+     */
+    public static String createUnwindCypher(final String cypher) {
+        final String rowCypher = replaceParameters(cypher, name -> UNWIND_ROW_VARIABLE + "." + name);
+        final String unwindCypher = "UNWIND $" + UNWIND_ROWS_PARAMETER + " AS " + UNWIND_ROW_VARIABLE + "\n"
+                + "CALL {\n"
+                + "WITH " + UNWIND_ROW_VARIABLE + "\n"
+                + rowCypher + "\n"
+                + "}";
+        if(!hasReturnClause(cypher)) {
+            return unwindCypher;
+        }
+        return unwindCypher + "\n"
+                + "RETURN *, " + UNWIND_ROW_VARIABLE + "." + UNWIND_INDEX_FIELD + " AS " + UNWIND_INDEX_FIELD;
+    }
+
+    /**
+     * Returns true if the cypher has a RETURN clause, ignoring string literals and quoted names.
+     */
+    public static boolean hasReturnClause(final String cypher) {
+        final StringBuilder sb = new StringBuilder(cypher.length());
+        int i = 0;
+        while(i < cypher.length()) {
+            final char c = cypher.charAt(i);
+            if(c == '\'' || c == '"' || c == '`') {
+                sb.append(' ');
+                i = skipQuoted(cypher, i);
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return PATTERN_RETURN_CLAUSE.matcher(sb).find();
+    }
+
+    /**
+     * Executes the unwind cypher created by {@link #createUnwindCypher(String)} for the parameter rows,
+     * and returns result records of each row in the order of the rows.
+     */
+    public static List<List<Map<String, Object>>> queryBatch(
+            final Transaction tx,
+            final String unwindCypher,
+            final List<Map<String, Object>> values) {
+
+        final List<Map<String, Object>> rows = new ArrayList<>(values.size());
+        final List<List<Map<String, Object>>> results = new ArrayList<>(values.size());
+        for(int i=0; i<values.size(); i++) {
+            final Map<String, Object> row = formatParameters(values.get(i));
+            row.put(UNWIND_INDEX_FIELD, (long) i);
+            rows.add(row);
+            results.add(new ArrayList<>());
+        }
+
+        try(final Result result = tx.execute(unwindCypher, Map.of(UNWIND_ROWS_PARAMETER, rows))) {
+            while(result.hasNext()) {
+                final Map<String, Object> record = new HashMap<>(result.next());
+                final int i = ((Number) record.remove(UNWIND_INDEX_FIELD)).intValue();
+                record.remove(UNWIND_ROW_VARIABLE);
+                results.get(i).add(record);
+            }
+        }
+        return results;
+    }
+
+    public static Map<String, Object> formatParameters(final Map<String, Object> values) {
+        final Map<String, Object> parameters = new HashMap<>();
+        for(final Map.Entry<String, Object> entry : values.entrySet()) {
+            parameters.put(entry.getKey(), formatValue(entry.getValue()));
+        }
+        return parameters;
+    }
+
+    private static String replaceParameters(final String cypher, final java.util.function.Function<String, String> replacer) {
+        final StringBuilder sb = new StringBuilder(cypher.length());
+        int i = 0;
+        while(i < cypher.length()) {
+            final char c = cypher.charAt(i);
+            if(c == '\'' || c == '"' || c == '`') {
+                // copy string literals and quoted names as is
+                final int end = skipQuoted(cypher, i);
+                sb.append(cypher, i, end);
+                i = end;
+            } else if(c == '$' && i + 1 < cypher.length() && Character.isJavaIdentifierStart(cypher.charAt(i + 1))) {
+                int end = i + 1;
+                while(end < cypher.length() && Character.isJavaIdentifierPart(cypher.charAt(end))) {
+                    end++;
+                }
+                sb.append(replacer.apply(cypher.substring(i + 1, end)));
+                i = end;
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int skipQuoted(final String cypher, final int start) {
+        final char quote = cypher.charAt(start);
+        int end = start + 1;
+        while(end < cypher.length() && cypher.charAt(end) != quote) {
+            end += cypher.charAt(end) == '\\' && quote != '`' ? 2 : 1;
+        }
+        return Math.min(end + 1, cypher.length());
+    }
+
     private static Object formatValue(Object value) {
         if(value == null) {
             return null;
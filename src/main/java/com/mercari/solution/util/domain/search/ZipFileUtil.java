@@ -9,11 +9,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -58,16 +61,37 @@ public class ZipFileUtil {
             final BufferedInputStream bis = new BufferedInputStream(is);
             final ZipInputStream zis = new ZipInputStream(bis)) {
 
-            ZipEntry zipEntry;
-            while((zipEntry = zis.getNextEntry()) != null) {
-                unzipFile(zis, zipEntry, localDirPath);
-                zis.closeEntry();
-            }
+            unzip(zis, localDirPath);
         } catch (EOFException e) {
             LOG.error("failed to download: " + gcsPath + " to local: " + localDirPath + " cause: " + e.getMessage());
         }
     }
 
+    public static void unzip(final InputStream inputStream, final String localDirPath) throws IOException {
+        final File dir = new File(localDirPath);
+        if(!dir.exists() || dir.isFile()) {
+            dir.mkdirs();
+        }
+        final ZipInputStream zis = inputStream instanceof ZipInputStream z ? z : new ZipInputStream(new BufferedInputStream(inputStream));
+        ZipEntry zipEntry;
+        while((zipEntry = zis.getNextEntry()) != null) {
+            unzipFile(zis, zipEntry, localDirPath);
+            zis.closeEntry();
+        }
+    }
+
+    public static void deleteDirectory(final String localDirPath) throws IOException {
+        final Path path = Paths.get(localDirPath);
+        if(!Files.exists(path)) {
+            return;
+        }
+        try(final Stream<Path> paths = Files.walk(path)) {
+            for(final Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
     private static void zipFile(final ZipOutputStream zos, final File file, final String dirPath) throws IOException {
         if(file.isDirectory()) {
             for(final File childFile : file.listFiles()) {
@@ -146,4 +170,34 @@ public class ZipFileUtil {
         return write;
     }
 
+    /**
+     * Write to split elements of each destination into the number of shard files.
+     * Used to build partial files in parallel, which are merged by the following createSingleFileWrite.
+     */
+    public static <T> FileIO.Write<String, T> createShardedFileWrite(
+            final String output,
+            final List<String> groupFields,
+            final String tempDirectory,
+            final int numShards,
+            final SerializableFunction<T, String> destinationFunction) {
+
+        FileIO.Write<String, T> write = FileIO.<String, T>writeDynamic()
+                .to(output)
+                .withDestinationCoder(StringUtf8Coder.of())
+                .withNumShards(numShards)
+                .withNoSpilling()
+                .withNaming(key -> FileIO.Write.defaultNaming(key.isEmpty() ? "index" : "index-" + key, ".zip"));
+        if(groupFields.size() > 0) {
+            write = write.by(d -> Optional.ofNullable(destinationFunction.apply(d)).orElse(""));
+        } else {
+            write = write.by(d -> "");
+        }
+
+        if(tempDirectory != null) {
+            write = write.withTempDirectory(tempDirectory);
+        }
+
+        return write;
+    }
+
 }
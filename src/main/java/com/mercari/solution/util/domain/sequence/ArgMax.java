@@ -21,7 +21,7 @@ public class ArgMax implements Sequencer {
     private final String comparingStateName;
     private final String condition;
 
-    private transient com.mercari.solution.util.Filter.ConditionNode conditionNode;
+    private transient com.mercari.solution.util.Filter.CompiledCondition conditionNode;
 
 
     ArgMax(final JsonObject params) {
@@ -103,7 +103,7 @@ public class ArgMax implements Sequencer {
     @Override
     public void setup() {
         if(this.condition != null) {
-            this.conditionNode = com.mercari.solution.util.Filter.parse(new Gson().fromJson(condition, JsonElement.class));
+            this.conditionNode = com.mercari.solution.util.Filter.compile(com.mercari.solution.util.Filter.parse(new Gson().fromJson(condition, JsonElement.class)));
         } else {
             this.conditionNode = null;
         }
@@ -126,7 +126,7 @@ public class ArgMax implements Sequencer {
             final SchemaUtil.TimestampConverter timestampConverter) {
 
         if(conditionNode != null) {
-            if(!Filter.filter(input, valueGetter::getValue, this.conditionNode, updateValues)) {
+            if(!this.conditionNode.test(input, valueGetter, updateValues)) {
                 return;
             }
         }
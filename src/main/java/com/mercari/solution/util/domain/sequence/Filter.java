@@ -17,7 +17,7 @@ public class Filter implements Sequencer {
 
     private final String condition;
 
-    private transient com.mercari.solution.util.Filter.ConditionNode conditionNode;
+    private transient com.mercari.solution.util.Filter.CompiledCondition conditionNode;
 
 
     Filter(final JsonObject params) {
@@ -51,7 +51,7 @@ public class Filter implements Sequencer {
     @Override
     public void setup() {
         if(this.condition != null) {
-            this.conditionNode = com.mercari.solution.util.Filter.parse(new Gson().fromJson(condition, JsonElement.class));
+            this.conditionNode = com.mercari.solution.util.Filter.compile(com.mercari.solution.util.Filter.parse(new Gson().fromJson(condition, JsonElement.class)));
         } else {
             this.conditionNode = null;
         }
@@ -62,7 +62,7 @@ public class Filter implements Sequencer {
                                final Map<String, Object> updateValues,
                                final SchemaUtil.ValueGetter<T> valueGetter) {
 
-        return !com.mercari.solution.util.Filter.filter(input, valueGetter::getValue, this.conditionNode, updateValues);
+        return !this.conditionNode.test(input, valueGetter, updateValues);
     }
 
     @Override
@@ -19,7 +19,7 @@ public class Flag implements Sequencer {
     private final String prevFlagStateName;
     private final String condition;
 
-    private transient com.mercari.solution.util.Filter.ConditionNode conditionNode;
+    private transient com.mercari.solution.util.Filter.CompiledCondition conditionNode;
 
     Flag(final JsonObject params) {
         if(params.has("name")) {
@@ -77,7 +77,7 @@ public class Flag implements Sequencer {
     @Override
     public void setup() {
         if(this.condition != null) {
-            this.conditionNode = com.mercari.solution.util.Filter.parse(new Gson().fromJson(condition, JsonElement.class));
+            this.conditionNode = com.mercari.solution.util.Filter.compile(com.mercari.solution.util.Filter.parse(new Gson().fromJson(condition, JsonElement.class)));
         } else {
             this.conditionNode = null;
         }
@@ -99,7 +99,7 @@ public class Flag implements Sequencer {
             final SchemaUtil.ValueGetter<T> valueGetter,
             final SchemaUtil.TimestampConverter timestampConverter) {
 
-        final boolean flag = Filter.filter(input, valueGetter::getValue, this.conditionNode, updateValues);
+        final boolean flag = this.conditionNode.test(input, valueGetter, updateValues);
         updateValues.put(name, flag);
         if(this.changeFlagField != null) {
             final boolean prevFlag = (Boolean) Optional.ofNullable(Sequencer.getValue(input, state, updateValues, valueGetter, prevFlagStateName)).orElse(false);
@@ -20,7 +20,7 @@ public class Last implements Sequencer {
     private final String timestampStateName;
     private final String condition;
 
-    private transient Filter.ConditionNode conditionNode;
+    private transient Filter.CompiledCondition conditionNode;
 
 
     Last(final JsonObject params) {
@@ -84,7 +84,7 @@ public class Last implements Sequencer {
     @Override
     public void setup() {
         if(this.condition != null) {
-            this.conditionNode = Filter.parse(new Gson().fromJson(condition, JsonElement.class));
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(condition, JsonElement.class)));
         } else {
             this.conditionNode = null;
         }
@@ -107,7 +107,7 @@ public class Last implements Sequencer {
             final SchemaUtil.TimestampConverter timestampConverter) {
 
         if(conditionNode != null) {
-            if(!Filter.filter(input, valueGetter::getValue, this.conditionNode, updateValues)) {
+            if(!this.conditionNode.test(input, valueGetter, updateValues)) {
                 return;
             }
         }
@@ -16,7 +16,7 @@ public class Max implements Sequencer {
     private final String field;
     private final String condition;
 
-    private transient Filter.ConditionNode conditionNode;
+    private transient Filter.CompiledCondition conditionNode;
 
     Max(final JsonObject params) {
         if(params.has("name")) {
@@ -74,7 +74,7 @@ public class Max implements Sequencer {
     @Override
     public void setup() {
         if(this.condition != null) {
-            this.conditionNode = Filter.parse(new Gson().fromJson(condition, JsonElement.class));
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(condition, JsonElement.class)));
         } else {
             this.conditionNode = null;
         }
@@ -97,7 +97,7 @@ public class Max implements Sequencer {
             final SchemaUtil.TimestampConverter timestampConverter) {
 
         if(conditionNode != null) {
-            if(!Filter.filter(input, valueGetter::getValue, this.conditionNode, updateValues)) {
+            if(!this.conditionNode.test(input, valueGetter, updateValues)) {
                 return;
             }
         }
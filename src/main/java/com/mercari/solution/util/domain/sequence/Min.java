@@ -16,7 +16,7 @@ public class Min implements Sequencer {
     private final String field;
     private final String condition;
 
-    private transient Filter.ConditionNode conditionNode;
+    private transient Filter.CompiledCondition conditionNode;
 
 
     Min(final JsonObject params) {
@@ -76,7 +76,7 @@ public class Min implements Sequencer {
     @Override
     public void setup() {
         if(this.condition != null) {
-            this.conditionNode = Filter.parse(new Gson().fromJson(condition, JsonElement.class));
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(condition, JsonElement.class)));
         } else {
             this.conditionNode = null;
         }
@@ -99,7 +99,7 @@ public class Min implements Sequencer {
             final SchemaUtil.TimestampConverter timestampConverter) {
 
         if(conditionNode != null) {
-            if(!Filter.filter(input, valueGetter::getValue, this.conditionNode, updateValues)) {
+            if(!this.conditionNode.test(input, valueGetter, updateValues)) {
                 return;
             }
         }
@@ -16,7 +16,7 @@ public class Sum implements Sequencer {
     private final String field;
     private final String condition;
 
-    private transient com.mercari.solution.util.Filter.ConditionNode conditionNode;
+    private transient com.mercari.solution.util.Filter.CompiledCondition conditionNode;
 
     Sum(final JsonObject params) {
         if(params.has("name")) {
@@ -65,7 +65,7 @@ public class Sum implements Sequencer {
     @Override
     public void setup() {
         if(this.condition != null) {
-            this.conditionNode = com.mercari.solution.util.Filter.parse(new Gson().fromJson(condition, JsonElement.class));
+            this.conditionNode = com.mercari.solution.util.Filter.compile(com.mercari.solution.util.Filter.parse(new Gson().fromJson(condition, JsonElement.class)));
         } else {
             this.conditionNode = null;
         }
@@ -88,7 +88,7 @@ public class Sum implements Sequencer {
             final SchemaUtil.TimestampConverter timestampConverter) {
 
         if(conditionNode != null) {
-            if(!Filter.filter(input, valueGetter::getValue, this.conditionNode, updateValues)) {
+            if(!this.conditionNode.test(input, valueGetter, updateValues)) {
                 return;
             }
         }
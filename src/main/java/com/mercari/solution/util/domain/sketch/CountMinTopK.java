@@ -0,0 +1,198 @@
+package com.mercari.solution.util.domain.sketch;
+
+import org.apache.beam.sdk.util.VarInt;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Top K frequent values by count-min sketch.
+ * Frequencies of all values are estimated by the count-min table, and only the candidates with highest estimates are held by value.
+ * Candidates are kept a few times more than k, so that values which become frequent later or in other partitions can be promoted on merge.
+ */
+public class CountMinTopK implements Sketch {
+
+    public static final int DEFAULT_SIZE = 10;
+    public static final int DEFAULT_DEPTH = 4;
+    public static final int DEFAULT_WIDTH = 1024;
+
+    private static final int CANDIDATE_FACTOR = 4;
+    private static final Comparator<Map.Entry<String, Long>> ORDER = Map.Entry.<String, Long>comparingByValue().reversed()
+            .thenComparing(Map.Entry.comparingByKey());
+
+    private final int size;
+    private final int depth;
+    private final int width;
+
+    private long count;
+    private final long[][] table;
+    private final Map<String, Long> candidates;
+
+    private CountMinTopK(final int size, final int depth, final int width) {
+        this.size = size;
+        this.depth = depth;
+        this.width = width;
+        this.count = 0;
+        this.table = new long[depth][width];
+        this.candidates = new HashMap<>();
+    }
+
+    public static CountMinTopK of() {
+        return of(DEFAULT_SIZE);
+    }
+
+    public static CountMinTopK of(final int size) {
+        return of(size, DEFAULT_DEPTH, DEFAULT_WIDTH);
+    }
+
+    public static CountMinTopK of(final int size, final int depth, final int width) {
+        if(size < 1) {
+            throw new IllegalArgumentException("CountMinTopK size must be over zero, but was: " + size);
+        }
+        if(depth < 1 || width < 1) {
+            throw new IllegalArgumentException("CountMinTopK depth and width must be over zero, but were: " + depth + ", " + width);
+        }
+        return new CountMinTopK(size, depth, width);
+    }
+
+    @Override
+    public Type getType() {
+        return Type.topk;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void add(final String value) {
+        add(value, 1L);
+    }
+
+    public void add(final String value, final long weight) {
+        if(value == null || weight <= 0) {
+            return;
+        }
+        final long hash = Sketch.hash(value);
+        long estimate = Long.MAX_VALUE;
+        for(int d=0; d<depth; d++) {
+            final int index = index(hash, d);
+            table[d][index] += weight;
+            estimate = Math.min(estimate, table[d][index]);
+        }
+        count += weight;
+        offer(value, estimate);
+    }
+
+    public long estimate(final String value) {
+        if(value == null) {
+            return 0L;
+        }
+        final long hash = Sketch.hash(value);
+        long estimate = Long.MAX_VALUE;
+        for(int d=0; d<depth; d++) {
+            estimate = Math.min(estimate, table[d][index(hash, d)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns at most size values and estimated counts, ordered by count descending.
+     */
+    public List<Map.Entry<String, Long>> top() {
+        return candidates.entrySet().stream()
+                .sorted(ORDER)
+                .limit(size)
+                .map(e -> Map.entry(e.getKey(), e.getValue()))
+                .toList();
+    }
+
+    @Override
+    public void merge(final Sketch other) {
+        if(!(other instanceof CountMinTopK topK)) {
+            throw new IllegalArgumentException("CountMinTopK can not merge sketch: " + (other == null ? null : other.getType()));
+        }
+        if(topK.depth != depth || topK.width != width) {
+            throw new IllegalArgumentException("CountMinTopK can not merge different table size: " + depth + "x" + width + " and " + topK.depth + "x" + topK.width);
+        }
+        for(int d=0; d<depth; d++) {
+            for(int w=0; w<width; w++) {
+                table[d][w] += topK.table[d][w];
+            }
+        }
+        count += topK.count;
+
+        final Set<String> values = new HashSet<>(candidates.keySet());
+        values.addAll(topK.candidates.keySet());
+        candidates.clear();
+        for(final String value : values) {
+            offer(value, estimate(value));
+        }
+    }
+
+    @Override
+    public void write(final DataOutputStream os) throws IOException {
+        VarInt.encode(size, os);
+        VarInt.encode(depth, os);
+        VarInt.encode(width, os);
+        VarInt.encode(count, os);
+        for(final long[] row : table) {
+            for(final long cell : row) {
+                VarInt.encode(cell, os);
+            }
+        }
+        VarInt.encode(candidates.size(), os);
+        for(final String value : new TreeSet<>(candidates.keySet())) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            VarInt.encode(bytes.length, os);
+            os.write(bytes);
+        }
+    }
+
+    static CountMinTopK read(final DataInputStream is) throws IOException {
+        final CountMinTopK topK = new CountMinTopK(VarInt.decodeInt(is), VarInt.decodeInt(is), VarInt.decodeInt(is));
+        topK.count = VarInt.decodeLong(is);
+        for(final long[] row : topK.table) {
+            for(int w=0; w<row.length; w++) {
+                row[w] = VarInt.decodeLong(is);
+            }
+        }
+        final int candidateSize = VarInt.decodeInt(is);
+        for(int i=0; i<candidateSize; i++) {
+            final byte[] bytes = new byte[VarInt.decodeInt(is)];
+            is.readFully(bytes);
+            final String value = new String(bytes, StandardCharsets.UTF_8);
+            topK.candidates.put(value, topK.estimate(value));
+        }
+        return topK;
+    }
+
+    private void offer(final String value, final long estimate) {
+        if(candidates.containsKey(value) || candidates.size() < size * CANDIDATE_FACTOR) {
+            candidates.put(value, estimate);
+            return;
+        }
+        Map.Entry<String, Long> lowest = null;
+        for(final Map.Entry<String, Long> entry : candidates.entrySet()) {
+            if(lowest == null || entry.getValue() < lowest.getValue()) {
+                lowest = entry;
+            }
+        }
+        if(lowest != null && estimate > lowest.getValue()) {
+            candidates.remove(lowest.getKey());
+            candidates.put(value, estimate);
+        }
+    }
+
+    private int index(final long hash, final int d) {
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32);
+        return ((h1 + d * h2) & Integer.MAX_VALUE) % width;
+    }
+
+}
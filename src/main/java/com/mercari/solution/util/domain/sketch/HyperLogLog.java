@@ -0,0 +1,265 @@
+package com.mercari.solution.util.domain.sketch;
+
+import org.apache.beam.sdk.util.VarInt;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog count distinct sketch with 64 bit hash, with sparse representation as in HyperLogLog++.
+ * Registers are kept sparse as sorted (index, rank) pairs while few registers are set,
+ * and converted to the dense byte array when the sparse pairs would exceed the size of dense registers.
+ * Sparse and dense registers hold same values, so merge and estimate are exact regardless of the representation.
+ */
+public class HyperLogLog implements Sketch {
+
+    public static final int DEFAULT_PRECISION = 14;
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private static final double ALPHA_INF = 1D / (2D * Math.log(2D));
+
+    private final int precision;
+    private final int m;
+
+    private long count;
+
+    // sparse representation: (index << 8 | rank) sorted by index
+    private int[] sparse;
+    private int sparseSize;
+
+    private byte[] registers;
+
+    private HyperLogLog(final int precision) {
+        this.precision = precision;
+        this.m = 1 << precision;
+        this.count = 0;
+        this.sparse = new int[8];
+        this.sparseSize = 0;
+        this.registers = null;
+    }
+
+    public static HyperLogLog of() {
+        return of(DEFAULT_PRECISION);
+    }
+
+    public static HyperLogLog of(final int precision) {
+        if(precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION + ", but was: " + precision);
+        }
+        return new HyperLogLog(precision);
+    }
+
+    @Override
+    public Type getType() {
+        return Type.hll;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void add(final Object value) {
+        if(value == null) {
+            return;
+        }
+        addHash(Sketch.hash(value));
+    }
+
+    public void addHash(final long hash) {
+        final int index = (int) (hash >>> (64 - precision));
+        final long rest = (hash << precision) | (1L << (precision - 1));
+        final int rank = Long.numberOfLeadingZeros(rest) + 1;
+        update(index, rank);
+        count++;
+    }
+
+    /**
+     * Estimates cardinality by Ertl's improved raw estimator from the histogram of register values
+     * (O. Ertl, New cardinality estimation algorithms for HyperLogLog sketches, 2017).
+     * It is unbiased over the whole range, so neither linear counting nor empirical bias correction tables are needed.
+     */
+    public long estimate() {
+        final int q = 64 - precision;
+        final int[] histogram = new int[q + 2];
+        if(registers == null) {
+            // every register set in sparse mode is non-zero
+            histogram[0] = m - sparseSize;
+            for(int i=0; i<sparseSize; i++) {
+                histogram[sparse[i] & 0xFF]++;
+            }
+        } else {
+            for(final byte register : registers) {
+                histogram[register]++;
+            }
+        }
+
+        double z = m * tau(1D - (double) histogram[q + 1] / m);
+        for(int k=q; k>=1; k--) {
+            z = 0.5D * (z + histogram[k]);
+        }
+        z += m * sigma((double) histogram[0] / m);
+        return Math.round(ALPHA_INF * m * m / z);
+    }
+
+    @Override
+    public void merge(final Sketch other) {
+        if(!(other instanceof HyperLogLog hll)) {
+            throw new IllegalArgumentException("HyperLogLog can not merge sketch: " + (other == null ? null : other.getType()));
+        }
+        if(hll.precision != precision) {
+            throw new IllegalArgumentException("HyperLogLog can not merge different precision: " + precision + " and " + hll.precision);
+        }
+        if(hll.registers != null) {
+            toDense();
+            for(int i=0; i<m; i++) {
+                if(hll.registers[i] > registers[i]) {
+                    registers[i] = hll.registers[i];
+                }
+            }
+        } else {
+            for(int i=0; i<hll.sparseSize; i++) {
+                update(hll.sparse[i] >>> 8, hll.sparse[i] & 0xFF);
+            }
+        }
+        count += hll.count;
+    }
+
+    @Override
+    public void write(final DataOutputStream os) throws IOException {
+        os.writeByte(precision);
+        VarInt.encode(count, os);
+        if(registers == null) {
+            os.writeBoolean(false);
+            VarInt.encode(sparseSize, os);
+            int prevIndex = 0;
+            for(int i=0; i<sparseSize; i++) {
+                final int index = sparse[i] >>> 8;
+                VarInt.encode(index - prevIndex, os);
+                os.writeByte(sparse[i] & 0xFF);
+                prevIndex = index;
+            }
+        } else {
+            os.writeBoolean(true);
+            os.write(registers);
+        }
+    }
+
+    static HyperLogLog read(final DataInputStream is) throws IOException {
+        final HyperLogLog hll = new HyperLogLog(is.readUnsignedByte());
+        hll.count = VarInt.decodeLong(is);
+        final boolean dense = is.readBoolean();
+        if(dense) {
+            hll.registers = new byte[hll.m];
+            is.readFully(hll.registers);
+        } else {
+            final int size = VarInt.decodeInt(is);
+            hll.sparse = new int[Math.max(size, 8)];
+            int index = 0;
+            for(int i=0; i<size; i++) {
+                index += VarInt.decodeInt(is);
+                hll.sparse[i] = (index << 8) | is.readUnsignedByte();
+            }
+            hll.sparseSize = size;
+        }
+        return hll;
+    }
+
+    private void update(final int index, final int rank) {
+        if(registers != null) {
+            if(rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+
+        final int position = findSparse(index);
+        if(position >= 0) {
+            if(rank > (sparse[position] & 0xFF)) {
+                sparse[position] = (index << 8) | rank;
+            }
+            return;
+        }
+
+        // a sparse entry is serialized in about 2 bytes at least, so sparse is kept while smaller than half of dense registers
+        if(sparseSize + 1 > m / 2) {
+            toDense();
+            update(index, rank);
+            return;
+        }
+        final int insert = -(position + 1);
+        if(sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.min(sparse.length * 2, m));
+        }
+        System.arraycopy(sparse, insert, sparse, insert + 1, sparseSize - insert);
+        sparse[insert] = (index << 8) | rank;
+        sparseSize++;
+    }
+
+    private int findSparse(final int index) {
+        int low = 0;
+        int high = sparseSize - 1;
+        while(low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int midIndex = sparse[mid] >>> 8;
+            if(midIndex < index) {
+                low = mid + 1;
+            } else if(midIndex > index) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void toDense() {
+        if(registers != null) {
+            return;
+        }
+        registers = new byte[m];
+        for(int i=0; i<sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte) (sparse[i] & 0xFF);
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    private static double sigma(double x) {
+        if(x == 1D) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1D;
+        double z = x;
+        double zPrev;
+        do {
+            x *= x;
+            zPrev = z;
+            z += x * y;
+            y += y;
+        } while(z != zPrev);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if(x == 0D || x == 1D) {
+            return 0D;
+        }
+        double y = 1D;
+        double z = 1D - x;
+        double zPrev;
+        do {
+            x = Math.sqrt(x);
+            zPrev = z;
+            y *= 0.5D;
+            z -= Math.pow(1D - x, 2) * y;
+        } while(z != zPrev);
+        return z / 3D;
+    }
+
+}
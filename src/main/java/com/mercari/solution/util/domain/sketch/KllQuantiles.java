@@ -0,0 +1,269 @@
+package com.mercari.solution.util.domain.sketch;
+
+import org.apache.beam.sdk.util.VarInt;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * KLL quantiles sketch.
+ * Values are kept in levels of compactors, an item at level h stands for 2^h input values.
+ * When the sketch exceeds its capacity, the lowest full level is sorted and every other item is promoted to the next level,
+ * so the size is bounded by about 3k regardless of the number of inputs and the rank error is about 1.65 / k.
+ */
+public class KllQuantiles implements Sketch {
+
+    public static final int DEFAULT_K = 200;
+    public static final int MIN_K = 8;
+
+    private static final double C = 2D / 3D;
+    private static final int MIN_LEVEL_CAPACITY = 2;
+
+    private final int k;
+
+    private long count;
+    private double min;
+    private double max;
+
+    private final List<double[]> levels;
+    private final List<Integer> sizes;
+
+    // level capacities depend only on the number of levels, so they are recomputed only when a level is added
+    private int[] capacities;
+    private int totalCapacity;
+    private int totalSize;
+
+    private KllQuantiles(final int k) {
+        this.k = k;
+        this.count = 0;
+        this.min = Double.NaN;
+        this.max = Double.NaN;
+        this.levels = new ArrayList<>();
+        this.sizes = new ArrayList<>();
+        addLevel();
+    }
+
+    public static KllQuantiles of() {
+        return of(DEFAULT_K);
+    }
+
+    public static KllQuantiles of(final int k) {
+        if(k < MIN_K) {
+            throw new IllegalArgumentException("KllQuantiles k must be over " + (MIN_K - 1) + ", but was: " + k);
+        }
+        return new KllQuantiles(k);
+    }
+
+    @Override
+    public Type getType() {
+        return Type.kll;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public void add(final double value) {
+        if(Double.isNaN(value)) {
+            return;
+        }
+        append(0, value);
+        count++;
+        if(count == 1) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        compress();
+    }
+
+    /**
+     * Returns approximate value at the rank ratio (0.0 to 1.0), or null if no value was added.
+     */
+    public Double quantile(final double rank) {
+        final List<Double> values = quantiles(List.of(rank));
+        return values.get(0);
+    }
+
+    public List<Double> quantiles(final List<Double> ranks) {
+        final List<Double> results = new ArrayList<>();
+        if(count == 0) {
+            for(int i=0; i<ranks.size(); i++) {
+                results.add(null);
+            }
+            return results;
+        }
+
+        int size = 0;
+        for(final Integer levelSize : sizes) {
+            size += levelSize;
+        }
+        final double[] values = new double[size];
+        final long[] weights = new long[size];
+        int pos = 0;
+        for(int h=0; h<levels.size(); h++) {
+            final double[] level = levels.get(h);
+            for(int i=0; i<sizes.get(h); i++) {
+                values[pos] = level[i];
+                weights[pos] = 1L << h;
+                pos++;
+            }
+        }
+        final Integer[] order = new Integer[size];
+        for(int i=0; i<size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> values[i]));
+
+        long total = 0;
+        for(final long weight : weights) {
+            total += weight;
+        }
+        for(final Double rank : ranks) {
+            if(rank == null || rank <= 0) {
+                results.add(min);
+                continue;
+            } else if(rank >= 1) {
+                results.add(max);
+                continue;
+            }
+            final double target = rank * total;
+            long cumulative = 0;
+            Double result = max;
+            for(final Integer i : order) {
+                cumulative += weights[i];
+                if(cumulative >= target) {
+                    result = values[i];
+                    break;
+                }
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    @Override
+    public void merge(final Sketch other) {
+        if(!(other instanceof KllQuantiles kll)) {
+            throw new IllegalArgumentException("KllQuantiles can not merge sketch: " + (other == null ? null : other.getType()));
+        }
+        if(kll.count == 0) {
+            return;
+        }
+        for(int h=0; h<kll.levels.size(); h++) {
+            while(levels.size() <= h) {
+                addLevel();
+            }
+            final double[] level = kll.levels.get(h);
+            for(int i=0; i<kll.sizes.get(h); i++) {
+                append(h, level[i]);
+            }
+        }
+        if(count == 0) {
+            min = kll.min;
+            max = kll.max;
+        } else {
+            min = Math.min(min, kll.min);
+            max = Math.max(max, kll.max);
+        }
+        count += kll.count;
+        compress();
+    }
+
+    @Override
+    public void write(final DataOutputStream os) throws IOException {
+        VarInt.encode(k, os);
+        VarInt.encode(count, os);
+        os.writeDouble(min);
+        os.writeDouble(max);
+        VarInt.encode(levels.size(), os);
+        for(int h=0; h<levels.size(); h++) {
+            final double[] level = levels.get(h);
+            final int size = sizes.get(h);
+            VarInt.encode(size, os);
+            for(int i=0; i<size; i++) {
+                os.writeDouble(level[i]);
+            }
+        }
+    }
+
+    static KllQuantiles read(final DataInputStream is) throws IOException {
+        final KllQuantiles kll = new KllQuantiles(VarInt.decodeInt(is));
+        kll.count = VarInt.decodeLong(is);
+        kll.min = is.readDouble();
+        kll.max = is.readDouble();
+        final int levelSize = VarInt.decodeInt(is);
+        for(int h=0; h<levelSize; h++) {
+            while(kll.levels.size() <= h) {
+                kll.addLevel();
+            }
+            final int size = VarInt.decodeInt(is);
+            for(int i=0; i<size; i++) {
+                kll.append(h, is.readDouble());
+            }
+        }
+        return kll;
+    }
+
+    private void addLevel() {
+        levels.add(new double[MIN_LEVEL_CAPACITY]);
+        sizes.add(0);
+        capacities = new int[levels.size()];
+        totalCapacity = 0;
+        for(int h=0; h<capacities.length; h++) {
+            final int depth = capacities.length - h - 1;
+            capacities[h] = Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(C, depth)));
+            totalCapacity += capacities[h];
+        }
+    }
+
+    private void append(final int h, final double value) {
+        double[] level = levels.get(h);
+        final int size = sizes.get(h);
+        if(size == level.length) {
+            level = Arrays.copyOf(level, level.length * 2);
+            levels.set(h, level);
+        }
+        level[size] = value;
+        sizes.set(h, size + 1);
+        totalSize++;
+    }
+
+    private void compress() {
+        while(totalSize > totalCapacity) {
+            for(int h=0; h<levels.size(); h++) {
+                if(sizes.get(h) >= capacities[h]) {
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void compact(final int h) {
+        if(h + 1 >= levels.size()) {
+            addLevel();
+        }
+        final double[] level = levels.get(h);
+        final int size = sizes.get(h);
+        Arrays.sort(level, 0, size);
+
+        // odd item is left in the level so that total weight is preserved
+        final int start = size % 2 == 1 ? 1 : 0;
+        final int offset = ThreadLocalRandom.current().nextBoolean() ? 1 : 0;
+        for(int i=start+offset; i<size; i+=2) {
+            append(h + 1, level[i]);
+        }
+        totalSize -= size - start;
+        sizes.set(h, start);
+    }
+
+}
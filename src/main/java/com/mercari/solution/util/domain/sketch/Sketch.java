@@ -0,0 +1,121 @@
+package com.mercari.solution.util.domain.sketch;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
+import org.apache.beam.sdk.coders.CoderException;
+import org.apache.beam.sdk.coders.CustomCoder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Mergeable approximate summary of values.
+ * Sketches are serialized into compact bytes starting with the type, so that any sketch can be restored by {@link #of(byte[])}.
+ */
+public interface Sketch extends Serializable {
+
+    enum Type {
+        hll,
+        kll,
+        topk
+    }
+
+    Type getType();
+
+    long getCount();
+
+    void merge(Sketch other);
+
+    void write(DataOutputStream os) throws IOException;
+
+    default byte[] toByteArray() {
+        try(final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final DataOutputStream os = new DataOutputStream(baos)) {
+            os.writeByte(getType().ordinal());
+            write(os);
+            os.flush();
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize sketch: " + getType(), e);
+        }
+    }
+
+    static Sketch of(final byte[] bytes) {
+        try(final DataInputStream is = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            final Type type = Type.values()[is.readUnsignedByte()];
+            return switch (type) {
+                case hll -> HyperLogLog.read(is);
+                case kll -> KllQuantiles.read(is);
+                case topk -> CountMinTopK.read(is);
+            };
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to deserialize sketch", e);
+        }
+    }
+
+    static <S extends Sketch> S copy(final S sketch) {
+        if(sketch == null) {
+            return null;
+        }
+        return (S) of(sketch.toByteArray());
+    }
+
+    HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    /**
+     * Returns 64 bit hash of the value. Integral numbers are hashed by the value so that INT32 and INT64 values are same.
+     */
+    static long hash(final Object value) {
+        if(value instanceof String s) {
+            return HASH_FUNCTION.hashString(s, StandardCharsets.UTF_8).asLong();
+        } else if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return HASH_FUNCTION.hashLong(((Number) value).longValue()).asLong();
+        } else if(value instanceof Double || value instanceof Float) {
+            return HASH_FUNCTION.hashLong(Double.doubleToLongBits(((Number) value).doubleValue())).asLong();
+        } else if(value instanceof byte[] bytes) {
+            return HASH_FUNCTION.hashBytes(bytes).asLong();
+        } else {
+            return HASH_FUNCTION.hashString(value.toString(), StandardCharsets.UTF_8).asLong();
+        }
+    }
+
+    static <S extends Sketch> SketchCoder<S> coder() {
+        return new SketchCoder<>();
+    }
+
+    class SketchCoder<S extends Sketch> extends CustomCoder<S> {
+
+        private static final ByteArrayCoder BYTES_CODER = ByteArrayCoder.of();
+
+        @Override
+        public void encode(final S value, final OutputStream outStream) throws IOException {
+            if(value == null) {
+                throw new CoderException("SketchCoder can not encode null sketch");
+            }
+            BYTES_CODER.encode(value.toByteArray(), outStream);
+        }
+
+        @Override
+        public S decode(final InputStream inStream) throws IOException {
+            return (S) Sketch.of(BYTES_CODER.decode(inStream));
+        }
+
+        @Override
+        public void verifyDeterministic() throws NonDeterministicException {
+            throw new NonDeterministicException(this, "Sketch bytes are not deterministic");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SketchCoder;
+        }
+
+        @Override
+        public int hashCode() {
+            return SketchCoder.class.hashCode();
+        }
+
+    }
+
+}
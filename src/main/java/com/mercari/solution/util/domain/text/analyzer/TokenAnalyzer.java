@@ -54,7 +54,12 @@ public class TokenAnalyzer extends Analyzer {
     private final TokenizerConfig tokenizerConfig;
     private final List<TokenFilterConfig> tokenFilterConfigs;
 
+    /**
+     * Tokenizer and filters are created once per thread and reset for each text by GLOBAL_REUSE_STRATEGY,
+     * as one analyzer is created for each output field.
+     */
     public TokenAnalyzer(final List<CharFilterConfig> charFilterConfigs, final TokenizerConfig tokenizerConfig, final List<TokenFilterConfig> tokenFilterConfigs) {
+        super(GLOBAL_REUSE_STRATEGY);
         this.charFilterConfigs = charFilterConfigs;
         this.tokenizerConfig = tokenizerConfig;
         this.tokenFilterConfigs = tokenFilterConfigs;
@@ -2,6 +2,7 @@ package com.mercari.solution.util.gcp;
 
 import com.mercari.solution.util.DateTimeUtil;
 import com.mercari.solution.util.schema.AvroSchemaUtil;
+import com.mercari.solution.util.schema.SchemaUtil;
 import com.mercari.solution.util.converter.ResultSetToRecordConverter;
 import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
@@ -19,14 +20,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.nio.ByteBuffer;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 
@@ -57,6 +61,9 @@ public class JdbcUtil {
             "LATERAL","LEFT","LIKE","LIMIT","LOOKUP","MERGE","NATURAL","NEW","NO","NOT","NULL","NULLS",
             "OF","ON","OR","ORDER","OUTER","OVER","PARTITION","PRECEDING","PROTO","RANGE");
 
+    private static final Map<String, DataSource> SHARED_DATA_SOURCES = new ConcurrentHashMap<>();
+    private static final long SHARED_POOL_EVICTION_INTERVAL_MILLIS = 5000L;
+
 
     public static DataSource createDataSource(
             final String driverClassName,
@@ -74,6 +81,29 @@ public class JdbcUtil {
             final String password,
             final boolean readOnly) {
 
+        return createDataSource(driverClassName, url, username, password, readOnly, 1);
+    }
+
+    public static DataSource createDataSource(
+            final String driverClassName,
+            final String url,
+            final String username,
+            final String password,
+            final boolean readOnly,
+            final int maxTotal) {
+
+        return createDataSource(driverClassName, url, username, password, readOnly, maxTotal, -1L);
+    }
+
+    private static DataSource createDataSource(
+            final String driverClassName,
+            final String url,
+            final String username,
+            final String password,
+            final boolean readOnly,
+            final int maxTotal,
+            final long timeBetweenEvictionRunsMillis) {
+
         final BasicDataSource basicDataSource = new BasicDataSource();
         basicDataSource.setDriverClassName(driverClassName);
         basicDataSource.setUrl(url);
@@ -85,10 +115,12 @@ public class JdbcUtil {
         final PoolableConnectionFactory poolableConnectionFactory = new PoolableConnectionFactory(connectionFactory, null);
 
         final GenericObjectPoolConfig poolConfig = new GenericObjectPoolConfig();
-        poolConfig.setMaxTotal(1);
+        poolConfig.setMaxTotal(maxTotal);
         poolConfig.setMinIdle(0);
         poolConfig.setMinEvictableIdleTimeMillis(10000);
         poolConfig.setSoftMinEvictableIdleTimeMillis(30000);
+        // idle eviction only runs when the interval is positive
+        poolConfig.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
         final GenericObjectPool connectionPool = new GenericObjectPool(poolableConnectionFactory, poolConfig);
         poolableConnectionFactory.setPool(connectionPool);
         poolableConnectionFactory.setDefaultAutoCommit(false);
@@ -96,6 +128,23 @@ public class JdbcUtil {
         return new PoolingDataSource(connectionPool);
     }
 
+    /**
+     * Returns connection pool shared in the JVM(worker) for the same destination and pool size.
+     * Pool is kept for the lifetime of the worker, and connections idle for more than 10 seconds
+     * are closed by the evictor running every SHARED_POOL_EVICTION_INTERVAL_MILLIS.
+     */
+    public static DataSource getOrCreateSharedDataSource(
+            final String driverClassName,
+            final String url,
+            final String username,
+            final String password,
+            final int maxTotal) {
+
+        final String key = String.join("\n", driverClassName, url, username, Integer.toString(maxTotal));
+        return SHARED_DATA_SOURCES.computeIfAbsent(key,
+                k -> createDataSource(driverClassName, url, username, password, false, maxTotal, SHARED_POOL_EVICTION_INTERVAL_MILLIS));
+    }
+
     public static Schema createAvroSchemaFromQuery(
             final String driverClassName,
             final String url,
@@ -168,6 +217,22 @@ public class JdbcUtil {
                                          final OP op, final DB db,
                                          final List<String> keyFields) {
 
+        return createStatement(table, schema, op, db, keyFields, 1);
+    }
+
+    /**
+     * Build insert statement with multiple rows VALUES(...),(...) clause.
+     * Parameters are placed in row order, so n-th row parameter index starts from (n * fields size + 1).
+     */
+    public static String createStatement(final String table, final Schema schema,
+                                         final OP op, final DB db,
+                                         final List<String> keyFields,
+                                         final int rows) {
+
+        if(rows < 1) {
+            throw new IllegalArgumentException("jdbc statement rows must be over zero. actual: " + rows);
+        }
+
         final StringBuilder sb;
         if(OP.DELETE.equals(op)) {
             /*
@@ -190,10 +255,14 @@ public class JdbcUtil {
         sb.deleteCharAt(sb.length() - 1);
         sb.append(")");
 
-        sb.append(" VALUES(");
-        schema.getFields().forEach(f -> sb.append("?,"));
+        sb.append(" VALUES");
+        for(int row=0; row<rows; row++) {
+            sb.append("(");
+            schema.getFields().forEach(f -> sb.append("?,"));
+            sb.deleteCharAt(sb.length() - 1);
+            sb.append("),");
+        }
         sb.deleteCharAt(sb.length() - 1);
-        sb.append(")");
 
         if(op.equals(OP.INSERT_OR_UPDATE) || op.equals(OP.INSERT_OR_DONOTHING)) {
             switch (db) {
@@ -220,20 +289,17 @@ public class JdbcUtil {
                         sb.append(",");
                     }
                     sb.deleteCharAt(sb.length() - 1);
-                    if(op.equals(OP.INSERT_OR_DONOTHING)) {
+                    final List<Schema.Field> updateFields = schema.getFields().stream()
+                            .filter(f -> !keyFields.contains(f.name()))
+                            .collect(Collectors.toList());
+                    if(op.equals(OP.INSERT_OR_DONOTHING) || updateFields.isEmpty()) {
                         sb.append(") DO NOTHING");
                     } else {
-                        /*
                         sb.append(") DO UPDATE SET ");
-                        for (final Schema.Field field : schema.getFields()) {
-                            if(keyFields.contains(field.name())) {
-                                continue;
-                            }
-                            sb.append(field.name() + "'" + field.name() + "'),");
+                        for (final Schema.Field field : updateFields) {
+                            sb.append(field.name()).append("=EXCLUDED.").append(field.name()).append(",");
                         }
                         sb.deleteCharAt(sb.length() - 1);
-                        */
-                        throw new IllegalArgumentException("jdbc module does not support PostgreSQL INSERT_OR_UPDATE op.");
                     }
                 }
                 case H2 -> {
@@ -252,6 +318,29 @@ public class JdbcUtil {
         return sb.toString();
     }
 
+    /**
+     * Removes rows sharing the same key values in a batch, keeping the last one at the position of its last occurrence.
+     * PostgreSQL rejects a multi-row INSERT ... ON CONFLICT DO UPDATE that affects the same row twice.
+     */
+    public static <T> List<T> deduplicateByKey(final List<T> rows,
+                                               final SchemaUtil.StringGetter<T> stringGetter,
+                                               final List<String> keyFields) {
+
+        final Map<List<String>, T> lastRows = new LinkedHashMap<>();
+        for(final T row : rows) {
+            final List<String> key = new ArrayList<>(keyFields.size());
+            for(final String keyField : keyFields) {
+                key.add(stringGetter.getAsString(row, keyField));
+            }
+            lastRows.remove(key);
+            lastRows.put(key, row);
+        }
+        if(lastRows.size() == rows.size()) {
+            return rows;
+        }
+        return new ArrayList<>(lastRows.values());
+    }
+
     public static void setStatement(final PreparedStatement statement,
                                     final int parameterIndex,
                                     final Schema fieldSchema,
@@ -371,6 +460,8 @@ public class JdbcUtil {
             return DB.POSTGRESQL;
         } else if(driver.contains("sqlserver")) {
             return DB.SQLSERVER;
+        } else if(driver.contains("h2")) {
+            return DB.H2;
         } else {
             throw new IllegalArgumentException("Not supported database: " + driver);
         }
@@ -621,6 +712,235 @@ public class JdbcUtil {
         }
     }
 
+    /**
+     * Splits range at sampled quantile values of the first offset field so that each range holds approximately same rows.
+     * Sampled values inside a range are kept as its boundaries, which are used as split points for dynamic splitting.
+     */
+    public static List<IndexRange> splitIndexRangeByQuantiles(
+            final List<IndexOffset> from,
+            final List<IndexOffset> to,
+            final List<Object> quantiles,
+            final int splitNum) {
+
+        final IndexOffset firstFromOffset = from.get(0);
+        final IndexOffset firstToOffset = to.get(0);
+
+        final List<IndexOffset> boundaries = new ArrayList<>();
+        for(final Object value : quantiles) {
+            final IndexOffset offset = IndexOffset.of(
+                    firstFromOffset.getFieldName(), firstFromOffset.getFieldType(), firstFromOffset.getAscending(),
+                    value, firstFromOffset.getLogicalType(), firstFromOffset.getIsCaseSensitive());
+            if(offset.getValue() == null || !offset.isGreaterThan(firstFromOffset)) {
+                continue;
+            }
+            if(firstToOffset.getValue() != null && !offset.isLesserThan(firstToOffset)) {
+                continue;
+            }
+            if(boundaries.size() > 0 && !offset.isGreaterThan(boundaries.get(boundaries.size() - 1))) {
+                continue;
+            }
+            boundaries.add(offset);
+        }
+
+        if(boundaries.size() == 0) {
+            final IndexRange range = IndexRange.of(IndexPosition.of(from, true), IndexPosition.of(to, false));
+            return new ArrayList<>(Arrays.asList(range));
+        }
+
+        // Choose split points from boundaries so that each range contains same number of sampled intervals
+        final int intervals = boundaries.size() + 1;
+        final List<Integer> splitIndexes = new ArrayList<>();
+        for(int i=1; i<splitNum; i++) {
+            final int index = (int)Math.round((double)i * intervals / splitNum) - 1;
+            if(index < 0 || index >= boundaries.size()) {
+                continue;
+            }
+            if(splitIndexes.size() > 0 && splitIndexes.get(splitIndexes.size() - 1) >= index) {
+                continue;
+            }
+            splitIndexes.add(index);
+        }
+        splitIndexes.add(boundaries.size());
+
+        final List<IndexRange> results = new ArrayList<>();
+        List<IndexOffset> nextFrom = new ArrayList<>(from);
+        int prevIndex = -1;
+        for(final Integer index : splitIndexes) {
+            final List<IndexOffset> nextTo;
+            if(index < boundaries.size()) {
+                nextTo = new ArrayList<>(Arrays.asList(boundaries.get(index)));
+            } else {
+                nextTo = new ArrayList<>(to);
+            }
+            final IndexRange range = IndexRange.of(
+                    IndexPosition.of(nextFrom, true),
+                    IndexPosition.of(nextTo, false));
+            range.setRatio((double)(index - prevIndex) / intervals);
+            range.setBoundaries(new ArrayList<>(boundaries.subList(prevIndex + 1, Math.min(index, boundaries.size()))));
+            results.add(range);
+            nextFrom = nextTo;
+            prevIndex = index;
+        }
+        return results;
+    }
+
+    /**
+     * Splits the remainder of range after current position into primary and residual ranges.
+     * Split point is chosen from the range boundaries if exists, otherwise from values of the first offset field.
+     * If no split point is found, range is split at current position. current is null if no position has been claimed yet.
+     * Returns empty list if range could not be split.
+     */
+    public static List<IndexRange> splitIndexRangeRemainder(
+            final IndexRange range,
+            final IndexPosition current,
+            final double fractionOfRemainder) {
+
+        final IndexOffset currentOffset = (current == null ? range.getFrom() : current).getOffsets().get(0);
+        final IndexOffset toOffset = range.getTo().getOffsets().get(0);
+
+        final List<IndexOffset> remainingBoundaries = new ArrayList<>();
+        if(range.getBoundaries() != null) {
+            for(final IndexOffset boundary : range.getBoundaries()) {
+                if(boundary.isGreaterThan(currentOffset)) {
+                    remainingBoundaries.add(boundary);
+                }
+            }
+        }
+
+        List<IndexOffset> splitOffsets = null;
+        List<IndexOffset> primaryBoundaries = new ArrayList<>();
+        List<IndexOffset> residualBoundaries = new ArrayList<>();
+        if(fractionOfRemainder > 0 && remainingBoundaries.size() > 0) {
+            final int intervals = remainingBoundaries.size() + 1;
+            final int index = Math.max(0, Math.min(remainingBoundaries.size() - 1,
+                    (int)Math.round(fractionOfRemainder * intervals) - 1));
+            splitOffsets = new ArrayList<>(Arrays.asList(remainingBoundaries.get(index)));
+            primaryBoundaries = new ArrayList<>(remainingBoundaries.subList(0, index));
+            residualBoundaries = new ArrayList<>(remainingBoundaries.subList(index + 1, remainingBoundaries.size()));
+        } else if(fractionOfRemainder > 0 && currentOffset.getValue() != null && toOffset.getValue() != null) {
+            final int splitNum = (int)Math.max(2, Math.min(100, Math.round(1 / fractionOfRemainder)));
+            final List<IndexRange> ranges = splitIndexRange(
+                    null, Arrays.asList(currentOffset), Arrays.asList(toOffset), splitNum);
+            if(ranges.size() > 1) {
+                final IndexOffset splitOffset = ranges.get(0).getTo().getOffsets().get(0);
+                if(splitOffset.isGreaterThan(currentOffset) && splitOffset.isLesserThan(toOffset)) {
+                    splitOffsets = new ArrayList<>(Arrays.asList(splitOffset));
+                }
+            }
+        }
+
+        if(splitOffsets == null) {
+            if(current == null || current.isOverTo(range.getTo())) {
+                return new ArrayList<>();
+            }
+            splitOffsets = new ArrayList<>(current.getOffsets());
+            residualBoundaries = remainingBoundaries;
+        }
+
+        final double ratio = Optional.ofNullable(range.getRatio()).orElse(1D);
+        final IndexRange primary = IndexRange.of(range.getFrom(), IndexPosition.of(splitOffsets, false));
+        primary.setRatio(ratio * fractionOfRemainder);
+        primary.setBoundaries(primaryBoundaries);
+        final IndexRange residual = IndexRange.of(IndexPosition.of(splitOffsets, true), range.getTo());
+        residual.setRatio(ratio * (1 - fractionOfRemainder));
+        residual.setBoundaries(residualBoundaries);
+        return new ArrayList<>(Arrays.asList(primary, residual));
+    }
+
+    /**
+     * Samples approximate quantile values of the field to split table ranges in balanced row counts.
+     * Rows are sampled by dialect specific clause when the estimated row count is over sampleSize,
+     * and bucketed by NTILE. Returns quantileNum - 1 values at most in ascending order, or empty list for not supported databases.
+     */
+    public static List<Object> sampleQuantiles(
+            final Connection connection,
+            final DB db,
+            final String table,
+            final String field,
+            final int quantileNum,
+            final long sampleSize) throws SQLException, IOException {
+
+        if(quantileNum < 2) {
+            return new ArrayList<>();
+        }
+        if(db != DB.MYSQL && db != DB.POSTGRESQL && db != DB.H2) {
+            LOG.info("Not supported sampling quantiles for database: " + db);
+            return new ArrayList<>();
+        }
+
+        final long rowCount = estimateRowCount(connection, db, table);
+        final double rate = rowCount > 0 ? (double)sampleSize / rowCount : 1D;
+        final String sampleQuery;
+        if(rate >= 1D) {
+            sampleQuery = String.format("SELECT %s FROM %s WHERE %s IS NOT NULL", field, table, field);
+        } else if(db == DB.POSTGRESQL) {
+            final String percent = BigDecimal.valueOf(rate * 100).setScale(6, RoundingMode.UP).toPlainString();
+            sampleQuery = String.format("SELECT %s FROM %s TABLESAMPLE SYSTEM (%s) WHERE %s IS NOT NULL", field, table, percent, field);
+        } else {
+            final String rateString = BigDecimal.valueOf(rate).setScale(8, RoundingMode.UP).toPlainString();
+            sampleQuery = String.format("SELECT %s FROM %s WHERE %s IS NOT NULL AND RAND() < %s", field, table, field, rateString);
+        }
+        final String query = String.format(
+                "SELECT MAX(%s) AS quantile_ FROM (SELECT %s, NTILE(%d) OVER (ORDER BY %s) AS bucket_ FROM (%s) sampled_) buckets_ GROUP BY bucket_ ORDER BY bucket_",
+                field, field, quantileNum, field, sampleQuery);
+
+        final List<Object> quantiles = new ArrayList<>();
+        try(final PreparedStatement statement = connection
+                .prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            final ResultSet resultSet = statement.executeQuery()) {
+
+            while(resultSet.next()) {
+                final Object value = ResultSetToRecordConverter.convert(resultSet).get(0);
+                if(value != null) {
+                    quantiles.add(value);
+                }
+            }
+        }
+        // Last bucket value is the maximum of sampled rows
+        if(quantiles.size() > 0) {
+            quantiles.remove(quantiles.size() - 1);
+        }
+        LOG.info("Sampled " + quantiles.size() + " quantiles of field: " + field + " in table: " + table + " with estimated rows: " + rowCount + ", sampling rate: " + Math.min(rate, 1D));
+        return quantiles;
+    }
+
+    /**
+     * Returns estimated row count of the table from database statistics if available, otherwise counts rows.
+     * Returns -1 if row count could not be estimated.
+     */
+    public static long estimateRowCount(final Connection connection, final DB db, final String table) throws SQLException {
+        final String query;
+        final List<String> parameters = new ArrayList<>();
+        switch (db) {
+            case MYSQL -> {
+                if(table.contains(".")) {
+                    query = "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?";
+                    parameters.addAll(Arrays.asList(table.split("\\.", 2)));
+                } else {
+                    query = "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+                    parameters.add(table);
+                }
+            }
+            case POSTGRESQL -> {
+                query = "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)";
+                parameters.add(table);
+            }
+            default -> query = "SELECT COUNT(*) FROM " + table;
+        }
+        try(final PreparedStatement statement = connection.prepareStatement(query)) {
+            for(int i=0; i<parameters.size(); i++) {
+                statement.setString(i + 1, parameters.get(i).replace("`", ""));
+            }
+            try(final ResultSet resultSet = statement.executeQuery()) {
+                if(resultSet.next()) {
+                    final long count = resultSet.getLong(1);
+                    return resultSet.wasNull() ? -1L : count;
+                }
+            }
+        }
+        return -1L;
+    }
+
     private static List<IndexOffset> splitBoolean(final String name, final boolean ascending) {
         final List<IndexOffset> results = new ArrayList<>();
         results.add(IndexOffset.of(name, Schema.Type.BOOLEAN, ascending, Boolean.FALSE));
@@ -1524,6 +1844,8 @@ public class JdbcUtil {
         private IndexPosition from;
         @Nullable
         private IndexPosition to;
+        @Nullable
+        private List<IndexOffset> boundaries;
 
         public IndexRange() {
 
@@ -1553,6 +1875,14 @@ public class JdbcUtil {
             this.to = to;
         }
 
+        public List<IndexOffset> getBoundaries() {
+            return boundaries;
+        }
+
+        public void setBoundaries(List<IndexOffset> boundaries) {
+            this.boundaries = boundaries;
+        }
+
         @Override
         public String toString() {
             return String.format("IndexRange(%f) From: %s -> To: %s%s",
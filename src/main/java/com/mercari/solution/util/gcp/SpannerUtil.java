@@ -3,6 +3,7 @@ package com.mercari.solution.util.gcp;
 import com.google.api.gax.longrunning.OperationFuture;
 import com.google.api.gax.retrying.RetrySettings;
 import com.google.api.gax.rpc.FixedHeaderProvider;
+import com.google.cloud.ByteArray;
 import com.google.cloud.spanner.*;
 import com.google.spanner.admin.database.v1.UpdateDatabaseDdlMetadata;
 import com.mercari.solution.util.Filter;
@@ -14,12 +15,14 @@ import org.apache.avro.SchemaBuilder;
 import org.apache.beam.sdk.extensions.sql.impl.utils.CalciteUtils;
 import org.apache.beam.sdk.schemas.Schema;
 import org.apache.beam.sdk.util.ReleaseInfo;
+import org.apache.beam.sdk.values.KV;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.threeten.bp.Duration;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -46,6 +49,8 @@ public class SpannerUtil {
 
     private static final Pattern PATTERN_ARRAY_ELEMENT = Pattern.compile("(?<=\\<).*?(?=\\>)");
 
+    private static final Map<String, Spanner> SHARED_SPANNERS = new ConcurrentHashMap<>();
+
     private static final String EXTRACT_ALL_TABLE_SCHEMA_QUERY = "" +
             "SELECT " +
             "  TABLE_NAME, " +
@@ -127,6 +132,19 @@ public class SpannerUtil {
         return builder.build().getService();
     }
 
+    /**
+     * Returns the Spanner client shared in the worker. The shared client must not be closed by the caller.
+     */
+    public static Spanner getOrCreateSharedSpanner(final String projectId,
+                                                   final int sessionMax,
+                                                   final boolean batch,
+                                                   final boolean emulator) {
+
+        final String key = String.join("\n", projectId, Integer.toString(sessionMax), Boolean.toString(batch), Boolean.toString(emulator));
+        return SHARED_SPANNERS.computeIfAbsent(key,
+                k -> connectSpanner(projectId, 1, 1, sessionMax, batch, emulator));
+    }
+
     public static boolean existsTable(final Spanner spanner, final DatabaseId databaseId, final String table) {
         final DatabaseClient client = spanner.getDatabaseClient(databaseId);
         try(final ReadOnlyTransaction transaction = client.singleUseReadOnlyTransaction();
@@ -897,6 +915,184 @@ public class SpannerUtil {
         }
     }
 
+    /**
+     * Estimates the byte size of the mutation in the same way as SpannerIO, to cut commits under the request size limit.
+     */
+    public static long estimateMutationSize(final Mutation mutation) {
+        if(Mutation.Op.DELETE.equals(mutation.getOperation())) {
+            return mutation.getKeySet().toString().length();
+        }
+        long size = 0;
+        for(final Value value : mutation.getValues()) {
+            size += estimateValueSize(value);
+        }
+        return size;
+    }
+
+    /**
+     * Counts the cells the mutation changes, that is counted towards the mutation limit of a commit.
+     * Cells of secondary indexes are not included.
+     */
+    public static long countMutationCells(final Mutation mutation) {
+        if(Mutation.Op.DELETE.equals(mutation.getOperation())) {
+            long count = 0;
+            for(final Key ignored : mutation.getKeySet().getKeys()) {
+                count++;
+            }
+            for(final KeyRange ignored : mutation.getKeySet().getRanges()) {
+                count++;
+            }
+            return Math.max(count, 1);
+        }
+        long count = 0;
+        for(final String ignored : mutation.getColumns()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Sorts mutations by table and primary key and cuts them into batches so that each batch is under all limits.
+     * Commits of sorted batches touch fewer splits than commits of arbitrary ordered mutations.
+     * Mutations of tables not in primaryKeys are only grouped by table.
+     */
+    public static List<List<Mutation>> createMutationBatches(
+            final List<Mutation> mutations,
+            final Map<String, List<String>> primaryKeys,
+            final long maxNumRows,
+            final long maxNumMutations,
+            final long batchSizeBytes) {
+
+        final List<KV<List<Object>, Mutation>> keyAndMutations = new ArrayList<>(mutations.size());
+        for(final Mutation mutation : mutations) {
+            final List<Object> key = new ArrayList<>();
+            key.add(mutation.getTable());
+            key.addAll(getMutationKey(mutation, primaryKeys.get(mutation.getTable())));
+            keyAndMutations.add(KV.of(key, mutation));
+        }
+        keyAndMutations.sort((kv1, kv2) -> compareKey(kv1.getKey(), kv2.getKey()));
+
+        final List<List<Mutation>> batches = new ArrayList<>();
+        List<Mutation> batch = new ArrayList<>();
+        long cells = 0;
+        long bytes = 0;
+        for(final KV<List<Object>, Mutation> keyAndMutation : keyAndMutations) {
+            final Mutation mutation = keyAndMutation.getValue();
+            final long mutationCells = countMutationCells(mutation);
+            final long mutationBytes = estimateMutationSize(mutation);
+            if(!batch.isEmpty() && (batch.size() + 1 > maxNumRows
+                    || cells + mutationCells > maxNumMutations
+                    || bytes + mutationBytes > batchSizeBytes)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                cells = 0;
+                bytes = 0;
+            }
+            batch.add(mutation);
+            cells += mutationCells;
+            bytes += mutationBytes;
+        }
+        if(!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private static List<Object> getMutationKey(final Mutation mutation, final List<String> keyFields) {
+        final List<Object> parts = new ArrayList<>();
+        if(Mutation.Op.DELETE.equals(mutation.getOperation())) {
+            final Iterator<Key> keys = mutation.getKeySet().getKeys().iterator();
+            if(keys.hasNext()) {
+                for(final Object part : keys.next().getParts()) {
+                    parts.add(part instanceof ByteArray bytes ? bytes.toBase64() : part);
+                }
+            }
+            return parts;
+        }
+        if(keyFields == null || keyFields.isEmpty()) {
+            return parts;
+        }
+        final Map<String, Value> values = mutation.asMap();
+        for(final String keyField : keyFields) {
+            parts.add(getComparableValue(values.get(keyField)));
+        }
+        return parts;
+    }
+
+    private static Object getComparableValue(final Value value) {
+        if(value == null || value.isNull()) {
+            return null;
+        }
+        return switch (value.getType().getCode()) {
+            case BOOL -> value.getBool();
+            case INT64 -> value.getInt64();
+            case FLOAT32 -> value.getFloat32();
+            case FLOAT64 -> value.getFloat64();
+            case STRING -> value.getString();
+            case BYTES -> value.getBytes().toBase64();
+            case TIMESTAMP -> value.getTimestamp();
+            case DATE -> value.getDate();
+            case NUMERIC -> value.getNumeric();
+            default -> value.toString();
+        };
+    }
+
+    private static int compareKey(final List<Object> key1, final List<Object> key2) {
+        final int size = Math.min(key1.size(), key2.size());
+        for(int i=0; i<size; i++) {
+            final int c = compareKeyPart(key1.get(i), key2.get(i));
+            if(c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(key1.size(), key2.size());
+    }
+
+    private static int compareKeyPart(final Object part1, final Object part2) {
+        if(part1 == null || part2 == null) {
+            return part1 == null ? (part2 == null ? 0 : -1) : 1;
+        }
+        if(part1.getClass().equals(part2.getClass()) && part1 instanceof Comparable) {
+            return ((Comparable<Object>) part1).compareTo(part2);
+        }
+        return part1.toString().compareTo(part2.toString());
+    }
+
+    private static long estimateValueSize(final Value value) {
+        if(value.isNull()) {
+            return 0;
+        }
+        return switch (value.getType().getCode()) {
+            case BOOL -> 1;
+            case INT64, FLOAT64 -> 8;
+            case FLOAT32 -> 4;
+            case DATE, TIMESTAMP -> 12;
+            case STRING, PG_NUMERIC -> value.getString().length();
+            case BYTES -> value.getBytes().length();
+            case NUMERIC -> value.getNumeric().toString().length();
+            case JSON -> value.getJson().length();
+            case PG_JSONB -> value.getPgJsonb().length();
+            case ARRAY -> estimateArraySize(value);
+            default -> value.toString().length();
+        };
+    }
+
+    private static long estimateArraySize(final Value value) {
+        return switch (value.getType().getArrayElementType().getCode()) {
+            case BOOL -> value.getBoolArray().size();
+            case INT64 -> 8L * value.getInt64Array().size();
+            case FLOAT64 -> 8L * value.getFloat64Array().size();
+            case FLOAT32 -> 4L * value.getFloat32Array().size();
+            case DATE -> 12L * value.getDateArray().size();
+            case TIMESTAMP -> 12L * value.getTimestampArray().size();
+            case STRING, PG_NUMERIC -> value.getStringArray().stream().filter(Objects::nonNull).mapToLong(String::length).sum();
+            case BYTES -> value.getBytesArray().stream().filter(Objects::nonNull).mapToLong(ByteArray::length).sum();
+            case NUMERIC -> value.getNumericArray().stream().filter(Objects::nonNull).mapToLong(n -> n.toString().length()).sum();
+            case JSON -> value.getJsonArray().stream().filter(Objects::nonNull).mapToLong(String::length).sum();
+            default -> value.toString().length();
+        };
+    }
+
     private static String replaceReservedKeyword(final String term) {
         if(RESERVED_KEYWORDS.contains(term.trim().toUpperCase())) {
             return String.format("`%s`", term);
@@ -1,17 +1,17 @@
 package com.mercari.solution.util.pipeline.aggregation;
 
+import com.mercari.solution.util.domain.sketch.Sketch;
 import com.mercari.solution.util.schema.RowSchemaUtil;
 import org.apache.avro.SchemaBuilder;
 import org.apache.avro.generic.GenericRecord;
-import org.apache.beam.sdk.coders.Coder;
-import org.apache.beam.sdk.coders.StructuredCoder;
+import org.apache.beam.sdk.coders.*;
 import org.apache.beam.sdk.extensions.avro.coders.AvroCoder;
 import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.util.VarInt;
 import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -38,6 +38,18 @@ public class Accumulator {
 
     public Map<String, Map<String, Double>> doublesMap;
 
+    // Serialized sketches, only encoded by the coder created for aggregations with sketches
+    public Map<String, ByteBuffer> sketchBytes;
+
+    private transient Map<String, Sketch> sketches;
+
+    // Slot indexed storage, used instead of the maps above when created with an AccumulatorLayout
+    private transient AccumulatorLayout layout;
+    private transient long[] longValues;
+    private transient double[] doubleValues;
+    private transient Object[] objectValues;
+    private transient long[] presents;
+
     Accumulator() {
 
     }
@@ -59,6 +71,15 @@ public class Accumulator {
         this.boolsList = (Map<String, List<Boolean>>) record.get("boolsList");
 
         this.doublesMap = (Map<String, Map<String, Double>>) record.get("doublesMap");
+
+        this.sketchBytes = new HashMap<>();
+        final Map<?, ByteBuffer> sketchBytes = record.getSchema().getField("sketchBytes") == null
+                ? null : (Map<?, ByteBuffer>) record.get("sketchBytes");
+        if(sketchBytes != null) {
+            for(final Map.Entry<?, ByteBuffer> entry : sketchBytes.entrySet()) {
+                this.sketchBytes.put(entry.getKey().toString(), entry.getValue());
+            }
+        }
     }
 
     public static Accumulator of() {
@@ -80,54 +101,439 @@ public class Accumulator {
         accumulator.boolsList = new HashMap<>();
 
         accumulator.doublesMap = new HashMap<>();
+        accumulator.sketchBytes = new HashMap<>();
+
+        return accumulator;
+    }
+
+    public static Accumulator of(final AccumulatorLayout layout) {
+        if(layout == null) {
+            return of();
+        }
+
+        final Accumulator accumulator = new Accumulator();
+        accumulator.empty = true;
+        accumulator.layout = layout;
+        accumulator.longValues = new long[layout.getLongSize()];
+        accumulator.doubleValues = new double[layout.getDoubleSize()];
+        accumulator.objectValues = new Object[layout.getObjectSize()];
+        accumulator.presents = new long[(layout.getSize() + 63) >>> 6];
 
         return accumulator;
     }
 
     public void put(Schema.FieldType fieldType, final String name, final Object value) {
+        if(layout != null) {
+            setSlotValue(AccumulatorLayout.bucket(fieldType), name, value);
+            return;
+        }
         putValue(this, fieldType, name, value);
     }
 
     public void put(Schema.FieldType elementType, final String name, final List list) {
+        if(layout != null) {
+            setSlotValue(AccumulatorLayout.listBucket(elementType), name, list);
+            return;
+        }
         putList(this, elementType, name, list);
     }
 
     public Object get(Schema.FieldType fieldType, final String name) {
+        if(layout != null) {
+            return getSlotValue(AccumulatorLayout.bucket(fieldType), name);
+        }
         return getValue(this, fieldType, name);
     }
 
     public List<?> list(Schema.FieldType elementType, final String name) {
+        if(layout != null) {
+            return (List<?>) getSlotValue(AccumulatorLayout.listBucket(elementType), name);
+        }
         return getList(this, elementType, name);
     }
 
     public void add(Schema.FieldType fieldType, final String name, final Object value) {
+        if(layout != null) {
+            addSlotValue(AccumulatorLayout.listBucket(fieldType), name, value);
+            return;
+        }
         addValue(this, fieldType, name, value);
     }
 
     public void putLong(String name, Long value) {
+        if(layout != null) {
+            setSlotValue(AccumulatorLayout.Bucket.LONGS, name, value);
+            return;
+        }
         putValue(this, Schema.FieldType.INT64, name, value);
     }
 
     public void putDouble(String name, Double value) {
+        if(layout != null) {
+            setSlotValue(AccumulatorLayout.Bucket.DOUBLES, name, value);
+            return;
+        }
         putValue(this, Schema.FieldType.DOUBLE, name, value);
     }
 
     public void putDoublesMap(String name, Map<String, Double> value) {
+        if(layout != null) {
+            setSlotValue(AccumulatorLayout.Bucket.DOUBLES_MAP, name, value);
+            return;
+        }
         putValue(this, FIELD_TYPE_MAP_DOUBLE, name, value);
     }
 
+    public void putSketch(String name, Sketch sketch) {
+        if(layout != null) {
+            setSlotValue(AccumulatorLayout.Bucket.SKETCHES, name, sketch);
+            return;
+        }
+        if(sketches == null) {
+            sketches = new HashMap<>();
+        }
+        sketches.put(name, sketch);
+    }
+
+    public <S extends Sketch> S getSketch(String name) {
+        if(layout != null) {
+            return (S) getSlotValue(AccumulatorLayout.Bucket.SKETCHES, name);
+        }
+        if(sketches == null) {
+            sketches = new HashMap<>();
+        }
+        Sketch sketch = sketches.get(name);
+        if(sketch == null && sketchBytes != null && sketchBytes.containsKey(name)) {
+            final ByteBuffer buffer = sketchBytes.get(name).duplicate();
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            sketch = Sketch.of(bytes);
+            sketches.put(name, sketch);
+        }
+        return (S) sketch;
+    }
+
+    // Returns serialized sketches of map based accumulator, including sketches updated after decoding
+    private Map<String, ByteBuffer> serializeSketches() {
+        final Map<String, ByteBuffer> serialized = new HashMap<>();
+        if(sketchBytes != null) {
+            for(final Map.Entry<String, ByteBuffer> entry : sketchBytes.entrySet()) {
+                serialized.put(entry.getKey(), entry.getValue().duplicate());
+            }
+        }
+        if(sketches != null) {
+            for(final Map.Entry<String, Sketch> entry : sketches.entrySet()) {
+                serialized.put(entry.getKey(), ByteBuffer.wrap(entry.getValue().toByteArray()));
+            }
+        }
+        return serialized;
+    }
+
+    private boolean hasSketches() {
+        return (sketches != null && !sketches.isEmpty()) || (sketchBytes != null && !sketchBytes.isEmpty());
+    }
+
+    // Shallow copy sharing values with this accumulator except for serialized sketches, used for encoding
+    private Accumulator withSerializedSketches() {
+        final Accumulator accumulator = new Accumulator();
+        accumulator.empty = empty;
+        accumulator.ints = ints;
+        accumulator.longs = longs;
+        accumulator.floats = floats;
+        accumulator.doubles = doubles;
+        accumulator.booleans = booleans;
+        accumulator.strings = strings;
+        accumulator.intsList = intsList;
+        accumulator.longsList = longsList;
+        accumulator.floatsList = floatsList;
+        accumulator.doublesList = doublesList;
+        accumulator.stringsList = stringsList;
+        accumulator.boolsList = boolsList;
+        accumulator.doublesMap = doublesMap;
+        accumulator.sketchBytes = serializeSketches();
+        return accumulator;
+    }
+
     public Long getLong(String fieldName) {
+        if(layout != null) {
+            return (Long) getSlotValue(AccumulatorLayout.Bucket.LONGS, fieldName);
+        }
         return (Long) getValue(this, Schema.FieldType.INT64, fieldName);
     }
 
     public Double getDouble(String fieldName) {
+        if(layout != null) {
+            return (Double) getSlotValue(AccumulatorLayout.Bucket.DOUBLES, fieldName);
+        }
         return (Double) getValue(this, Schema.FieldType.DOUBLE, fieldName);
     }
 
     public Map<String, Double> getDoublesMap(final String fieldName) {
+        if(layout != null) {
+            return (Map<String, Double>) getSlotValue(AccumulatorLayout.Bucket.DOUBLES_MAP, fieldName);
+        }
         return (Map<String, Double>) getValue(this, FIELD_TYPE_MAP_DOUBLE, fieldName);
     }
 
+    // Key based access. Keys resolved with the same layout index the slot arrays directly without name lookup
+
+    public Object get(final AccumulatorLayout.Key key) {
+        if(layout != null) {
+            return getSlotValue(key.getBucket(), slot(key));
+        }
+        if(key.isList()) {
+            return getList(this, key.getFieldType(), key.getName());
+        }
+        return getValue(this, key.getFieldType(), key.getName());
+    }
+
+    public void put(final AccumulatorLayout.Key key, final Object value) {
+        if(layout != null) {
+            setSlotValue(key.getBucket(), slot(key), value);
+            return;
+        }
+        if(key.isList()) {
+            putList(this, key.getFieldType(), key.getName(), (List) value);
+        } else {
+            putValue(this, key.getFieldType(), key.getName(), value);
+        }
+    }
+
+    public List<?> list(final AccumulatorLayout.Key key) {
+        if(layout != null) {
+            return (List<?>) getSlotValue(key.getBucket(), slot(key));
+        }
+        return getList(this, key.getFieldType(), key.getName());
+    }
+
+    public void add(final AccumulatorLayout.Key key, final Object value) {
+        if(layout != null) {
+            addSlotValue(key.getBucket(), slot(key), value);
+            return;
+        }
+        addValue(this, key.getFieldType(), key.getName(), value);
+    }
+
+    public Long getLong(final AccumulatorLayout.Key key) {
+        if(layout != null) {
+            final int slot = slot(key);
+            return isPresent(slot) ? longValues[slot] : null;
+        }
+        return getLong(key.getName());
+    }
+
+    public long getLong(final AccumulatorLayout.Key key, final long defaultValue) {
+        if(layout != null) {
+            final int slot = slot(key);
+            return isPresent(slot) ? longValues[slot] : defaultValue;
+        }
+        final Long value = getLong(key.getName());
+        return value == null ? defaultValue : value;
+    }
+
+    public void putLong(final AccumulatorLayout.Key key, final long value) {
+        if(layout != null) {
+            final int slot = slot(key);
+            longValues[slot] = value;
+            setPresent(slot, true);
+            return;
+        }
+        putLong(key.getName(), value);
+    }
+
+    public Double getDouble(final AccumulatorLayout.Key key) {
+        if(layout != null) {
+            final int slot = slot(key);
+            return isPresent(layout.getLongSize() + slot) ? doubleValues[slot] : null;
+        }
+        return getDouble(key.getName());
+    }
+
+    public double getDouble(final AccumulatorLayout.Key key, final double defaultValue) {
+        if(layout != null) {
+            final int slot = slot(key);
+            return isPresent(layout.getLongSize() + slot) ? doubleValues[slot] : defaultValue;
+        }
+        final Double value = getDouble(key.getName());
+        return value == null ? defaultValue : value;
+    }
+
+    public void putDouble(final AccumulatorLayout.Key key, final double value) {
+        if(layout != null) {
+            final int slot = slot(key);
+            doubleValues[slot] = value;
+            setPresent(layout.getLongSize() + slot, true);
+            return;
+        }
+        putDouble(key.getName(), value);
+    }
+
+    public void putDouble(final AccumulatorLayout.Key key, final Double value) {
+        if(value == null) {
+            if(layout != null) {
+                setPresent(layout.getLongSize() + slot(key), false);
+                return;
+            }
+            putDouble(key.getName(), null);
+            return;
+        }
+        putDouble(key, value.doubleValue());
+    }
+
+    public <S extends Sketch> S getSketch(final AccumulatorLayout.Key key) {
+        if(layout != null) {
+            return (S) objectValues[slot(key)];
+        }
+        return getSketch(key.getName());
+    }
+
+    public void putSketch(final AccumulatorLayout.Key key, final Sketch sketch) {
+        if(layout != null) {
+            setSlotValue(AccumulatorLayout.Bucket.SKETCHES, slot(key), sketch);
+            return;
+        }
+        putSketch(key.getName(), sketch);
+    }
+
+    private int slot(final AccumulatorLayout.Key key) {
+        if(key.isResolved()) {
+            return key.getSlot();
+        }
+        // key resolved without layout, such as aggregators set up for the map based accumulator
+        if(key.getBucket() == null) {
+            throw new IllegalStateException("Not supported accumulator type for key: " + key.getName());
+        }
+        return layout.slot(key.getBucket(), key.getName());
+    }
+
+    private Object getSlotValue(final AccumulatorLayout.Bucket bucket, final String name) {
+        if(bucket == null) {
+            throw new IllegalStateException("Not supported accumulator type for key: " + name);
+        }
+        return getSlotValue(bucket, layout.slot(bucket, name));
+    }
+
+    private Object getSlotValue(final AccumulatorLayout.Bucket bucket, final int slot) {
+        switch (bucket.getStorage()) {
+            case LONG -> {
+                if(!isPresent(slot)) {
+                    return null;
+                }
+                final long value = longValues[slot];
+                if(bucket == AccumulatorLayout.Bucket.INTS) {
+                    return (int) value;
+                } else if(bucket == AccumulatorLayout.Bucket.BOOLEANS) {
+                    return value != 0L;
+                } else {
+                    return value;
+                }
+            }
+            case DOUBLE -> {
+                if(!isPresent(layout.getLongSize() + slot)) {
+                    return null;
+                }
+                final double value = doubleValues[slot];
+                if(bucket == AccumulatorLayout.Bucket.FLOATS) {
+                    return (float) value;
+                } else {
+                    return value;
+                }
+            }
+            case OBJECT -> {
+                return objectValues[slot];
+            }
+            default -> throw new IllegalStateException();
+        }
+    }
+
+    private void setSlotValue(final AccumulatorLayout.Bucket bucket, final String name, final Object value) {
+        if(bucket == null) {
+            throw new IllegalStateException("Not supported accumulator type for key: " + name);
+        }
+        setSlotValue(bucket, layout.slot(bucket, name), value);
+    }
+
+    private void setSlotValue(final AccumulatorLayout.Bucket bucket, final int slot, final Object value) {
+        switch (bucket.getStorage()) {
+            case LONG -> {
+                if(value == null) {
+                    setPresent(slot, false);
+                    return;
+                }
+                if(bucket == AccumulatorLayout.Bucket.BOOLEANS) {
+                    longValues[slot] = (Boolean) value ? 1L : 0L;
+                } else {
+                    longValues[slot] = ((Number) value).longValue();
+                }
+                setPresent(slot, true);
+            }
+            case DOUBLE -> {
+                final int index = layout.getLongSize() + slot;
+                if(value == null) {
+                    setPresent(index, false);
+                    return;
+                }
+                doubleValues[slot] = ((Number) value).doubleValue();
+                setPresent(index, true);
+            }
+            case OBJECT -> {
+                final int index = layout.getLongSize() + layout.getDoubleSize() + slot;
+                if(value == null) {
+                    objectValues[slot] = null;
+                    setPresent(index, false);
+                    return;
+                }
+                if(bucket == AccumulatorLayout.Bucket.STRINGS) {
+                    objectValues[slot] = value.toString();
+                } else if(bucket == AccumulatorLayout.Bucket.STRINGS_LIST) {
+                    objectValues[slot] = ((List<Object>) value).stream()
+                            .map(o -> o == null ? null : o.toString())
+                            .collect(Collectors.toList());
+                } else {
+                    objectValues[slot] = value;
+                }
+                setPresent(index, true);
+            }
+        }
+    }
+
+    private void addSlotValue(final AccumulatorLayout.Bucket bucket, final String name, final Object value) {
+        if(bucket == null) {
+            throw new IllegalStateException("Not supported accumulator type for key: " + name);
+        }
+        addSlotValue(bucket, layout.slot(bucket, name), value);
+    }
+
+    private void addSlotValue(final AccumulatorLayout.Bucket bucket, final int slot, final Object value) {
+        final Object element;
+        if(bucket == AccumulatorLayout.Bucket.STRINGS_LIST) {
+            element = value == null ? null : value.toString();
+        } else {
+            element = value;
+        }
+        final List<Object> list = (List<Object>) getSlotValue(bucket, slot);
+        if(list == null) {
+            // setSlotValue may copy the list, so the first element must be added before setting
+            final List<Object> newList = new ArrayList<>();
+            newList.add(element);
+            setSlotValue(bucket, slot, newList);
+        } else {
+            list.add(element);
+        }
+    }
+
+    private boolean isPresent(final int index) {
+        return (presents[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void setPresent(final int index, final boolean present) {
+        if(present) {
+            presents[index >>> 6] |= (1L << index);
+        } else {
+            presents[index >>> 6] &= ~(1L << index);
+        }
+    }
+
     public static Object getValue(Accumulator accumulator, Schema.FieldType fieldType, String fieldName) {
         switch (fieldType.getTypeName()) {
             case DOUBLE:
@@ -574,11 +980,24 @@ public class Accumulator {
                 output.doublesMap.put(entry.getKey(), new HashMap<>(entry.getValue()));
             }
         }
+        for(final Map.Entry<String, ByteBuffer> entry : base.serializeSketches().entrySet()) {
+            if(outputFields == null || outputFields.contains(entry.getKey())) {
+                output.sketchBytes.put(entry.getKey(), entry.getValue());
+            }
+        }
 
         return output;
     }
 
     public static org.apache.avro.Schema schema() {
+        return schema(false);
+    }
+
+    /**
+     * Returns the Avro schema of map based accumulator. The sketchBytes field is appended only when
+     * the aggregation has sketches, so that encoding of aggregations without sketches is kept unchanged.
+     */
+    public static org.apache.avro.Schema schema(final boolean withSketches) {
         final org.apache.avro.Schema emptySchema = org.apache.avro.Schema.create(org.apache.avro.Schema.Type.BOOLEAN);
 
         final org.apache.avro.Schema intsSchema = org.apache.avro.Schema.createMap(org.apache.avro.Schema.create(org.apache.avro.Schema.Type.INT));
@@ -604,8 +1023,7 @@ public class Accumulator {
         final org.apache.avro.Schema doublesMapSchema = org.apache.avro.Schema.createMap(org.apache.avro.Schema.createMap(
                 org.apache.avro.Schema.createUnion(org.apache.avro.Schema.create(org.apache.avro.Schema.Type.DOUBLE), org.apache.avro.Schema.create(org.apache.avro.Schema.Type.NULL))));
 
-
-        return SchemaBuilder.record("Accumulator").fields()
+        final SchemaBuilder.FieldAssembler<org.apache.avro.Schema> fields = SchemaBuilder.record("Accumulator").fields()
                 .name("empty").type(emptySchema).noDefault()
                 .name("ints").type(intsSchema).noDefault()
                 .name("longs").type(longsSchema).noDefault()
@@ -619,22 +1037,40 @@ public class Accumulator {
                 .name("doublesList").type(doublesListSchema).noDefault()
                 .name("stringsList").type(stringsListSchema).noDefault()
                 .name("boolsList").type(boolsListSchema).noDefault()
-                .name("doublesMap").type(doublesMapSchema).noDefault()
-                .endRecord();
+                .name("doublesMap").type(doublesMapSchema).noDefault();
+
+        if(withSketches) {
+            final org.apache.avro.Schema sketchBytesSchema = org.apache.avro.Schema.createUnion(
+                    org.apache.avro.Schema.create(org.apache.avro.Schema.Type.NULL),
+                    org.apache.avro.Schema.createMap(org.apache.avro.Schema.create(org.apache.avro.Schema.Type.BYTES)));
+            fields.name("sketchBytes").type(sketchBytesSchema).withDefault(null);
+        }
+
+        return fields.endRecord();
     }
 
     public static class AccumulatorCoder extends StructuredCoder<Accumulator> {
 
         private final AvroCoder<Accumulator> coder;
+        private final boolean withSketches;
 
         public AccumulatorCoder() {
-            this.coder = AvroCoder.of(Accumulator.class, schema(), false);
+            this(false);
+        }
+
+        public AccumulatorCoder(final boolean withSketches) {
+            this.coder = AvroCoder.of(Accumulator.class, schema(withSketches), false);
+            this.withSketches = withSketches;
         }
 
         public static AccumulatorCoder of() {
             return new AccumulatorCoder();
         }
 
+        public static AccumulatorCoder of(final boolean withSketches) {
+            return new AccumulatorCoder(withSketches);
+        }
+
         @Override
         public void encode(Accumulator value, OutputStream outStream) throws IOException {
             encode(value, outStream, Context.NESTED);
@@ -643,7 +1079,7 @@ public class Accumulator {
 
         @Override
         public void encode(Accumulator value, OutputStream outStream, Context context) throws IOException {
-            coder.encode(value, outStream, context);
+            coder.encode(encodable(value), outStream, context);
         }
 
         @Override
@@ -672,7 +1108,17 @@ public class Accumulator {
 
         @Override
         public void registerByteSizeObserver(Accumulator value, ElementByteSizeObserver observer) throws Exception {
-            coder.registerByteSizeObserver(value, observer);
+            coder.registerByteSizeObserver(encodable(value), observer);
+        }
+
+        private Accumulator encodable(final Accumulator value) {
+            if(!withSketches) {
+                if(value.hasSketches()) {
+                    throw new IllegalStateException("AccumulatorCoder without sketches can not encode accumulator with sketches");
+                }
+                return value;
+            }
+            return value.withSerializedSketches();
         }
 
         @Override
@@ -685,9 +1131,188 @@ public class Accumulator {
         return AccumulatorCoder.of();
     }
 
+    /**
+     * Encodes slot indexed accumulator as presence bits followed by only present values in slot order.
+     * Integers are zigzag varint encoded and floating point values are written as raw bits.
+     */
+    public static class CompactAccumulatorCoder extends StructuredCoder<Accumulator> {
+
+        private final AccumulatorLayout layout;
+        private final List<Coder<Object>> objectCoders;
+
+        public CompactAccumulatorCoder(final AccumulatorLayout layout) {
+            if(layout == null) {
+                throw new IllegalStateException("CompactAccumulatorCoder layout must not be null");
+            }
+            this.layout = layout;
+            this.objectCoders = new ArrayList<>();
+            for(int slot=0; slot<layout.getObjectSize(); slot++) {
+                this.objectCoders.add((Coder<Object>) createObjectCoder(layout.getObjectBucket(slot)));
+            }
+        }
+
+        public static CompactAccumulatorCoder of(final AccumulatorLayout layout) {
+            return new CompactAccumulatorCoder(layout);
+        }
+
+        @Override
+        public void encode(Accumulator value, OutputStream outStream) throws IOException {
+            encode(value, outStream, Context.NESTED);
+        }
+
+        @Override
+        public void encode(Accumulator value, OutputStream outStream, Context context) throws IOException {
+            if(value.layout == null) {
+                throw new IllegalStateException("CompactAccumulatorCoder requires slot indexed accumulator");
+            }
+            outStream.write(value.empty ? 1 : 0);
+            for(final long word : value.presents) {
+                VarInt.encode(word, outStream);
+            }
+
+            final int longSize = layout.getLongSize();
+            final int doubleSize = layout.getDoubleSize();
+            for(int slot=0; slot<longSize; slot++) {
+                if(value.isPresent(slot)) {
+                    final long v = value.longValues[slot];
+                    VarInt.encode((v << 1) ^ (v >> 63), outStream);
+                }
+            }
+            final DataOutputStream dataOutputStream = new DataOutputStream(outStream);
+            for(int slot=0; slot<doubleSize; slot++) {
+                if(value.isPresent(longSize + slot)) {
+                    if(layout.getDoubleBucket(slot) == AccumulatorLayout.Bucket.FLOATS) {
+                        dataOutputStream.writeFloat((float) value.doubleValues[slot]);
+                    } else {
+                        dataOutputStream.writeDouble(value.doubleValues[slot]);
+                    }
+                }
+            }
+            for(int slot=0; slot<layout.getObjectSize(); slot++) {
+                if(value.isPresent(longSize + doubleSize + slot)) {
+                    objectCoders.get(slot).encode(value.objectValues[slot], outStream);
+                }
+            }
+        }
+
+        @Override
+        public Accumulator decode(InputStream inStream) throws IOException {
+            return decode(inStream, Context.NESTED);
+        }
+
+        @Override
+        public Accumulator decode(InputStream inStream, Context context) throws IOException {
+            final Accumulator accumulator = Accumulator.of(layout);
+            final int empty = inStream.read();
+            if(empty < 0) {
+                throw new EOFException("Failed to decode accumulator empty flag");
+            }
+            accumulator.empty = empty == 1;
+            for(int i=0; i<accumulator.presents.length; i++) {
+                accumulator.presents[i] = VarInt.decodeLong(inStream);
+            }
+
+            final int longSize = layout.getLongSize();
+            final int doubleSize = layout.getDoubleSize();
+            for(int slot=0; slot<longSize; slot++) {
+                if(accumulator.isPresent(slot)) {
+                    final long v = VarInt.decodeLong(inStream);
+                    accumulator.longValues[slot] = (v >>> 1) ^ -(v & 1L);
+                }
+            }
+            final DataInputStream dataInputStream = new DataInputStream(inStream);
+            for(int slot=0; slot<doubleSize; slot++) {
+                if(accumulator.isPresent(longSize + slot)) {
+                    if(layout.getDoubleBucket(slot) == AccumulatorLayout.Bucket.FLOATS) {
+                        accumulator.doubleValues[slot] = dataInputStream.readFloat();
+                    } else {
+                        accumulator.doubleValues[slot] = dataInputStream.readDouble();
+                    }
+                }
+            }
+            for(int slot=0; slot<layout.getObjectSize(); slot++) {
+                if(accumulator.isPresent(longSize + doubleSize + slot)) {
+                    accumulator.objectValues[slot] = objectCoders.get(slot).decode(inStream);
+                }
+            }
+            return accumulator;
+        }
+
+        @Override
+        public List<? extends Coder<?>> getCoderArguments() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<? extends Coder<?>> getComponents() {
+            return objectCoders;
+        }
+
+        @Override
+        public void verifyDeterministic() throws NonDeterministicException {
+            verifyDeterministic(this, "Accumulator is deterministic if all coders are deterministic");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof CompactAccumulatorCoder that)) {
+                return false;
+            }
+            return layout.equals(that.layout);
+        }
+
+        @Override
+        public int hashCode() {
+            return layout.hashCode();
+        }
+
+        private static Coder<?> createObjectCoder(final AccumulatorLayout.Bucket bucket) {
+            return switch (bucket) {
+                case STRINGS -> StringUtf8Coder.of();
+                case INTS_LIST -> ListCoder.of(NullableCoder.of(VarIntCoder.of()));
+                case LONGS_LIST -> ListCoder.of(NullableCoder.of(VarLongCoder.of()));
+                case FLOATS_LIST -> ListCoder.of(NullableCoder.of(FloatCoder.of()));
+                case DOUBLES_LIST -> ListCoder.of(NullableCoder.of(DoubleCoder.of()));
+                case STRINGS_LIST -> ListCoder.of(NullableCoder.of(StringUtf8Coder.of()));
+                case BOOLS_LIST -> ListCoder.of(NullableCoder.of(BooleanCoder.of()));
+                case DOUBLES_MAP -> MapCoder.of(StringUtf8Coder.of(), NullableCoder.of(DoubleCoder.of()));
+                case SKETCHES -> Sketch.coder();
+                default -> throw new IllegalStateException("Not object storage bucket: " + bucket);
+            };
+        }
+    }
+
+    public static Coder<Accumulator> coder(final AccumulatorLayout layout) {
+        return coder(layout, false);
+    }
+
+    public static Coder<Accumulator> coder(final AccumulatorLayout layout, final boolean withSketches) {
+        if(layout == null) {
+            return AccumulatorCoder.of(withSketches);
+        }
+        return CompactAccumulatorCoder.of(layout);
+    }
+
     @Override
     public String toString() {
         final StringBuilder valuesMessage = new StringBuilder();
+        if(layout != null) {
+            for(int slot=0; slot<layout.getLongSize(); slot++) {
+                valuesMessage.append("    " + layout.getLongBucket(slot) + "." + layout.getLongName(slot) + ": " + getSlotValue(layout.getLongBucket(slot), slot) + "\n");
+            }
+            for(int slot=0; slot<layout.getDoubleSize(); slot++) {
+                valuesMessage.append("    " + layout.getDoubleBucket(slot) + "." + layout.getDoubleName(slot) + ": " + getSlotValue(layout.getDoubleBucket(slot), slot) + "\n");
+            }
+            for(int slot=0; slot<layout.getObjectSize(); slot++) {
+                valuesMessage.append("    " + layout.getObjectBucket(slot) + "." + layout.getObjectName(slot) + ": " + objectValues[slot] + "\n");
+            }
+            return "aggregation.Accumulator: \n" +
+                    "  values:\n" + valuesMessage +
+                    "  empty: " + empty;
+        }
         for(Map.Entry<String, Integer> entry : this.ints.entrySet()) {
             valuesMessage.append("    ints." + entry.getKey() + ": " + entry.getValue() + "\n");
         }
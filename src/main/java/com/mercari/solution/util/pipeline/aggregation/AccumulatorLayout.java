@@ -0,0 +1,289 @@
+package com.mercari.solution.util.pipeline.aggregation;
+
+import com.mercari.solution.util.schema.RowSchemaUtil;
+import org.apache.beam.sdk.schemas.Schema;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Fixed assignment of accumulator keys to slots, resolved once at pipeline construction time.
+ * Primitive values are stored in long[] and double[] arrays and everything else in an Object[] array,
+ * so that accumulators created with the same layout never allocate per-key map entries.
+ */
+public class AccumulatorLayout implements Serializable {
+
+    public enum Storage {
+        LONG,
+        DOUBLE,
+        OBJECT
+    }
+
+    // Mirrors the maps of the map based Accumulator so that a key name can be shared between types as before
+    public enum Bucket {
+        INTS(Storage.LONG),
+        LONGS(Storage.LONG),
+        FLOATS(Storage.DOUBLE),
+        DOUBLES(Storage.DOUBLE),
+        BOOLEANS(Storage.LONG),
+        STRINGS(Storage.OBJECT),
+        INTS_LIST(Storage.OBJECT),
+        LONGS_LIST(Storage.OBJECT),
+        FLOATS_LIST(Storage.OBJECT),
+        DOUBLES_LIST(Storage.OBJECT),
+        STRINGS_LIST(Storage.OBJECT),
+        BOOLS_LIST(Storage.OBJECT),
+        DOUBLES_MAP(Storage.OBJECT),
+        SKETCHES(Storage.OBJECT);
+
+        private final Storage storage;
+
+        Bucket(final Storage storage) {
+            this.storage = storage;
+        }
+
+        public Storage getStorage() {
+            return storage;
+        }
+    }
+
+    private final List<Map<String, Integer>> slots;
+
+    private final List<String> longNames;
+    private final List<String> doubleNames;
+    private final List<String> objectNames;
+
+    private final List<Bucket> longBuckets;
+    private final List<Bucket> doubleBuckets;
+    private final List<Bucket> objectBuckets;
+
+    private AccumulatorLayout() {
+        this.slots = new ArrayList<>();
+        for(int i=0; i<Bucket.values().length; i++) {
+            this.slots.add(new HashMap<>());
+        }
+        this.longNames = new ArrayList<>();
+        this.doubleNames = new ArrayList<>();
+        this.objectNames = new ArrayList<>();
+        this.longBuckets = new ArrayList<>();
+        this.doubleBuckets = new ArrayList<>();
+        this.objectBuckets = new ArrayList<>();
+    }
+
+    public static AccumulatorLayout of(final Collection<Aggregators> aggregatorsList) {
+        final AccumulatorLayout layout = new AccumulatorLayout();
+        for(final Aggregators aggregators : aggregatorsList) {
+            for(final Schema.Field field : aggregators.getAccumulatorFields()) {
+                layout.register(field.getType(), field.getName());
+            }
+        }
+        return layout;
+    }
+
+    public int getLongSize() {
+        return longNames.size();
+    }
+
+    public int getDoubleSize() {
+        return doubleNames.size();
+    }
+
+    public int getObjectSize() {
+        return objectNames.size();
+    }
+
+    public int getSize() {
+        return longNames.size() + doubleNames.size() + objectNames.size();
+    }
+
+    public Bucket getLongBucket(int slot) {
+        return longBuckets.get(slot);
+    }
+
+    public Bucket getDoubleBucket(int slot) {
+        return doubleBuckets.get(slot);
+    }
+
+    public Bucket getObjectBucket(int slot) {
+        return objectBuckets.get(slot);
+    }
+
+    public String getLongName(int slot) {
+        return longNames.get(slot);
+    }
+
+    public String getDoubleName(int slot) {
+        return doubleNames.get(slot);
+    }
+
+    public String getObjectName(int slot) {
+        return objectNames.get(slot);
+    }
+
+    public int slot(final Bucket bucket, final String name) {
+        final Integer slot = slots.get(bucket.ordinal()).get(name);
+        if(slot == null) {
+            throw new IllegalStateException("Accumulator key: " + name + " is not registered in layout for " + bucket);
+        }
+        return slot;
+    }
+
+    /**
+     * Resolves the slot of an accumulator key once, so that per element access indexes the arrays directly.
+     * When layout is null the key falls back to the name based maps of the Accumulator.
+     */
+    public static Key key(final AccumulatorLayout layout, final Schema.FieldType fieldType, final String name) {
+        return new Key(layout, fieldType, name, false);
+    }
+
+    public static Key listKey(final AccumulatorLayout layout, final Schema.FieldType elementType, final String name) {
+        return new Key(layout, elementType, name, true);
+    }
+
+    public static Bucket bucket(final Schema.FieldType fieldType) {
+        return switch (fieldType.getTypeName()) {
+            case INT32 -> Bucket.INTS;
+            case INT64, DATETIME -> Bucket.LONGS;
+            case FLOAT -> Bucket.FLOATS;
+            case DOUBLE -> Bucket.DOUBLES;
+            case BOOLEAN -> Bucket.BOOLEANS;
+            case STRING -> Bucket.STRINGS;
+            case LOGICAL_TYPE -> {
+                if(RowSchemaUtil.isLogicalTypeDate(fieldType)) {
+                    yield Bucket.INTS;
+                } else if(RowSchemaUtil.isLogicalTypeTime(fieldType)) {
+                    yield Bucket.LONGS;
+                } else if(RowSchemaUtil.isLogicalTypeEnum(fieldType)) {
+                    yield Bucket.STRINGS;
+                } else {
+                    yield null;
+                }
+            }
+            case ARRAY, ITERABLE -> listBucket(fieldType.getCollectionElementType());
+            case MAP -> switch (fieldType.getMapValueType().getTypeName()) {
+                case DOUBLE -> Bucket.DOUBLES_MAP;
+                default -> null;
+            };
+            // sketch accumulators are declared as bytes, the sketch object itself is stored in the slot
+            case BYTES -> Bucket.SKETCHES;
+            default -> null;
+        };
+    }
+
+    public static Bucket listBucket(final Schema.FieldType elementType) {
+        return switch (elementType.getTypeName()) {
+            case INT32 -> Bucket.INTS_LIST;
+            case INT64, DATETIME -> Bucket.LONGS_LIST;
+            case FLOAT -> Bucket.FLOATS_LIST;
+            case DOUBLE -> Bucket.DOUBLES_LIST;
+            case BOOLEAN -> Bucket.BOOLS_LIST;
+            case STRING -> Bucket.STRINGS_LIST;
+            case LOGICAL_TYPE -> {
+                if(RowSchemaUtil.isLogicalTypeDate(elementType)) {
+                    yield Bucket.INTS_LIST;
+                } else if(RowSchemaUtil.isLogicalTypeTime(elementType)) {
+                    yield Bucket.LONGS_LIST;
+                } else if(RowSchemaUtil.isLogicalTypeEnum(elementType)) {
+                    yield Bucket.STRINGS_LIST;
+                } else {
+                    yield null;
+                }
+            }
+            default -> null;
+        };
+    }
+
+    private void register(final Schema.FieldType fieldType, final String name) {
+        final Bucket bucket = bucket(fieldType);
+        if(bucket == null) {
+            // Not storable in accumulator. same as map based accumulator, access to the key fails at runtime.
+            return;
+        }
+        final Map<String, Integer> bucketSlots = slots.get(bucket.ordinal());
+        if(bucketSlots.containsKey(name)) {
+            return;
+        }
+        switch (bucket.getStorage()) {
+            case LONG -> {
+                bucketSlots.put(name, longNames.size());
+                longNames.add(name);
+                longBuckets.add(bucket);
+            }
+            case DOUBLE -> {
+                bucketSlots.put(name, doubleNames.size());
+                doubleNames.add(name);
+                doubleBuckets.add(bucket);
+            }
+            case OBJECT -> {
+                bucketSlots.put(name, objectNames.size());
+                objectNames.add(name);
+                objectBuckets.add(bucket);
+            }
+        }
+    }
+
+    public static class Key implements Serializable {
+
+        private final String name;
+        private final Schema.FieldType fieldType;
+        private final boolean list;
+        private final Bucket bucket;
+        private final int slot;
+
+        private Key(final AccumulatorLayout layout, final Schema.FieldType fieldType, final String name, final boolean list) {
+            this.name = name;
+            this.fieldType = fieldType;
+            this.list = list;
+            this.bucket = list ? listBucket(fieldType) : bucket(fieldType);
+            this.slot = layout == null || bucket == null ? -1 : layout.slot(bucket, name);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Schema.FieldType getFieldType() {
+            return fieldType;
+        }
+
+        public boolean isList() {
+            return list;
+        }
+
+        public Bucket getBucket() {
+            return bucket;
+        }
+
+        // slot in the long, double or object array of the bucket storage
+        public int getSlot() {
+            return slot;
+        }
+
+        public boolean isResolved() {
+            return slot >= 0;
+        }
+
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof AccumulatorLayout that)) {
+            return false;
+        }
+        return longNames.equals(that.longNames)
+                && doubleNames.equals(that.doubleNames)
+                && objectNames.equals(that.objectNames)
+                && longBuckets.equals(that.longBuckets)
+                && doubleBuckets.equals(that.doubleBuckets)
+                && objectBuckets.equals(that.objectBuckets);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(longNames, doubleNames, objectNames, longBuckets, doubleBuckets, objectBuckets);
+    }
+
+}
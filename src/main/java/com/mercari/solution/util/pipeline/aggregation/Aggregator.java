@@ -35,6 +35,9 @@ public interface Aggregator extends Serializable {
         std,
         regression,
         array_agg,
+        approx_count_distinct,
+        approx_quantiles,
+        approx_top_count,
         any
     }
 
@@ -45,10 +48,14 @@ public interface Aggregator extends Serializable {
 
     List<String> validate(int parent, int index);
 
-    void setup();
+    // Resolves accumulator keys against the layout. layout is null when map based accumulators are used
+    void setup(AccumulatorLayout layout);
 
     List<Schema.Field> getOutputFields();
 
+    // Accumulator keys (as field name) and types this aggregator reads and writes
+    List<Schema.Field> getAccumulatorFields();
+
     Accumulator addInput(Accumulator accumulator, UnionValue input, SchemaUtil.PrimitiveValueGetter valueGetter);
 
     Accumulator mergeAccumulator(Accumulator base, Accumulator input);
@@ -122,19 +129,18 @@ public interface Aggregator extends Serializable {
             case std -> Std.of(name, field, expression, condition, ignore, separator, params);
             case regression -> SimpleRegression.of(name, field, expression, condition, ignore, separator, params);
             case array_agg -> ArrayAgg.of(name, inputSchema, outputType, condition, ignore, params);
+            case approx_count_distinct -> ApproxCountDistinct.of(name, inputSchema, field, condition, ignore, params);
+            case approx_quantiles -> ApproxQuantiles.of(name, field, expression, condition, ignore, params);
+            case approx_top_count -> ApproxTopCount.of(name, field, outputType, condition, ignore, params);
             default -> throw new IllegalArgumentException("Not supported op: " + op);
         };
     }
 
-    static Boolean filter(final Filter.ConditionNode conditionNode, final UnionValue unionValue) {
+    static Boolean filter(final Filter.CompiledCondition conditionNode, final UnionValue unionValue) {
         if(conditionNode == null) {
             return true;
         }
-        final Map<String, Object> values = new HashMap<>();
-        for(final String variable : conditionNode.getRequiredVariables()) {
-            values.put(variable, UnionValue.getFieldValue(unionValue, variable));
-        }
-        return Filter.filter(conditionNode, values);
+        return conditionNode.test(unionValue, UnionValue::getFieldValue);
     }
 
     static Double eval(final Expression expression, final Set<String> variables, final UnionValue unionValue) {
@@ -25,6 +25,8 @@ public class Aggregators implements Serializable {
 
     private SchemaUtil.PrimitiveValueGetter valueGetter;
 
+    private transient List<AccumulatorLayout.Key> commonKeys;
+
     public String getInput() {
         return input;
     }
@@ -95,16 +97,44 @@ public class Aggregators implements Serializable {
     }
 
     public Aggregators setup() {
+        return setup(null);
+    }
+
+    public Aggregators setup(final AccumulatorLayout layout) {
+        this.commonKeys = new ArrayList<>();
+        for(final Schema.Field commonField : commonFields) {
+            this.commonKeys.add(AccumulatorLayout.key(layout, commonField.getType(), commonField.getName()));
+        }
         for(final Aggregator aggregator : this.aggregators) {
-            aggregator.setup();
+            aggregator.setup(layout);
         }
         return this;
     }
 
+    public List<Schema.Field> getAccumulatorFields() {
+        final List<Schema.Field> accumulatorFields = new ArrayList<>(commonFields);
+        for(final Aggregator aggregator : this.aggregators) {
+            accumulatorFields.addAll(aggregator.getAccumulatorFields());
+        }
+        return accumulatorFields;
+    }
+
+    // Sketch based aggregators hold their accumulator values as BYTES fields
+    public boolean hasSketches() {
+        for(final Aggregator aggregator : this.aggregators) {
+            for(final Schema.Field field : aggregator.getAccumulatorFields()) {
+                if(Schema.TypeName.BYTES.equals(field.getType().getTypeName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public Accumulator addInput(Accumulator accumulator, UnionValue input) {
-        for(final Schema.Field commonField : commonFields) {
-            final Object primitiveValue = valueGetter.getValue(input.getValue(), commonField.getType(), commonField.getName());
-            accumulator.put(commonField.getType(), commonField.getName(), primitiveValue);
+        for(final AccumulatorLayout.Key commonKey : commonKeys) {
+            final Object primitiveValue = valueGetter.getValue(input.getValue(), commonKey.getFieldType(), commonKey.getName());
+            accumulator.put(commonKey, primitiveValue);
         }
         for(final Aggregator aggregator : this.aggregators) {
             if(aggregator.getIgnore()) {
@@ -126,9 +156,8 @@ public class Aggregators implements Serializable {
                 continue;
             }
             if(!done) {
-                for(final Schema.Field commonField : commonFields) {
-                    final Object primitiveValue = accum.get(commonField.getType(), commonField.getName());
-                    base.put(commonField.getType(), commonField.getName(), primitiveValue);
+                for(final AccumulatorLayout.Key commonKey : commonKeys) {
+                    base.put(commonKey, accum.get(commonKey));
                 }
                 done = true;
             }
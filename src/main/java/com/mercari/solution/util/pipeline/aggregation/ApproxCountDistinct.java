@@ -0,0 +1,151 @@
+package com.mercari.solution.util.pipeline.aggregation;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mercari.solution.util.Filter;
+import com.mercari.solution.util.domain.sketch.HyperLogLog;
+import com.mercari.solution.util.domain.sketch.Sketch;
+import com.mercari.solution.util.pipeline.union.UnionValue;
+import com.mercari.solution.util.schema.SchemaUtil;
+import org.apache.beam.sdk.schemas.Schema;
+
+import java.util.*;
+
+public class ApproxCountDistinct implements Aggregator {
+
+    private List<Schema.Field> outputFields;
+    private Schema.Field inputField;
+    private String name;
+    private String field;
+    private Integer precision;
+    private String condition;
+
+    private Boolean ignore;
+
+    private transient Filter.CompiledCondition conditionNode;
+    private transient AccumulatorLayout.Key key;
+
+
+    public static ApproxCountDistinct of(final String name,
+                                         final Schema inputSchema,
+                                         final String field,
+                                         final String condition,
+                                         final Boolean ignore,
+                                         final JsonObject params) {
+
+        if(field == null) {
+            throw new IllegalArgumentException("Aggregation approx_count_distinct: " + name + " requires field parameter");
+        }
+        if(!inputSchema.hasField(field)) {
+            throw new IllegalArgumentException("Aggregation approx_count_distinct: " + name + " field: " + field + " does not exist in input schema: " + inputSchema);
+        }
+
+        final ApproxCountDistinct approxCountDistinct = new ApproxCountDistinct();
+        approxCountDistinct.name = name;
+        approxCountDistinct.field = field;
+        approxCountDistinct.inputField = inputSchema.getField(field);
+        approxCountDistinct.condition = condition;
+        approxCountDistinct.ignore = ignore;
+
+        if(params.has("precision") && params.get("precision").isJsonPrimitive()) {
+            approxCountDistinct.precision = params.get("precision").getAsInt();
+        } else {
+            approxCountDistinct.precision = HyperLogLog.DEFAULT_PRECISION;
+        }
+
+        approxCountDistinct.outputFields = new ArrayList<>();
+        approxCountDistinct.outputFields.add(Schema.Field.of(name, Schema.FieldType.INT64.withNullable(true)));
+
+        return approxCountDistinct;
+    }
+
+    @Override
+    public Op getOp() {
+        return Op.approx_count_distinct;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Boolean getIgnore() {
+        return ignore;
+    }
+
+    @Override
+    public Boolean filter(final UnionValue unionValue) {
+        return Aggregator.filter(conditionNode, unionValue);
+    }
+
+    @Override
+    public List<String> validate(int parent, int index) {
+        final List<String> errorMessages = new ArrayList<>();
+        if(precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+            errorMessages.add("aggregations[" + parent + "].fields[" + index + "].precision must be between "
+                    + HyperLogLog.MIN_PRECISION + " and " + HyperLogLog.MAX_PRECISION);
+        }
+        return errorMessages;
+    }
+
+    @Override
+    public void setup(final AccumulatorLayout layout) {
+        if(this.condition != null) {
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(this.condition, JsonElement.class)));
+        }
+        this.key = AccumulatorLayout.key(layout, Schema.FieldType.BYTES, name);
+    }
+
+    @Override
+    public List<Schema.Field> getOutputFields() {
+        return outputFields;
+    }
+
+    @Override
+    public List<Schema.Field> getAccumulatorFields() {
+        return List.of(Schema.Field.of(name, Schema.FieldType.BYTES));
+    }
+
+    @Override
+    public Accumulator addInput(final Accumulator accumulator, final UnionValue input, final SchemaUtil.PrimitiveValueGetter valueGetter) {
+        final Object inputValue = valueGetter.getValue(input.getValue(), inputField.getType(), field);
+        if(inputValue == null) {
+            return accumulator;
+        }
+        HyperLogLog hll = accumulator.getSketch(key);
+        if(hll == null) {
+            hll = HyperLogLog.of(precision);
+            accumulator.putSketch(key, hll);
+        }
+        hll.add(inputValue);
+        return accumulator;
+    }
+
+    @Override
+    public Accumulator mergeAccumulator(final Accumulator base, final Accumulator input) {
+        final HyperLogLog inputHll = input.getSketch(key);
+        if(inputHll == null) {
+            return base;
+        }
+        final HyperLogLog baseHll = base.getSketch(key);
+        if(baseHll == null) {
+            base.putSketch(key, Sketch.copy(inputHll));
+        } else {
+            baseHll.merge(inputHll);
+        }
+        return base;
+    }
+
+    @Override
+    public Map<String,Object> extractOutput(final Accumulator accumulator,
+                                            final Map<String, Object> values,
+                                            final SchemaUtil.PrimitiveValueConverter converter) {
+
+        final HyperLogLog hll = accumulator.getSketch(key);
+        values.put(name, hll == null ? 0L : hll.estimate());
+        return values;
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.mercari.solution.util.pipeline.aggregation;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mercari.solution.util.Filter;
+import com.mercari.solution.util.domain.math.ExpressionUtil;
+import com.mercari.solution.util.domain.sketch.KllQuantiles;
+import com.mercari.solution.util.domain.sketch.Sketch;
+import com.mercari.solution.util.pipeline.union.UnionValue;
+import com.mercari.solution.util.schema.SchemaUtil;
+import net.objecthunter.exp4j.Expression;
+import org.apache.beam.sdk.schemas.Schema;
+
+import java.util.*;
+
+public class ApproxQuantiles implements Aggregator {
+
+    private static final int DEFAULT_QUANTILES = 4;
+
+    private List<Schema.Field> outputFields;
+    private String name;
+    private String field;
+    private String expression;
+    private List<Double> ranks;
+    private Integer k;
+    private String condition;
+
+    private Boolean ignore;
+
+    private transient Expression exp;
+    private transient Set<String> variables;
+    private transient Filter.CompiledCondition conditionNode;
+    private transient AccumulatorLayout.Key key;
+
+
+    public static ApproxQuantiles of(final String name,
+                                     final String field,
+                                     final String expression,
+                                     final String condition,
+                                     final Boolean ignore,
+                                     final JsonObject params) {
+
+        if(field == null && expression == null) {
+            throw new IllegalArgumentException("Aggregation approx_quantiles: " + name + " requires field or expression parameter");
+        }
+
+        final ApproxQuantiles approxQuantiles = new ApproxQuantiles();
+        approxQuantiles.name = name;
+        approxQuantiles.field = field;
+        approxQuantiles.expression = expression;
+        approxQuantiles.condition = condition;
+        approxQuantiles.ignore = ignore;
+
+        approxQuantiles.ranks = new ArrayList<>();
+        if(params.has("ranks") && params.get("ranks").isJsonArray()) {
+            for(final JsonElement rank : params.getAsJsonArray("ranks")) {
+                approxQuantiles.ranks.add(rank.getAsDouble());
+            }
+        } else {
+            // same as BigQuery APPROX_QUANTILES, returns minimum, quantile boundaries and maximum
+            final int quantiles;
+            if(params.has("quantiles") && params.get("quantiles").isJsonPrimitive()) {
+                quantiles = params.get("quantiles").getAsInt();
+            } else {
+                quantiles = DEFAULT_QUANTILES;
+            }
+            for(int i=0; i<=quantiles; i++) {
+                approxQuantiles.ranks.add(quantiles > 0 ? (double) i / quantiles : 0D);
+            }
+        }
+
+        if(params.has("k") && params.get("k").isJsonPrimitive()) {
+            approxQuantiles.k = params.get("k").getAsInt();
+        } else {
+            approxQuantiles.k = KllQuantiles.DEFAULT_K;
+        }
+
+        approxQuantiles.outputFields = new ArrayList<>();
+        approxQuantiles.outputFields.add(Schema.Field.of(name, Schema.FieldType.array(Schema.FieldType.DOUBLE.withNullable(true)).withNullable(true)));
+
+        return approxQuantiles;
+    }
+
+    @Override
+    public Op getOp() {
+        return Op.approx_quantiles;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Boolean getIgnore() {
+        return ignore;
+    }
+
+    @Override
+    public Boolean filter(final UnionValue unionValue) {
+        return Aggregator.filter(conditionNode, unionValue);
+    }
+
+    @Override
+    public List<String> validate(int parent, int index) {
+        final List<String> errorMessages = new ArrayList<>();
+        if(ranks.isEmpty()) {
+            errorMessages.add("aggregations[" + parent + "].fields[" + index + "].ranks must not be empty");
+        }
+        for(final Double rank : ranks) {
+            if(rank < 0 || rank > 1) {
+                errorMessages.add("aggregations[" + parent + "].fields[" + index + "].ranks must be between 0 and 1, but was: " + rank);
+            }
+        }
+        if(k < KllQuantiles.MIN_K) {
+            errorMessages.add("aggregations[" + parent + "].fields[" + index + "].k must be over " + (KllQuantiles.MIN_K - 1));
+        }
+        return errorMessages;
+    }
+
+    @Override
+    public void setup(final AccumulatorLayout layout) {
+        if(this.expression != null) {
+            final Set<String> variables = ExpressionUtil.estimateVariables(this.expression);
+            this.variables = variables;
+            this.exp = ExpressionUtil.createDefaultExpression(this.expression, variables);
+        }
+        if(this.condition != null) {
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(this.condition, JsonElement.class)));
+        }
+        this.key = AccumulatorLayout.key(layout, Schema.FieldType.BYTES, name);
+    }
+
+    @Override
+    public List<Schema.Field> getOutputFields() {
+        return outputFields;
+    }
+
+    @Override
+    public List<Schema.Field> getAccumulatorFields() {
+        return List.of(Schema.Field.of(name, Schema.FieldType.BYTES));
+    }
+
+    @Override
+    public Accumulator addInput(final Accumulator accumulator, final UnionValue input, final SchemaUtil.PrimitiveValueGetter valueGetter) {
+        final Double inputValue;
+        if(field != null) {
+            inputValue = input.getDouble(field);
+        } else {
+            inputValue = Aggregator.eval(this.exp, variables, input);
+        }
+        if(inputValue == null || Double.isNaN(inputValue)) {
+            return accumulator;
+        }
+        KllQuantiles kll = accumulator.getSketch(key);
+        if(kll == null) {
+            kll = KllQuantiles.of(k);
+            accumulator.putSketch(key, kll);
+        }
+        kll.add(inputValue);
+        return accumulator;
+    }
+
+    @Override
+    public Accumulator mergeAccumulator(final Accumulator base, final Accumulator input) {
+        final KllQuantiles inputKll = input.getSketch(key);
+        if(inputKll == null) {
+            return base;
+        }
+        final KllQuantiles baseKll = base.getSketch(key);
+        if(baseKll == null) {
+            base.putSketch(key, Sketch.copy(inputKll));
+        } else {
+            baseKll.merge(inputKll);
+        }
+        return base;
+    }
+
+    @Override
+    public Map<String,Object> extractOutput(final Accumulator accumulator,
+                                            final Map<String, Object> values,
+                                            final SchemaUtil.PrimitiveValueConverter converter) {
+
+        final KllQuantiles kll = accumulator.getSketch(key);
+        if(kll == null || kll.getCount() == 0) {
+            values.put(name, null);
+        } else {
+            values.put(name, kll.quantiles(ranks));
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,192 @@
+package com.mercari.solution.util.pipeline.aggregation;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mercari.solution.module.DataType;
+import com.mercari.solution.util.Filter;
+import com.mercari.solution.util.converter.RowToRecordConverter;
+import com.mercari.solution.util.domain.sketch.CountMinTopK;
+import com.mercari.solution.util.domain.sketch.Sketch;
+import com.mercari.solution.util.pipeline.union.UnionValue;
+import com.mercari.solution.util.schema.AvroSchemaUtil;
+import com.mercari.solution.util.schema.SchemaUtil;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.values.Row;
+
+import java.util.*;
+
+public class ApproxTopCount implements Aggregator {
+
+    private static final Schema OUTPUT_ELEMENT_SCHEMA = Schema.builder()
+            .addField("value", Schema.FieldType.STRING.withNullable(true))
+            .addField("count", Schema.FieldType.INT64.withNullable(true))
+            .build();
+
+    private List<Schema.Field> outputFields;
+    private String name;
+    private String field;
+    private DataType outputType;
+    private Integer size;
+    private Integer depth;
+    private Integer width;
+    private String condition;
+
+    private Boolean ignore;
+
+    private transient Filter.CompiledCondition conditionNode;
+    private transient AccumulatorLayout.Key key;
+
+
+    public static ApproxTopCount of(final String name,
+                                    final String field,
+                                    final DataType outputType,
+                                    final String condition,
+                                    final Boolean ignore,
+                                    final JsonObject params) {
+
+        if(field == null) {
+            throw new IllegalArgumentException("Aggregation approx_top_count: " + name + " requires field parameter");
+        }
+
+        final ApproxTopCount approxTopCount = new ApproxTopCount();
+        approxTopCount.name = name;
+        approxTopCount.field = field;
+        approxTopCount.outputType = outputType;
+        approxTopCount.condition = condition;
+        approxTopCount.ignore = ignore;
+
+        if(params.has("size") && params.get("size").isJsonPrimitive()) {
+            approxTopCount.size = params.get("size").getAsInt();
+        } else {
+            approxTopCount.size = CountMinTopK.DEFAULT_SIZE;
+        }
+        if(params.has("depth") && params.get("depth").isJsonPrimitive()) {
+            approxTopCount.depth = params.get("depth").getAsInt();
+        } else {
+            approxTopCount.depth = CountMinTopK.DEFAULT_DEPTH;
+        }
+        if(params.has("width") && params.get("width").isJsonPrimitive()) {
+            approxTopCount.width = params.get("width").getAsInt();
+        } else {
+            approxTopCount.width = CountMinTopK.DEFAULT_WIDTH;
+        }
+
+        approxTopCount.outputFields = new ArrayList<>();
+        approxTopCount.outputFields.add(Schema.Field.of(name, Schema.FieldType.array(Schema.FieldType.row(OUTPUT_ELEMENT_SCHEMA).withNullable(true))));
+
+        return approxTopCount;
+    }
+
+    @Override
+    public Op getOp() {
+        return Op.approx_top_count;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Boolean getIgnore() {
+        return ignore;
+    }
+
+    @Override
+    public Boolean filter(final UnionValue unionValue) {
+        return Aggregator.filter(conditionNode, unionValue);
+    }
+
+    @Override
+    public List<String> validate(int parent, int index) {
+        final List<String> errorMessages = new ArrayList<>();
+        if(size < 1) {
+            errorMessages.add("aggregations[" + parent + "].fields[" + index + "].size must be over zero");
+        }
+        if(depth < 1 || width < 1) {
+            errorMessages.add("aggregations[" + parent + "].fields[" + index + "].depth and width must be over zero");
+        }
+        if(!DataType.ROW.equals(outputType) && !DataType.AVRO.equals(outputType)) {
+            errorMessages.add("aggregations[" + parent + "].fields[" + index + "] approx_top_count does not support outputType: " + outputType);
+        }
+        return errorMessages;
+    }
+
+    @Override
+    public void setup(final AccumulatorLayout layout) {
+        if(this.condition != null) {
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(this.condition, JsonElement.class)));
+        }
+        this.key = AccumulatorLayout.key(layout, Schema.FieldType.BYTES, name);
+    }
+
+    @Override
+    public List<Schema.Field> getOutputFields() {
+        return outputFields;
+    }
+
+    @Override
+    public List<Schema.Field> getAccumulatorFields() {
+        return List.of(Schema.Field.of(name, Schema.FieldType.BYTES));
+    }
+
+    @Override
+    public Accumulator addInput(final Accumulator accumulator, final UnionValue input, final SchemaUtil.PrimitiveValueGetter valueGetter) {
+        final String inputValue = input.getString(field);
+        if(inputValue == null) {
+            return accumulator;
+        }
+        CountMinTopK topK = accumulator.getSketch(key);
+        if(topK == null) {
+            topK = CountMinTopK.of(size, depth, width);
+            accumulator.putSketch(key, topK);
+        }
+        topK.add(inputValue);
+        return accumulator;
+    }
+
+    @Override
+    public Accumulator mergeAccumulator(final Accumulator base, final Accumulator input) {
+        final CountMinTopK inputTopK = input.getSketch(key);
+        if(inputTopK == null) {
+            return base;
+        }
+        final CountMinTopK baseTopK = base.getSketch(key);
+        if(baseTopK == null) {
+            base.putSketch(key, Sketch.copy(inputTopK));
+        } else {
+            baseTopK.merge(inputTopK);
+        }
+        return base;
+    }
+
+    @Override
+    public Map<String,Object> extractOutput(final Accumulator accumulator,
+                                            final Map<String, Object> values,
+                                            final SchemaUtil.PrimitiveValueConverter converter) {
+
+        final CountMinTopK topK = accumulator.getSketch(key);
+        final List<Object> output = new ArrayList<>();
+        if(topK != null) {
+            final org.apache.avro.Schema outputAvroSchema = DataType.AVRO.equals(outputType)
+                    ? RowToRecordConverter.convertSchema(OUTPUT_ELEMENT_SCHEMA)
+                    : null;
+            for(final Map.Entry<String, Long> entry : topK.top()) {
+                final Map<String, Object> elementValues = new HashMap<>();
+                elementValues.put("value", entry.getKey());
+                elementValues.put("count", entry.getValue());
+                if(DataType.ROW.equals(outputType)) {
+                    output.add(Row.withSchema(OUTPUT_ELEMENT_SCHEMA).withFieldValues(elementValues).build());
+                } else {
+                    final GenericRecord record = AvroSchemaUtil.create(outputAvroSchema, elementValues);
+                    output.add(record);
+                }
+            }
+        }
+        values.put(name, output);
+        return values;
+    }
+
+}
@@ -35,7 +35,12 @@ public class ArgMax implements Aggregator {
 
     private transient Expression comparingExp;
     private transient Set<String> comparingVariables;
-    private transient Filter.ConditionNode conditionNode;
+    private transient Filter.CompiledCondition conditionNode;
+
+    private transient AccumulatorLayout.Key[] outputKeys;
+    private transient String[] originalFieldNames;
+    private transient boolean[] comparingOutputs;
+    private transient AccumulatorLayout.Key comparingKey;
 
     public ArgMax() {
 
@@ -157,15 +162,25 @@ public class ArgMax implements Aggregator {
     }
 
     @Override
-    public void setup() {
+    public void setup(final AccumulatorLayout layout) {
         if(this.comparingExpression != null) {
             final Set<String> variables = ExpressionUtil.estimateVariables(this.comparingExpression);
             this.comparingVariables = variables;
             this.comparingExp = ExpressionUtil.createDefaultExpression(this.comparingExpression, variables);
         }
         if(this.condition != null) {
-            this.conditionNode = Filter.parse(new Gson().fromJson(this.condition, JsonElement.class));
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(this.condition, JsonElement.class)));
+        }
+        this.outputKeys = new AccumulatorLayout.Key[outputFields.size()];
+        this.originalFieldNames = new String[outputFields.size()];
+        this.comparingOutputs = new boolean[outputFields.size()];
+        for(int i=0; i<outputFields.size(); i++) {
+            final Schema.Field field = outputFields.get(i);
+            this.outputKeys[i] = AccumulatorLayout.key(layout, field.getType(), Aggregator.getFieldOptionAccumulatorKey(field));
+            this.originalFieldNames[i] = Aggregator.getFieldOptionOriginalFieldKey(field);
+            this.comparingOutputs[i] = field.getName().equals(comparingValueField.getName());
         }
+        this.comparingKey = AccumulatorLayout.key(layout, comparingValueField.getType(), Aggregator.getFieldOptionAccumulatorKey(comparingValueField));
     }
 
     @Override
@@ -174,9 +189,20 @@ public class ArgMax implements Aggregator {
     }
 
     @Override
-    public Accumulator addInput(Accumulator accumulator, UnionValue unionValue, SchemaUtil.PrimitiveValueGetter valueGetter) {
+    public List<Schema.Field> getAccumulatorFields() {
+        final List<Schema.Field> accumulatorFields = new ArrayList<>();
+        for(final Schema.Field field : outputFields) {
+            final String accumulatorKeyName = Aggregator.getFieldOptionAccumulatorKey(field);
+            accumulatorFields.add(Schema.Field.of(accumulatorKeyName, field.getType()));
+        }
         final String accumulatorComparingKeyName = Aggregator.getFieldOptionAccumulatorKey(comparingValueField);
-        final Object prevComparingValue = accumulator.get(comparingValueField.getType(), accumulatorComparingKeyName);
+        accumulatorFields.add(Schema.Field.of(accumulatorComparingKeyName, comparingValueField.getType()));
+        return accumulatorFields;
+    }
+
+    @Override
+    public Accumulator addInput(Accumulator accumulator, UnionValue unionValue, SchemaUtil.PrimitiveValueGetter valueGetter) {
+        final Object prevComparingValue = accumulator.get(comparingKey);
         final Object inputComparingValue;
         if(comparingField != null) {
             inputComparingValue = valueGetter.getValue(unionValue.getValue(), comparingValueField.getType(), comparingField);
@@ -185,50 +211,44 @@ public class ArgMax implements Aggregator {
         }
 
         if(Aggregator.compare(inputComparingValue, prevComparingValue, opposite)) {
-            for(final Schema.Field field : this.outputFields) {
-                if(field.getName().equals(comparingValueField.getName())) {
+            for(int i=0; i<outputKeys.length; i++) {
+                if(comparingOutputs[i]) {
                     continue;
                 }
-                final String originalFieldName = Aggregator.getFieldOptionOriginalFieldKey(field);
-                final Object fieldValue = valueGetter.getValue(unionValue.getValue(), field.getType(), originalFieldName);
-
-                final String accumulatorKeyName = Aggregator.getFieldOptionAccumulatorKey(field);
-                accumulator.put(field.getType(), accumulatorKeyName, fieldValue);
+                final AccumulatorLayout.Key key = outputKeys[i];
+                final Object fieldValue = valueGetter.getValue(unionValue.getValue(), key.getFieldType(), originalFieldNames[i]);
+                accumulator.put(key, fieldValue);
             }
 
-            accumulator.put(comparingValueField.getType(), accumulatorComparingKeyName, inputComparingValue);
+            accumulator.put(comparingKey, inputComparingValue);
         }
         return accumulator;
     }
 
     @Override
     public Accumulator mergeAccumulator(Accumulator baseAccum, Accumulator inputAccum) {
-        final String accumulatorComparingKeyName = Aggregator.getFieldOptionAccumulatorKey(comparingValueField);
-        final Object prevComparingValue = baseAccum.get(comparingValueField.getType(), accumulatorComparingKeyName);
-        final Object inputComparingValue = inputAccum.get(comparingValueField.getType(), accumulatorComparingKeyName);
+        final Object prevComparingValue = baseAccum.get(comparingKey);
+        final Object inputComparingValue = inputAccum.get(comparingKey);
 
         if(Aggregator.compare(inputComparingValue, prevComparingValue, opposite)) {
-            for(final Schema.Field field : outputFields) {
-                final String accumulatorFieldKeyName = Aggregator.getFieldOptionAccumulatorKey(field);
-                final Object fieldValue = inputAccum.get(field.getType(), accumulatorFieldKeyName);
-                baseAccum.put(field.getType(), accumulatorFieldKeyName, fieldValue);
+            for(final AccumulatorLayout.Key key : outputKeys) {
+                baseAccum.put(key, inputAccum.get(key));
             }
-            baseAccum.put(comparingValueField.getType(), accumulatorComparingKeyName, inputComparingValue);
+            baseAccum.put(comparingKey, inputComparingValue);
         }
         return baseAccum;
     }
 
     @Override
     public Map<String, Object> extractOutput(Accumulator accumulator, Map<String, Object> values, SchemaUtil.PrimitiveValueConverter converter) {
-        for(final Schema.Field field : outputFields) {
-            final String accumulatorFieldKeyName = Aggregator.getFieldOptionAccumulatorKey(field);
-            final Object fieldPrimitiveValue = accumulator.get(field.getType(), accumulatorFieldKeyName);
+        for(int i=0; i<outputKeys.length; i++) {
+            final Schema.Field field = outputFields.get(i);
+            final Object fieldPrimitiveValue = accumulator.get(outputKeys[i]);
             final Object fieldValue = converter.convertPrimitive(field.getType(), fieldPrimitiveValue);
             values.put(field.getName(), fieldValue);
         }
         if(outputComparingValueField) {
-            final String accumulatorComparingKeyName = Aggregator.getFieldOptionAccumulatorKey(comparingValueField);
-            final Object fieldPrimitiveValue = accumulator.get(comparingValueField.getType(), accumulatorComparingKeyName);
+            final Object fieldPrimitiveValue = accumulator.get(comparingKey);
             final Object fieldValue = converter.convertPrimitive(comparingValueField.getType(), fieldPrimitiveValue);
             values.put(comparingValueField.getName(), fieldValue);
         }
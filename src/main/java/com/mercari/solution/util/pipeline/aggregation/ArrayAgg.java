@@ -31,7 +31,8 @@ public class ArrayAgg implements Aggregator {
 
     private List<Schema.Field> inputFields;
 
-    private transient Filter.ConditionNode conditionNode;
+    private transient Filter.CompiledCondition conditionNode;
+    private transient AccumulatorLayout.Key[] inputKeys;
 
     enum Order implements Serializable {
         ascending,
@@ -134,9 +135,14 @@ public class ArrayAgg implements Aggregator {
     }
 
     @Override
-    public void setup() {
+    public void setup(final AccumulatorLayout layout) {
         if(this.condition != null) {
-            this.conditionNode = Filter.parse(new Gson().fromJson(this.condition, JsonElement.class));
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(this.condition, JsonElement.class)));
+        }
+        this.inputKeys = new AccumulatorLayout.Key[inputFields.size()];
+        for(int i=0; i<inputFields.size(); i++) {
+            final Schema.Field inputField = inputFields.get(i);
+            this.inputKeys[i] = AccumulatorLayout.listKey(layout, inputField.getType(), this.name + "." + inputField.getName());
         }
     }
 
@@ -146,11 +152,21 @@ public class ArrayAgg implements Aggregator {
     }
 
     @Override
-    public Accumulator addInput(final Accumulator accumulator, final UnionValue input, final SchemaUtil.PrimitiveValueGetter valueGetter) {
+    public List<Schema.Field> getAccumulatorFields() {
+        final List<Schema.Field> accumulatorFields = new ArrayList<>();
         for(final Schema.Field inputField : inputFields) {
             final String key = this.name + "." + inputField.getName();
+            accumulatorFields.add(Schema.Field.of(key, Schema.FieldType.array(inputField.getType())));
+        }
+        return accumulatorFields;
+    }
+
+    @Override
+    public Accumulator addInput(final Accumulator accumulator, final UnionValue input, final SchemaUtil.PrimitiveValueGetter valueGetter) {
+        for(int i=0; i<inputKeys.length; i++) {
+            final Schema.Field inputField = inputFields.get(i);
             final Object value = valueGetter.getValue(input.getValue(), inputField.getType(), inputField.getName());
-            accumulator.add(inputField.getType(), key, value);
+            accumulator.add(inputKeys[i], value);
         }
 
         return accumulator;
@@ -158,14 +174,13 @@ public class ArrayAgg implements Aggregator {
 
     @Override
     public Accumulator mergeAccumulator(final Accumulator base, final Accumulator input) {
-        for(final Schema.Field inputField : inputFields) {
-            final String key = this.name + "." + inputField.getName();
-            final List baseList = Optional.ofNullable(base.list(inputField.getType(), key)).orElseGet(ArrayList::new);
-            final List inputList = Optional.ofNullable(input.list(inputField.getType(), key)).orElseGet(ArrayList::new);
+        for(final AccumulatorLayout.Key key : inputKeys) {
+            final List baseList = Optional.ofNullable(base.list(key)).orElseGet(ArrayList::new);
+            final List inputList = Optional.ofNullable(input.list(key)).orElseGet(ArrayList::new);
             for(Object value : inputList) {
                 baseList.add(value);
             }
-            base.put(inputField.getType(), name + "." + inputField.getName(), baseList);
+            base.put(key, baseList);
         }
         return base;
     }
@@ -177,8 +192,7 @@ public class ArrayAgg implements Aggregator {
 
         if(isSingleField) {
             final Schema.Field inputField = inputFields.get(0);
-            final String key = this.name + "." + inputField.getName();
-            final List list = accumulator.list(inputField.getType(), key);
+            final List list = accumulator.list(inputKeys[0]);
             final List output = new ArrayList();
             for(final Object primitiveValue : list) {
                 final Object value = converter.convertPrimitive(inputField.getType(), primitiveValue);
@@ -187,9 +201,9 @@ public class ArrayAgg implements Aggregator {
             values.put(name, output);
         } else {
             if(flatten) {
-                for(final Schema.Field inputField : inputFields) {
-                    final String key = this.name + "." + inputField.getName();
-                    final List list = accumulator.list(inputField.getType(), key);
+                for(int f=0; f<inputKeys.length; f++) {
+                    final Schema.Field inputField = inputFields.get(f);
+                    final List list = accumulator.list(inputKeys[f]);
                     final List output = new ArrayList();
                     for(final Object primitiveValue : list) {
                         final Object value = converter.convertPrimitive(inputField.getType(), primitiveValue);
@@ -198,15 +212,15 @@ public class ArrayAgg implements Aggregator {
                     values.put(name + "_" + inputField.getName(), output);
                 }
             } else {
-                final int size = accumulator.list(inputFields.get(0).getType(), this.name + "." + inputFields.get(0).getName()).size();
+                final int size = accumulator.list(inputKeys[0]).size();
                 final Schema outputSchema = outputFields.get(0).getType().getCollectionElementType().getRowSchema();
                 final org.apache.avro.Schema outputAvroSchema = RowToRecordConverter.convertSchema(outputSchema);
                 final List output = new ArrayList();
                 for(int i=0; i<size; i++) {
                     final Map<String, Object> rowValues = new HashMap<>();
-                    for(final Schema.Field inputField : inputFields) {
-                        final String key = this.name + "." + inputField.getName();
-                        final List list = accumulator.list(inputField.getType(), key);
+                    for(int f=0; f<inputKeys.length; f++) {
+                        final Schema.Field inputField = inputFields.get(f);
+                        final List list = accumulator.list(inputKeys[f]);
                         final Object primitiveValue = list.get(i);
                         final Object value = converter.convertPrimitive(inputField.getType(), primitiveValue);
                         rowValues.put(inputField.getName(), value);
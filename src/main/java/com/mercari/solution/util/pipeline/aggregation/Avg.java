@@ -33,7 +33,10 @@ public class Avg implements Aggregator {
     private transient Expression weightExp;
     private transient Set<String> weightVariables;
 
-    private transient Filter.ConditionNode conditionNode;
+    private transient Filter.CompiledCondition conditionNode;
+
+    private transient AccumulatorLayout.Key avgKey;
+    private transient AccumulatorLayout.Key weightKey;
 
 
     public static Avg of(final String name,
@@ -91,7 +94,7 @@ public class Avg implements Aggregator {
     }
 
     @Override
-    public void setup() {
+    public void setup(final AccumulatorLayout layout) {
         if(this.expression != null) {
             final Set<String> variables = ExpressionUtil.estimateVariables(this.expression);
             this.variables = variables;
@@ -103,8 +106,10 @@ public class Avg implements Aggregator {
             this.weightExp = ExpressionUtil.createDefaultExpression(this.weightExpression, weightVariables);
         }
         if(this.condition != null) {
-            this.conditionNode = Filter.parse(new Gson().fromJson(this.condition, JsonElement.class));
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(this.condition, JsonElement.class)));
         }
+        this.avgKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, name);
+        this.weightKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, weightKeyName);
     }
 
     @Override
@@ -112,10 +117,17 @@ public class Avg implements Aggregator {
         return outputFields;
     }
 
+    @Override
+    public List<Schema.Field> getAccumulatorFields() {
+        return List.of(
+                Schema.Field.of(name, Schema.FieldType.DOUBLE),
+                Schema.Field.of(weightKeyName, Schema.FieldType.DOUBLE));
+    }
+
     @Override
     public Accumulator addInput(final Accumulator accumulator, final UnionValue input, final SchemaUtil.PrimitiveValueGetter valueGetter) {
-        final Double prevAvg = accumulator.getDouble(name);
-        final Double prevWeight = Optional.ofNullable(accumulator.getDouble(weightKeyName)).orElse(0D);
+        final Double prevAvg = accumulator.getDouble(avgKey);
+        final double prevWeight = accumulator.getDouble(weightKey, 0D);
         final Double inputValue;
         if(field != null) {
             inputValue = input.getDouble(field);
@@ -132,25 +144,25 @@ public class Avg implements Aggregator {
         }
 
         final Double avgNext = Aggregator.avg(prevAvg, prevWeight, inputValue, inputWeight);
-        accumulator.putDouble(name, avgNext);
+        accumulator.putDouble(avgKey, avgNext);
         if(inputValue != null) {
-            accumulator.putDouble(weightKeyName, prevWeight + inputWeight);
+            accumulator.putDouble(weightKey, prevWeight + inputWeight);
         } else {
-            accumulator.putDouble(weightKeyName, prevWeight);
+            accumulator.putDouble(weightKey, prevWeight);
         }
         return accumulator;
     }
 
     @Override
     public Accumulator mergeAccumulator(final Accumulator base, final Accumulator input) {
-        final Double baseAvg = base.getDouble(name);
-        final Double baseWeight = base.getDouble(weightKeyName);
-        final Double inputAvg = input.getDouble(name);
-        final Double inputWeight = input.getDouble(weightKeyName);
+        final Double baseAvg = base.getDouble(avgKey);
+        final Double baseWeight = base.getDouble(weightKey);
+        final Double inputAvg = input.getDouble(avgKey);
+        final Double inputWeight = input.getDouble(weightKey);
         final Double avg = Aggregator.avg(baseAvg, baseWeight, inputAvg, inputWeight);
         final Double weight = Optional.ofNullable(baseWeight).orElse(0D) + Optional.ofNullable(inputWeight).orElse(0D);
-        base.putDouble(name, avg);
-        base.putDouble(weightKeyName, weight);
+        base.putDouble(avgKey, avg);
+        base.putDouble(weightKey, weight);
         return base;
     }
 
@@ -159,7 +171,7 @@ public class Avg implements Aggregator {
                                             final Map<String, Object> values,
                                             final SchemaUtil.PrimitiveValueConverter converter) {
 
-        final Double avg = accumulator.getDouble(name);
+        final Double avg = accumulator.getDouble(avgKey);
         values.put(name, avg);
         return values;
     }
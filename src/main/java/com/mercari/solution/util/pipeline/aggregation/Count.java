@@ -18,7 +18,8 @@ public class Count implements Aggregator {
 
     private Boolean ignore;
 
-    private transient Filter.ConditionNode conditionNode;
+    private transient Filter.CompiledCondition conditionNode;
+    private transient AccumulatorLayout.Key key;
 
     public Count() {
 
@@ -67,10 +68,11 @@ public class Count implements Aggregator {
     }
 
     @Override
-    public void setup() {
+    public void setup(final AccumulatorLayout layout) {
         if (this.condition != null) {
-            this.conditionNode = Filter.parse(new Gson().fromJson(this.condition, JsonElement.class));
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(this.condition, JsonElement.class)));
         }
+        this.key = AccumulatorLayout.key(layout, Schema.FieldType.INT64, name);
     }
 
     @Override
@@ -78,30 +80,26 @@ public class Count implements Aggregator {
         return this.outputFields;
     }
 
+    @Override
+    public List<Schema.Field> getAccumulatorFields() {
+        return List.of(Schema.Field.of(name, Schema.FieldType.INT64));
+    }
+
     @Override
     public Accumulator addInput(final Accumulator accum, final UnionValue input, final SchemaUtil.PrimitiveValueGetter valueGetter) {
-        final Long countPrev = accum.getLong(name);
-        accum.putLong(name, Optional.ofNullable(countPrev).orElse(0L) + 1L);
+        accum.putLong(key, accum.getLong(key, 0L) + 1L);
         return accum;
     }
 
     @Override
     public Accumulator mergeAccumulator(final Accumulator base, final Accumulator accum) {
-
-        final Long stateValue = base.getLong(name);
-        final Long accumValue = accum.getLong(name);
-
-        final Long count = Optional.ofNullable(stateValue).orElse(0L) + Optional.ofNullable(accumValue).orElse(0L);
-        base.putLong(name, count);
+        base.putLong(key, base.getLong(key, 0L) + accum.getLong(key, 0L));
         return base;
     }
 
     @Override
     public Map<String,Object> extractOutput(final Accumulator accumulator, final Map<String, Object> values, final SchemaUtil.PrimitiveValueConverter converter) {
-        final Long count = Optional
-                .ofNullable(accumulator.getLong(name))
-                .orElse(0L);
-        values.put(name, count);
+        values.put(name, accumulator.getLong(key, 0L));
         return values;
     }
 
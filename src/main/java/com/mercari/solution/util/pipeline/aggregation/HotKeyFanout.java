@@ -0,0 +1,109 @@
+package com.mercari.solution.util.pipeline.aggregation;
+
+import org.apache.beam.sdk.transforms.SerializableFunction;
+
+/**
+ * Hot key fanout function for Combine.PerKey#withHotKeyFanout that detects hot keys by itself.
+ * Key frequencies of recently seen elements are counted by a count-min sketch,
+ * and only keys whose estimated share exceeds the ratio are spread to intermediate combine keys.
+ * Other keys are returned fanout 1 and combined directly, so the cost of salted partial combine is paid only for hot keys.
+ * Counters are halved after every decay interval elements so that the detection follows the recent key distribution.
+ * The function holds state per deserialized instance, and the routing does not need to be deterministic
+ * because partial accumulators of hot keys are merged back with cold inputs by mergeAccumulators.
+ */
+public class HotKeyFanout implements SerializableFunction<String, Integer> {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 1 << 12;
+    private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+    private final int fanout;
+    private final double ratio;
+    private final long minCount;
+    private final long decayInterval;
+
+    private transient int[][] counts;
+    private transient long total;
+    private transient long sinceDecay;
+
+    private HotKeyFanout(final int fanout, final double ratio, final long minCount, final long decayInterval) {
+        this.fanout = fanout;
+        this.ratio = ratio;
+        this.minCount = minCount;
+        this.decayInterval = decayInterval;
+    }
+
+    public static HotKeyFanout of(final int fanout, final double ratio) {
+        return of(fanout, ratio, 1000L, 1L << 20);
+    }
+
+    public static HotKeyFanout of(final int fanout, final double ratio, final long minCount, final long decayInterval) {
+        if(fanout < 2) {
+            throw new IllegalArgumentException("HotKeyFanout fanout must be over 1, but was: " + fanout);
+        }
+        if(ratio <= 0 || ratio > 1) {
+            throw new IllegalArgumentException("HotKeyFanout ratio must be in (0, 1], but was: " + ratio);
+        }
+        return new HotKeyFanout(fanout, ratio, minCount, decayInterval);
+    }
+
+    @Override
+    public Integer apply(final String key) {
+        if(counts == null) {
+            counts = new int[DEPTH][WIDTH];
+        }
+        if(sinceDecay >= decayInterval) {
+            decay();
+        }
+
+        final int hash = key == null ? 0 : key.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for(int d=0; d<DEPTH; d++) {
+            final int[] row = counts[d];
+            final int index = index(hash, d);
+            if(row[index] < Integer.MAX_VALUE) {
+                row[index]++;
+            }
+            estimate = Math.min(estimate, row[index]);
+        }
+        total++;
+        sinceDecay++;
+
+        return isHot(estimate) ? fanout : 1;
+    }
+
+    public long estimate(final String key) {
+        if(counts == null) {
+            return 0L;
+        }
+        final int hash = key == null ? 0 : key.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for(int d=0; d<DEPTH; d++) {
+            estimate = Math.min(estimate, counts[d][index(hash, d)]);
+        }
+        return estimate;
+    }
+
+    private boolean isHot(final long estimate) {
+        return estimate >= minCount && estimate >= ratio * total;
+    }
+
+    private void decay() {
+        for(final int[] row : counts) {
+            for(int i=0; i<row.length; i++) {
+                row[i] = row[i] >>> 1;
+            }
+        }
+        total = total >>> 1;
+        sinceDecay = 0;
+    }
+
+    private static int index(final int hash, final int depth) {
+        int h = hash * SEEDS[depth];
+        h ^= h >>> 16;
+        h *= 0x7FEB352D;
+        h ^= h >>> 15;
+        return h & (WIDTH - 1);
+    }
+
+}
@@ -30,7 +30,11 @@ public class Last implements Aggregator {
     private String timestampKeyName;
 
 
-    private transient Filter.ConditionNode conditionNode;
+    private transient Filter.CompiledCondition conditionNode;
+
+    private transient AccumulatorLayout.Key[] outputKeys;
+    private transient String[] originalFieldNames;
+    private transient AccumulatorLayout.Key timestampKey;
 
     public Last() {
 
@@ -111,10 +115,18 @@ public class Last implements Aggregator {
     }
 
     @Override
-    public void setup() {
+    public void setup(final AccumulatorLayout layout) {
         if(this.condition != null) {
-            this.conditionNode = Filter.parse(new Gson().fromJson(this.condition, JsonElement.class));
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(this.condition, JsonElement.class)));
+        }
+        this.outputKeys = new AccumulatorLayout.Key[outputFields.size()];
+        this.originalFieldNames = new String[outputFields.size()];
+        for(int i=0; i<outputFields.size(); i++) {
+            final Schema.Field field = outputFields.get(i);
+            this.outputKeys[i] = AccumulatorLayout.key(layout, field.getType(), Aggregator.getFieldOptionAccumulatorKey(field));
+            this.originalFieldNames[i] = Aggregator.getFieldOptionOriginalFieldKey(field);
         }
+        this.timestampKey = AccumulatorLayout.key(layout, Schema.FieldType.INT64, timestampKeyName);
     }
 
     @Override
@@ -122,43 +134,51 @@ public class Last implements Aggregator {
         return outputFields;
     }
 
+    @Override
+    public List<Schema.Field> getAccumulatorFields() {
+        final List<Schema.Field> accumulatorFields = new ArrayList<>();
+        for(final Schema.Field field : outputFields) {
+            final String accumulatorKeyName = Aggregator.getFieldOptionAccumulatorKey(field);
+            accumulatorFields.add(Schema.Field.of(accumulatorKeyName, field.getType()));
+        }
+        accumulatorFields.add(Schema.Field.of(timestampKeyName, Schema.FieldType.INT64));
+        return accumulatorFields;
+    }
+
     @Override
     public Accumulator addInput(Accumulator accumulator, UnionValue unionValue, SchemaUtil.PrimitiveValueGetter valueGetter) {
         final Long currentMicros = unionValue.getEpochMillis() * 1000L;
-        final Long prevMicros = accumulator.getLong(timestampKeyName);
+        final Long prevMicros = accumulator.getLong(timestampKey);
 
         if(Aggregator.compare(currentMicros, prevMicros, opposite)) {
-            for(final Schema.Field field : this.outputFields) {
-                final String originalFieldName = Aggregator.getFieldOptionOriginalFieldKey(field);
-                final Object fieldValue = valueGetter.getValue(unionValue.getValue(), field.getType(), originalFieldName);
-                final String accumulatorKeyName = Aggregator.getFieldOptionAccumulatorKey(field);
-                accumulator.put(field.getType(), accumulatorKeyName, fieldValue);
+            for(int i=0; i<outputKeys.length; i++) {
+                final AccumulatorLayout.Key key = outputKeys[i];
+                final Object fieldValue = valueGetter.getValue(unionValue.getValue(), key.getFieldType(), originalFieldNames[i]);
+                accumulator.put(key, fieldValue);
             }
-            accumulator.putLong(timestampKeyName, currentMicros);
+            accumulator.putLong(timestampKey, currentMicros);
         }
         return accumulator;
     }
 
     @Override
     public Accumulator mergeAccumulator(Accumulator baseAccum, Accumulator inputAccum) {
-        final Long timestamp = baseAccum.getLong(timestampKeyName);
-        final Long timestampAccum = inputAccum.getLong(timestampKeyName);
+        final Long timestamp = baseAccum.getLong(timestampKey);
+        final Long timestampAccum = inputAccum.getLong(timestampKey);
         if(Aggregator.compare(timestampAccum, timestamp, opposite)) {
-            for(final Schema.Field field : outputFields) {
-                final String accumulatorKeyName = Aggregator.getFieldOptionAccumulatorKey(field);
-                final Object fieldValue = inputAccum.get(field.getType(), accumulatorKeyName);
-                baseAccum.put(field.getType(), accumulatorKeyName, fieldValue);
+            for(final AccumulatorLayout.Key key : outputKeys) {
+                baseAccum.put(key, inputAccum.get(key));
             }
-            baseAccum.putLong(timestampKeyName, timestampAccum);
+            baseAccum.putLong(timestampKey, timestampAccum);
         }
         return baseAccum;
     }
 
     @Override
     public Map<String, Object> extractOutput(Accumulator accumulator, Map<String, Object> values, SchemaUtil.PrimitiveValueConverter converter) {
-        for(final Schema.Field field : outputFields) {
-            final String accumulatorKeyName = Aggregator.getFieldOptionAccumulatorKey(field);
-            final Object fieldPrimitiveValue = accumulator.get(field.getType(), accumulatorKeyName);
+        for(int i=0; i<outputKeys.length; i++) {
+            final Schema.Field field = outputFields.get(i);
+            final Object fieldPrimitiveValue = accumulator.get(outputKeys[i]);
             final Object fieldValue = converter.convertPrimitive(field.getType(), fieldPrimitiveValue);
             values.put(field.getName(), fieldValue);
         }
@@ -26,7 +26,8 @@ public class Max implements Aggregator {
 
     private transient Expression exp;
     private transient Set<String> variables;
-    private transient Filter.ConditionNode conditionNode;
+    private transient Filter.CompiledCondition conditionNode;
+    private transient AccumulatorLayout.Key key;
 
     public static Max of(final String name,
                          final Schema inputSchema,
@@ -98,15 +99,16 @@ public class Max implements Aggregator {
     }
 
     @Override
-    public void setup() {
+    public void setup(final AccumulatorLayout layout) {
         if(this.expression != null) {
             final Set<String> variables = ExpressionUtil.estimateVariables(this.expression);
             this.variables = variables;
             this.exp = ExpressionUtil.createDefaultExpression(this.expression, variables);
         }
         if(this.condition != null) {
-            this.conditionNode = Filter.parse(new Gson().fromJson(this.condition, JsonElement.class));
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(this.condition, JsonElement.class)));
         }
+        this.key = AccumulatorLayout.key(layout, maxField.getType(), name);
     }
 
     @Override
@@ -114,9 +116,14 @@ public class Max implements Aggregator {
         return outputFields;
     }
 
+    @Override
+    public List<Schema.Field> getAccumulatorFields() {
+        return List.of(maxField);
+    }
+
     @Override
     public Accumulator addInput(final Accumulator accumulator, final UnionValue input, final SchemaUtil.PrimitiveValueGetter valueGetter) {
-        final Object prevValue = accumulator.get(maxField.getType(), name);
+        final Object prevValue = accumulator.get(key);
         final Object inputValue;
         if(field != null) {
             inputValue = valueGetter.getValue(input.getValue(), maxField.getType(), field);//UnionValue.getFieldValue(input, field);
@@ -125,16 +132,16 @@ public class Max implements Aggregator {
         }
 
         final Object maxNext = Aggregator.max(prevValue, inputValue, opposite);
-        accumulator.put(maxField.getType(), name, maxNext);
+        accumulator.put(key, maxNext);
         return accumulator;
     }
 
     @Override
     public Accumulator mergeAccumulator(final Accumulator base, final Accumulator input) {
-        final Object stateValue = base.get(maxField.getType(), name);
-        final Object accumValue = input.get(maxField.getType(), name);
+        final Object stateValue = base.get(key);
+        final Object accumValue = input.get(key);
         final Object max = Aggregator.max(stateValue, accumValue, opposite);
-        base.put(maxField.getType(), name, max);
+        base.put(key, max);
         return base;
     }
 
@@ -143,7 +150,7 @@ public class Max implements Aggregator {
                                             final Map<String, Object> values,
                                             final SchemaUtil.PrimitiveValueConverter converter) {
 
-        final Object maxValue = accumulator.get(maxField.getType(), name);
+        final Object maxValue = accumulator.get(key);
         final Object fieldValue = converter.convertPrimitive(maxField.getType(), maxValue);
         values.put(name, fieldValue);
         return values;
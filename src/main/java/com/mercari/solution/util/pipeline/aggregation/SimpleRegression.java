@@ -59,7 +59,17 @@ public class SimpleRegression implements Aggregator {
     private transient Expression weightExp;
     private transient Set<String> weightVariables;
 
-    private transient Filter.ConditionNode conditionNode;
+    private transient Filter.CompiledCondition conditionNode;
+
+    private transient AccumulatorLayout.Key countKey;
+    private transient AccumulatorLayout.Key weightKey;
+    private transient AccumulatorLayout.Key sumXKey;
+    private transient AccumulatorLayout.Key sumXXKey;
+    private transient AccumulatorLayout.Key sumYKey;
+    private transient AccumulatorLayout.Key sumYYKey;
+    private transient AccumulatorLayout.Key sumXYKey;
+    private transient AccumulatorLayout.Key xBarKey;
+    private transient AccumulatorLayout.Key yBarKey;
 
 
     public static SimpleRegression of(
@@ -150,7 +160,7 @@ public class SimpleRegression implements Aggregator {
     }
 
     @Override
-    public void setup() {
+    public void setup(final AccumulatorLayout layout) {
         if(this.expression != null) {
             final Set<String> variables = ExpressionUtil.estimateVariables(this.expression);
             this.variables = variables;
@@ -162,8 +172,17 @@ public class SimpleRegression implements Aggregator {
             this.weightExp = ExpressionUtil.createDefaultExpression(this.weightExpression, weightVariables);
         }
         if(this.condition != null) {
-            this.conditionNode = Filter.parse(new Gson().fromJson(this.condition, JsonElement.class));
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(this.condition, JsonElement.class)));
         }
+        this.countKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, accumKeyCountName);
+        this.weightKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, accumKeyWeightName);
+        this.sumXKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, accumKeySumXName);
+        this.sumXXKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, accumKeySumXXName);
+        this.sumYKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, accumKeySumYName);
+        this.sumYYKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, accumKeySumYYName);
+        this.sumXYKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, accumKeySumXYName);
+        this.xBarKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, accumKeyXBarName);
+        this.yBarKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, accumKeyYBarName);
     }
 
     @Override
@@ -171,6 +190,18 @@ public class SimpleRegression implements Aggregator {
         return outputFields;
     }
 
+    @Override
+    public List<Schema.Field> getAccumulatorFields() {
+        final List<Schema.Field> accumulatorFields = new ArrayList<>();
+        for(final String keyName : List.of(
+                accumKeyCountName, accumKeyWeightName,
+                accumKeySumXName, accumKeySumXXName, accumKeySumYName, accumKeySumYYName, accumKeySumXYName,
+                accumKeyXBarName, accumKeyYBarName)) {
+            accumulatorFields.add(Schema.Field.of(keyName, Schema.FieldType.DOUBLE));
+        }
+        return accumulatorFields;
+    }
+
     @Override
     public Accumulator addInput(final Accumulator accumulator, final UnionValue input, final SchemaUtil.PrimitiveValueGetter valueGetter) {
 
@@ -200,15 +231,15 @@ public class SimpleRegression implements Aggregator {
             inputWeight = 1D;
         }
 
-        final double count = getDouble(accumulator, accumKeyCountName, 0D);
-        final double weight = getDouble(accumulator, accumKeyWeightName, 0D);
-        double xBar = getDouble(accumulator, accumKeyXBarName, 0D);
-        double yBar = getDouble(accumulator, accumKeyYBarName, 0D);
-        double sumX = getDouble(accumulator, accumKeySumXName, 0D);
-        double sumY = getDouble(accumulator, accumKeySumYName, 0D);
-        double sumXX = getDouble(accumulator, accumKeySumXXName, 0D);
-        double sumYY = getDouble(accumulator, accumKeySumYYName, 0D);
-        double sumXY = getDouble(accumulator, accumKeySumXYName, 0D);
+        final double count = accumulator.getDouble(countKey, 0D);
+        final double weight = accumulator.getDouble(weightKey, 0D);
+        double xBar = accumulator.getDouble(xBarKey, 0D);
+        double yBar = accumulator.getDouble(yBarKey, 0D);
+        double sumX = accumulator.getDouble(sumXKey, 0D);
+        double sumY = accumulator.getDouble(sumYKey, 0D);
+        double sumXX = accumulator.getDouble(sumXXKey, 0D);
+        double sumYY = accumulator.getDouble(sumYYKey, 0D);
+        double sumXY = accumulator.getDouble(sumXYKey, 0D);
 
         if(weight == 0) {
             xBar = x;
@@ -234,63 +265,63 @@ public class SimpleRegression implements Aggregator {
         sumX += x;
         sumY += y;
 
-        accumulator.putDouble(accumKeyCountName, count + 1);
-        accumulator.putDouble(accumKeyWeightName, weight + inputWeight);
-        accumulator.putDouble(accumKeyXBarName, xBar);
-        accumulator.putDouble(accumKeyYBarName, yBar);
-        accumulator.putDouble(accumKeySumXName, sumX);
-        accumulator.putDouble(accumKeySumYName, sumY);
-        accumulator.putDouble(accumKeySumXXName, sumXX);
-        accumulator.putDouble(accumKeySumYYName, sumYY);
-        accumulator.putDouble(accumKeySumXYName, sumXY);
+        accumulator.putDouble(countKey, count + 1);
+        accumulator.putDouble(weightKey, weight + inputWeight);
+        accumulator.putDouble(xBarKey, xBar);
+        accumulator.putDouble(yBarKey, yBar);
+        accumulator.putDouble(sumXKey, sumX);
+        accumulator.putDouble(sumYKey, sumY);
+        accumulator.putDouble(sumXXKey, sumXX);
+        accumulator.putDouble(sumYYKey, sumYY);
+        accumulator.putDouble(sumXYKey, sumXY);
 
         return accumulator;
     }
 
     @Override
     public Accumulator mergeAccumulator(final Accumulator base, final Accumulator input) {
-        final Double baseWeight = getDouble(base, accumKeyWeightName, 0D);
-        final Double inputWeight = getDouble(input, accumKeyWeightName, 0D);
+        final double baseWeight = base.getDouble(weightKey, 0D);
+        final double inputWeight = input.getDouble(weightKey, 0D);
         if(inputWeight == 0) {
             return base;
         } else if(baseWeight == 0) {
-            base.putDouble(accumKeyXBarName, Optional.ofNullable(input.getDouble(accumKeyXBarName)).orElse(0D));
-            base.putDouble(accumKeyYBarName, Optional.ofNullable(input.getDouble(accumKeyYBarName)).orElse(0D));
-            base.putDouble(accumKeySumXXName, Optional.ofNullable(input.getDouble(accumKeySumXXName)).orElse(0D));
-            base.putDouble(accumKeySumYYName, Optional.ofNullable(input.getDouble(accumKeySumYYName)).orElse(0D));
-            base.putDouble(accumKeySumXYName, Optional.ofNullable(input.getDouble(accumKeySumXYName)).orElse(0D));
+            base.putDouble(xBarKey, input.getDouble(xBarKey, 0D));
+            base.putDouble(yBarKey, input.getDouble(yBarKey, 0D));
+            base.putDouble(sumXXKey, input.getDouble(sumXXKey, 0D));
+            base.putDouble(sumYYKey, input.getDouble(sumYYKey, 0D));
+            base.putDouble(sumXYKey, input.getDouble(sumXYKey, 0D));
         } else {
             if(hasIntercept) {
                 final double fact1 = inputWeight / (baseWeight + inputWeight);
                 final double fact2 = baseWeight * inputWeight / (baseWeight + inputWeight);
-                final double dx = getDouble(input, accumKeyXBarName,0D) - getDouble(base, accumKeyXBarName, 0D);
-                final double dy = getDouble(input, accumKeyYBarName,0D) - getDouble(base, accumKeyYBarName, 0D);
-                final double sumXX = getDouble(base, accumKeySumXXName, 0D) + (getDouble(input, accumKeySumXXName, 0D) + dx * dx * fact2);
-                final double sumYY = getDouble(base, accumKeySumYYName, 0D) + (getDouble(input, accumKeySumYYName, 0D) + dy * dy * fact2);
-                final double sumXY = getDouble(base, accumKeySumXYName, 0D) + (getDouble(input, accumKeySumXYName, 0D) + dx * dy * fact2);
-                final double xBar = getDouble(base, accumKeyXBarName, 0D) + dx * fact1;
-                final double yBar = getDouble(base, accumKeyYBarName, 0D) + dy * fact1;
-                base.putDouble(accumKeySumXXName, sumXX);
-                base.putDouble(accumKeySumYYName, sumYY);
-                base.putDouble(accumKeySumXYName, sumXY);
-                base.putDouble(accumKeyXBarName, xBar);
-                base.putDouble(accumKeyYBarName, yBar);
+                final double dx = input.getDouble(xBarKey, 0D) - base.getDouble(xBarKey, 0D);
+                final double dy = input.getDouble(yBarKey, 0D) - base.getDouble(yBarKey, 0D);
+                final double sumXX = base.getDouble(sumXXKey, 0D) + (input.getDouble(sumXXKey, 0D) + dx * dx * fact2);
+                final double sumYY = base.getDouble(sumYYKey, 0D) + (input.getDouble(sumYYKey, 0D) + dy * dy * fact2);
+                final double sumXY = base.getDouble(sumXYKey, 0D) + (input.getDouble(sumXYKey, 0D) + dx * dy * fact2);
+                final double xBar = base.getDouble(xBarKey, 0D) + dx * fact1;
+                final double yBar = base.getDouble(yBarKey, 0D) + dy * fact1;
+                base.putDouble(sumXXKey, sumXX);
+                base.putDouble(sumYYKey, sumYY);
+                base.putDouble(sumXYKey, sumXY);
+                base.putDouble(xBarKey, xBar);
+                base.putDouble(yBarKey, yBar);
             } else {
-                final double sumXX = getDouble(base, accumKeySumXXName, 0D) + getDouble(input, accumKeySumXXName, 0D);
-                final double sumYY = getDouble(base, accumKeySumYYName, 0D) + getDouble(input, accumKeySumYYName, 0D);
-                final double sumXY = getDouble(base, accumKeySumXYName, 0D) + getDouble(input, accumKeySumXYName, 0D);
-                base.putDouble(accumKeySumXXName, sumXX);
-                base.putDouble(accumKeySumYYName, sumYY);
-                base.putDouble(accumKeySumXYName, sumXY);
+                final double sumXX = base.getDouble(sumXXKey, 0D) + input.getDouble(sumXXKey, 0D);
+                final double sumYY = base.getDouble(sumYYKey, 0D) + input.getDouble(sumYYKey, 0D);
+                final double sumXY = base.getDouble(sumXYKey, 0D) + input.getDouble(sumXYKey, 0D);
+                base.putDouble(sumXXKey, sumXX);
+                base.putDouble(sumYYKey, sumYY);
+                base.putDouble(sumXYKey, sumXY);
             }
         }
 
-        final double sumX = getDouble(base, accumKeySumXName, 0D) + getDouble(input, accumKeySumXName, 0D);
-        final double sumY = getDouble(base, accumKeySumYName, 0D) + getDouble(input, accumKeySumYName, 0D);
-        base.putDouble(accumKeySumXName, sumX);
-        base.putDouble(accumKeySumYName, sumY);
-        base.putDouble(accumKeyWeightName, baseWeight + inputWeight);
-        base.putDouble(accumKeyCountName, getDouble(base, accumKeyCountName, 0D) + getDouble(input, accumKeyCountName, 0D));
+        final double sumX = base.getDouble(sumXKey, 0D) + input.getDouble(sumXKey, 0D);
+        final double sumY = base.getDouble(sumYKey, 0D) + input.getDouble(sumYKey, 0D);
+        base.putDouble(sumXKey, sumX);
+        base.putDouble(sumYKey, sumY);
+        base.putDouble(weightKey, baseWeight + inputWeight);
+        base.putDouble(countKey, base.getDouble(countKey, 0D) + input.getDouble(countKey, 0D));
 
         return base;
     }
@@ -308,43 +339,43 @@ public class SimpleRegression implements Aggregator {
     }
 
     private double getSlope(final Accumulator accumulator) {
-        final double count = getDouble(accumulator, accumKeyCountName, 0D);
+        final double count = accumulator.getDouble(countKey, 0D);
         if(count < 2D) {
             return Double.NaN;
         }
-        final double sumXX = getDouble(accumulator, accumKeySumXXName, 0D);
+        final double sumXX = accumulator.getDouble(sumXXKey, 0D);
         if(Math.abs(sumXX) < 10 * Double.MIN_VALUE) {
             return Double.NaN;
         }
-        final double sumXY = getDouble(accumulator, accumKeySumXYName, 0D);
+        final double sumXY = accumulator.getDouble(sumXYKey, 0D);
         return sumXY / sumXX;
     }
 
     private double getIntercept(final Accumulator accumulator, final double slope) {
         if(hasIntercept) {
-            final double weight = getDouble(accumulator, accumKeyWeightName, 0D);
+            final double weight = accumulator.getDouble(weightKey, 0D);
             if(weight == 0) {
                 return 0.0D;
             }
-            final double sumX = getDouble(accumulator, accumKeySumXName, 0D);
-            final double sumY = getDouble(accumulator, accumKeySumYName, 0D);
+            final double sumX = accumulator.getDouble(sumXKey, 0D);
+            final double sumY = accumulator.getDouble(sumYKey, 0D);
             return (sumY - slope * sumX) / weight;
         }
         return 0.0D;
     }
 
     private double getWeight(final Accumulator accumulator) {
-        final double count = getDouble(accumulator, accumKeyCountName, 0D);
+        final double count = accumulator.getDouble(countKey, 0D);
         if(count < 2D) {
             return Double.NaN;
         }
-        return getDouble(accumulator, accumKeyWeightName, 0D);
+        return accumulator.getDouble(weightKey, 0D);
     }
 
     private double getSumSquaredErrors(final Accumulator accumulator) {
-        final double sumXX = getDouble(accumulator, accumKeySumXXName, 0D);
-        final double sumYY = getDouble(accumulator, accumKeySumYYName, 0D);
-        final double sumXY = getDouble(accumulator, accumKeySumXYName, 0D);
+        final double sumXX = accumulator.getDouble(sumXXKey, 0D);
+        final double sumYY = accumulator.getDouble(sumYYKey, 0D);
+        final double sumXY = accumulator.getDouble(sumXYKey, 0D);
         if(sumXX == 0) {
             return Double.NaN;
         }
@@ -352,7 +383,7 @@ public class SimpleRegression implements Aggregator {
     }
 
     private double getMeanSumSquaredErrors(final Accumulator accumulator) {
-        final double weight = getDouble(accumulator, accumKeyWeightName, 0D);
+        final double weight = accumulator.getDouble(weightKey, 0D);
         if(weight == 0) {
             return Double.NaN;
         }
@@ -371,10 +402,6 @@ public class SimpleRegression implements Aggregator {
         return Math.sqrt(meanSumSquaredErrors);
     }
 
-    private static double getDouble(final Accumulator input, final String keyName, final Double defaultValue) {
-        return Optional.ofNullable(input.getDouble(keyName)).orElse(defaultValue);
-    }
-
     private String outputFieldName(String field) {
         return String.format("%s%s%s", name, separator, field);
     }
@@ -39,7 +39,12 @@ public class Std implements Aggregator {
     private transient Expression weightExp;
     private transient Set<String> weightVariables;
 
-    private transient Filter.ConditionNode conditionNode;
+    private transient Filter.CompiledCondition conditionNode;
+
+    private transient AccumulatorLayout.Key varKey;
+    private transient AccumulatorLayout.Key avgKey;
+    private transient AccumulatorLayout.Key countKey;
+    private transient AccumulatorLayout.Key weightKey;
 
 
     public static Std of(final String name,
@@ -117,7 +122,7 @@ public class Std implements Aggregator {
     }
 
     @Override
-    public void setup() {
+    public void setup(final AccumulatorLayout layout) {
         if(this.expression != null) {
             final Set<String> variables = ExpressionUtil.estimateVariables(this.expression);
             this.variables = variables;
@@ -129,8 +134,12 @@ public class Std implements Aggregator {
             this.weightExp = ExpressionUtil.createDefaultExpression(this.weightExpression, weightVariables);
         }
         if(this.condition != null) {
-            this.conditionNode = Filter.parse(new Gson().fromJson(this.condition, JsonElement.class));
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(this.condition, JsonElement.class)));
         }
+        this.varKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, name);
+        this.avgKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, accumKeyAvgName);
+        this.countKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, accumKeyCountName);
+        this.weightKey = AccumulatorLayout.key(layout, Schema.FieldType.DOUBLE, accumKeyWeightName);
     }
 
     @Override
@@ -138,6 +147,15 @@ public class Std implements Aggregator {
         return outputFields;
     }
 
+    @Override
+    public List<Schema.Field> getAccumulatorFields() {
+        return List.of(
+                Schema.Field.of(name, Schema.FieldType.DOUBLE),
+                Schema.Field.of(accumKeyAvgName, Schema.FieldType.DOUBLE),
+                Schema.Field.of(accumKeyCountName, Schema.FieldType.DOUBLE),
+                Schema.Field.of(accumKeyWeightName, Schema.FieldType.DOUBLE));
+    }
+
     @Override
     public Accumulator addInput(final Accumulator accumulator, final UnionValue input, final SchemaUtil.PrimitiveValueGetter valueGetter) {
         final Double inputValue;
@@ -166,49 +184,49 @@ public class Std implements Aggregator {
 
     @Override
     public Accumulator mergeAccumulator(final Accumulator base, final Accumulator input) {
-        final Double baseCount = Optional.ofNullable(base.getDouble(accumKeyCountName)).orElse(0D);
-        final Double inputCount = Optional.ofNullable(input.getDouble(accumKeyCountName)).orElse(0D);
+        final double baseCount = base.getDouble(countKey, 0D);
+        final double inputCount = input.getDouble(countKey, 0D);
         if(inputCount == 0) {
             return base;
         } else if(baseCount == 0) {
-            base.putDouble(name, input.getDouble(name));
-            base.putDouble(accumKeyCountName, inputCount);
-            base.putDouble(accumKeyAvgName, input.getDouble(accumKeyAvgName));
-            base.putDouble(accumKeyWeightName, input.getDouble(accumKeyWeightName));
+            base.putDouble(varKey, input.getDouble(varKey));
+            base.putDouble(countKey, inputCount);
+            base.putDouble(avgKey, input.getDouble(avgKey));
+            base.putDouble(weightKey, input.getDouble(weightKey));
             return base;
         } else if(baseCount == 1 || inputCount == 1) {
             final Double inputValue;
             final Double inputWeight;
             if(inputCount == 1) {
-                inputValue = input.getDouble(accumKeyAvgName);
-                inputWeight = input.getDouble(accumKeyWeightName);
+                inputValue = input.getDouble(avgKey);
+                inputWeight = input.getDouble(weightKey);
                 return add(base, inputValue, inputWeight);
             } else {
-                inputValue = base.getDouble(accumKeyAvgName);
-                inputWeight = base.getDouble(accumKeyWeightName);
+                inputValue = base.getDouble(avgKey);
+                inputWeight = base.getDouble(weightKey);
                 final Accumulator mergedInput = add(input, inputValue, inputWeight);
-                base.putDouble(name, mergedInput.getDouble(name));
-                base.putDouble(accumKeyCountName, mergedInput.getDouble(accumKeyCountName));
-                base.putDouble(accumKeyAvgName, mergedInput.getDouble(accumKeyAvgName));
-                base.putDouble(accumKeyWeightName, mergedInput.getDouble(accumKeyWeightName));
+                base.putDouble(varKey, mergedInput.getDouble(varKey));
+                base.putDouble(countKey, mergedInput.getDouble(countKey));
+                base.putDouble(avgKey, mergedInput.getDouble(avgKey));
+                base.putDouble(weightKey, mergedInput.getDouble(weightKey));
                 return base;
             }
         }
 
-        final Double baseAvg = base.getDouble(accumKeyAvgName);
-        final Double baseWeight = base.getDouble(accumKeyWeightName);
-        final Double inputAvg = input.getDouble(accumKeyAvgName);
-        final Double inputWeight = input.getDouble(accumKeyWeightName);
+        final Double baseAvg = base.getDouble(avgKey);
+        final Double baseWeight = base.getDouble(weightKey);
+        final Double inputAvg = input.getDouble(avgKey);
+        final Double inputWeight = input.getDouble(weightKey);
         final Double avg = Aggregator.avg(baseAvg, baseWeight, inputAvg, inputWeight);
         final Double count = baseCount + inputCount;
         final Double weight = Optional.ofNullable(baseWeight).orElse(0D) + Optional.ofNullable(inputWeight).orElse(0D);
-        base.putDouble(accumKeyAvgName, avg);
-        base.putDouble(accumKeyCountName, count);
-        base.putDouble(accumKeyWeightName, weight);
+        base.putDouble(avgKey, avg);
+        base.putDouble(countKey, count);
+        base.putDouble(weightKey, weight);
 
-        final Double baseVar = Optional.ofNullable(base.getDouble(name)).orElse(0D);
-        final Double inputVar = Optional.ofNullable(input.getDouble(name)).orElse(0D);
-        base.putDouble(name, baseVar + inputVar);
+        final double baseVar = base.getDouble(varKey, 0D);
+        final double inputVar = input.getDouble(varKey, 0D);
+        base.putDouble(varKey, baseVar + inputVar);
 
         return base;
     }
@@ -218,8 +236,8 @@ public class Std implements Aggregator {
                                             final Map<String, Object> values,
                                             final SchemaUtil.PrimitiveValueConverter converter) {
 
-        final Double var = accumulator.getDouble(name);
-        final Double weight = Optional.ofNullable(accumulator.getDouble(accumKeyWeightName)).orElse(0D);
+        final Double var = accumulator.getDouble(varKey);
+        final double weight = accumulator.getDouble(weightKey, 0D);
         if(var != null && weight != 0 && weight - ddof > 0) {
             values.put(name, Math.sqrt(var / (weight - ddof)));
             if(outputVar) {
@@ -234,20 +252,20 @@ public class Std implements Aggregator {
             return accumulator;
         }
 
-        final Double prevAvg = accumulator.getDouble(accumKeyAvgName);
-        final Double prevWeight = Optional.ofNullable(accumulator.getDouble(accumKeyWeightName)).orElse(0D);
+        final Double prevAvg = accumulator.getDouble(avgKey);
+        final double prevWeight = accumulator.getDouble(weightKey, 0D);
         final Double nextAvg = Aggregator.avg(prevAvg, prevWeight, inputValue, inputWeight);
         final Double nextWeight = prevWeight + Optional.ofNullable(inputWeight).orElse(0D);
-        accumulator.putDouble(accumKeyAvgName, nextAvg);
-        accumulator.putDouble(accumKeyCountName, Optional.ofNullable(accumulator.getDouble(accumKeyCountName)).orElse(0D) + 1D);
-        accumulator.putDouble(accumKeyWeightName, nextWeight);
+        accumulator.putDouble(avgKey, nextAvg);
+        accumulator.putDouble(countKey, accumulator.getDouble(countKey, 0D) + 1D);
+        accumulator.putDouble(weightKey, nextWeight);
 
         double deltaPrev = inputValue - Optional.ofNullable(prevAvg).orElse(0D);
         double deltaNext = inputValue - Optional.ofNullable(nextAvg).orElse(0D);
-        final Double prevVar = Optional.ofNullable(accumulator.getDouble(name)).orElse(0D);
+        final double prevVar = accumulator.getDouble(varKey, 0D);
         final Double nextVar = prevVar + (deltaPrev * deltaNext);
 
-        accumulator.putDouble(name, nextVar);
+        accumulator.putDouble(varKey, nextVar);
 
         return accumulator;
     }
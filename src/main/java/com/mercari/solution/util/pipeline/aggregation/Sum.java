@@ -25,7 +25,8 @@ public class Sum implements Aggregator {
 
     private transient Expression exp;
     private transient Set<String> variables;
-    private transient Filter.ConditionNode conditionNode;
+    private transient Filter.CompiledCondition conditionNode;
+    private transient AccumulatorLayout.Key key;
 
 
     public static Sum of(final String name,
@@ -82,15 +83,16 @@ public class Sum implements Aggregator {
     }
 
     @Override
-    public void setup() {
+    public void setup(final AccumulatorLayout layout) {
         if(this.expression != null) {
             final Set<String> variables = ExpressionUtil.estimateVariables(this.expression);
             this.variables = variables;
             this.exp = ExpressionUtil.createDefaultExpression(this.expression, variables);
         }
         if(this.condition != null) {
-            this.conditionNode = Filter.parse(new Gson().fromJson(this.condition, JsonElement.class));
+            this.conditionNode = Filter.compile(Filter.parse(new Gson().fromJson(this.condition, JsonElement.class)));
         }
+        this.key = AccumulatorLayout.key(layout, sumField.getType(), name);
     }
 
     @Override
@@ -98,9 +100,14 @@ public class Sum implements Aggregator {
         return outputFields;
     }
 
+    @Override
+    public List<Schema.Field> getAccumulatorFields() {
+        return List.of(sumField);
+    }
+
     @Override
     public Accumulator addInput(final Accumulator accumulator, final UnionValue input, final SchemaUtil.PrimitiveValueGetter valueGetter) {
-        final Object prevValue = accumulator.get(sumField.getType(), name);
+        final Object prevValue = accumulator.get(key);
         final Object inputValue;
         if(field != null) {
             inputValue = valueGetter.getValue(input.getValue(), sumField.getType(), field);
@@ -109,16 +116,16 @@ public class Sum implements Aggregator {
         }
 
         final Object sumNext = Aggregator.sum(prevValue, inputValue);
-        accumulator.put(sumField.getType(), name, sumNext);
+        accumulator.put(key, sumNext);
         return accumulator;
     }
 
     @Override
     public Accumulator mergeAccumulator(final Accumulator base, final Accumulator input) {
-        final Object stateValue = base.get(sumField.getType(), name);
-        final Object accumValue = input.get(sumField.getType(), name);
+        final Object stateValue = base.get(key);
+        final Object accumValue = input.get(key);
         final Object sum = Aggregator.sum(stateValue, accumValue);
-        base.put(sumField.getType(), name, sum);
+        base.put(key, sum);
         return base;
     }
 
@@ -127,7 +134,7 @@ public class Sum implements Aggregator {
                                             final Map<String, Object> values,
                                             final SchemaUtil.PrimitiveValueConverter converter) {
 
-        final Object maxValue = accumulator.get(sumField.getType(), name);
+        final Object maxValue = accumulator.get(key);
         final Object fieldValue = converter.convertPrimitive(sumField.getType(), maxValue);
         if(fieldValue == null) {
             values.put(name, Accumulator.convertNumberValue(sumField.getType(), 0D));
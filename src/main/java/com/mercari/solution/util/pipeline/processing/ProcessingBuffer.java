@@ -3,14 +3,9 @@ package com.mercari.solution.util.pipeline.processing;
 import com.google.common.collect.Lists;
 import com.mercari.solution.util.pipeline.processing.processor.Processor;
 import com.mercari.solution.util.schema.RowSchemaUtil;
-import org.apache.avro.Schema;
-import org.apache.avro.SchemaBuilder;
-import org.apache.avro.generic.GenericRecord;
-import org.apache.beam.sdk.coders.Coder;
-import org.apache.beam.sdk.coders.StructuredCoder;
-import org.apache.beam.sdk.extensions.avro.coders.AvroCoder;
+import org.apache.beam.sdk.coders.*;
 import org.apache.beam.sdk.schemas.logicaltypes.EnumerationType;
-import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
+import org.apache.beam.sdk.util.VarInt;
 import org.joda.time.Instant;
 
 import java.io.IOException;
@@ -30,6 +25,8 @@ public class ProcessingBuffer {
     public Map<String, Integer> units;
     public Map<String, List<Long>> timestamps;
     public Map<String, List<Object>> values;
+    // Number of values added to each field, used to detect buffer advance for incremental window evaluation
+    public Map<String, Long> sequences;
 
     // schema info
     public Map<String, List<String>> enums;
@@ -45,21 +42,11 @@ public class ProcessingBuffer {
 
         this.timestamps = new HashMap<>();
         this.values = new HashMap<>();
+        this.sequences = new HashMap<>();
 
         this.enums = new HashMap<>();
     }
 
-    public ProcessingBuffer(final GenericRecord record) {
-        this.types = (Map<String, Integer>) record.get("types");
-        this.sizes = (Map<String, Integer>) record.get("sizes");
-        this.units = (Map<String, Integer>) record.get("units");
-
-        this.timestamps = (Map<String, List<Long>>) record.get("timestamps");
-        this.values = (Map<String, List<Object>>) record.get("values");
-
-        this.enums = (Map<String, List<String>>) record.get("enums");
-    }
-
     public static ProcessingBuffer of(Map<String, org.apache.beam.sdk.schemas.Schema.FieldType> types, Map<String, Integer> sizes, Map<String, Integer> units) {
         final ProcessingBuffer buffer = new ProcessingBuffer();
         buffer.types = types.entrySet().stream()
@@ -78,15 +65,61 @@ public class ProcessingBuffer {
     }
 
     public void add(final String fieldName, final Object fieldValue, final Instant timestamp) {
-        if(!values.containsKey(fieldName)) {
-            values.put(fieldName, new ArrayList<>());
+        List<Object> fieldValues = values.get(fieldName);
+        List<Long> fieldTimestamps = timestamps.get(fieldName);
+
+        // Count based buffers are held in ring lists bounded by the max lag, so that old values are dropped on add.
+        final int capacity = ringCapacity(fieldName);
+        if(capacity > 0) {
+            if(!(fieldValues instanceof RingList)) {
+                fieldValues = RingList.of(capacity, fieldValues);
+                values.put(fieldName, fieldValues);
+            }
+            if(!(fieldTimestamps instanceof RingList)) {
+                fieldTimestamps = RingList.of(capacity, fieldTimestamps);
+                timestamps.put(fieldName, fieldTimestamps);
+            }
+        } else {
+            if(fieldValues == null) {
+                fieldValues = new ArrayList<>();
+                values.put(fieldName, fieldValues);
+            }
+            if(fieldTimestamps == null) {
+                fieldTimestamps = new ArrayList<>();
+                timestamps.put(fieldName, fieldTimestamps);
+            }
         }
-        values.get(fieldName).add(fieldValue);
 
-        if(!timestamps.containsKey(fieldName)) {
-            timestamps.put(fieldName, new ArrayList<>());
-        }
-        timestamps.get(fieldName).add(timestamp.getMillis() * 1000L);
+        fieldValues.add(fieldValue);
+        fieldTimestamps.add(timestamp.getMillis() * 1000L);
+        sequences.merge(fieldName, 1L, Long::sum);
+    }
+
+    /**
+     * Returns the number of values added to the field since the buffer was created.
+     */
+    public long getSequence(final String fieldName) {
+        return sequences.getOrDefault(fieldName, 0L);
+    }
+
+    /**
+     * Returns the number of values to keep for count based buffer field, which is the max lag + 1 (latest value),
+     * or -1 if the field is time based or its size is not defined.
+     */
+    public int ringCapacity(final String fieldName) {
+        final Integer size = sizes.get(fieldName);
+        final Integer unit = units.get(fieldName);
+        if(size == null || size < 0 || unit == null) {
+            return -1;
+        }
+        final Processor.SizeUnit sizeUnit = Processor.SizeUnit.of(unit);
+        if(sizeUnit == null) {
+            return -1;
+        }
+        return switch (sizeUnit) {
+            case count, none -> size + 1;
+            default -> -1;
+        };
     }
 
     public Object get(final String name, final int index) {
@@ -330,6 +363,10 @@ public class ProcessingBuffer {
                 }
                 case count:
                 case none: {
+                    if(this.values.get(name) instanceof RingList) {
+                        // already bounded on add
+                        break;
+                    }
                     if(this.values.containsKey(name)) {
                         final List<?> list = this.values.get(name);
                         if(!this.timestamps.containsKey(name)) {
@@ -377,6 +414,8 @@ public class ProcessingBuffer {
                         Map.Entry::getKey,
                         e -> Lists.newArrayList(e.getValue())));
 
+        buffer.sequences = new HashMap<>(this.sequences);
+
         buffer.enums = this.enums
                 .entrySet()
                 .stream()
@@ -416,39 +455,7 @@ public class ProcessingBuffer {
                 "  units: " + units;
     }
 
-    public static Schema schema() {
-        final Schema typesSchema = Schema.createMap(Schema.create(Schema.Type.INT));
-        final Schema sizesSchema = Schema.createMap(Schema.create(Schema.Type.INT));
-        final Schema unitsSchema = Schema.createMap(Schema.create(Schema.Type.INT));
-        final Schema timestampsSchema = Schema.createMap(Schema.createArray(Schema.create(Schema.Type.LONG)));
-        final Schema enumsSchema = Schema.createMap(Schema.createArray(Schema.create(Schema.Type.STRING)));
-
-        final Schema multiValueSchema = Schema.createUnion(
-                Schema.create(Schema.Type.DOUBLE),
-                Schema.create(Schema.Type.LONG),
-                Schema.create(Schema.Type.STRING),
-                Schema.create(Schema.Type.NULL),
-                Schema.create(Schema.Type.INT),
-                Schema.create(Schema.Type.FLOAT),
-                Schema.create(Schema.Type.BOOLEAN),
-                Schema.create(Schema.Type.BYTES),
-                Schema.createArray(Schema.createArray(Schema.create(Schema.Type.DOUBLE)))
-        );
-        final Schema valuesSchema = Schema.createMap(Schema.createArray(multiValueSchema));
-
-        return SchemaBuilder.record("ProcessingBuffer").fields()
-                .name("types").type(typesSchema).noDefault()
-                .name("sizes").type(sizesSchema).noDefault()
-                .name("units").type(unitsSchema).noDefault()
-                .name("timestamps").type(timestampsSchema).noDefault()
-                .name("values").type(valuesSchema).noDefault()
-                .name("enums").type(enumsSchema).noDefault()
-                .endRecord();
-    }
-
     public static Coder<ProcessingBuffer> coder() {
-        //final org.apache.avro.Schema schema = schema();
-        //return AvroCoder.of(ProcessingBuffer.class, schema, true);
         return ProcessingBufferCoder.of();
     }
 
@@ -547,13 +554,25 @@ public class ProcessingBuffer {
         }
     }
 
+    /**
+     * Columnar coder for ProcessingBuffer. Each field is written once with its timestamps as zigzag varint deltas
+     * and its values with a one byte type tag, instead of repeating field names for every map as Avro maps do.
+     */
     public static class ProcessingBufferCoder extends StructuredCoder<ProcessingBuffer> {
 
-        private final AvroCoder<ProcessingBuffer> coder;
+        private static final StringUtf8Coder STRING_CODER = StringUtf8Coder.of();
+        private static final ByteArrayCoder BYTES_CODER = ByteArrayCoder.of();
+        private static final Coder<List<List<Double>>> MATRIX_CODER = ListCoder.of(ListCoder.of(NullableCoder.of(DoubleCoder.of())));
 
-        public ProcessingBufferCoder() {
-            this.coder = AvroCoder.of(ProcessingBuffer.class, schema(), false);
-        }
+        private static final byte TAG_NULL = 0;
+        private static final byte TAG_BOOLEAN = 1;
+        private static final byte TAG_INT = 2;
+        private static final byte TAG_LONG = 3;
+        private static final byte TAG_FLOAT = 4;
+        private static final byte TAG_DOUBLE = 5;
+        private static final byte TAG_STRING = 6;
+        private static final byte TAG_BYTES = 7;
+        private static final byte TAG_MATRIX = 8;
 
         public static ProcessingBufferCoder of() {
             return new ProcessingBufferCoder();
@@ -561,25 +580,93 @@ public class ProcessingBuffer {
 
         @Override
         public void encode(ProcessingBuffer value, OutputStream outStream) throws IOException {
-            encode(value, outStream, Context.NESTED);
-        }
+            encodeIntMap(value.types, outStream);
+            encodeIntMap(value.sizes, outStream);
+            encodeIntMap(value.units, outStream);
+
+            VarInt.encode(value.enums.size(), outStream);
+            for(final Map.Entry<String, List<String>> entry : value.enums.entrySet()) {
+                STRING_CODER.encode(entry.getKey(), outStream);
+                VarInt.encode(entry.getValue().size(), outStream);
+                for(final String symbol : entry.getValue()) {
+                    STRING_CODER.encode(symbol, outStream);
+                }
+            }
 
+            final Set<String> names = new HashSet<>(value.values.keySet());
+            names.addAll(value.timestamps.keySet());
+            VarInt.encode(names.size(), outStream);
+            for(final String name : names) {
+                STRING_CODER.encode(name, outStream);
+
+                final List<Long> fieldTimestamps = Optional.ofNullable(value.timestamps.get(name)).orElseGet(ArrayList::new);
+                VarInt.encode(fieldTimestamps.size(), outStream);
+                long prev = 0L;
+                for(final Long timestamp : fieldTimestamps) {
+                    final long current = timestamp == null ? 0L : timestamp;
+                    VarInt.encode(zigzag(current - prev), outStream);
+                    prev = current;
+                }
 
-        @Override
-        public void encode(ProcessingBuffer value, OutputStream outStream, Context context) throws IOException {
-            coder.encode(value, outStream, context);
+                final List<Object> fieldValues = Optional.ofNullable(value.values.get(name)).orElseGet(ArrayList::new);
+                VarInt.encode(fieldValues.size(), outStream);
+                for(final Object fieldValue : fieldValues) {
+                    encodeValue(fieldValue, outStream);
+                }
+            }
+
+            VarInt.encode(value.sequences.size(), outStream);
+            for(final Map.Entry<String, Long> entry : value.sequences.entrySet()) {
+                STRING_CODER.encode(entry.getKey(), outStream);
+                VarInt.encode(entry.getValue(), outStream);
+            }
         }
 
         @Override
         public ProcessingBuffer decode(InputStream inStream) throws IOException {
-            final GenericRecord record = (GenericRecord) coder.decode(inStream, Context.NESTED);
-            return new ProcessingBuffer(record);
-        }
+            final ProcessingBuffer buffer = new ProcessingBuffer();
+            buffer.types = decodeIntMap(inStream);
+            buffer.sizes = decodeIntMap(inStream);
+            buffer.units = decodeIntMap(inStream);
+
+            final int enumsSize = VarInt.decodeInt(inStream);
+            for(int i=0; i<enumsSize; i++) {
+                final String name = STRING_CODER.decode(inStream);
+                final int symbolsSize = VarInt.decodeInt(inStream);
+                final List<String> symbols = new ArrayList<>(symbolsSize);
+                for(int j=0; j<symbolsSize; j++) {
+                    symbols.add(STRING_CODER.decode(inStream));
+                }
+                buffer.enums.put(name, symbols);
+            }
 
-        @Override
-        public ProcessingBuffer decode(InputStream inStream, Context context) throws  IOException {
-            final GenericRecord record = (GenericRecord) coder.decode(inStream, context);
-            return new ProcessingBuffer(record);
+            final int namesSize = VarInt.decodeInt(inStream);
+            for(int i=0; i<namesSize; i++) {
+                final String name = STRING_CODER.decode(inStream);
+                final int capacity = buffer.ringCapacity(name);
+
+                final int timestampsSize = VarInt.decodeInt(inStream);
+                final List<Long> fieldTimestamps = createList(capacity, timestampsSize);
+                long prev = 0L;
+                for(int j=0; j<timestampsSize; j++) {
+                    prev = prev + unzigzag(VarInt.decodeLong(inStream));
+                    fieldTimestamps.add(prev);
+                }
+                buffer.timestamps.put(name, fieldTimestamps);
+
+                final int valuesSize = VarInt.decodeInt(inStream);
+                final List<Object> fieldValues = createList(capacity, valuesSize);
+                for(int j=0; j<valuesSize; j++) {
+                    fieldValues.add(decodeValue(inStream));
+                }
+                buffer.values.put(name, fieldValues);
+            }
+
+            final int sequencesSize = VarInt.decodeInt(inStream);
+            for(int i=0; i<sequencesSize; i++) {
+                buffer.sequences.put(STRING_CODER.decode(inStream), VarInt.decodeLong(inStream));
+            }
+            return buffer;
         }
 
         @Override
@@ -588,21 +675,94 @@ public class ProcessingBuffer {
         }
 
         @Override
-        public List<? extends Coder<?>> getComponents() {
-            final List<Coder<?>> coders = new ArrayList<>();
-            coders.add(coder);
-            return coders;
+        public void verifyDeterministic() throws NonDeterministicException {
+            throw new NonDeterministicException(this, "ProcessingBufferCoder encodes hash maps");
         }
 
-        @Override
-        public void registerByteSizeObserver(ProcessingBuffer value, ElementByteSizeObserver observer) throws Exception {
-            coder.registerByteSizeObserver(value, observer);
+        private static <T> List<T> createList(final int capacity, final int size) {
+            // Keep all values even if the buffer has more values than capacity. they are dropped on next add.
+            if(capacity > 0 && size <= capacity) {
+                return new RingList<>(capacity);
+            }
+            return new ArrayList<>(size);
         }
 
-        @Override
-        public void verifyDeterministic() throws NonDeterministicException {
-            verifyDeterministic(this, "ProcessingBufferCoder is deterministic if all coders are deterministic");
+        private static void encodeIntMap(final Map<String, Integer> map, final OutputStream outStream) throws IOException {
+            VarInt.encode(map.size(), outStream);
+            for(final Map.Entry<String, Integer> entry : map.entrySet()) {
+                STRING_CODER.encode(entry.getKey(), outStream);
+                VarInt.encode(entry.getValue(), outStream);
+            }
+        }
+
+        private static Map<String, Integer> decodeIntMap(final InputStream inStream) throws IOException {
+            final int size = VarInt.decodeInt(inStream);
+            final Map<String, Integer> map = new HashMap<>(size);
+            for(int i=0; i<size; i++) {
+                map.put(STRING_CODER.decode(inStream), VarInt.decodeInt(inStream));
+            }
+            return map;
+        }
+
+        private static void encodeValue(final Object value, final OutputStream outStream) throws IOException {
+            if(value == null) {
+                outStream.write(TAG_NULL);
+            } else if(value instanceof Boolean b) {
+                outStream.write(TAG_BOOLEAN);
+                outStream.write(b ? 1 : 0);
+            } else if(value instanceof Integer i) {
+                outStream.write(TAG_INT);
+                VarInt.encode(zigzag(i), outStream);
+            } else if(value instanceof Long l) {
+                outStream.write(TAG_LONG);
+                VarInt.encode(zigzag(l), outStream);
+            } else if(value instanceof Float f) {
+                outStream.write(TAG_FLOAT);
+                FloatCoder.of().encode(f, outStream);
+            } else if(value instanceof Double d) {
+                outStream.write(TAG_DOUBLE);
+                DoubleCoder.of().encode(d, outStream);
+            } else if(value instanceof CharSequence c) {
+                outStream.write(TAG_STRING);
+                STRING_CODER.encode(c.toString(), outStream);
+            } else if(value instanceof ByteBuffer b) {
+                outStream.write(TAG_BYTES);
+                final ByteBuffer duplicate = b.duplicate();
+                final byte[] bytes = new byte[duplicate.remaining()];
+                duplicate.get(bytes);
+                BYTES_CODER.encode(bytes, outStream);
+            } else if(value instanceof List<?> list) {
+                outStream.write(TAG_MATRIX);
+                MATRIX_CODER.encode((List<List<Double>>) list, outStream);
+            } else {
+                throw new CoderException("ProcessingBufferCoder not supported value class: " + value.getClass());
+            }
         }
+
+        private static Object decodeValue(final InputStream inStream) throws IOException {
+            final int tag = inStream.read();
+            return switch (tag) {
+                case TAG_NULL -> null;
+                case TAG_BOOLEAN -> inStream.read() != 0;
+                case TAG_INT -> (int) unzigzag(VarInt.decodeLong(inStream));
+                case TAG_LONG -> unzigzag(VarInt.decodeLong(inStream));
+                case TAG_FLOAT -> FloatCoder.of().decode(inStream);
+                case TAG_DOUBLE -> DoubleCoder.of().decode(inStream);
+                case TAG_STRING -> STRING_CODER.decode(inStream);
+                case TAG_BYTES -> ByteBuffer.wrap(BYTES_CODER.decode(inStream));
+                case TAG_MATRIX -> MATRIX_CODER.decode(inStream);
+                default -> throw new CoderException("ProcessingBufferCoder illegal value tag: " + tag);
+            };
+        }
+
+        private static long zigzag(final long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        private static long unzigzag(final long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
     }
 
 }
@@ -1,14 +1,10 @@
 package com.mercari.solution.util.pipeline.processing;
 
 import com.mercari.solution.util.domain.ml.LinearModelUtil;
-import org.apache.avro.Schema;
-import org.apache.avro.SchemaBuilder;
-import org.apache.avro.generic.GenericRecord;
-import org.apache.beam.sdk.coders.Coder;
-import org.apache.beam.sdk.coders.StructuredCoder;
-import org.apache.beam.sdk.extensions.avro.coders.AvroCoder;
-import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
+import org.apache.beam.sdk.coders.*;
+import org.apache.beam.sdk.util.VarInt;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -27,6 +23,9 @@ public class ProcessingState implements Serializable {
 
     public Map<String, List<List<Double>>> matrices;
 
+    // Primitive arrays updated in place such as online model parameters
+    public Map<String, double[]> doubleArrays;
+
     // TODO
     public Map<String, Integer> types;
     public Map<String, Object> values;
@@ -43,6 +42,7 @@ public class ProcessingState implements Serializable {
         this.strings = new HashMap<>();
         this.doubleLists = new HashMap<>();
         this.matrices = new HashMap<>();
+        this.doubleArrays = new HashMap<>();
 
 
         this.types = new HashMap<>();
@@ -50,22 +50,6 @@ public class ProcessingState implements Serializable {
         this.linearModels = new HashMap<>();
     }
 
-    public ProcessingState(GenericRecord record) {
-        this.ints = new HashMap<>();
-        this.longs = new HashMap<>();
-        this.doubles = new HashMap<>();
-        this.strings = new HashMap<>();
-        this.doubleLists = new HashMap<>();
-        this.matrices = new HashMap<>();
-
-
-        this.types = new HashMap<>();
-        this.values = (Map<String, Object>) record.get("values");
-        this.serializedValues = (Map<String, ByteBuffer>) record.get("serializedValues");
-
-        this.linearModels = new HashMap<>();
-    }
-
     public Integer getInt(final String name) {
         return this.ints.get(name);
     }
@@ -94,6 +78,22 @@ public class ProcessingState implements Serializable {
         this.doubles.put(name, value);
     }
 
+    public List<Double> getDoubleList(final String name) {
+        return this.doubleLists.get(name);
+    }
+
+    public void putDoubleList(final String name, final List<Double> values) {
+        this.doubleLists.put(name, values);
+    }
+
+    public double[] getDoubleArray(final String name) {
+        return this.doubleArrays.get(name);
+    }
+
+    public void putDoubleArray(final String name, final double[] values) {
+        this.doubleArrays.put(name, values);
+    }
+
     public List<List<Double>> getMatrix(final String name) {
         return this.matrices.get(name);
     }
@@ -110,42 +110,36 @@ public class ProcessingState implements Serializable {
 
 
 
-    public static Schema schema() {
-        final Schema typesSchema = Schema.createMap(Schema.create(Schema.Type.INT));
-        final Schema bytesSchema = Schema.createMap(Schema.create(Schema.Type.BYTES));
-
-        final Schema multiValueSchema = Schema.createUnion(
-                Schema.create(Schema.Type.DOUBLE),
-                Schema.create(Schema.Type.LONG),
-                Schema.create(Schema.Type.STRING),
-                Schema.create(Schema.Type.NULL),
-                Schema.create(Schema.Type.INT),
-                Schema.create(Schema.Type.FLOAT),
-                Schema.create(Schema.Type.BOOLEAN),
-                Schema.create(Schema.Type.BYTES),
-                Schema.createArray(Schema.createArray(Schema.create(Schema.Type.DOUBLE)))
-        );
-        final Schema valuesSchema = Schema.createMap(multiValueSchema);
-
-        return SchemaBuilder.record("ProcessingState").fields()
-                .name("types").type(typesSchema).noDefault()
-                .name("values").type(valuesSchema).noDefault()
-                .name("serializedValues").type(bytesSchema).noDefault()
-                .endRecord();
-    }
-
     public static Coder<ProcessingState> coder() {
-        //final org.apache.avro.Schema schema = schema();
-        //return AvroCoder.of(ProcessingBuffer.class, schema, true);
         return ProcessingStateCoder.of();
     }
 
+    /**
+     * Coder for ProcessingState encoding each typed map with its value coder, instead of java serialization.
+     * Untyped values (types, values, serializedValues) are not used by processors and are not encoded.
+     */
     public static class ProcessingStateCoder extends StructuredCoder<ProcessingState> {
 
-        private final AvroCoder<ProcessingState> coder;
+        private static final Coder<List<List<Double>>> MATRIX_CODER = ListCoder.of(ListCoder.of(NullableCoder.of(DoubleCoder.of())));
+
+        private final Coder<Map<String, Integer>> intsCoder;
+        private final Coder<Map<String, Long>> longsCoder;
+        private final Coder<Map<String, Double>> doublesCoder;
+        private final Coder<Map<String, String>> stringsCoder;
+        private final Coder<Map<String, List<Double>>> doubleListsCoder;
+        private final Coder<Map<String, List<List<Double>>>> matricesCoder;
+        private final Coder<Map<String, LinearModelUtil.LinearModel>> linearModelsCoder;
+        private final Coder<Map<String, double[]>> doubleArraysCoder;
 
         public ProcessingStateCoder() {
-            this.coder = AvroCoder.of(ProcessingState.class, schema(), false);
+            this.intsCoder = MapCoder.of(StringUtf8Coder.of(), NullableCoder.of(VarIntCoder.of()));
+            this.longsCoder = MapCoder.of(StringUtf8Coder.of(), NullableCoder.of(VarLongCoder.of()));
+            this.doublesCoder = MapCoder.of(StringUtf8Coder.of(), NullableCoder.of(DoubleCoder.of()));
+            this.stringsCoder = MapCoder.of(StringUtf8Coder.of(), NullableCoder.of(StringUtf8Coder.of()));
+            this.doubleListsCoder = MapCoder.of(StringUtf8Coder.of(), NullableCoder.of(ListCoder.of(NullableCoder.of(DoubleCoder.of()))));
+            this.matricesCoder = MapCoder.of(StringUtf8Coder.of(), NullableCoder.of(MATRIX_CODER));
+            this.linearModelsCoder = MapCoder.of(StringUtf8Coder.of(), NullableCoder.of(LinearModelCoder.of()));
+            this.doubleArraysCoder = MapCoder.of(StringUtf8Coder.of(), NullableCoder.of(DoubleArrayCoder.of()));
         }
 
         public static ProcessingStateCoder of() {
@@ -154,47 +148,113 @@ public class ProcessingState implements Serializable {
 
         @Override
         public void encode(ProcessingState value, OutputStream outStream) throws IOException {
-            encode(value, outStream, Context.NESTED);
+            intsCoder.encode(value.ints, outStream);
+            longsCoder.encode(value.longs, outStream);
+            doublesCoder.encode(value.doubles, outStream);
+            stringsCoder.encode(value.strings, outStream);
+            doubleListsCoder.encode(value.doubleLists, outStream);
+            matricesCoder.encode(value.matrices, outStream);
+            linearModelsCoder.encode(value.linearModels, outStream);
+            doubleArraysCoder.encode(value.doubleArrays, outStream);
         }
 
+        @Override
+        public ProcessingState decode(InputStream inStream) throws IOException {
+            // MapCoder may return immutable empty map
+            final ProcessingState state = new ProcessingState();
+            state.ints = new HashMap<>(intsCoder.decode(inStream));
+            state.longs = new HashMap<>(longsCoder.decode(inStream));
+            state.doubles = new HashMap<>(doublesCoder.decode(inStream));
+            state.strings = new HashMap<>(stringsCoder.decode(inStream));
+            state.doubleLists = new HashMap<>(doubleListsCoder.decode(inStream));
+            state.matrices = new HashMap<>(matricesCoder.decode(inStream));
+            state.linearModels = new HashMap<>(linearModelsCoder.decode(inStream));
+            state.doubleArrays = new HashMap<>(doubleArraysCoder.decode(inStream));
+            return state;
+        }
 
         @Override
-        public void encode(ProcessingState value, OutputStream outStream, Context context) throws IOException {
-            coder.encode(value, outStream, context);
+        public List<? extends Coder<?>> getCoderArguments() {
+            return Collections.emptyList();
         }
 
         @Override
-        public ProcessingState decode(InputStream inStream) throws IOException {
-            final GenericRecord record = (GenericRecord) coder.decode(inStream, Context.NESTED);
-            return new ProcessingState(record);
+        public List<? extends Coder<?>> getComponents() {
+            return List.of(intsCoder, longsCoder, doublesCoder, stringsCoder, doubleListsCoder, matricesCoder, linearModelsCoder, doubleArraysCoder);
         }
 
         @Override
-        public ProcessingState decode(InputStream inStream, Context context) throws  IOException {
-            final GenericRecord record = (GenericRecord) coder.decode(inStream, context);
-            return new ProcessingState(record);
+        public void verifyDeterministic() throws NonDeterministicException {
+            throw new NonDeterministicException(this, "ProcessingStateCoder encodes hash maps");
+        }
+    }
+
+    /**
+     * Encodes double array as its length followed by raw 8 byte values.
+     */
+    private static class DoubleArrayCoder extends AtomicCoder<double[]> {
+
+        public static DoubleArrayCoder of() {
+            return new DoubleArrayCoder();
         }
 
         @Override
-        public List<? extends Coder<?>> getCoderArguments() {
-            return Collections.emptyList();
+        public void encode(double[] value, OutputStream outStream) throws IOException {
+            VarInt.encode(value.length, outStream);
+            final ByteBuffer buffer = ByteBuffer.allocate(value.length * Double.BYTES);
+            buffer.asDoubleBuffer().put(value);
+            outStream.write(buffer.array());
         }
 
         @Override
-        public List<? extends Coder<?>> getComponents() {
-            final List<Coder<?>> coders = new ArrayList<>();
-            coders.add(coder);
-            return coders;
+        public double[] decode(InputStream inStream) throws IOException {
+            final int length = VarInt.decodeInt(inStream);
+            final byte[] bytes = inStream.readNBytes(length * Double.BYTES);
+            if(bytes.length < length * Double.BYTES) {
+                throw new EOFException("DoubleArrayCoder expected " + length + " values but stream ended");
+            }
+            final double[] values = new double[length];
+            ByteBuffer.wrap(bytes).asDoubleBuffer().get(values);
+            return values;
         }
 
         @Override
-        public void registerByteSizeObserver(ProcessingState value, ElementByteSizeObserver observer) throws Exception {
-            coder.registerByteSizeObserver(value, observer);
+        public void verifyDeterministic() {
+        }
+    }
+
+    private static class LinearModelCoder extends StructuredCoder<LinearModelUtil.LinearModel> {
+
+        private static final Coder<List<List<Double>>> WEIGHTS_CODER = NullableCoder.of(ListCoder.of(ListCoder.of(NullableCoder.of(DoubleCoder.of()))));
+
+        public static LinearModelCoder of() {
+            return new LinearModelCoder();
+        }
+
+        @Override
+        public void encode(LinearModelUtil.LinearModel value, OutputStream outStream) throws IOException {
+            VarInt.encode(value.getInputSize(), outStream);
+            VarInt.encode(value.getOutputSize(), outStream);
+            WEIGHTS_CODER.encode(value.getWeights(), outStream);
+        }
+
+        @Override
+        public LinearModelUtil.LinearModel decode(InputStream inStream) throws IOException {
+            final int inputSize = VarInt.decodeInt(inStream);
+            final int outputSize = VarInt.decodeInt(inStream);
+            final List<List<Double>> weights = WEIGHTS_CODER.decode(inStream);
+            return LinearModelUtil.LinearModel.of(inputSize, outputSize, weights);
+        }
+
+        @Override
+        public List<? extends Coder<?>> getCoderArguments() {
+            return Collections.emptyList();
         }
 
         @Override
         public void verifyDeterministic() throws NonDeterministicException {
-            verifyDeterministic(this, "ProcessingStateCoder is deterministic if all coders are deterministic");
+            WEIGHTS_CODER.verifyDeterministic();
         }
     }
+
 }
@@ -0,0 +1,76 @@
+package com.mercari.solution.util.pipeline.processing;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * List with fixed capacity that drops the oldest element when a new element is added to a full list.
+ * Elements are ordered from the oldest to the latest, same as the ArrayList based buffer.
+ */
+public class RingList<E> extends AbstractList<E> implements RandomAccess {
+
+    private final Object[] elements;
+    private int head;
+    private int size;
+
+    public RingList(final int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("RingList capacity must be over zero. actual: " + capacity);
+        }
+        this.elements = new Object[capacity];
+        this.head = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Creates RingList holding the latest elements of source up to capacity.
+     */
+    public static <E> RingList<E> of(final int capacity, final Collection<? extends E> source) {
+        final RingList<E> list = new RingList<>(capacity);
+        if(source != null) {
+            list.addAll(source);
+        }
+        return list;
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+
+    @Override
+    public boolean add(final E element) {
+        if(size == elements.length) {
+            elements[head] = element;
+            head = (head + 1) % elements.length;
+        } else {
+            elements[(head + size) % elements.length] = element;
+            size++;
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(final int index) {
+        Objects.checkIndex(index, size);
+        return (E) elements[(head + index) % elements.length];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(elements, null);
+        head = 0;
+        size = 0;
+        modCount++;
+    }
+
+}
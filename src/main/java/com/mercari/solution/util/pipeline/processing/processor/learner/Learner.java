@@ -127,8 +127,17 @@ public abstract class Learner implements Processor {
         }
         this.horizonMax = horizons.stream().max(Integer::compareTo).orElse(0);
 
-        this.trainSize = params.get("trainSize").getAsInt();
-        this.trainSizeUnit = SizeUnit.valueOf(params.get("trainSizeUnit").getAsString());
+        // online trainType does not require trainSize
+        if(params.has("trainSize") && params.get("trainSize").isJsonPrimitive()) {
+            this.trainSize = params.get("trainSize").getAsInt();
+        } else {
+            this.trainSize = 0;
+        }
+        if(params.has("trainSizeUnit") && params.get("trainSizeUnit").isJsonPrimitive()) {
+            this.trainSizeUnit = SizeUnit.valueOf(params.get("trainSizeUnit").getAsString());
+        } else {
+            this.trainSizeUnit = SizeUnit.count;
+        }
 
         // train parameters
         if(params.has("trainType") && params.get("trainType").isJsonPrimitive()) {
@@ -180,6 +189,14 @@ public abstract class Learner implements Processor {
     abstract Model load(ProcessingState state, int horizon, int inputSize, int outputSize);
     abstract Map<String,Object> predict(Model model, ProcessingBuffer buffer, Integer horizon);
 
+    /**
+     * Updates the model by the latest target for the features horizon elements ago and predicts by the latest features.
+     * Called for every element instead of train when trainType is online.
+     */
+    Map<String,Object> update(ProcessingState state, double[] x, double[] y, double[] latestX, Integer horizon) {
+        throw new IllegalArgumentException("Learner step: " + name + " does not support online trainType");
+    }
+
     @Override
     public String getName() {
         return this.name;
@@ -274,6 +291,21 @@ public abstract class Learner implements Processor {
         }
 
         final Map<String, Object> outputs = new HashMap<>();
+        if(TrainType.online.equals(trainType)) {
+            final double[] latestX = buffer.getRowVector(featureFields, 0, 1, 1D);
+            for(int horizon : horizons) {
+                final double[] x;
+                if(buffer.values.getOrDefault(featureFields.get(0), List.of()).size() > horizon) {
+                    x = buffer.getRowVector(featureFields, horizon, 1, 1D);
+                } else {
+                    x = null;
+                }
+                final double[] y = buffer.getRowVector(getTargetNames(horizon), 0);
+                outputs.putAll(update(state, x, y, latestX, horizon));
+            }
+            return outputs;
+        }
+
         for(int horizon : horizons) {
             // train
             Model model = load(state, horizon, inputSize, outputSize);
@@ -323,15 +355,19 @@ public abstract class Learner implements Processor {
     }
 
     private double[][] getTargets(final ProcessingBuffer buffer, final int horizon) {
+        return buffer.getAsMatrix(getTargetNames(horizon), 0, trainSize, trainSizeUnit);
+    }
+
+    private List<String> getTargetNames(final int horizon) {
         if(targetFields.size() > 0) {
-            return buffer.getAsMatrix(targetFields, 0, trainSize, trainSizeUnit);
+            return targetFields;
         } else if(this.targetExpList.size() > 0) {
             final List<String> targetBufferNames = new ArrayList<>();
             for(int i=0; i<targetExpList.size(); i++) {
                 final String targetBufferName = createTargetBufferName(i, horizon);
                 targetBufferNames.add(targetBufferName);
             }
-            return buffer.getAsMatrix(targetBufferNames, 0, trainSize, trainSizeUnit);
+            return targetBufferNames;
         } else {
             throw new IllegalStateException();
         }
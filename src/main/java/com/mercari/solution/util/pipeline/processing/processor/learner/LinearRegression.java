@@ -20,6 +20,8 @@ import java.util.Map;
 public class LinearRegression extends Learner {
 
     private static final String STATE_MODEL_FORMAT = "%s.weights.%d";
+    private static final String STATE_ONLINE_PARAMS_FORMAT = "%s.online.params.%d";
+    private static final String STATE_ONLINE_UPDATES_FORMAT = "%s.online.updates.%d";
 
     private final RegularizationType regularizationType;
 
@@ -28,6 +30,13 @@ public class LinearRegression extends Learner {
     private final Double tolerance; // parameter for lasso
     private final Integer components; // parameter for pls
 
+    private final OnlineAlgorithm onlineAlgorithm; // parameters for online
+    private final Double forgettingFactor; // parameter for rls
+    private final Double initialCovariance; // parameter for rls
+    private final Double learningRate; // parameter for sgd
+
+    private transient double[] work;
+
 
     public static LinearRegression of(final String name, final String condition, final Boolean ignore, final JsonObject params) {
         return new LinearRegression(name, condition, ignore, params);
@@ -82,6 +91,30 @@ public class LinearRegression extends Learner {
         } else {
             components = 2;
         }
+
+        if(params.has("onlineAlgorithm") && params.get("onlineAlgorithm").isJsonPrimitive()) {
+            onlineAlgorithm = OnlineAlgorithm.valueOf(params.get("onlineAlgorithm").getAsString());
+        } else {
+            onlineAlgorithm = OnlineAlgorithm.rls;
+        }
+
+        forgettingFactor = getDoubleParameter(name, params, "forgettingFactor", 1.0);
+        if(forgettingFactor <= 0 || forgettingFactor > 1) {
+            throw new IllegalArgumentException("linear_regression step: " + name + ", parameter forgettingFactor must be in (0, 1]. got: " + forgettingFactor);
+        }
+        initialCovariance = getDoubleParameter(name, params, "initialCovariance", 1000.0);
+        learningRate = getDoubleParameter(name, params, "learningRate", 0.01);
+    }
+
+    private static Double getDoubleParameter(final String name, final JsonObject params, final String parameter, final Double defaultValue) {
+        if(!params.has(parameter)) {
+            return defaultValue;
+        }
+        final JsonElement element = params.get(parameter);
+        if(!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isNumber()) {
+            throw new IllegalArgumentException("linear_regression step: " + name + ", parameter " + parameter + " must be numeric. got: " + element);
+        }
+        return element.getAsDouble();
     }
 
     @Override
@@ -222,15 +255,7 @@ public class LinearRegression extends Learner {
         final Map<String, Object> outputs = new HashMap<>();
         final List<Double> predictions = model.inference(buffer.getRowVector(featureFields, 0));
         for(int i=0; i<predictions.size(); i++) {
-            final String outputName;
-            if(targetFields.size() > 0) {
-                outputName = createOutputName(targetFields.get(i), horizon);
-            } else if(targetExpressions.size() > 0) {
-                outputName = createOutputName(i, horizon);
-            } else {
-                outputName = createOutputName(horizon);
-            }
-
+            final String outputName = createPredictionOutputName(i, horizon);
             final Double output = predictions.get(i);
             if(Double.isNaN(output) || Double.isInfinite(output)) {
                 //LOG.warn("horizon: " + horizon + " output is NaN");
@@ -242,6 +267,73 @@ public class LinearRegression extends Learner {
         return outputs;
     }
 
+    /**
+     * Updates weights (and inverse covariance for rls) held as a primitive array in state in place,
+     * so that the cost per element does not depend on the number of elements trained.
+     * Intercept is learned as the last weight. Predictions are output after trainSize updates.
+     */
+    @Override
+    Map<String, Object> update(ProcessingState state, double[] x, double[] y, double[] latestX, Integer horizon) {
+        final String stateNameParams = String.format(STATE_ONLINE_PARAMS_FORMAT, name, horizon);
+        final String stateNameUpdates = String.format(STATE_ONLINE_UPDATES_FORMAT, name, horizon);
+        final int inputSize = latestX.length;
+        final int outputSize = y.length;
+        final boolean useCovariance = OnlineAlgorithm.rls.equals(onlineAlgorithm);
+
+        double[] params = state.getDoubleArray(stateNameParams);
+        if(params == null || params.length != LinearModelUtil.onlineParamsSize(inputSize, outputSize, useCovariance)) {
+            params = LinearModelUtil.createOnlineParams(inputSize, outputSize, useCovariance, initialCovariance);
+            state.putDoubleArray(stateNameParams, params);
+            state.putInt(stateNameUpdates, 0);
+        }
+
+        if(x != null && isFinite(x) && isFinite(y)) {
+            final boolean updated = switch (onlineAlgorithm) {
+                case rls -> {
+                    if(work == null || work.length < inputSize) {
+                        work = new double[inputSize];
+                    }
+                    yield LinearModelUtil.rls(params, x, y, forgettingFactor, work);
+                }
+                case sgd -> LinearModelUtil.sgd(params, x, y, learningRate,
+                        RegularizationType.ridge.equals(regularizationType) ? alpha : 0D);
+            };
+            if(updated) {
+                state.putInt(stateNameUpdates, state.getInt(stateNameUpdates, 0) + 1);
+            }
+        }
+
+        final Map<String, Object> outputs = new HashMap<>();
+        if(state.getInt(stateNameUpdates, 0) < Math.max(trainSize, 1)) {
+            return outputs;
+        }
+        final double[] predictions = LinearModelUtil.inference(params, latestX, outputSize);
+        for(int i=0; i<predictions.length; i++) {
+            final double output = predictions[i];
+            outputs.put(createPredictionOutputName(i, horizon), Double.isNaN(output) || Double.isInfinite(output) ? null : output);
+        }
+        return outputs;
+    }
+
+    private static boolean isFinite(final double[] values) {
+        for(final double value : values) {
+            if(Double.isNaN(value) || Double.isInfinite(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String createPredictionOutputName(final int i, final Integer horizon) {
+        if(targetFields.size() > 0) {
+            return createOutputName(targetFields.get(i), horizon);
+        } else if(targetExpressions.size() > 0) {
+            return createOutputName(i, horizon);
+        } else {
+            return createOutputName(horizon);
+        }
+    }
+
     private String createOutputName(final Integer horizon) {
         if(isSingleHorizon) {
             return name;
@@ -266,6 +358,11 @@ public class LinearRegression extends Learner {
         return String.format("%s%s%d%s%d", name, DEFAULT_OUTPUT_NAME_EXPRESSION_TARGET_SUFFIX, no, DEFAULT_OUTPUT_NAME_HORIZON_SUFFIX, horizon);
     }
 
+    public enum OnlineAlgorithm {
+        rls,
+        sgd
+    }
+
     public enum RegularizationType {
         ridge,
         lasso,
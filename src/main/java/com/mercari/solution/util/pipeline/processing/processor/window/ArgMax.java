@@ -125,8 +125,18 @@ public class ArgMax extends WindowProcessor {
     public Map<String, Object> process(ProcessingBuffer buffer, ProcessingState state, Instant timestamp) {
 
         final Map<String, Object> outputs = new HashMap<>();
+        final Series series = comparingField != null && isIncremental() ? createFieldSeries(buffer, state, comparingField) : null;
 
         for(KV<Integer,Integer> range : ranges) {
+            if(series != null) {
+                final int lag = extremeLag(state, series, range, opposite);
+                if(lag >= 0) {
+                    for(final String field : fields) {
+                        outputs.put(createOutputName(field, range), buffer.get(field, lag));
+                    }
+                    continue;
+                }
+            }
             if(comparingField != null) {
                 Comparable max = null;
                 int maxIndex = -1;
@@ -154,7 +164,7 @@ public class ArgMax extends WindowProcessor {
                 for(final String field : fields) {
                     final String outputName = createOutputName(field, range);
                     if(maxIndex >= 0) {
-                        final Object value = buffer.get(field, maxIndex);
+                        final Object value = buffer.get(field, range.getKey() + maxIndex);
                         outputs.put(outputName, value);
                     } else {
                         outputs.put(outputName, null);
@@ -95,10 +95,17 @@ public class Count extends WindowProcessor {
     public Map<String, Object> process(ProcessingBuffer buffer, ProcessingState state, Instant timestamp) {
 
         final Map<String, Object> outputs = new HashMap<>();
+        final List<Series> seriesList = createSeriesList(buffer, state);
 
         for(KV<Integer,Integer> range : ranges) {
             if(this.fields.size() > 0) {
-                for(final String field : fields) {
+                for(int f=0; f<fields.size(); f++) {
+                    final String field = fields.get(f);
+                    if(seriesList != null) {
+                        final double[] moments = moments(state, seriesList.get(f), range);
+                        outputs.put(createOutputName(field, range), moments[MOMENTS_SUM] / moments[MOMENTS_COUNT]);
+                        continue;
+                    }
                     int count = 0;
                     double sum = 0;
                     final double[] values = buffer.getColVector(field, range.getKey(), range.getValue() - range.getKey(), getSizeUnit());
@@ -114,6 +121,11 @@ public class Count extends WindowProcessor {
                 }
             } else {
                 for(int e=0; e<expressions.size(); e++) {
+                    if(seriesList != null && seriesList.get(e) != null) {
+                        final double[] moments = moments(state, seriesList.get(e), range);
+                        outputs.put(createOutputName(e, range), moments[MOMENTS_SUM] / moments[MOMENTS_COUNT]);
+                        continue;
+                    }
                     int count = 0;
                     double sum = 0;
                     final Set<String> variables = variablesList.get(e);
@@ -103,10 +103,18 @@ public class Max extends WindowProcessor {
     public Map<String, Object> process(ProcessingBuffer buffer, ProcessingState state, Instant timestamp) {
 
         final Map<String, Object> outputs = new HashMap<>();
+        final List<Series> seriesList = createSeriesList(buffer, state);
 
         for(KV<Integer,Integer> range : ranges) {
             if(this.fields.size() > 0) {
-                for(final String field : fields) {
+                for(int f=0; f<fields.size(); f++) {
+                    final String field = fields.get(f);
+                    if(seriesList != null) {
+                        final Series series = seriesList.get(f);
+                        final int lag = extremeLag(state, series, range, opposite);
+                        outputs.put(createOutputName(field, range), lag < 0 ? null : series.get(lag));
+                        continue;
+                    }
                     Comparable max = null;
                     final List<Object> values = buffer.getValues(field, range.getKey(), range.getValue() - range.getKey(), getSizeUnit());
                     for(Object value : values) {
@@ -129,6 +137,20 @@ public class Max extends WindowProcessor {
                 }
             } else {
                 for(int e=0; e<expressions.size(); e++) {
+                    if(seriesList != null && seriesList.get(e) != null) {
+                        final Series series = seriesList.get(e);
+                        final int lag = extremeLag(state, series, range, opposite);
+                        final double max;
+                        if(lag < 0) {
+                            max = opposite ? Double.MAX_VALUE : Double.MIN_VALUE;
+                        } else if(opposite) {
+                            max = Math.min(Double.MAX_VALUE, series.getAsDouble(lag));
+                        } else {
+                            max = Math.max(Double.MIN_VALUE, series.getAsDouble(lag));
+                        }
+                        outputs.put(createOutputName(e, range), max);
+                        continue;
+                    }
                     Double max = opposite ? Double.MAX_VALUE : Double.MIN_VALUE;
                     final Set<String> variables = variablesList.get(e);
                     for(int r=range.getKey(); r<range.getValue(); r++) {
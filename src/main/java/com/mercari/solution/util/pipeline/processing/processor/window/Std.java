@@ -96,10 +96,17 @@ public class Std extends WindowProcessor {
     public Map<String, Object> process(ProcessingBuffer buffer, ProcessingState state, Instant timestamp) {
 
         final Map<String, Object> outputs = new HashMap<>();
+        final List<Series> seriesList = createSeriesList(buffer, state);
 
         for(KV<Integer,Integer> range : ranges) {
             if(this.fields.size() > 0) {
-                for(final String field : fields) {
+                for(int f=0; f<fields.size(); f++) {
+                    final String field = fields.get(f);
+                    if(seriesList != null) {
+                        final double[] moments = moments(state, seriesList.get(f), range);
+                        outputs.put(createOutputName(field, range), Math.sqrt(moments[MOMENTS_M2] / moments[MOMENTS_COUNT]));
+                        continue;
+                    }
                     double avg = 0;
                     double var = 0;
                     double count = 0;
@@ -119,6 +126,11 @@ public class Std extends WindowProcessor {
                 }
             } else {
                 for(int e=0; e<expressions.size(); e++) {
+                    if(seriesList != null && seriesList.get(e) != null) {
+                        final double[] moments = moments(state, seriesList.get(e), range);
+                        outputs.put(createOutputName(e, range), Math.sqrt(moments[MOMENTS_M2] / moments[MOMENTS_COUNT]));
+                        continue;
+                    }
                     double avg = 0;
                     double var = 0;
                     double count = 0;
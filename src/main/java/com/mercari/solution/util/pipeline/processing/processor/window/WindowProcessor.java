@@ -5,11 +5,14 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.mercari.solution.util.Filter;
 import com.mercari.solution.util.domain.math.ExpressionUtil;
+import com.mercari.solution.util.pipeline.processing.ProcessingBuffer;
+import com.mercari.solution.util.pipeline.processing.ProcessingState;
 import com.mercari.solution.util.pipeline.processing.processor.Processor;
 import net.objecthunter.exp4j.Expression;
 import org.apache.beam.sdk.values.KV;
 
 import java.util.*;
+import java.util.function.IntFunction;
 
 public abstract class WindowProcessor implements Processor {
 
@@ -37,6 +40,15 @@ public abstract class WindowProcessor implements Processor {
 
     protected transient List<Expression> expressionList;
     protected transient Filter.ConditionNode conditionNode;
+    protected transient Map<String, Integer> inputSizes;
+
+    // Indexes of values returned by moments
+    protected static final int MOMENTS_SUM = 0;
+    protected static final int MOMENTS_MEAN = 1;
+    protected static final int MOMENTS_M2 = 2;
+    protected static final int MOMENTS_COUNT = 3;
+    private static final int MOMENTS_UPDATES = 4;
+    private static final double M2_TOLERANCE = 1e-12;
 
 
     public WindowProcessor(final String name, final String condition, final Boolean ignore, final JsonObject params) {
@@ -149,6 +161,309 @@ public abstract class WindowProcessor implements Processor {
         if(this.condition != null && this.conditionNode == null) {
             this.conditionNode = Filter.parse(new Gson().fromJson(this.condition, JsonElement.class));
         }
+        this.inputSizes = getBufferSizes();
+    }
+
+    /**
+     * Count based windows are evaluated incrementally from the state of the last evaluation.
+     * Time based windows are evaluated from the buffer each time because values expire by timestamp.
+     */
+    protected boolean isIncremental() {
+        return SizeUnit.count.equals(sizeUnit);
+    }
+
+    /**
+     * Expression whose variables are all lag indexed such as `x_0 - x_1` takes the same value at lag r
+     * as it took at lag 0 r elements ago, so that its past values can be reused.
+     * Variables without index refer the latest value for every lag.
+     */
+    protected boolean isShiftInvariant(final int e) {
+        return Collections.disjoint(variablesList.get(e), inputSizes.keySet());
+    }
+
+    /**
+     * Returns series of fields, or of expressions in order, for incremental evaluation.
+     * Elements are null for expressions that are not shift invariant. Returns null if the window is not evaluated incrementally.
+     */
+    protected List<Series> createSeriesList(final ProcessingBuffer buffer, final ProcessingState state) {
+        if(!isIncremental()) {
+            return null;
+        }
+        final List<Series> seriesList = new ArrayList<>();
+        if(fields.size() > 0) {
+            for(final String field : fields) {
+                seriesList.add(createFieldSeries(buffer, state, field));
+            }
+        } else {
+            for(int e=0; e<expressions.size(); e++) {
+                seriesList.add(isShiftInvariant(e) ? createExpressionSeries(buffer, state, e) : null);
+            }
+        }
+        return seriesList;
+    }
+
+    protected Series createFieldSeries(final ProcessingBuffer buffer, final ProcessingState state, final String field) {
+        final String key = name + ".field." + field;
+        // The value leaving the range is read at lag rangeMax, so the buffer must keep it
+        final long steps = buffer.ringCapacity(field) > rangeMax ? advance(buffer, state, key, List.of(field)) : -1L;
+        return new Series(key, buffer.getSequence(field), steps,
+                lag -> buffer.get(field, lag),
+                lag -> Optional.ofNullable(buffer.getAsDouble(field, lag)).orElse(Double.NaN));
+    }
+
+    /**
+     * Creates series of values of the shift invariant expression.
+     * Values from lag 0 to rangeMax are held in state and the expression is evaluated only for the latest element.
+     */
+    protected Series createExpressionSeries(final ProcessingBuffer buffer, final ProcessingState state, final int e) {
+        final String key = name + ".exp." + e;
+        final List<String> inputs = new ArrayList<>(new TreeSet<>(inputSizes.keySet()));
+        final boolean countBased = inputs.stream().allMatch(input -> buffer.ringCapacity(input) > 0);
+        final long steps = countBased ? advance(buffer, state, key, inputs) : -1L;
+        final long sequence = inputs.isEmpty() ? 0L : buffer.getSequence(inputs.get(0));
+
+        final String historyKey = key + ".history";
+        List<Double> history = state.getDoubleList(historyKey);
+        if(history != null && steps == 1) {
+            history.add(evaluate(buffer, e, 0));
+            if(history.size() > rangeMax + 1) {
+                history.subList(0, history.size() - rangeMax - 1).clear();
+            }
+        } else if(history == null || steps != 0) {
+            history = new ArrayList<>();
+            for(int r=rangeMax-1; r>=0; r--) {
+                history.add(evaluate(buffer, e, r));
+            }
+            state.putDoubleList(historyKey, history);
+        }
+
+        final List<Double> values = history;
+        final IntFunction<Double> getter = lag -> {
+            final int index = values.size() - lag - 1;
+            return index < 0 ? Double.NaN : values.get(index);
+        };
+        return new Series(key, sequence, steps, lag -> {
+            final double value = getter.apply(lag);
+            return Double.isNaN(value) ? null : value;
+        }, getter);
+    }
+
+    /**
+     * Returns the number of values added to the buffer for inputs since the last call for the key,
+     * or -1 if it is unknown or inputs advanced by different numbers of values.
+     */
+    private long advance(final ProcessingBuffer buffer, final ProcessingState state, final String key, final List<String> inputs) {
+        Long steps = null;
+        for(final String input : inputs) {
+            final String sequenceKey = key + ".sequence." + input;
+            final long sequence = buffer.getSequence(input);
+            final Long prevSequence = state.getLong(sequenceKey);
+            state.putLong(sequenceKey, sequence);
+            final long delta = prevSequence == null ? -1L : sequence - prevSequence;
+            if(steps == null) {
+                steps = delta;
+            } else if(steps != delta) {
+                steps = -1L;
+            }
+        }
+        return steps == null ? -1L : steps;
+    }
+
+    /**
+     * Evaluates expression with variables at lag r. Returns NaN if the expression could not be evaluated or is not finite.
+     */
+    protected double evaluate(final ProcessingBuffer buffer, final int e, final int r) {
+        final Set<String> variables = variablesList.get(e);
+        final Map<String, Double> values = new HashMap<>();
+        for(final String input : inputSizes.keySet()) {
+            if(variables.contains(input)) {
+                final Double firstLagValue = buffer.getAsDouble(input, 0);
+                values.put(input, firstLagValue);
+            }
+            final int size = inputSizes.get(input) - rangeMax + 1;
+            for(int variableIndex=0; variableIndex<size; variableIndex++) {
+                final int index = r + variableIndex;
+                final String variableName = Processor.createVariableName(input, DEFAULT_VARIABLE_NAME_SEPARATOR, variableIndex);
+                final Double variableValue = buffer.getAsDouble(input, index);
+                values.put(variableName, variableValue);
+            }
+        }
+
+        try {
+            final double output = expressionList.get(e).setVariables(values).evaluate();
+            if(Double.isInfinite(output)) {
+                return Double.NaN;
+            }
+            return output;
+        } catch (final NullPointerException | ArithmeticException ee) {
+            LOG.debug(getOp() + " step: " + name + " failed evaluate expression: " + expressions.get(e) + " for variables: " + values + " cause: " + ee);
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Returns sum, mean, sum of squared deviations (M2) and count of non NaN values of the series in range.
+     * If the series advanced by one value, moments are updated with the value entering at range start
+     * and the value leaving at range end. Otherwise, or when infinite value enters or leaves,
+     * and after every range size updates to bound rounding errors, moments are recomputed from the series.
+     */
+    protected double[] moments(final ProcessingState state, final Series series, final KV<Integer, Integer> range) {
+        final int from = range.getKey();
+        final int to = range.getValue();
+        final String key = series.key + "." + from + "to" + to + ".moments";
+
+        final List<Double> cached = state.getDoubleList(key);
+        if(cached != null && cached.size() == 5) {
+            if(series.steps == 0) {
+                return new double[]{ cached.get(MOMENTS_SUM), cached.get(MOMENTS_MEAN), cached.get(MOMENTS_M2), cached.get(MOMENTS_COUNT) };
+            }
+            final double entering = series.getAsDouble(from);
+            final double leaving = series.getAsDouble(to);
+            if(series.steps == 1
+                    && cached.get(MOMENTS_UPDATES) < to - from
+                    && !Double.isInfinite(entering)
+                    && !Double.isInfinite(leaving)) {
+
+                double sum = cached.get(MOMENTS_SUM);
+                double mean = cached.get(MOMENTS_MEAN);
+                double m2 = cached.get(MOMENTS_M2);
+                double count = cached.get(MOMENTS_COUNT);
+                if(!Double.isNaN(leaving)) {
+                    if(count <= 1) {
+                        sum = 0;
+                        mean = 0;
+                        m2 = 0;
+                        count = 0;
+                    } else {
+                        final double nextMean = mean - (leaving - mean) / (count - 1);
+                        m2 = Math.max(0, m2 - (leaving - mean) * (leaving - nextMean));
+                        mean = nextMean;
+                        sum -= leaving;
+                        count -= 1;
+                    }
+                }
+                if(!Double.isNaN(entering)) {
+                    count += 1;
+                    final double delta = entering - mean;
+                    mean += (delta / count);
+                    m2 += (delta * (entering - mean));
+                    sum += entering;
+                }
+                // Rounding errors left by removal would show up as small non-zero std of constant values
+                if(count <= 1) {
+                    mean = sum;
+                    m2 = 0;
+                } else if(m2 <= (count * mean * mean + square(entering) + square(leaving)) * M2_TOLERANCE) {
+                    m2 = 0;
+                }
+                state.putDoubleList(key, new ArrayList<>(List.of(sum, mean, m2, count, cached.get(MOMENTS_UPDATES) + 1)));
+                return new double[]{ sum, mean, m2, count };
+            }
+        }
+
+        double sum = 0;
+        double mean = 0;
+        double m2 = 0;
+        double count = 0;
+        for(int lag=from; lag<to; lag++) {
+            final double value = series.getAsDouble(lag);
+            if(Double.isNaN(value)) {
+                continue;
+            }
+            count += 1;
+            final double delta = value - mean;
+            mean += (delta / count);
+            m2 += (delta * (value - mean));
+            sum += value;
+        }
+        state.putDoubleList(key, new ArrayList<>(List.of(sum, mean, m2, count, 0D)));
+        return new double[]{ sum, mean, m2, count };
+    }
+
+    /**
+     * Returns the lag of the max value (or min value if opposite) of the series in range, or -1 if range has no value.
+     * Among the same values, the latest one is chosen.
+     * Sequence numbers of candidate values are held in state as monotonic deque so that each value is pushed and popped once.
+     */
+    protected int extremeLag(final ProcessingState state, final Series series, final KV<Integer, Integer> range, final boolean opposite) {
+        final int from = range.getKey();
+        final int to = range.getValue();
+        final String key = series.key + "." + from + "to" + to + ".deque";
+
+        List<Double> deque = state.getDoubleList(key);
+        if(deque != null && series.steps == 1) {
+            push(deque, series, from, opposite);
+        } else if(deque == null || series.steps != 0) {
+            deque = new ArrayList<>();
+            for(int lag=to-1; lag>=from; lag--) {
+                push(deque, series, lag, opposite);
+            }
+            state.putDoubleList(key, deque);
+        }
+
+        int expired = 0;
+        while(expired < deque.size() && series.lag(deque.get(expired)) >= to) {
+            expired++;
+        }
+        if(expired > 0) {
+            deque.subList(0, expired).clear();
+        }
+        return deque.isEmpty() ? -1 : series.lag(deque.get(0));
+    }
+
+    private static double square(final double value) {
+        return Double.isNaN(value) ? 0 : value * value;
+    }
+
+    private static void push(final List<Double> deque, final Series series, final int lag, final boolean opposite) {
+        final Comparable value = (Comparable) series.get(lag);
+        if(value == null) {
+            return;
+        }
+        while(!deque.isEmpty()) {
+            final Object last = series.get(series.lag(deque.get(deque.size() - 1)));
+            final int compare = last == null ? (opposite ? 1 : -1) : ((Comparable) last).compareTo(value);
+            if(opposite ? compare >= 0 : compare <= 0) {
+                deque.remove(deque.size() - 1);
+            } else {
+                break;
+            }
+        }
+        deque.add((double) (series.sequence - lag));
+    }
+
+    /**
+     * Values of a field or an expression indexed by lag, with the number of values the series advanced since the last evaluation.
+     */
+    protected static class Series {
+
+        private final String key;
+        private final long sequence;
+        private final long steps;
+        private final IntFunction<Object> getter;
+        private final IntFunction<Double> doubleGetter;
+
+        Series(final String key, final long sequence, final long steps,
+               final IntFunction<Object> getter, final IntFunction<Double> doubleGetter) {
+            this.key = key;
+            this.sequence = sequence;
+            this.steps = steps;
+            this.getter = getter;
+            this.doubleGetter = doubleGetter;
+        }
+
+        public Object get(final int lag) {
+            return getter.apply(lag);
+        }
+
+        public double getAsDouble(final int lag) {
+            return doubleGetter.apply(lag);
+        }
+
+        private int lag(final double sequenceNumber) {
+            return (int) (sequence - (long) sequenceNumber);
+        }
+
     }
 
     protected String createOutputName(final String field, final KV<Integer,Integer> range) {
@@ -0,0 +1,246 @@
+package com.mercari.solution.util.pipeline.select;
+
+import com.mercari.solution.module.DataType;
+import com.mercari.solution.util.pipeline.union.UnionValue;
+import com.mercari.solution.util.schema.*;
+import org.apache.avro.generic.GenericData;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.values.Row;
+import org.joda.time.Instant;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Select functions compiled for repeated evaluation on elements of the same input and output data type.
+ * Input fields shared between functions are read once per element, Row input fields are read by position,
+ * and function outputs are held in an array from which Row and GenericRecord outputs are built directly.
+ * Buffers are reused between elements, so an instance must be set up per DoFn instance and not shared between threads.
+ */
+public class SelectPlan implements Serializable {
+
+    private final SelectFunction[] functions;
+    private final String[] outputNames;
+    private final Schema.FieldType[] outputFieldTypes;
+    private final Schema.Field[] inputFields;
+    private final DataType inputType;
+    private final DataType outputType;
+
+    private final SchemaUtil.PrimitiveValueGetter inputGetter;
+    private final SchemaUtil.PrimitiveValueConverter outputConverter;
+
+    private transient Map<String, Object> values;
+    private transient Map<String, Object> current;
+    private transient Object[] outputs;
+
+    private transient Schema inputRowSchema;
+    private transient int[] inputPositions;
+    private transient Object outputSchema;
+    private transient int[] outputPositions;
+
+    private SelectPlan(final List<SelectFunction> selectFunctions,
+                       final DataType inputType,
+                       final DataType outputType) {
+
+        final List<SelectFunction> functions = new ArrayList<>();
+        final Map<String, Schema.Field> inputFields = new LinkedHashMap<>();
+        for(final SelectFunction selectFunction : selectFunctions) {
+            for(final Schema.Field inputField : selectFunction.getInputFields()) {
+                inputFields.putIfAbsent(inputField.getName(), inputField);
+            }
+            if(!selectFunction.ignore()) {
+                functions.add(selectFunction);
+            }
+        }
+
+        this.functions = functions.toArray(new SelectFunction[0]);
+        this.outputNames = new String[this.functions.length];
+        this.outputFieldTypes = new Schema.FieldType[this.functions.length];
+        for(int i=0; i<this.functions.length; i++) {
+            this.outputNames[i] = this.functions[i].getName();
+            this.outputFieldTypes[i] = this.functions[i].getOutputFieldType();
+        }
+        this.inputFields = inputFields.values().toArray(new Schema.Field[0]);
+        this.inputType = inputType;
+        this.outputType = outputType;
+        this.inputGetter = inputType == null ? null : getter(inputType);
+        this.outputConverter = converter(outputType);
+    }
+
+    /**
+     * Creates plan for elements of inputType. inputType can be null if the plan is only applied to primitive value maps.
+     */
+    public static SelectPlan of(
+            final List<SelectFunction> selectFunctions,
+            final DataType inputType,
+            final DataType outputType) {
+
+        return new SelectPlan(selectFunctions, inputType, outputType);
+    }
+
+    public void setup() {
+        for(final SelectFunction function : functions) {
+            function.setup();
+        }
+        this.values = new HashMap<>();
+        this.current = values;
+        this.outputs = new Object[functions.length];
+        this.inputRowSchema = null;
+        this.outputSchema = null;
+    }
+
+    public boolean isEmpty() {
+        return functions.length == 0;
+    }
+
+    public Object[] apply(final UnionValue element, final Instant timestamp) {
+        final DataType type = element.getType();
+        if(type == inputType) {
+            return apply(element.getValue(), timestamp);
+        }
+        final SchemaUtil.PrimitiveValueGetter getter = getter(type);
+        values.clear();
+        for(final Schema.Field inputField : inputFields) {
+            values.put(inputField.getName(), getter.getValue(element.getValue(), inputField.getType(), inputField.getName()));
+        }
+        return apply(values, timestamp);
+    }
+
+    public Object[] apply(final Object element, final Instant timestamp) {
+        values.clear();
+        if(inputType == DataType.ROW) {
+            final Row row = (Row) element;
+            if(row.getSchema() != inputRowSchema) {
+                resolveInputPositions(row.getSchema());
+            }
+            for(int i=0; i<inputFields.length; i++) {
+                final Schema.Field inputField = inputFields[i];
+                final Object primitiveValue;
+                if(inputPositions[i] >= 0) {
+                    primitiveValue = RowSchemaUtil.getAsPrimitive(inputField.getType(), row.getValue(inputPositions[i]));
+                } else {
+                    primitiveValue = RowSchemaUtil.getAsPrimitive(row, inputField.getType(), inputField.getName());
+                }
+                values.put(inputField.getName(), primitiveValue);
+            }
+        } else {
+            if(inputGetter == null) {
+                throw new IllegalArgumentException("SelectPlan not supported input data type: " + inputType);
+            }
+            for(final Schema.Field inputField : inputFields) {
+                values.put(inputField.getName(), inputGetter.getValue(element, inputField.getType(), inputField.getName()));
+            }
+        }
+        return apply(values, timestamp);
+    }
+
+    /**
+     * Evaluates functions on primitiveValues. Output values are also put to primitiveValues as SelectFunction.apply.
+     */
+    public Object[] apply(final Map<String, Object> primitiveValues, final Instant timestamp) {
+        this.current = primitiveValues;
+        for(int i=0; i<functions.length; i++) {
+            final Object primitiveValue = functions[i].apply(primitiveValues, timestamp);
+            final Object value = outputConverter.convertPrimitive(outputFieldTypes[i], primitiveValue);
+            outputs[i] = value;
+            primitiveValues.put(outputNames[i], value);
+        }
+        return outputs;
+    }
+
+    /**
+     * Returns input and output values of the last evaluation. The map is reused by the next evaluation.
+     */
+    public Map<String, Object> getValues() {
+        return current;
+    }
+
+    /**
+     * Creates output element from the last evaluation.
+     * Row and GenericRecord are built from the output array, other types are created by valueCreator.
+     */
+    public <SchemaT, T> T create(final SchemaT schema, final SchemaUtil.ValueCreator<SchemaT, T> valueCreator) {
+        if(schema != outputSchema) {
+            resolveOutputPositions(schema);
+        }
+        if(outputPositions == null) {
+            return valueCreator.create(schema, current);
+        }
+        return switch (outputType) {
+            case ROW -> {
+                final Object[] fieldValues = new Object[outputPositions.length];
+                for(int i=0; i<outputPositions.length; i++) {
+                    fieldValues[i] = outputPositions[i] >= 0 ? outputs[outputPositions[i]] : null;
+                }
+                yield (T) Row.withSchema((Schema) schema).addValues(fieldValues).build();
+            }
+            case AVRO -> {
+                final GenericData.Record record = new GenericData.Record((org.apache.avro.Schema) schema);
+                for(int i=0; i<outputPositions.length; i++) {
+                    record.put(i, outputPositions[i] >= 0 ? outputs[outputPositions[i]] : null);
+                }
+                yield (T) record;
+            }
+            default -> valueCreator.create(schema, current);
+        };
+    }
+
+    private void resolveInputPositions(final Schema schema) {
+        this.inputRowSchema = schema;
+        this.inputPositions = new int[inputFields.length];
+        for(int i=0; i<inputFields.length; i++) {
+            final String name = inputFields[i].getName();
+            inputPositions[i] = schema.hasField(name) ? schema.indexOf(name) : -1;
+        }
+    }
+
+    private void resolveOutputPositions(final Object schema) {
+        this.outputSchema = schema;
+        final List<String> fieldNames;
+        if(outputType == DataType.ROW && schema instanceof Schema rowSchema) {
+            fieldNames = rowSchema.getFieldNames();
+        } else if(outputType == DataType.AVRO && schema instanceof org.apache.avro.Schema avroSchema) {
+            fieldNames = avroSchema.getFields().stream().map(org.apache.avro.Schema.Field::name).toList();
+        } else {
+            this.outputPositions = null;
+            return;
+        }
+        final Map<String, Integer> indexes = new HashMap<>();
+        for(int i=0; i<outputNames.length; i++) {
+            indexes.put(outputNames[i], i);
+        }
+        this.outputPositions = new int[fieldNames.size()];
+        for(int i=0; i<fieldNames.size(); i++) {
+            final Integer index = indexes.get(fieldNames.get(i));
+            if(index == null) {
+                // Fields not produced by select functions such as input values are created from the values map
+                this.outputPositions = null;
+                return;
+            }
+            outputPositions[i] = index;
+        }
+    }
+
+    private static SchemaUtil.PrimitiveValueGetter getter(final DataType dataType) {
+        return switch (dataType) {
+            case ROW -> RowSchemaUtil::getAsPrimitive;
+            case AVRO -> AvroSchemaUtil::getAsPrimitive;
+            case STRUCT -> StructSchemaUtil::getAsPrimitive;
+            case DOCUMENT -> DocumentSchemaUtil::getAsPrimitive;
+            case ENTITY -> EntitySchemaUtil::getAsPrimitive;
+            default -> throw new IllegalArgumentException("SelectFunction not supported input data type: " + dataType);
+        };
+    }
+
+    private static SchemaUtil.PrimitiveValueConverter converter(final DataType dataType) {
+        return switch (dataType) {
+            case ROW -> RowSchemaUtil::convertPrimitive;
+            case AVRO -> AvroSchemaUtil::convertPrimitive;
+            case STRUCT -> StructSchemaUtil::convertPrimitive;
+            case DOCUMENT -> DocumentSchemaUtil::convertPrimitive;
+            case ENTITY -> EntitySchemaUtil::convertPrimitive;
+            default -> throw new IllegalArgumentException("SelectFunction not supported input data type: " + dataType);
+        };
+    }
+
+}
@@ -57,7 +57,7 @@ public class Union {
         @Override
         public PCollection<UnionValue> expand(PCollectionTuple inputs) {
 
-            final Coder<UnionValue> unionCoder = createUnionCoder(inputs, tags);
+            final Coder<UnionValue> unionCoder = createUnionCoder(inputs, tags, dataTypes);
 
             PCollectionList<UnionValue> list = PCollectionList.empty(inputs.getPipeline());
             for(int index=0; index<tags.size(); index++) {
@@ -113,7 +113,7 @@ public class Union {
         @Override
         public PCollection<KV<String, UnionValue>> expand(PCollectionTuple inputs) {
 
-            final Coder<UnionValue> unionCoder = createUnionCoder(inputs, tags);
+            final Coder<UnionValue> unionCoder = createUnionCoder(inputs, tags, dataTypes);
             final KvCoder<String, UnionValue> outputCoder = KvCoder.of(StringUtf8Coder.of(), unionCoder);
 
             PCollectionList<KV<String, UnionValue>> list = PCollectionList.empty(inputs.getPipeline());
@@ -163,6 +163,14 @@ public class Union {
         return UnionCoder.of(coders);
     }
 
+    public static UnionCoder createUnionCoder(final PCollectionTuple inputs, final List<TupleTag<?>> tags, final List<DataType> dataTypes) {
+        final List<Coder<?>> coders = new ArrayList<>();
+        for(final TupleTag<?> tag : tags) {
+            coders.add(inputs.get(tag).getCoder());
+        }
+        return UnionCoder.of(coders, dataTypes);
+    }
+
     public static class ToRecordDoFn extends DoFn<UnionValue, GenericRecord> {
 
         private final String schemaString;
@@ -3,6 +3,7 @@ package com.mercari.solution.util.pipeline.union;
 import com.mercari.solution.module.DataType;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.StructuredCoder;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.util.VarInt;
 import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
 
@@ -11,23 +12,56 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 
 public class UnionCoder extends StructuredCoder<UnionValue> {
 
+    // Header flags for compact mode. header = index << 3 | timestamp kind << 1 | explicit type flag
+    private static final int FLAG_EXPLICIT_TYPE = 1;
+    private static final int TIMESTAMP_MILLIS = 0;
+    private static final int TIMESTAMP_SECONDS = 1;
+    private static final int TIMESTAMP_MIN = 2;
+    private static final int TIMESTAMP_MAX = 3;
+    private static final int HEADER_BITS = 3;
+
+    private static final long MIN_MILLIS = BoundedWindow.TIMESTAMP_MIN_VALUE.getMillis();
+    private static final long MAX_MILLIS = BoundedWindow.TIMESTAMP_MAX_VALUE.getMillis();
+
     private final List<Coder<?>> coders;
+    private final List<DataType> dataTypes;
 
     public UnionCoder(List<Coder<?>> coders) {
+        this(coders, null);
+    }
+
+    UnionCoder(List<Coder<?>> coders, List<DataType> dataTypes) {
         if(coders == null) {
             throw new IllegalStateException("UnionValue coders must not null");
         }
+        if(dataTypes != null && dataTypes.size() != coders.size()) {
+            throw new IllegalStateException("UnionValue dataTypes size: " + dataTypes.size() + " must be same as coders size: " + coders.size());
+        }
         this.coders = coders;
+        this.dataTypes = dataTypes;
     }
 
     public static UnionCoder of(List<Coder<?>> coders) {
         return new UnionCoder(coders);
     }
 
+    /**
+     * Creates compact coder that omits the data type when it is same as the data type of the index,
+     * and encodes index and timestamp kind in one header.
+     * Batch elements with minimum timestamp and second precision timestamps are encoded in fewer bytes.
+     */
+    public static UnionCoder of(List<Coder<?>> coders, List<DataType> dataTypes) {
+        if(dataTypes == null) {
+            throw new IllegalStateException("UnionValue dataTypes must not null");
+        }
+        return new UnionCoder(coders, dataTypes);
+    }
+
     private int getIndex(UnionValue value) {
         if(value == null) {
             throw new IllegalStateException();
@@ -46,6 +80,10 @@ public class UnionCoder extends StructuredCoder<UnionValue> {
         return coders;
     }
 
+    public boolean isCompact() {
+        return dataTypes != null;
+    }
+
     @Override
     public void encode(UnionValue value, OutputStream outStream) throws IOException {
         encode(value, outStream, Context.NESTED);
@@ -55,9 +93,23 @@ public class UnionCoder extends StructuredCoder<UnionValue> {
     @Override
     public void encode(UnionValue value, OutputStream outStream, Context context) throws IOException {
         final int index = getIndex(value);
-        VarInt.encode(index, outStream);
-        VarInt.encode(value.getType().getId(), outStream);
-        VarInt.encode(value.getEpochMillis(), outStream);
+        if(dataTypes == null) {
+            VarInt.encode(index, outStream);
+            VarInt.encode(value.getType().getId(), outStream);
+            VarInt.encode(value.getEpochMillis(), outStream);
+        } else {
+            final long epochMillis = value.getEpochMillis();
+            final boolean explicitType = value.getType() != dataTypes.get(index);
+            final int timestampKind = timestampKind(epochMillis);
+            VarInt.encode((long) index << HEADER_BITS | timestampKind << 1 | (explicitType ? FLAG_EXPLICIT_TYPE : 0), outStream);
+            if(explicitType) {
+                VarInt.encode(value.getType().getId(), outStream);
+            }
+            switch (timestampKind) {
+                case TIMESTAMP_MILLIS -> VarInt.encode(zigzag(epochMillis), outStream);
+                case TIMESTAMP_SECONDS -> VarInt.encode(zigzag(epochMillis / 1000L), outStream);
+            }
+        }
 
         final Coder<Object> coder = (Coder<Object>) coders.get(index);
         coder.encode(value.getValue(), outStream, context);
@@ -70,10 +122,28 @@ public class UnionCoder extends StructuredCoder<UnionValue> {
 
     @Override
     public UnionValue decode(InputStream inStream, Context context) throws  IOException {
-        final int index = VarInt.decodeInt(inStream);
-        final int dataTypeId = VarInt.decodeInt(inStream);
-        final DataType dataType = DataType.of(dataTypeId);
-        final long epochMillis = VarInt.decodeLong(inStream);
+        final int index;
+        final DataType dataType;
+        final long epochMillis;
+        if(dataTypes == null) {
+            index = VarInt.decodeInt(inStream);
+            dataType = DataType.of(VarInt.decodeInt(inStream));
+            epochMillis = VarInt.decodeLong(inStream);
+        } else {
+            final long header = VarInt.decodeLong(inStream);
+            index = (int) (header >>> HEADER_BITS);
+            if((header & FLAG_EXPLICIT_TYPE) != 0) {
+                dataType = DataType.of(VarInt.decodeInt(inStream));
+            } else {
+                dataType = dataTypes.get(index);
+            }
+            epochMillis = switch ((int) (header >>> 1) & 0b11) {
+                case TIMESTAMP_MILLIS -> unzigzag(VarInt.decodeLong(inStream));
+                case TIMESTAMP_SECONDS -> unzigzag(VarInt.decodeLong(inStream)) * 1000L;
+                case TIMESTAMP_MIN -> MIN_MILLIS;
+                default -> MAX_MILLIS;
+            };
+        }
         final Object value = coders.get(index).decode(inStream, context);
         return new UnionValue(index, dataType, epochMillis, value);
     }
@@ -88,10 +158,16 @@ public class UnionCoder extends StructuredCoder<UnionValue> {
         return coders;
     }
 
+    @Override
+    public boolean isRegisterByteSizeObserverCheap(UnionValue value) {
+        final Coder<Object> coder = (Coder<Object>) coders.get(getIndex(value));
+        return coder.isRegisterByteSizeObserverCheap(value.getValue());
+    }
+
     @Override
     public void registerByteSizeObserver(UnionValue value, ElementByteSizeObserver observer) throws Exception {
         final int index = getIndex(value);
-        observer.update(VarInt.getLength(index));
+        observer.update(getHeaderLength(index, value));
         final Coder<Object> coder = (Coder<Object>) coders.get(index);
         coder.registerByteSizeObserver(value.getValue(), observer);
     }
@@ -100,4 +176,55 @@ public class UnionCoder extends StructuredCoder<UnionValue> {
     public void verifyDeterministic() throws NonDeterministicException {
         verifyDeterministic(this, "UnionCoder is deterministic if all coders are deterministic");
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if(!super.equals(o)) {
+            return false;
+        }
+        return Objects.equals(dataTypes, ((UnionCoder) o).dataTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Objects.hashCode(dataTypes);
+    }
+
+    private int getHeaderLength(final int index, final UnionValue value) {
+        final long epochMillis = value.getEpochMillis();
+        if(dataTypes == null) {
+            return VarInt.getLength(index) + VarInt.getLength(value.getType().getId()) + VarInt.getLength(epochMillis);
+        }
+        final boolean explicitType = value.getType() != dataTypes.get(index);
+        int length = VarInt.getLength((long) index << HEADER_BITS);
+        if(explicitType) {
+            length += VarInt.getLength(value.getType().getId());
+        }
+        switch (timestampKind(epochMillis)) {
+            case TIMESTAMP_MILLIS -> length += VarInt.getLength(zigzag(epochMillis));
+            case TIMESTAMP_SECONDS -> length += VarInt.getLength(zigzag(epochMillis / 1000L));
+        }
+        return length;
+    }
+
+    private static int timestampKind(final long epochMillis) {
+        if(epochMillis <= MIN_MILLIS) {
+            return epochMillis == MIN_MILLIS ? TIMESTAMP_MIN : TIMESTAMP_MILLIS;
+        } else if(epochMillis >= MAX_MILLIS) {
+            return epochMillis == MAX_MILLIS ? TIMESTAMP_MAX : TIMESTAMP_MILLIS;
+        } else if(epochMillis % 1000L == 0) {
+            return TIMESTAMP_SECONDS;
+        } else {
+            return TIMESTAMP_MILLIS;
+        }
+    }
+
+    private static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
 }
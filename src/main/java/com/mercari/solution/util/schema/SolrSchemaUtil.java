@@ -866,7 +866,7 @@ public class SolrSchemaUtil {
         types.appendChild(booleanType);
         // bytes
         final Element bytesType = document.createElement("fieldType");
-        bytesType.setAttribute("name", "string");
+        bytesType.setAttribute("name", "binary");
         bytesType.setAttribute("class", "solr.BinaryField");
         bytesType.setAttribute("sortMissingLast", "true");
         types.appendChild(bytesType);
@@ -1,14 +1,19 @@
 package com.mercari.solution.util.sql.udf;
 
+import com.mercari.solution.util.domain.sketch.CountMinTopK;
+import com.mercari.solution.util.domain.sketch.HyperLogLog;
+import com.mercari.solution.util.domain.sketch.KllQuantiles;
+import com.mercari.solution.util.domain.sketch.Sketch;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.CoderRegistry;
 import org.apache.beam.sdk.transforms.Combine;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 public class AggregateFunctions {
 
+    private static final List<Double> QUARTILE_RANKS = List.of(0D, 0.25D, 0.5D, 0.75D, 1D);
+
     public static class ArrayAggStringFn extends Combine.CombineFn<String, List<String>, List<String>> {
 
         @Override
@@ -153,4 +158,149 @@ public class AggregateFunctions {
 
     }
 
+    // Sketch based aggregations hold compact mergeable sketches as accumulator instead of all distinct values
+
+    private static abstract class SketchFn<InputT, AccumT extends Sketch, OutputT> extends Combine.CombineFn<InputT, AccumT, OutputT> {
+
+        @Override
+        public AccumT mergeAccumulators(Iterable<AccumT> accumulators) {
+            AccumT mergedAccumulator = null;
+            for(final AccumT accumulator : accumulators) {
+                if(mergedAccumulator == null) {
+                    mergedAccumulator = accumulator;
+                } else {
+                    mergedAccumulator.merge(accumulator);
+                }
+            }
+            return mergedAccumulator == null ? createAccumulator() : mergedAccumulator;
+        }
+
+        @Override
+        public Coder<AccumT> getAccumulatorCoder(CoderRegistry registry, Coder<InputT> inputCoder) {
+            return Sketch.coder();
+        }
+
+    }
+
+    private static abstract class ApproxCountDistinctFn<InputT> extends SketchFn<InputT, HyperLogLog, Long> {
+
+        @Override
+        public HyperLogLog createAccumulator() {
+            return HyperLogLog.of();
+        }
+
+        @Override
+        public HyperLogLog addInput(HyperLogLog accumulator, InputT input) {
+            accumulator.add(input);
+            return accumulator;
+        }
+
+        @Override
+        public Long extractOutput(final HyperLogLog accumulator) {
+            if (accumulator == null) {
+                return null;
+            }
+            return accumulator.estimate();
+        }
+
+    }
+
+    public static class ApproxCountDistinctStringFn extends ApproxCountDistinctFn<String> {
+
+    }
+
+    public static class ApproxCountDistinctInt64Fn extends ApproxCountDistinctFn<Long> {
+
+    }
+
+    public static class ApproxCountDistinctFloat64Fn extends ApproxCountDistinctFn<Double> {
+
+    }
+
+    private static abstract class ApproxQuantilesFn<InputT extends Number, OutputT> extends SketchFn<InputT, KllQuantiles, OutputT> {
+
+        @Override
+        public KllQuantiles createAccumulator() {
+            return KllQuantiles.of();
+        }
+
+        @Override
+        public KllQuantiles addInput(KllQuantiles accumulator, InputT input) {
+            if(input != null) {
+                accumulator.add(input.doubleValue());
+            }
+            return accumulator;
+        }
+
+    }
+
+    // Returns minimum, quartiles and maximum same as BigQuery APPROX_QUANTILES(x, 4)
+    public static class ApproxQuantilesFloat64Fn extends ApproxQuantilesFn<Double, List<Double>> {
+        @Override
+        public List<Double> extractOutput(final KllQuantiles accumulator) {
+            if (accumulator == null || accumulator.getCount() == 0) {
+                return null;
+            }
+            return accumulator.quantiles(QUARTILE_RANKS);
+        }
+    }
+
+    public static class ApproxQuantilesInt64Fn extends ApproxQuantilesFn<Long, List<Double>> {
+        @Override
+        public List<Double> extractOutput(final KllQuantiles accumulator) {
+            if (accumulator == null || accumulator.getCount() == 0) {
+                return null;
+            }
+            return accumulator.quantiles(QUARTILE_RANKS);
+        }
+    }
+
+    public static class ApproxMedianFloat64Fn extends ApproxQuantilesFn<Double, Double> {
+        @Override
+        public Double extractOutput(final KllQuantiles accumulator) {
+            if (accumulator == null) {
+                return null;
+            }
+            return accumulator.quantile(0.5D);
+        }
+    }
+
+    public static class ApproxMedianInt64Fn extends ApproxQuantilesFn<Long, Double> {
+        @Override
+        public Double extractOutput(final KllQuantiles accumulator) {
+            if (accumulator == null) {
+                return null;
+            }
+            return accumulator.quantile(0.5D);
+        }
+    }
+
+    // Returns most frequent values ordered by approximate count
+    public static class ApproxTopStringFn extends SketchFn<String, CountMinTopK, List<String>> {
+
+        @Override
+        public CountMinTopK createAccumulator() {
+            return CountMinTopK.of();
+        }
+
+        @Override
+        public CountMinTopK addInput(CountMinTopK accumulator, String input) {
+            accumulator.add(input);
+            return accumulator;
+        }
+
+        @Override
+        public List<String> extractOutput(final CountMinTopK accumulator) {
+            final List<String> output = new ArrayList<>();
+            if (accumulator == null) {
+                return output;
+            }
+            for(final Map.Entry<String, Long> entry : accumulator.top()) {
+                output.add(entry.getKey());
+            }
+            return output;
+        }
+
+    }
+
 }
@@ -0,0 +1,102 @@
+package com.mercari.solution.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.mercari.solution.util.Filter;
+import com.mercari.solution.util.schema.RowSchemaUtil;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.values.Row;
+import org.joda.time.Instant;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the condition tree interpreter with the compiled condition.
+ * Run with `mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mercari.solution.benchmark.FilterBenchmark`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+
+    private static final String CONDITION = "{\n" +
+            "  \"or\": [\n" +
+            "    { \"key\": \"category\", \"op\": \"in\", \"value\": [\"c1\", \"c3\", \"c5\", \"c7\", \"c9\", \"c11\"] },\n" +
+            "    {\n" +
+            "      \"and\": [\n" +
+            "        { \"key\": \"price\", \"op\": \">=\", \"value\": 500 },\n" +
+            "        { \"key\": \"createdAt\", \"op\": \">\", \"value\": \"2021-08-21T10:30:45Z\" },\n" +
+            "        { \"key\": \"status\", \"op\": \"not in\", \"value\": [\"deleted\", \"banned\"] },\n" +
+            "        { \"expression\": \"price * rate\", \"op\": \"<\", \"value\": 1000 }\n" +
+            "      ]\n" +
+            "    }\n" +
+            "  ]\n" +
+            "}";
+
+    private List<Row> rows;
+    private Filter.ConditionNode conditionNode;
+    private Filter.CompiledCondition compiledCondition;
+
+    @Setup
+    public void setup() {
+        final Schema schema = Schema.builder()
+                .addStringField("category")
+                .addInt64Field("price")
+                .addDoubleField("rate")
+                .addDateTimeField("createdAt")
+                .addStringField("status")
+                .build();
+
+        final Random random = new Random(0);
+        final String[] statuses = {"active", "deleted", "banned", "pending"};
+        final long base = Instant.parse("2021-01-01T00:00:00Z").getMillis();
+        this.rows = new ArrayList<>();
+        for(int i=0; i<10000; i++) {
+            final Row row = Row.withSchema(schema)
+                    .withFieldValue("category", "c" + random.nextInt(20))
+                    .withFieldValue("price", (long) random.nextInt(2000))
+                    .withFieldValue("rate", random.nextDouble() * 2)
+                    .withFieldValue("createdAt", Instant.ofEpochMilli(base + random.nextInt(365) * 86400_000L))
+                    .withFieldValue("status", statuses[random.nextInt(statuses.length)])
+                    .build();
+            this.rows.add(row);
+        }
+
+        this.conditionNode = Filter.parse(new Gson().fromJson(CONDITION, JsonElement.class));
+        this.compiledCondition = Filter.compile(conditionNode);
+    }
+
+    @Benchmark
+    public void interpreter(final Blackhole blackhole) {
+        for(final Row row : rows) {
+            blackhole.consume(Filter.filter(row, RowSchemaUtil::getValue, conditionNode));
+        }
+    }
+
+    @Benchmark
+    public void compiled(final Blackhole blackhole) {
+        for(final Row row : rows) {
+            blackhole.consume(compiledCondition.test(row, RowSchemaUtil::getValue));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(FilterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
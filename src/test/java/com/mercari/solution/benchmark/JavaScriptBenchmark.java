@@ -0,0 +1,154 @@
+package com.mercari.solution.benchmark;
+
+import com.mercari.solution.util.ScriptUtil;
+import com.mercari.solution.util.converter.RowToMapConverter;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.values.Row;
+import org.joda.time.Instant;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the standard execution of JavaScript transform with the compiled execution mode.
+ * A JSR-223 JavaScript engine (e.g. nashorn-core) must be added to the test classpath.
+ * Run with `mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mercari.solution.benchmark.JavaScriptBenchmark`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JavaScriptBenchmark {
+
+    private static final String SCRIPT = """
+            function price(input) {
+               return input.price * input.rate;
+            }
+            function label(input) {
+               return input.category + ":" + input.price;
+            }
+            """;
+
+    private static final List<String> FUNCTIONS = List.of("price", "label");
+
+    private List<Row> rows;
+    private Invocable standard;
+    private ScriptUtil.ScriptRunner runner;
+
+    @Setup
+    public void setup() throws ScriptException {
+        final Schema.Builder builder = Schema.builder()
+                .addStringField("category")
+                .addInt64Field("price")
+                .addDoubleField("rate")
+                .addDateTimeField("createdAt");
+        for(int i=0; i<16; i++) {
+            builder.addStringField("text" + i);
+        }
+        final Schema schema = builder.build();
+
+        final Random random = new Random(0);
+        final long base = Instant.parse("2021-01-01T00:00:00Z").getMillis();
+        this.rows = new ArrayList<>();
+        for(int i=0; i<1000; i++) {
+            final Row.FieldValueBuilder rowBuilder = Row.withSchema(schema)
+                    .withFieldValue("category", "c" + random.nextInt(20))
+                    .withFieldValue("price", (long) random.nextInt(2000))
+                    .withFieldValue("rate", random.nextDouble() * 2)
+                    .withFieldValue("createdAt", Instant.ofEpochMilli(base + random.nextInt(365) * 86400_000L));
+            for(int t=0; t<16; t++) {
+                rowBuilder.withFieldValue("text" + t, "value" + random.nextInt(100));
+            }
+            this.rows.add(rowBuilder.build());
+        }
+
+        final ScriptEngine engine = ScriptUtil.createEngine(ScriptUtil.ENGINE_NAME_JAVASCRIPT);
+        engine.eval(SCRIPT);
+        this.standard = (Invocable) engine;
+        this.runner = ScriptUtil.borrow(ScriptUtil.ENGINE_NAME_JAVASCRIPT, SCRIPT, 1);
+    }
+
+    @TearDown
+    public void teardown() {
+        ScriptUtil.release(runner);
+    }
+
+    @Benchmark
+    public void standard(final Blackhole blackhole) throws ScriptException, NoSuchMethodException {
+        for(final Row row : rows) {
+            final Map<String, Object> input = RowToMapConverter.convert(row);
+            for(final String function : FUNCTIONS) {
+                final Object output = standard.invokeFunction(function, input);
+                input.put(function, output);
+            }
+            blackhole.consume(input);
+        }
+    }
+
+    @Benchmark
+    public void compiled(final Blackhole blackhole) throws ScriptException, NoSuchMethodException {
+        for(final Row row : rows) {
+            final Map<String, Object> input = new ScriptUtil.FieldAccessorMap<>(row, RowToMapConverter::getValue, RowToMapConverter::convert);
+            for(final String function : FUNCTIONS) {
+                final Object output = runner.invoke(function, input);
+                input.put(function, output);
+            }
+            blackhole.consume(input);
+        }
+    }
+
+    @Benchmark
+    public void compiledBuffered(final Blackhole blackhole) throws ScriptException, NoSuchMethodException {
+        final List<Map<String, Object>> inputs = new ArrayList<>(rows.size());
+        for(final Row row : rows) {
+            inputs.add(new ScriptUtil.FieldAccessorMap<>(row, RowToMapConverter::getValue, RowToMapConverter::convert));
+        }
+        for(final String function : FUNCTIONS) {
+            for(final Map<String, Object> input : inputs) {
+                final Object output = runner.invoke(function, input);
+                input.put(function, output);
+            }
+        }
+        blackhole.consume(inputs);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void setupStandard(final Blackhole blackhole) throws ScriptException {
+        final ScriptEngine engine = ScriptUtil.createEngine(ScriptUtil.ENGINE_NAME_JAVASCRIPT);
+        engine.eval(SCRIPT);
+        blackhole.consume(engine);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void setupPooled(final Blackhole blackhole) throws ScriptException {
+        final ScriptUtil.ScriptRunner pooled = ScriptUtil.borrow(ScriptUtil.ENGINE_NAME_JAVASCRIPT, SCRIPT, 2);
+        blackhole.consume(pooled);
+        ScriptUtil.release(pooled);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(JavaScriptBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.mercari.solution.benchmark;
+
+import com.mercari.solution.util.converter.CsvToRecordConverter;
+import com.mercari.solution.util.converter.JsonToRecordConverter;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares per line csv/json conversion with the reusable decoders over synthetic files.
+ * The file size is controlled by the lines parameter. For multi-GB files, run with e.g. `-p lines=20000000`.
+ * Run with `mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mercari.solution.benchmark.TextDecodeBenchmark`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class TextDecodeBenchmark {
+
+    private static final Schema SCHEMA = SchemaBuilder.record("root").fields()
+            .requiredString("id")
+            .optionalString("name")
+            .optionalLong("count")
+            .optionalDouble("price")
+            .optionalBoolean("flag")
+            .name("createdAt").type().optional().type(org.apache.avro.LogicalTypes.timestampMicros()
+                    .addToSchema(Schema.create(Schema.Type.LONG)))
+            .optionalString("description")
+            .endRecord();
+
+    @Param({"200000"})
+    public int lines;
+
+    private Path csvFile;
+    private Path jsonFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.csvFile = Files.createTempFile("benchmark", ".csv");
+        this.jsonFile = Files.createTempFile("benchmark", ".json");
+        final Random random = new Random(0);
+        try(final BufferedWriter csv = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8);
+            final BufferedWriter json = Files.newBufferedWriter(jsonFile, StandardCharsets.UTF_8)) {
+            for(int i=0; i<lines; i++) {
+                final String id = "id" + i;
+                final String name = "name" + random.nextInt(10000);
+                final long count = random.nextInt(100000);
+                final double price = random.nextDouble() * 1000;
+                final boolean flag = random.nextBoolean();
+                final String createdAt = "2023-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10) + "T12:34:56Z";
+                final String description = "some description, with comma " + random.nextInt();
+                csv.write(id + "," + name + "," + count + "," + price + "," + flag + "," + createdAt + ",\"" + description + "\"");
+                csv.newLine();
+                json.write("{\"id\":\"" + id + "\",\"name\":\"" + name + "\",\"count\":" + count + ",\"price\":" + price
+                        + ",\"flag\":" + flag + ",\"createdAt\":\"" + createdAt + "\",\"description\":\"" + description
+                        + "\",\"unused\":{\"a\":[1,2,3]}}");
+                json.newLine();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        Files.deleteIfExists(csvFile);
+        Files.deleteIfExists(jsonFile);
+    }
+
+    @Benchmark
+    public void csvPerLine(final Blackhole blackhole) throws IOException {
+        try(final BufferedReader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                blackhole.consume(CsvToRecordConverter.convert(SCHEMA, line));
+            }
+        }
+    }
+
+    @Benchmark
+    public void csvDecoder(final Blackhole blackhole) throws IOException {
+        final CsvToRecordConverter.Decoder decoder = new CsvToRecordConverter.Decoder(SCHEMA);
+        try(final BufferedReader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                blackhole.consume(decoder.decode(line));
+            }
+        }
+    }
+
+    @Benchmark
+    public void jsonPerLine(final Blackhole blackhole) throws IOException {
+        try(final BufferedReader reader = Files.newBufferedReader(jsonFile, StandardCharsets.UTF_8)) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                blackhole.consume(JsonToRecordConverter.convert(SCHEMA, line));
+            }
+        }
+    }
+
+    @Benchmark
+    public void jsonDecoder(final Blackhole blackhole) throws IOException {
+        final JsonToRecordConverter.Decoder decoder = new JsonToRecordConverter.Decoder(SCHEMA);
+        try(final BufferedReader reader = Files.newBufferedReader(jsonFile, StandardCharsets.UTF_8)) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                blackhole.consume(decoder.decode(line));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(TextDecodeBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
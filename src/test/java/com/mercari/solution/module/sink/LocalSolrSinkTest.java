@@ -0,0 +1,100 @@
+package com.mercari.solution.module.sink;
+
+import com.google.gson.Gson;
+import com.mercari.solution.config.SinkConfig;
+import com.mercari.solution.module.DataType;
+import com.mercari.solution.module.FCollection;
+import com.mercari.solution.util.domain.search.ZipFileUtil;
+import org.apache.beam.sdk.coders.RowCoder;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.Row;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class LocalSolrSinkTest {
+
+    @Rule
+    public final transient TestPipeline pipeline = TestPipeline.create();
+
+    @Rule
+    public final transient TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testShardedIndexMerge() throws Exception {
+        final Schema schema = Schema.builder()
+                .addField("id", Schema.FieldType.STRING)
+                .addField("name", Schema.FieldType.STRING)
+                .addField("count", Schema.FieldType.INT64)
+                .build();
+        final List<Row> rows = new ArrayList<>();
+        for(int i=0; i<100; i++) {
+            rows.add(Row.withSchema(schema)
+                    .withFieldValue("id", "id" + i)
+                    .withFieldValue("name", "name" + i)
+                    .withFieldValue("count", (long) i)
+                    .build());
+        }
+        final PCollection<Row> inputRows = pipeline
+                .apply("CreateDummy", Create.of(rows).withCoder(RowCoder.of(schema)));
+        final FCollection<Row> fCollection = FCollection.of("rowInput", inputRows, DataType.ROW, schema);
+
+        final String output = folder.getRoot().getAbsolutePath() + "/output/index.zip";
+        final String tempDirectory = folder.getRoot().getAbsolutePath() + "/temp/";
+        final String json = String.format("""
+                {
+                  "name": "solr",
+                  "module": "localSolr",
+                  "inputs": ["rowInput"],
+                  "parameters": {
+                    "output": "%s",
+                    "tempDirectory": "%s",
+                    "shards": 3,
+                    "maxSegments": 1,
+                    "cores": [{ "name": "core1", "input": "rowInput" }]
+                  }
+                }
+                """, output, tempDirectory);
+        final SinkConfig config = new Gson().fromJson(json, SinkConfig.class);
+        new LocalSolrSink().expand(List.of(fCollection), config, null);
+
+        pipeline.run();
+
+        // partial indexes are written for each shard
+        try(final Stream<Path> paths = Files.list(Path.of(tempDirectory + "solr-shards"))) {
+            Assert.assertEquals(3, paths.filter(p -> p.getFileName().toString().endsWith(".zip")).count());
+        }
+
+        final File merged = new File(output);
+        Assert.assertTrue(merged.exists());
+        final String unzipped = folder.newFolder("unzipped").getAbsolutePath() + "/";
+        try(final InputStream is = Files.newInputStream(merged.toPath())) {
+            ZipFileUtil.unzip(is, unzipped);
+        }
+        // partial indexes downloaded for merge are not included in the merged index file
+        Assert.assertFalse(new File(unzipped + "_shards").exists());
+
+        try(final FSDirectory directory = FSDirectory.open(Path.of(unzipped, "core1", "data", "index"));
+            final DirectoryReader reader = DirectoryReader.open(directory)) {
+
+            Assert.assertEquals(100, reader.numDocs());
+            // force merged into maxSegments
+            Assert.assertEquals(1, reader.leaves().size());
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.mercari.solution.module.sink;
+
+import org.apache.avro.Schema;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.values.PCollection;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StorageSinkTest {
+
+    @Rule
+    public final transient TestPipeline pipeline = TestPipeline.create();
+
+    @Test
+    public void testJsonSchemaDetectorSketch() {
+        final List<String> lines = new ArrayList<>();
+        for(int i=0; i<20; i++) {
+            lines.add(String.format("{\"id\": %d, \"name\": \"name%d\", \"score\": %s, \"createdAt\": \"2023-01-01T00:00:00Z\", "
+                    + "\"child\": {\"flag\": %s, \"tags\": [\"a\", \"b\"]}, \"attrs\": {\"key%d\": \"v\"}}",
+                    i, i, i % 2 == 0 ? "1" : "1.5", i % 3 == 0 ? "true" : "null", i));
+        }
+
+        final PCollection<String> inputs = pipeline.apply("CreateLines", Create.of(lines));
+        final PCollection<String> columnSchemas = inputs
+                .apply("DetectByColumn", new StorageSink.JsonSchemaDetector(0.5));
+        final PCollection<String> sketchSchemas = inputs
+                .apply("DetectBySketch", new StorageSink.JsonSchemaDetector(0.5, StorageSink.JsonSchemaDetector.DetectMode.sketch, 1.0));
+
+        PAssert.that(columnSchemas).satisfies(schemas -> {
+            final Schema schema = parseSchemas(schemas);
+            Assert.assertEquals(Schema.Type.LONG, nonNull(schema.getField("id").schema()).getType());
+            Assert.assertEquals(Schema.Type.DOUBLE, nonNull(schema.getField("score").schema()).getType());
+            Assert.assertEquals(Schema.Type.STRING, nonNull(schema.getField("name").schema()).getType());
+            Assert.assertEquals(Schema.Type.MAP, nonNull(schema.getField("attrs").schema()).getType());
+            Assert.assertEquals(Schema.Type.RECORD, schema.getField("child").schema().getType());
+            return null;
+        });
+        PAssert.that(sketchSchemas).satisfies(schemas -> {
+            final Schema schema = parseSchemas(schemas);
+            Assert.assertEquals(Schema.Type.LONG, nonNull(schema.getField("id").schema()).getType());
+            Assert.assertEquals(Schema.Type.DOUBLE, nonNull(schema.getField("score").schema()).getType());
+            Assert.assertEquals(Schema.Type.STRING, nonNull(schema.getField("name").schema()).getType());
+            Assert.assertEquals(Schema.Type.MAP, nonNull(schema.getField("attrs").schema()).getType());
+            Assert.assertEquals(Schema.Type.RECORD, schema.getField("child").schema().getType());
+            return null;
+        });
+
+        // sampled sketch detects the same fields
+        final PCollection<String> sampledSchemas = inputs
+                .apply("DetectBySampledSketch", new StorageSink.JsonSchemaDetector(0.5, StorageSink.JsonSchemaDetector.DetectMode.sketch, 0.999));
+        PAssert.that(sampledSchemas).satisfies(schemas -> {
+            final Schema schema = parseSchemas(schemas);
+            Assert.assertNotNull(schema.getField("id"));
+            Assert.assertNotNull(schema.getField("child"));
+            return null;
+        });
+
+        pipeline.run();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJsonSchemaDetectorInvalidSamplingRate() {
+        new StorageSink.JsonSchemaDetector(0.5, StorageSink.JsonSchemaDetector.DetectMode.column, 0.5);
+    }
+
+    private static Schema parseSchemas(final Iterable<String> schemas) {
+        final List<String> list = new ArrayList<>();
+        schemas.forEach(list::add);
+        Assert.assertEquals(1, list.size());
+        return new Schema.Parser().parse(list.get(0));
+    }
+
+    private static Schema nonNull(final Schema schema) {
+        if(schema.getType() != Schema.Type.UNION) {
+            return schema;
+        }
+        return schema.getTypes().stream()
+                .filter(s -> s.getType() != Schema.Type.NULL)
+                .findFirst()
+                .orElseThrow();
+    }
+
+}
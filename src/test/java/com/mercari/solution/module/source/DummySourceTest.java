@@ -0,0 +1,203 @@
+package com.mercari.solution.module.source;
+
+import com.google.cloud.spanner.Struct;
+import com.google.gson.Gson;
+import com.mercari.solution.config.SourceConfig;
+import com.mercari.solution.module.FCollection;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Flatten;
+import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.transforms.Sum;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionList;
+import org.apache.beam.sdk.values.Row;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.*;
+
+public class DummySourceTest {
+
+    @Rule
+    public final transient TestPipeline pipeline = TestPipeline.create();
+
+    private static final String SCHEMA = """
+            "schema": {
+              "fields": [
+                { "name": "id", "type": "int64", "mode": "required" },
+                { "name": "key", "type": "string", "mode": "required" },
+                { "name": "score", "type": "float64" },
+                { "name": "count", "type": "int32" },
+                { "name": "flag", "type": "boolean" },
+                { "name": "date", "type": "date" },
+                { "name": "timestamp", "type": "timestamp" },
+                { "name": "tags", "type": "string", "mode": "repeated" },
+                { "name": "comment", "type": "string", "mode": "nullable" }
+              ]
+            }
+            """;
+
+    private static final String FIELDS = """
+            "fields": [
+              { "name": "id", "distribution": "sequence" },
+              { "name": "key", "distribution": "zipf", "cardinality": 1000, "exponent": 1.2, "prefix": "key", "hotKeys": ["hot"], "hotKeyRate": 0.3 },
+              { "name": "score", "min": 10, "max": 20 },
+              { "name": "count", "min": 0, "max": 5 },
+              { "name": "date", "min": "2024-01-01", "max": "2024-02-01" },
+              { "name": "tags", "cardinality": 3, "prefix": "tag", "arraySize": 2 },
+              { "name": "comment", "nullRate": 1.0 }
+            ]
+            """;
+
+    @Test
+    public void testGeneratorRow() {
+        final PCollection<Row> rows1 = (PCollection<Row>) createSource("dummy1", "row", 42L).getCollection();
+        final PCollection<Row> rows2 = (PCollection<Row>) createSource("dummy2", "row", 42L).getCollection();
+
+        PAssert.that(rows1).satisfies(rows -> {
+            final Set<Long> ids = new HashSet<>();
+            int hot = 0;
+            for(final Row row : rows) {
+                ids.add(row.getInt64("id"));
+                final String key = row.getString("key");
+                if("hot".equals(key)) {
+                    hot++;
+                } else {
+                    Assert.assertTrue(key.startsWith("key"));
+                    Assert.assertTrue(Long.parseLong(key.substring(3)) < 1000);
+                }
+                Assert.assertTrue(row.getDouble("score") >= 10 && row.getDouble("score") < 20);
+                Assert.assertTrue(row.getInt32("count") >= 0 && row.getInt32("count") < 5);
+                Assert.assertEquals(2024, row.getLogicalTypeValue("date", java.time.LocalDate.class).getYear());
+                Assert.assertNotNull(row.getDateTime("timestamp"));
+                Assert.assertEquals(2, row.getArray("tags").size());
+                for(final Object tag : row.getArray("tags")) {
+                    Assert.assertTrue(List.of("tag0", "tag1", "tag2").contains(tag));
+                }
+                Assert.assertNull(row.getString("comment"));
+            }
+            Assert.assertEquals(1000, ids.size());
+            Assert.assertEquals(0L, Collections.min(ids).longValue());
+            Assert.assertEquals(999L, Collections.max(ids).longValue());
+            Assert.assertEquals(300, hot, 60);
+            return null;
+        });
+
+        // same seed generates same records
+        final PCollection<Long> checksum1 = rows1
+                .apply("Checksum1", MapElements.into(TypeDescriptors.longs()).via(r -> (long) r.toString().hashCode()))
+                .apply("Sum1", Sum.longsGlobally());
+        final PCollection<Long> checksum2 = rows2
+                .apply("Checksum2", MapElements.into(TypeDescriptors.longs()).via(r -> (long) r.toString().hashCode()))
+                .apply("Sum2", Sum.longsGlobally());
+        PAssert.that(PCollectionList.of(checksum1).and(checksum2).apply(Flatten.pCollections())).satisfies(checksums -> {
+            final List<Long> list = new ArrayList<>();
+            checksums.forEach(list::add);
+            Assert.assertEquals(2, list.size());
+            Assert.assertEquals(list.get(0), list.get(1));
+            return null;
+        });
+
+        pipeline.run();
+    }
+
+    @Test
+    public void testGeneratorAvroAndStruct() {
+        final PCollection<GenericRecord> records = (PCollection<GenericRecord>) createSource("avro", "avro", 1L).getCollection();
+        final PCollection<Struct> structs = (PCollection<Struct>) createSource("struct", "struct", 1L).getCollection();
+
+        PAssert.that(records).satisfies(rs -> {
+            int count = 0;
+            for(final GenericRecord record : rs) {
+                Assert.assertTrue(record.get("count") instanceof Integer);
+                Assert.assertTrue(record.get("date") instanceof Integer);
+                Assert.assertNull(record.get("comment"));
+                count++;
+            }
+            Assert.assertEquals(1000, count);
+            return null;
+        });
+        PAssert.that(structs).satisfies(ss -> {
+            int count = 0;
+            for(final Struct struct : ss) {
+                Assert.assertEquals(2024, struct.getDate("date").getYear());
+                Assert.assertEquals(2, struct.getStringList("tags").size());
+                Assert.assertTrue(struct.isNull("comment"));
+                count++;
+            }
+            Assert.assertEquals(1000, count);
+            return null;
+        });
+
+        pipeline.run();
+    }
+
+    @Test
+    public void testGeneratorFloatDistributions() {
+        final String json = "{\"name\": \"floats\", \"module\": \"dummy\", " + """
+                "schema": {
+                  "fields": [
+                    { "name": "sequence", "type": "float64", "mode": "required" },
+                    { "name": "sequenceNoCardinality", "type": "float64", "mode": "required" },
+                    { "name": "zipf", "type": "float64", "mode": "required" }
+                  ]
+                },
+                "parameters": {
+                  "mode": "generator",
+                  "sequenceTo": 1000,
+                  "outputType": "row",
+                  "fields": [
+                    { "name": "sequence", "distribution": "sequence", "cardinality": 4, "min": 0, "max": 2 },
+                    { "name": "sequenceNoCardinality", "distribution": "sequence", "min": -1, "max": 1 },
+                    { "name": "zipf", "distribution": "zipf", "cardinality": 10, "exponent": 1.2, "min": 100, "max": 200 }
+                  ]
+                }}
+                """;
+        final SourceConfig config = new Gson().fromJson(json, SourceConfig.class);
+        final PCollection<Row> rows = (PCollection<Row>) new DummySource().expand(pipeline.begin(), config, null, null).get("floats").getCollection();
+
+        PAssert.that(rows).satisfies(rs -> {
+            final Set<Double> sequences = new HashSet<>();
+            final Map<Double, Integer> zipfCounts = new HashMap<>();
+            for(final Row row : rs) {
+                sequences.add(row.getDouble("sequence"));
+
+                final double sequenceNoCardinality = row.getDouble("sequenceNoCardinality");
+                Assert.assertTrue(sequenceNoCardinality >= -1 && sequenceNoCardinality < 1);
+
+                final double zipf = row.getDouble("zipf");
+                Assert.assertTrue(zipf >= 100 && zipf < 200);
+                Assert.assertEquals(0D, zipf % 10, 1e-9);
+                zipfCounts.merge(zipf, 1, Integer::sum);
+            }
+            // cardinality 4 over [0, 2) gives evenly spaced values
+            Assert.assertEquals(Set.of(0D, 0.5D, 1D, 1.5D), sequences);
+            // zipf index 0 is mapped to min and is the most frequent value
+            Assert.assertEquals(Collections.max(zipfCounts.values()), zipfCounts.get(100D));
+            return null;
+        });
+
+        pipeline.run();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGeneratorIllegalField() {
+        final String json = "{\"name\": \"dummy\", \"module\": \"dummy\", " + SCHEMA + ", \"parameters\": {"
+                + "\"mode\": \"generator\", \"sequenceTo\": 10, \"fields\": [{ \"name\": \"missing\" }]}}";
+        final SourceConfig config = new Gson().fromJson(json, SourceConfig.class);
+        new DummySource().expand(pipeline.begin(), config, null, null);
+    }
+
+    private FCollection<?> createSource(final String name, final String outputType, final long seed) {
+        final String json = "{\"name\": \"" + name + "\", \"module\": \"dummy\", " + SCHEMA + ", \"parameters\": {"
+                + "\"mode\": \"generator\", \"seed\": " + seed + ", \"sequenceTo\": 1000, \"outputType\": \"" + outputType + "\", "
+                + FIELDS + "}}";
+        final SourceConfig config = new Gson().fromJson(json, SourceConfig.class);
+        return new DummySource().expand(pipeline.begin(), config, null, null).get(name);
+    }
+
+}
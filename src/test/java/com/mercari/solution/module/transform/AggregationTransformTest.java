@@ -21,7 +21,9 @@ import org.junit.Test;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public class AggregationTransformTest {
 
@@ -855,4 +857,229 @@ public class AggregationTransformTest {
 
     }
 
+    @Test
+    public void testApproxAggregations() {
+        testApproxAggregations("approxAggregation", false);
+        testApproxAggregations("approxAggregationCompact", true);
+        pipeline.run();
+    }
+
+    private void testApproxAggregations(final String name, final boolean compactAccumulator) {
+        final TransformConfig config = new TransformConfig();
+        config.setName(name);
+        config.setModule("aggregation");
+        config.setInputs(Arrays.asList("rowInput"));
+
+        final JsonArray groupFields = new JsonArray();
+        groupFields.add("group");
+
+        final JsonArray fields = new JsonArray();
+        {
+            final JsonObject field = new JsonObject();
+            field.addProperty("name", "distinctUsers");
+            field.addProperty("op", "approx_count_distinct");
+            field.addProperty("field", "user");
+            fields.add(field);
+        }
+        {
+            final JsonObject field = new JsonObject();
+            field.addProperty("name", "quantilesLong");
+            field.addProperty("op", "approx_quantiles");
+            field.addProperty("field", "long");
+            field.addProperty("quantiles", 2);
+            fields.add(field);
+        }
+        {
+            final JsonObject field = new JsonObject();
+            field.addProperty("name", "topItems");
+            field.addProperty("op", "approx_top_count");
+            field.addProperty("field", "item");
+            field.addProperty("size", 2);
+            fields.add(field);
+        }
+        final JsonObject definition = new JsonObject();
+        definition.addProperty("input", "rowInput");
+        definition.add("fields", fields);
+        final JsonArray definitions = new JsonArray();
+        definitions.add(definition);
+
+        final JsonObject parameters = new JsonObject();
+        parameters.add("groupFields", groupFields);
+        parameters.add("aggregations", definitions);
+        parameters.addProperty("compactAccumulator", compactAccumulator);
+        config.setParameters(parameters);
+
+        final Schema inputSchema = Schema.builder()
+                .addField(Schema.Field.of("group", Schema.FieldType.STRING.withNullable(false)))
+                .addField(Schema.Field.of("user", Schema.FieldType.STRING.withNullable(true)))
+                .addField(Schema.Field.of("item", Schema.FieldType.STRING.withNullable(true)))
+                .addField(Schema.Field.of("long", Schema.FieldType.INT64.withNullable(true)))
+                .build();
+
+        // 1000 rows per group, 300 distinct users, long from 0 to 999, item a is most frequent then b
+        final List<Row> rows = new ArrayList<>();
+        for(final String group : List.of("x", "y")) {
+            for(int i=0; i<1000; i++) {
+                final String item = i % 2 == 0 ? "a" : (i % 3 == 0 ? "b" : "c" + i);
+                rows.add(Row.withSchema(inputSchema)
+                        .withFieldValue("group", group)
+                        .withFieldValue("user", "user" + (i % 300))
+                        .withFieldValue("item", item)
+                        .withFieldValue("long", (long) i)
+                        .build());
+            }
+        }
+
+        final PCollection<Row> inputRows = pipeline
+                .apply("Create" + name, Create.of(rows).withCoder(RowCoder.of(inputSchema)));
+        final FCollection<Row> fCollection = FCollection.of("rowInput", inputRows, DataType.ROW, inputSchema);
+
+        final FCollection<?> outputs = AggregationTransform.transform(Arrays.asList(fCollection), config);
+        final PCollection<Row> output = (PCollection<Row>) outputs.getCollection();
+        PAssert.that(output).satisfies(results -> {
+            int count = 0;
+            for(final Row row : results) {
+                Assert.assertEquals(300D, row.getInt64("distinctUsers"), 300 * 0.02);
+
+                final List<Double> quantiles = new ArrayList<>(row.<Double>getArray("quantilesLong"));
+                Assert.assertEquals(3, quantiles.size());
+                Assert.assertEquals(0D, quantiles.get(0), DELTA);
+                Assert.assertEquals(500D, quantiles.get(1), 1000 * 0.02);
+                Assert.assertEquals(999D, quantiles.get(2), DELTA);
+
+                final List<Row> topItems = new ArrayList<>(row.<Row>getArray("topItems"));
+                Assert.assertEquals(2, topItems.size());
+                Assert.assertEquals("a", topItems.get(0).getString("value"));
+                Assert.assertTrue(topItems.get(0).getInt64("count") >= 500L);
+                Assert.assertEquals("b", topItems.get(1).getString("value"));
+                count++;
+            }
+            Assert.assertEquals(2, count);
+            return null;
+        });
+    }
+
+    @Test
+    public void testHotKeyFanout() {
+        // results with hotKeyFanout are same as results without fanout, for both accumulator formats
+        testHotKeyFanout("aggregation", null, false);
+        testHotKeyFanout("aggregationCompact", null, true);
+        testHotKeyFanout("aggregationHotKeyFanout", 4, false);
+        testHotKeyFanout("aggregationHotKeyFanoutCompact", 4, true);
+        pipeline.run();
+    }
+
+    private void testHotKeyFanout(final String name, final Integer hotKeyFanout, final boolean compactAccumulator) {
+        final TransformConfig config = new TransformConfig();
+        config.setName(name);
+        config.setModule("aggregation");
+        config.setInputs(Arrays.asList("rowInput"));
+
+        final JsonArray groupFields = new JsonArray();
+        groupFields.add("group");
+
+        final JsonArray fields = new JsonArray();
+        {
+            final JsonObject field = new JsonObject();
+            field.addProperty("name", "count");
+            field.addProperty("op", "count");
+            fields.add(field);
+        }
+        {
+            final JsonObject field = new JsonObject();
+            field.addProperty("name", "sumLong");
+            field.addProperty("op", "sum");
+            field.addProperty("field", "long");
+            fields.add(field);
+        }
+        {
+            final JsonObject field = new JsonObject();
+            field.addProperty("name", "maxDouble");
+            field.addProperty("op", "max");
+            field.addProperty("field", "double");
+            fields.add(field);
+        }
+        {
+            final JsonObject field = new JsonObject();
+            field.addProperty("name", "avgDouble");
+            field.addProperty("op", "avg");
+            field.addProperty("field", "double");
+            fields.add(field);
+        }
+        {
+            final JsonObject field = new JsonObject();
+            field.addProperty("name", "argmaxLong");
+            field.addProperty("op", "argmax");
+            field.addProperty("comparingField", "long");
+
+            final JsonArray targets = new JsonArray();
+            targets.add("id");
+            field.add("fields", targets);
+            fields.add(field);
+        }
+        final JsonObject definition = new JsonObject();
+        definition.addProperty("input", "rowInput");
+        definition.add("fields", fields);
+        final JsonArray definitions = new JsonArray();
+        definitions.add(definition);
+
+        final JsonObject parameters = new JsonObject();
+        parameters.add("groupFields", groupFields);
+        parameters.add("aggregations", definitions);
+        parameters.addProperty("compactAccumulator", compactAccumulator);
+        if(hotKeyFanout != null) {
+            parameters.addProperty("hotKeyFanout", hotKeyFanout);
+            parameters.addProperty("hotKeyRatio", 0.5);
+        }
+        config.setParameters(parameters);
+
+        final Schema inputSchema = Schema.builder()
+                .addField(Schema.Field.of("id", Schema.FieldType.STRING.withNullable(false)))
+                .addField(Schema.Field.of("group", Schema.FieldType.STRING.withNullable(false)))
+                .addField(Schema.Field.of("long", Schema.FieldType.INT64.withNullable(true)))
+                .addField(Schema.Field.of("double", Schema.FieldType.DOUBLE.withNullable(true)))
+                .build();
+
+        // group hot has 5000 rows and 20 cold groups have 10 rows each
+        final List<Row> rows = new ArrayList<>();
+        for(int i=0; i<5000; i++) {
+            rows.add(createHotKeyRow(inputSchema, "hot", i));
+        }
+        for(int g=0; g<20; g++) {
+            for(int i=0; i<10; i++) {
+                rows.add(createHotKeyRow(inputSchema, "cold" + g, i));
+            }
+        }
+
+        final PCollection<Row> inputRows = pipeline
+                .apply("Create" + name, Create.of(rows).withCoder(RowCoder.of(inputSchema)));
+        final FCollection<Row> fCollection = FCollection.of("rowInput", inputRows, DataType.ROW, inputSchema);
+
+        final FCollection<?> outputs = AggregationTransform.transform(Arrays.asList(fCollection), config);
+        final PCollection<Row> output = (PCollection<Row>) outputs.getCollection();
+        PAssert.that(output).satisfies(results -> {
+            int count = 0;
+            for(final Row row : results) {
+                final long size = "hot".equals(row.getString("group")) ? 5000L : 10L;
+                Assert.assertEquals(size, row.getInt64("count").longValue());
+                Assert.assertEquals(size * (size - 1) / 2, row.getInt64("sumLong").longValue());
+                Assert.assertEquals((size - 1) * 0.5D, row.getDouble("maxDouble"), DELTA);
+                Assert.assertEquals((size - 1) * 0.25D, row.getDouble("avgDouble"), 1e-9);
+                Assert.assertEquals(row.getString("group") + "_" + (size - 1), row.getString("argmaxLong_id"));
+                count++;
+            }
+            Assert.assertEquals(21, count);
+            return null;
+        });
+    }
+
+    private static Row createHotKeyRow(final Schema schema, final String group, final int i) {
+        return Row.withSchema(schema)
+                .withFieldValue("id", group + "_" + i)
+                .withFieldValue("group", group)
+                .withFieldValue("long", (long) i)
+                .withFieldValue("double", i * 0.5D)
+                .build();
+    }
+
 }
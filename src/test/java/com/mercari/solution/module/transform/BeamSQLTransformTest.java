@@ -15,7 +15,9 @@ import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 public class BeamSQLTransformTest {
@@ -43,6 +45,11 @@ public class BeamSQLTransformTest {
         testUDAFs("calcite");
     }
 
+    @Test
+    public void testSketchUDAFs() {
+        testSketchUDAFs("calcite");
+    }
+
     private void testMathUDFs(final String planner) {
         final TransformConfig configBeamSql = new TransformConfig();
         configBeamSql.setName("beamsqlTestMathUDFs");
@@ -308,4 +315,56 @@ public class BeamSQLTransformTest {
         pipeline.run();
     }
 
+    private void testSketchUDAFs(final String planner) {
+        final TransformConfig configBeamSql = new TransformConfig();
+        configBeamSql.setName("beamsqlTestSketchUDAFs");
+        configBeamSql.setModule("beamsql");
+        configBeamSql.setInputs(Arrays.asList("rowInput"));
+
+        final JsonObject beamsqlParameters = new JsonObject();
+        beamsqlParameters.addProperty("sql", "SELECT stringField, MDT_APPROX_COUNT_DISTINCT_STRING(stringFieldA) AS acds, MDT_APPROX_COUNT_DISTINCT_INT64(longFieldA) AS acdl, MDT_APPROX_QUANTILES_INT64(longFieldA) AS aql, MDT_APPROX_MEDIAN_FLOAT64(doubleFieldA) AS amd, MDT_APPROX_TOP_STRING(stringFieldA) AS ats FROM rowInput GROUP BY stringField");
+        beamsqlParameters.addProperty("planner", planner);
+        configBeamSql.setParameters(beamsqlParameters);
+
+        final Schema schema = Schema.builder()
+                .addField("stringField", Schema.FieldType.STRING.withNullable(true))
+                .addField("stringFieldA", Schema.FieldType.STRING.withNullable(true))
+                .addField("longFieldA", Schema.FieldType.INT64.withNullable(true))
+                .addField("doubleFieldA", Schema.FieldType.DOUBLE.withNullable(true))
+                .build();
+
+        final List<Row> rows = new ArrayList<>();
+        for(int i=0; i<101; i++) {
+            rows.add(Row.withSchema(schema)
+                    .withFieldValue("stringField", "a")
+                    .withFieldValue("stringFieldA", i % 2 == 0 ? "x" : "y" + (i % 10))
+                    .withFieldValue("longFieldA", (long) i)
+                    .withFieldValue("doubleFieldA", i % 5 == 0 ? null : (double) i)
+                    .build());
+        }
+
+        final PCollection<Row> inputRows = pipeline
+                .apply("CreateDummy", Create.of(rows))
+                .setRowSchema(schema);
+        final FCollection<Row> fCollection = FCollection.of("rowInput", inputRows, DataType.ROW, schema);
+        final FCollection<Row> results = BeamSQLTransform.transform(Arrays.asList(fCollection), configBeamSql);
+
+        PAssert.that(results.getCollection()).satisfies(outputs -> {
+            int count = 0;
+            for (final Row row : outputs) {
+                count++;
+                Assert.assertEquals("a", row.getString("stringField"));
+                Assert.assertEquals(Long.valueOf(6), row.getInt64("acds"));
+                Assert.assertEquals(Long.valueOf(101), row.getInt64("acdl"));
+                Assert.assertEquals(Arrays.asList(0D, 25D, 50D, 75D, 100D), new ArrayList<>(row.getArray("aql")));
+                Assert.assertEquals(50D, row.getDouble("amd"), 2D);
+                Assert.assertEquals("x", row.getArray("ats").iterator().next());
+            }
+            Assert.assertEquals(1, count);
+            return null;
+        });
+
+        pipeline.run();
+    }
+
 }
@@ -0,0 +1,95 @@
+package com.mercari.solution.module.transform;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.mercari.solution.config.TransformConfig;
+import com.mercari.solution.module.DataType;
+import com.mercari.solution.module.FCollection;
+import org.apache.beam.sdk.coders.RowCoder;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.Row;
+import org.apache.beam.sdk.values.TimestampedValue;
+import org.joda.time.Instant;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.*;
+
+public class BufferTransformTest {
+
+    @Rule
+    public final transient TestPipeline pipeline = TestPipeline.create();
+
+    @Test
+    public void testStateTypes() {
+        final Schema schema = Schema.builder()
+                .addStringField("key")
+                .addInt64Field("value")
+                .build();
+
+        final List<TimestampedValue<Row>> inputs = new ArrayList<>();
+        for(int i=0; i<10; i++) {
+            final Row row = Row.withSchema(schema)
+                    .withFieldValue("key", i % 2 == 0 ? "a" : "b")
+                    .withFieldValue("value", (long) i)
+                    .build();
+            inputs.add(TimestampedValue.of(row, Instant.ofEpochSecond(i)));
+        }
+        final PCollection<Row> input = pipeline
+                .apply("CreateInputs", Create.timestamped(inputs).withCoder(RowCoder.of(schema)));
+        final FCollection<Row> fCollection = FCollection.of("rowInput", input, DataType.ROW, schema);
+
+        for(final String stateType : List.of("value", "orderedList", "bag")) {
+            for(final boolean ascending : List.of(true, false)) {
+                final TransformConfig config = new TransformConfig();
+                config.setName("buffer_" + stateType + "_" + ascending);
+                config.setModule("buffer");
+                config.setInputs(List.of("rowInput"));
+
+                final JsonArray keyFields = new JsonArray();
+                keyFields.add("key");
+                final JsonArray bufferFields = new JsonArray();
+                bufferFields.add("value");
+
+                final JsonObject parameters = new JsonObject();
+                parameters.addProperty("type", "arrays");
+                parameters.addProperty("size", 2);
+                parameters.addProperty("stateType", stateType);
+                parameters.addProperty("ascending", ascending);
+                parameters.add("keyFields", keyFields);
+                parameters.add("bufferFields", bufferFields);
+                config.setParameters(parameters);
+
+                final Map<String, FCollection<?>> outputs = new BufferTransform().expand(List.of(fCollection), config);
+                final PCollection<Row> outputRows = (PCollection<Row>) outputs.get(config.getName()).getCollection();
+
+                PAssert.that(outputRows).satisfies(rows -> {
+                    final Map<String, List<Long>> buffers = new HashMap<>();
+                    for(final Row row : rows) {
+                        final List<Long> values = new ArrayList<>(row.getArray("value"));
+                        if(!ascending) {
+                            Collections.reverse(values);
+                        }
+                        buffers.put(row.getString("key") + values.get(values.size() - 1), values);
+                    }
+                    Assert.assertEquals(10, buffers.size());
+                    Assert.assertEquals(List.of(0L), buffers.get("a0"));
+                    Assert.assertEquals(List.of(0L, 2L), buffers.get("a2"));
+                    Assert.assertEquals(List.of(0L, 2L, 4L), buffers.get("a4"));
+                    Assert.assertEquals(List.of(2L, 4L, 6L), buffers.get("a6"));
+                    Assert.assertEquals(List.of(4L, 6L, 8L), buffers.get("a8"));
+                    Assert.assertEquals(List.of(5L, 7L, 9L), buffers.get("b9"));
+                    return null;
+                });
+            }
+        }
+
+        pipeline.run();
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.mercari.solution.module.transform;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.mercari.solution.config.TransformConfig;
+import com.mercari.solution.module.DataType;
+import com.mercari.solution.module.FCollection;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.Row;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HttpTransformTest {
+
+    private static final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+
+    @Rule
+    public final transient TestPipeline pipeline = TestPipeline.create();
+
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        requestCounts.clear();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/items/", exchange -> {
+            final String id = exchange.getRequestURI().getPath().replaceFirst("/items/", "");
+            requestCounts.computeIfAbsent(id, k -> new AtomicInteger()).incrementAndGet();
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            final int status = id.startsWith("missing") ? 404 : 200;
+            final byte[] body = ("{\"id\":\"" + id + "\",\"price\":" + id.length() + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try(final OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testAsync() {
+        final String endpoint = "http://localhost:" + server.getAddress().getPort() + "/items/${id}";
+        final JsonObject parameters = new Gson().fromJson("""
+                {
+                  "async": true,
+                  "outputType": "ROW",
+                  "request": {
+                    "endpoint": "%s",
+                    "method": "get",
+                    "maxInFlight": 4,
+                    "cacheSize": 100,
+                    "cacheTtlSecond": 60
+                  },
+                  "response": {
+                    "format": "json"
+                  }
+                }
+                """.formatted(endpoint), JsonObject.class);
+
+        final TransformConfig config = new TransformConfig();
+        config.setName("httpAsync");
+        config.setModule("http");
+        config.setInputs(List.of("rowInput"));
+        config.setParameters(parameters);
+
+        final Schema inputSchema = Schema.builder()
+                .addField("id", Schema.FieldType.STRING)
+                .build();
+        final List<Row> inputRows = new ArrayList<>();
+        for(int i=0; i<30; i++) {
+            inputRows.add(Row.withSchema(inputSchema).withFieldValue("id", "item" + (i % 3)).build());
+        }
+        inputRows.add(Row.withSchema(inputSchema).withFieldValue("id", "missing").build());
+
+        final PCollection<Row> inputs = pipeline.apply("CreateDummy", Create.of(inputRows).withRowSchema(inputSchema));
+        final FCollection<Row> fCollection = FCollection.of("rowInput", inputs, DataType.ROW, inputSchema);
+
+        final Map<String, FCollection<?>> outputs = HttpTransform.transform(List.of(fCollection), config);
+        final PCollection<Row> outputRows = (PCollection<Row>) outputs.get("httpAsync").getCollection();
+        final PCollection<Row> failureRows = (PCollection<Row>) outputs.get("httpAsync.failures").getCollection();
+
+        PAssert.that(outputRows).satisfies(rows -> {
+            final Map<String, Integer> counts = new HashMap<>();
+            for(final Row row : rows) {
+                Assert.assertEquals(200, (int) row.getInt32("statusCode"));
+                final JsonObject body = new Gson().fromJson(row.getString("body"), JsonObject.class);
+                counts.merge(body.get("id").getAsString(), 1, Integer::sum);
+            }
+            Assert.assertEquals(3, counts.size());
+            Assert.assertEquals(10, (int) counts.get("item0"));
+            Assert.assertEquals(10, (int) counts.get("item1"));
+            Assert.assertEquals(10, (int) counts.get("item2"));
+            return null;
+        });
+        PAssert.that(failureRows).satisfies(rows -> {
+            int count = 0;
+            for(final Row row : rows) {
+                Assert.assertTrue(row.getString("message").contains("404"));
+                Assert.assertTrue(row.getString("request").contains("missing"));
+                count++;
+            }
+            Assert.assertEquals(1, count);
+            return null;
+        });
+
+        pipeline.run();
+
+        // identical requests are coalesced or served from cache
+        for(final String id : List.of("item0", "item1", "item2")) {
+            Assert.assertTrue(requestCounts.get(id).get() < 10);
+        }
+    }
+
+    @Test
+    public void testResponseCache() {
+        final HttpTransform.Transform.ResponseCache cache = new HttpTransform.Transform.ResponseCache(2, 60000L);
+        Assert.assertNull(cache.get("a"));
+        cache.put("a", null);
+        cache.put("b", null);
+        cache.put("c", null);
+        Assert.assertEquals(2, cache.size());
+
+        final HttpTransform.Transform.ResponseCache expired = new HttpTransform.Transform.ResponseCache(2, -1L);
+        expired.put("a", null);
+        Assert.assertNull(expired.get("a"));
+        Assert.assertEquals(0, expired.size());
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.mercari.solution.module.transform;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.protobuf.CodedOutputStream;
+import com.mercari.solution.config.TransformConfig;
+import com.mercari.solution.module.DataType;
+import com.mercari.solution.module.FCollection;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.beam.sdk.extensions.avro.coders.AvroCoder;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.values.PCollection;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ONNXTransformTest {
+
+    @Rule
+    public final transient TestPipeline pipeline = TestPipeline.create();
+
+    @Rule
+    public final transient TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMicroBatchOutputEqualsPerElementOutput() throws IOException {
+        final File model = folder.newFile("double.onnx");
+        Files.write(model.toPath(), createDoubleModel());
+
+        final Schema schema = SchemaBuilder.record("input").fields()
+                .requiredLong("id")
+                .name("x").type().array().items().floatType().noDefault()
+                .endRecord();
+        final List<GenericRecord> records = new ArrayList<>();
+        final Map<Long, Float> expected = new HashMap<>();
+        for(long id=0; id<23; id++) {
+            final float x = id * 0.5F;
+            records.add(new GenericRecordBuilder(schema).set("id", id).set("x", List.of(x)).build());
+            expected.put(id, x * 2);
+        }
+
+        final PCollection<GenericRecord> inputRecords = pipeline
+                .apply("CreateDummy", Create.of(records).withCoder(AvroCoder.of(schema)));
+        final FCollection<GenericRecord> fCollection = FCollection.of("avroInput", inputRecords, DataType.AVRO, schema);
+
+        // bufferSize 1 runs inference per element, bufferSize 5 runs micro-batches with a partial batch left over
+        for(final int bufferSize : List.of(1, 5)) {
+            final TransformConfig config = new TransformConfig();
+            config.setName("onnx" + bufferSize);
+            config.setModule("onnx");
+            config.setInputs(List.of("avroInput"));
+
+            final JsonObject modelParameter = new JsonObject();
+            modelParameter.addProperty("path", model.getAbsolutePath());
+            final JsonObject mappingInputs = new JsonObject();
+            mappingInputs.addProperty("x", "x");
+            final JsonObject mappingOutputs = new JsonObject();
+            mappingOutputs.addProperty("y", "y");
+            final JsonObject mapping = new JsonObject();
+            mapping.add("inputs", mappingInputs);
+            mapping.add("outputs", mappingOutputs);
+            final JsonArray mappings = new JsonArray();
+            mappings.add(mapping);
+            final JsonObject inference = new JsonObject();
+            inference.addProperty("input", "avroInput");
+            inference.add("mappings", mappings);
+            final JsonArray inferences = new JsonArray();
+            inferences.add(inference);
+
+            final JsonObject parameters = new JsonObject();
+            parameters.add("model", modelParameter);
+            parameters.add("inferences", inferences);
+            parameters.addProperty("bufferSize", bufferSize);
+            parameters.addProperty("bufferIntervalSeconds", 60);
+            config.setParameters(parameters);
+
+            final Map<String, FCollection<?>> outputs = ONNXTransform.transform(List.of(fCollection), config);
+            final PCollection<GenericRecord> outputRecords = (PCollection<GenericRecord>) outputs.get(config.getName()).getCollection();
+
+            PAssert.that(outputRecords).satisfies(results -> {
+                final Map<Long, Float> actual = new HashMap<>();
+                for(final GenericRecord record : results) {
+                    actual.put((Long) record.get("id"), ((Number) record.get("y")).floatValue());
+                }
+                Assert.assertEquals(expected, actual);
+                return null;
+            });
+        }
+
+        pipeline.run();
+    }
+
+    /**
+     * Builds an ONNX model computing y = x + x on float tensors shaped [N, 1] with a dynamic batch dimension.
+     */
+    private static byte[] createDoubleModel() throws IOException {
+        final byte[] node = message(out -> {
+            out.writeString(1, "x");
+            out.writeString(1, "x");
+            out.writeString(2, "y");
+            out.writeString(3, "add");
+            out.writeString(4, "Add");
+        });
+        final byte[] graph = message(out -> {
+            out.writeByteArray(1, node);
+            out.writeString(2, "double");
+            out.writeByteArray(11, valueInfo("x"));
+            out.writeByteArray(12, valueInfo("y"));
+        });
+        final byte[] opset = message(out -> {
+            out.writeString(1, "");
+            out.writeInt64(2, 13);
+        });
+        return message(out -> {
+            out.writeInt64(1, 8);
+            out.writeByteArray(7, graph);
+            out.writeByteArray(8, opset);
+        });
+    }
+
+    private static byte[] valueInfo(final String name) throws IOException {
+        final byte[] batchDim = message(out -> out.writeString(2, "N"));
+        final byte[] rowDim = message(out -> out.writeInt64(1, 1));
+        final byte[] shape = message(out -> {
+            out.writeByteArray(1, batchDim);
+            out.writeByteArray(1, rowDim);
+        });
+        final byte[] tensorType = message(out -> {
+            out.writeInt32(1, 1);
+            out.writeByteArray(2, shape);
+        });
+        final byte[] type = message(out -> out.writeByteArray(1, tensorType));
+        return message(out -> {
+            out.writeString(1, name);
+            out.writeByteArray(2, type);
+        });
+    }
+
+    private static byte[] message(final MessageWriter writer) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        writer.write(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private interface MessageWriter {
+        void write(CodedOutputStream out) throws IOException;
+    }
+
+}
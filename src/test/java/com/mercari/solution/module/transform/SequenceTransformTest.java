@@ -0,0 +1,88 @@
+package com.mercari.solution.module.transform;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.mercari.solution.config.TransformConfig;
+import com.mercari.solution.module.DataType;
+import com.mercari.solution.module.FCollection;
+import org.apache.beam.sdk.coders.RowCoder;
+import org.apache.beam.sdk.options.StreamingOptions;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.Row;
+import org.apache.beam.sdk.values.TimestampedValue;
+import org.joda.time.Instant;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.*;
+
+public class SequenceTransformTest {
+
+    @Rule
+    public final transient TestPipeline pipeline = TestPipeline.create();
+
+    @Test
+    public void testEventTimeProcessingMode() {
+        pipeline.getOptions().as(StreamingOptions.class).setStreaming(true);
+
+        final Schema schema = Schema.builder()
+                .addNullableField("key", Schema.FieldType.STRING)
+                .addNullableField("value", Schema.FieldType.INT64)
+                .build();
+
+        // inputs arrive in the reverse order of event time
+        final List<TimestampedValue<Row>> inputs = new ArrayList<>();
+        for(int i=9; i>=0; i--) {
+            final Row row = Row.withSchema(schema)
+                    .withFieldValue("key", i % 2 == 0 ? "a" : "b")
+                    .withFieldValue("value", (long) i)
+                    .build();
+            inputs.add(TimestampedValue.of(row, Instant.ofEpochSecond(i)));
+        }
+        final PCollection<Row> input = pipeline
+                .apply("CreateInputs", Create.timestamped(inputs).withCoder(RowCoder.of(schema)));
+        final FCollection<Row> fCollection = FCollection.of("rowInput", input, DataType.ROW, schema);
+
+        final TransformConfig config = new TransformConfig();
+        config.setName("sequence");
+        config.setModule("sequence");
+        config.setInputs(List.of("rowInput"));
+
+        final JsonArray groupFields = new JsonArray();
+        groupFields.add("key");
+        final JsonObject max = new JsonObject();
+        max.addProperty("op", "max");
+        max.addProperty("name", "maxValue");
+        max.addProperty("field", "value");
+        final JsonArray sequence = new JsonArray();
+        sequence.add(max);
+
+        final JsonObject parameters = new JsonObject();
+        parameters.addProperty("processingMode", "eventTime");
+        parameters.add("groupFields", groupFields);
+        parameters.add("sequence", sequence);
+        config.setParameters(parameters);
+
+        final Map<String, FCollection<?>> outputs = new SequenceTransform().expand(List.of(fCollection), config);
+        final PCollection<Row> outputRows = (PCollection<Row>) outputs.get(config.getName()).getCollection();
+
+        PAssert.that(outputRows).satisfies(rows -> {
+            int size = 0;
+            for(final Row row : rows) {
+                // max so far equals the current value only when inputs are processed in event time order
+                Assert.assertEquals(row.getInt64("value"), row.getInt64("maxValue"));
+                size++;
+            }
+            Assert.assertEquals(10, size);
+            return null;
+        });
+
+        pipeline.run();
+    }
+
+}
@@ -18,7 +18,9 @@ import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 public class TokenizeTransformTest {
@@ -168,4 +170,82 @@ public class TokenizeTransformTest {
         pipeline.run();
     }
 
+    @Test
+    public void testColumnar() {
+        final TransformConfig config = new TransformConfig();
+        config.setName("tokenize2");
+        config.setModule("tokenize");
+        config.setInputs(Arrays.asList("rowInput"));
+
+        final JsonArray fields = new JsonArray();
+        for(final boolean columnar : new boolean[]{ true, false }) {
+            final JsonObject field = new JsonObject();
+            field.addProperty("name", columnar ? "columns" : "tokens");
+            field.addProperty("input", "text");
+            field.addProperty("columnar", columnar);
+            final JsonObject tokenizer = new JsonObject();
+            tokenizer.addProperty("type", "WhitespaceTokenizer");
+            field.add("tokenizer", tokenizer);
+            final JsonArray filters = new JsonArray();
+            final JsonObject filter = new JsonObject();
+            filter.addProperty("type", "LowerCaseFilter");
+            filters.add(filter);
+            field.add("filters", filters);
+            fields.add(field);
+        }
+
+        final JsonObject parameters = new JsonObject();
+        parameters.add("fields", fields);
+        config.setParameters(parameters);
+
+        final Schema schema = Schema.builder()
+                .addField(Schema.Field.of("text", Schema.FieldType.STRING.withNullable(true)))
+                .addField(Schema.Field.of("int", Schema.FieldType.INT32.withNullable(false)))
+                .build();
+        final Row row1 = Row.withSchema(schema)
+                .withFieldValue("text", "Well done is better than well said.")
+                .withFieldValue("int", 1)
+                .build();
+        final Row row2 = Row.withSchema(schema)
+                .withFieldValue("text", null)
+                .withFieldValue("int", 2)
+                .build();
+
+        final PCollection<Row> inputRows = pipeline
+                .apply("CreateDummy", Create.of(row1, row2).withCoder(RowCoder.of(schema)));
+        final FCollection<Row> fCollection = FCollection.of("rowInput", inputRows, DataType.ROW, schema);
+
+        final Map<String, FCollection<?>> outputs = TokenizeTransform.transform(Arrays.asList(fCollection), config);
+
+        final Schema columnsSchema = outputs.get("tokenize2").getSchema().getField("columns").getType().getRowSchema();
+        Assert.assertEquals(4, columnsSchema.getFieldCount());
+        Assert.assertEquals(Schema.TypeName.ARRAY, columnsSchema.getField("token").getType().getTypeName());
+
+        final PCollection<Row> output = (PCollection<Row>) outputs.get("tokenize2").getCollection();
+        PAssert.that(output).satisfies(rows -> {
+            int count = 0;
+            for(final Row row : rows) {
+                final Row columns = row.getRow("columns");
+                final List<Row> tokens = new ArrayList<>(row.getArray("tokens"));
+                if(row.getInt32("int") == 1) {
+                    Assert.assertEquals(Arrays.asList("well", "done", "is", "better", "than", "well", "said."), columns.getArray("token"));
+                    Assert.assertEquals(Arrays.asList(0, 5, 10, 13, 20, 25, 30), columns.getArray("startOffset"));
+                    Assert.assertEquals(7, tokens.size());
+                    for(int i=0; i<tokens.size(); i++) {
+                        Assert.assertEquals(new ArrayList<>(columns.getArray("token")).get(i), tokens.get(i).getString("token"));
+                        Assert.assertEquals(new ArrayList<>(columns.getArray("endOffset")).get(i), tokens.get(i).getInt32("endOffset"));
+                    }
+                } else {
+                    Assert.assertEquals(0, columns.getArray("token").size());
+                    Assert.assertEquals(0, tokens.size());
+                }
+                count += 1;
+            }
+            Assert.assertEquals(2, count);
+            return null;
+        });
+
+        pipeline.run();
+    }
+
 }
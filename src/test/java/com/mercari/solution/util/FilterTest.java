@@ -665,4 +665,81 @@ public class FilterTest {
 
     }
 
+    @Test
+    public void testCompiled() {
+
+        final String filterString =
+                "{\n" +
+                "  \"or\": [\n" +
+                "    { \"key\": \"field1\", \"op\": \"in\", \"value\": [1, 5, 9] },\n" +
+                "    {\n" +
+                "      \"and\": [\n" +
+                "        { \"key\": \"field2\", \"op\": \">=\", \"value\": \"b\" },\n" +
+                "        { \"key\": \"field3\", \"op\": \"<\", \"value\": \"2021-08-21T10:30:45Z\" },\n" +
+                "        { \"key\": \"field4\", \"op\": \"not in\", \"value\": [\"x\", \"y\"] },\n" +
+                "        { \"expression\": \"field5 * 2\", \"op\": \">\", \"value\": 10 }\n" +
+                "      ]\n" +
+                "    }\n" +
+                "  ]\n" +
+                "}";
+
+        final Filter.ConditionNode node = Filter.parse(new Gson().fromJson(filterString, JsonObject.class));
+        final Filter.CompiledCondition compiled = Filter.compile(node);
+        Assert.assertEquals(Arrays.asList("field1", "field2", "field3", "field4", "field5"), compiled.getVariables());
+
+        final Struct[] structs = {
+                createStruct(2L, "c", "2021-08-20T10:30:45Z", "z", 6D),
+                createStruct(5L, "a", "2021-08-20T10:30:45Z", "z", 6D),
+                createStruct(2L, "a", "2021-08-20T10:30:45Z", "z", 6D),
+                createStruct(2L, "c", "2021-08-22T10:30:45Z", "z", 6D),
+                createStruct(2L, "c", "2021-08-20T10:30:45Z", "x", 6D),
+                createStruct(2L, "c", "2021-08-20T10:30:45Z", null, 6D),
+                createStruct(2L, "c", "2021-08-20T10:30:45Z", "z", 5D),
+                createStruct(null, "c", "2021-08-20T10:30:45Z", "z", 1D)
+        };
+        final boolean[] expected = { true, true, false, false, false, false, false, false };
+
+        for(int i=0; i<structs.length; i++) {
+            final Struct struct = structs[i];
+            final Map<String, Object> values = StructToMapConverter.convert(struct);
+            Assert.assertEquals("struct index: " + i, expected[i], Filter.filter(struct, StructSchemaUtil::getValue, node));
+            Assert.assertEquals("struct index: " + i, expected[i], compiled.test(struct, StructSchemaUtil::getValue));
+            Assert.assertEquals("struct index: " + i, expected[i], Filter.filter(node, values));
+            Assert.assertEquals("struct index: " + i, expected[i], compiled.test(values));
+        }
+
+        // values map takes priority over element values
+        final Map<String, Object> updateValues = Map.of("field1", 9L);
+        Assert.assertTrue(compiled.test(structs[2], StructSchemaUtil::getValue, updateValues));
+        Assert.assertEquals(
+                Filter.filter(structs[2], StructSchemaUtil::getValue, node, updateValues),
+                compiled.test(structs[2], StructSchemaUtil::getValue, updateValues));
+    }
+
+    @Test
+    public void testCompiledSingleLeafAbort() {
+        // evaluation fails by missing function argument, which must not escape from a single leaf root
+        final String filterString = "{ \"expression\": \"max(field1)\", \"op\": \">\", \"value\": 0 }";
+        final Filter.ConditionNode node = Filter.parse(new Gson().fromJson(filterString, JsonObject.class));
+        final Filter.CompiledCondition compiled = Filter.compile(node);
+
+        final Struct struct = Struct.newBuilder()
+                .set("field1").to(-1L)
+                .build();
+        final Map<String, Object> values = StructToMapConverter.convert(struct);
+        Assert.assertFalse(Filter.filter(node, values));
+        Assert.assertFalse(compiled.test(struct, StructSchemaUtil::getValue));
+        Assert.assertFalse(compiled.test(values));
+    }
+
+    private static Struct createStruct(final Long field1, final String field2, final String field3, final String field4, final Double field5) {
+        return Struct.newBuilder()
+                .set("field1").to(field1)
+                .set("field2").to(field2)
+                .set("field3").to(com.google.cloud.Timestamp.parseTimestamp(field3))
+                .set("field4").to(field4)
+                .set("field5").to(field5)
+                .build();
+    }
+
 }
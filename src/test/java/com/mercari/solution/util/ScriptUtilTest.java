@@ -0,0 +1,57 @@
+package com.mercari.solution.util;
+
+import com.mercari.solution.util.converter.RowToMapConverter;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.values.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ScriptUtilTest {
+
+    @Test
+    public void testFieldAccessorMap() {
+        final Schema schema = Schema.builder()
+                .addStringField("stringField")
+                .addInt64Field("longField")
+                .addNullableField("nullableField", Schema.FieldType.DOUBLE)
+                .build();
+        final Row row = Row.withSchema(schema)
+                .withFieldValue("stringField", "a")
+                .withFieldValue("longField", 10L)
+                .withFieldValue("nullableField", null)
+                .build();
+
+        final AtomicInteger count = new AtomicInteger();
+        final Map<String, Object> map = new ScriptUtil.FieldAccessorMap<>(row, (r, f) -> {
+            count.incrementAndGet();
+            return RowToMapConverter.getValue(r, f);
+        }, RowToMapConverter::convert);
+
+        // fields are read lazily and only once
+        Assert.assertEquals("a", map.get("stringField"));
+        Assert.assertEquals("a", map.get("stringField"));
+        Assert.assertEquals(1, count.get());
+        Assert.assertNull(map.get("nullableField"));
+        Assert.assertNull(map.get("missingField"));
+
+        Assert.assertNull(map.put("outputField", 1.5));
+        Assert.assertEquals(1.5, map.get("outputField"));
+        Assert.assertEquals(10L, map.put("longField", 20L));
+        Assert.assertEquals(20L, map.get("longField"));
+
+        // whole map view is same as the copied map with updates
+        final Map<String, Object> expected = new HashMap<>(RowToMapConverter.convert(row));
+        expected.put("outputField", 1.5);
+        expected.put("longField", 20L);
+        Assert.assertEquals(expected, new HashMap<>(map));
+        Assert.assertTrue(map.containsKey("nullableField"));
+        Assert.assertFalse(map.containsKey("missingField"));
+        Assert.assertEquals(1.5, map.remove("outputField"));
+        Assert.assertEquals(3, map.size());
+    }
+
+}
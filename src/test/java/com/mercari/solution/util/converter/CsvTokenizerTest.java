@@ -0,0 +1,104 @@
+package com.mercari.solution.util.converter;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CsvTokenizerTest {
+
+    @Test
+    public void testTokenize() throws Exception {
+        final List<String> lines = List.of(
+                "a,b,c",
+                "a,,c",
+                ",",
+                "a,b,",
+                " a , b ",
+                "\"a,b\",c",
+                "\"a\"\"b\",\"\"",
+                "a\"b,c",
+                "\"\",x",
+                "abcdefghijklmnopqrstuvwxyz");
+
+        final CsvTokenizer tokenizer = new CsvTokenizer();
+        for(final String line : lines) {
+            final CSVRecord expected;
+            try(final CSVParser parser = CSVParser.parse(line, CSVFormat.DEFAULT)) {
+                expected = parser.getRecords().get(0);
+            }
+            Assert.assertEquals(line, expected.size(), tokenizer.tokenize(line));
+            for(int i=0; i<expected.size(); i++) {
+                Assert.assertEquals(line, expected.get(i), tokenizer.get(i));
+            }
+            Assert.assertNull(tokenizer.get(expected.size()));
+        }
+
+        Assert.assertEquals(0, tokenizer.tokenize(""));
+
+        // values over initial capacity
+        final StringBuilder sb = new StringBuilder();
+        for(int i=0; i<100; i++) {
+            sb.append(i).append(",");
+        }
+        Assert.assertEquals(101, tokenizer.tokenize(sb.toString()));
+        Assert.assertEquals("99", tokenizer.get(99));
+        Assert.assertEquals("", tokenizer.get(100));
+    }
+
+    @Test
+    public void testReadRecord() throws Exception {
+        final String text = "id,text\n1,\"first\nsecond\"\n2,\"a \"\"quoted\"\"\nvalue\",\"x\"\n3,plain\n\"4\",\"unterminated";
+        final List<String> records = new ArrayList<>();
+        try(final BufferedReader reader = new BufferedReader(new StringReader(text))) {
+            String record;
+            while((record = CsvTokenizer.readRecord(reader)) != null) {
+                records.add(record);
+            }
+        }
+        Assert.assertEquals(5, records.size());
+        Assert.assertEquals("1,\"first\nsecond\"", records.get(1));
+        Assert.assertEquals("2,\"a \"\"quoted\"\"\nvalue\",\"x\"", records.get(2));
+        Assert.assertEquals("3,plain", records.get(3));
+
+        final CsvTokenizer tokenizer = new CsvTokenizer();
+        Assert.assertEquals(3, tokenizer.tokenize(records.get(2)));
+        Assert.assertEquals("a \"quoted\"\nvalue", tokenizer.get(1));
+    }
+
+    @Test
+    public void testDecoder() {
+        final Schema schema = SchemaBuilder.record("root").fields()
+                .requiredString("id")
+                .optionalLong("count")
+                .optionalDouble("rate")
+                .optionalString("text")
+                .endRecord();
+        final CsvToRecordConverter.Decoder decoder = new CsvToRecordConverter.Decoder(schema);
+        for(final String line : List.of("a,1,0.5,\"x,y\"", "b,,1.5", "c,3,notNumber,z")) {
+            final GenericRecord expected = CsvToRecordConverter.convert(schema, line);
+            Assert.assertEquals(expected, decoder.decode(line));
+        }
+        Assert.assertNull(decoder.decode(""));
+
+        final org.apache.beam.sdk.schemas.Schema rowSchema = org.apache.beam.sdk.schemas.Schema.builder()
+                .addStringField("id")
+                .addNullableField("count", org.apache.beam.sdk.schemas.Schema.FieldType.INT64)
+                .addNullableField("text", org.apache.beam.sdk.schemas.Schema.FieldType.STRING)
+                .build();
+        final CsvToRowConverter.Decoder rowDecoder = new CsvToRowConverter.Decoder(rowSchema);
+        for(final String line : List.of("a,1,\"x,y\"", "b,,z", "c")) {
+            Assert.assertEquals(CsvToRowConverter.convert(rowSchema, line), rowDecoder.decode(line));
+        }
+    }
+
+}
@@ -19,6 +19,24 @@ import java.util.List;
 
 public class JsonToRecordConverterTest {
 
+    @Test
+    public void testDecoder() {
+        final GenericRecord record = TestDatum.generateRecord();
+        final String json = RecordToJsonConverter.convert(record);
+        final JsonToRecordConverter.Decoder decoder = new JsonToRecordConverter.Decoder(record.getSchema());
+        Assert.assertEquals(JsonToRecordConverter.convert(record.getSchema(), json), decoder.decode(json));
+
+        // decoder is reused and unknown fields are skipped
+        final JsonObject jsonObject = new Gson().fromJson(json, JsonObject.class);
+        jsonObject.addProperty("unknownField", "unknown");
+        jsonObject.remove("stringField");
+        final String modified = jsonObject.toString();
+        final GenericRecord decoded = decoder.decode(modified);
+        Assert.assertEquals(JsonToRecordConverter.convert(record.getSchema(), modified), decoded);
+        Assert.assertNull(decoded.get("stringField"));
+        Assert.assertNull(decoder.decode(" "));
+    }
+
     @Test
     public void test() {
         final GenericRecord record = TestDatum.generateRecord();
@@ -32,6 +32,24 @@ public class JsonToRowConverterTest {
         }
     }
 
+    @Test
+    public void testDecoder() {
+        final Row row = TestDatum.generateRow();
+        final String json = RowToJsonConverter.convert(row);
+        final JsonToRowConverter.Decoder decoder = new JsonToRowConverter.Decoder(row.getSchema());
+        Assert.assertEquals(JsonToRowConverter.convert(row.getSchema(), json), decoder.decode(json));
+
+        // decoder is reused and unknown fields are skipped
+        final JsonObject jsonObject = new Gson().fromJson(json, JsonObject.class);
+        jsonObject.addProperty("unknownField", "unknown");
+        jsonObject.remove("stringField");
+        final String modified = jsonObject.toString();
+        final Row decoded = decoder.decode(modified);
+        Assert.assertEquals(JsonToRowConverter.convert(row.getSchema(), modified), decoded);
+        Assert.assertNull(decoded.getString("stringField"));
+        Assert.assertNull(decoder.decode(" "));
+    }
+
     @Test
     public void testValidateSchema() {
         final Row row = TestDatum.generateRow();
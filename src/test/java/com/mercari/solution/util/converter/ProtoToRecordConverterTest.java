@@ -55,6 +55,34 @@ public class ProtoToRecordConverterTest {
         testToRecord("data/test_null.pb");
     }
 
+    @Test
+    public void testToRecordWithDecoder() throws Exception {
+        for(final String protoPath : List.of("data/test.pb", "data/test_null.pb")) {
+            final byte[] descBytes = ResourceUtil.getResourceFileAsBytes("schema/test.desc");
+            final byte[] protoBytes = ResourceUtil.getResourceFileAsBytes(protoPath);
+
+            final Map<String, Descriptors.Descriptor> descriptors = ProtoSchemaUtil.getDescriptors(descBytes);
+            final Descriptors.Descriptor descriptor = descriptors.get("com.mercari.solution.entity.TestMessage");
+            final JsonFormat.Printer printer = ProtoSchemaUtil.createJsonPrinter(descriptors);
+
+            final Schema schema = ProtoToRecordConverter.convertSchema(descriptor);
+            final GenericRecord expected = ProtoToRecordConverter.convert(schema, descriptor, protoBytes, printer);
+            final ProtoWireDecoder decoder = ProtoWireDecoder.of(descriptor, schema.getFields().stream().map(Schema.Field::name).toList());
+            final GenericRecord actual = ProtoToRecordConverter.convertBuilder(schema, decoder, protoBytes, printer).build();
+            // compared as string as nested values contain DynamicMessage that avro can not compare
+            Assert.assertEquals(expected.toString(), actual.toString());
+
+            final List<String> fields = List.of("stringValue", "datetimeValue", "enumValue", "child", "longValues", "strIntMapValue");
+            final Schema selectedSchema = ProtoToRecordConverter.convertSchemaBuilder(descriptor, fields).endRecord();
+            final ProtoWireDecoder selectedDecoder = ProtoWireDecoder.of(descriptor, fields);
+            final GenericRecord selected = ProtoToRecordConverter.convertBuilder(selectedSchema, selectedDecoder, protoBytes, printer).build();
+            Assert.assertEquals(fields.size(), selectedSchema.getFields().size());
+            for(final String field : fields) {
+                Assert.assertEquals(String.valueOf(expected.get(field)), String.valueOf(selected.get(field)));
+            }
+        }
+    }
+
     private void testToRecord(final String protoPath) throws Exception {
 
         final byte[] descBytes = ResourceUtil.getResourceFileAsBytes("schema/test.desc");
@@ -98,6 +98,71 @@ public class ProtoToRowConverterTest {
         testToRow("data/test_null.pb");
     }
 
+    @Test
+    public void testToRowWithDecoder() throws InvalidProtocolBufferException {
+        testToRowWithDecoder("data/test.pb");
+        testToRowWithDecoder("data/test_null.pb");
+    }
+
+    @Test
+    public void testToRowWithDecoderOneof() {
+        final byte[] descBytes = ResourceUtil.getResourceFileAsBytes("schema/test.desc");
+        final Descriptors.Descriptor descriptor = ProtoSchemaUtil.getDescriptors(descBytes).get("com.mercari.solution.entity.TestMessage");
+        final Schema schema = ProtoToRowConverter.convertSchemaBuilder(descriptor, List.of("entityName", "intValue")).build();
+        final ProtoWireDecoder decoder = ProtoWireDecoder.of(descriptor, schema.getFieldNames());
+
+        // last value of the oneof clears the selected field even if the last one is not selected
+        final DynamicMessage message = DynamicMessage.newBuilder(descriptor)
+                .setField(descriptor.findFieldByName("entityName"), "name")
+                .setField(descriptor.findFieldByName("intValue"), 10)
+                .build();
+        final byte[] bytes = message.toByteString()
+                .concat(DynamicMessage.newBuilder(descriptor)
+                        .setField(descriptor.findFieldByName("entityAge"), 20)
+                        .build()
+                        .toByteString())
+                .toByteArray();
+
+        final Row row = ProtoToRowConverter.convertBuilder(schema, decoder, bytes, null).build();
+        Assert.assertEquals("", row.getString("entityName"));
+        Assert.assertEquals(10, row.getInt32("intValue").intValue());
+        Assert.assertEquals(ProtoToRowConverter.convert(schema, descriptor, bytes, null), row);
+
+        final Row rowWithName = ProtoToRowConverter.convertBuilder(schema, decoder, message.toByteArray(), null).build();
+        Assert.assertEquals("name", rowWithName.getString("entityName"));
+    }
+
+    private void testToRowWithDecoder(final String protoPath) throws InvalidProtocolBufferException {
+        final byte[] descBytes = ResourceUtil.getResourceFileAsBytes("schema/test.desc");
+        final byte[] protoBytes = ResourceUtil.getResourceFileAsBytes(protoPath);
+
+        final Map<String, Descriptors.Descriptor> descriptors = ProtoSchemaUtil.getDescriptors(descBytes);
+        final Descriptors.Descriptor descriptor = descriptors.get("com.mercari.solution.entity.TestMessage");
+
+        final JsonFormat.TypeRegistry.Builder builder = JsonFormat.TypeRegistry.newBuilder();
+        descriptors.forEach((k, v) -> builder.add(v));
+        final JsonFormat.Printer printer = JsonFormat.printer().usingTypeRegistry(builder.build());
+
+        // all fields
+        final Schema schema = ProtoToRowConverter.convertSchema(descriptor);
+        final Row expected = ProtoToRowConverter.convert(schema, descriptor, protoBytes, printer);
+        final ProtoWireDecoder decoder = ProtoWireDecoder.of(descriptor, schema.getFieldNames());
+        Assert.assertEquals(expected, ProtoToRowConverter.convertBuilder(schema, decoder, protoBytes, printer).build());
+
+        // selected fields with the field not in message
+        final List<String> fields = List.of("longValue", "timestampValue", "enumValue", "child", "stringValues", "intChildMapValue", "anyValue");
+        final Schema selectedSchema = ProtoToRowConverter.convertSchemaBuilder(descriptor, fields)
+                .addNullableField("extraField", Schema.FieldType.STRING)
+                .build();
+        final ProtoWireDecoder selectedDecoder = ProtoWireDecoder.of(descriptor, selectedSchema.getFieldNames());
+        Assert.assertNull(selectedDecoder.getField(fields.size()));
+        final Row selected = ProtoToRowConverter.convertBuilder(selectedSchema, selectedDecoder, protoBytes, printer).build();
+        for(final String field : fields) {
+            Assert.assertEquals(expected.getValue(field), (Object) selected.getValue(field));
+        }
+        Assert.assertNull(selected.getValue("extraField"));
+    }
+
     private void testToRow(final String protoPath) throws InvalidProtocolBufferException {
         final byte[] descBytes = ResourceUtil.getResourceFileAsBytes("schema/test.desc");
         final byte[] protoBytes = ResourceUtil.getResourceFileAsBytes(protoPath);
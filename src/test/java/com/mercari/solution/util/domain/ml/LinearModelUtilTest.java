@@ -5,6 +5,7 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 public class LinearModelUtilTest {
 
@@ -60,6 +61,51 @@ public class LinearModelUtilTest {
         Assert.assertEquals(X[0].length, standardized[0].length);
     }
 
+    @Test
+    public void testOnline() {
+        final Random random = new Random(0);
+        final double[] weights = { 0.5D, -1.2D, 3.0D };
+        final double[][] X = new double[200][];
+        final double[][] Y = new double[200][];
+        for(int i=0; i<X.length; i++) {
+            // last column is intercept
+            X[i] = new double[]{ random.nextGaussian(), random.nextGaussian(), 1D };
+            Y[i] = new double[]{ weights[0] * X[i][0] + weights[1] * X[i][1] + weights[2] + random.nextGaussian() * 0.1 };
+        }
+
+        // recursive least squares without forgetting is same as ols over all samples
+        final double[] rls = LinearModelUtil.createOnlineParams(3, 1, true, 1e8);
+        final double[] work = new double[3];
+        for(int i=0; i<X.length; i++) {
+            Assert.assertTrue(LinearModelUtil.rls(rls, X[i], Y[i], 1.0, work));
+        }
+        final List<Double> ols = LinearModelUtil.olsModel(X, Y).getWeights().get(0);
+        for(int i=0; i<3; i++) {
+            Assert.assertEquals(ols.get(i), rls[i], 1e-6);
+        }
+        Assert.assertEquals(weights[0] * 2 + weights[2], LinearModelUtil.inference(rls, new double[]{ 2D, 0D, 1D }, 1)[0], 0.1);
+
+        // forgetting factor follows the changed relation
+        final double[] forgetting = LinearModelUtil.createOnlineParams(3, 1, true, 1000);
+        for(int i=0; i<X.length; i++) {
+            final double y = i < 100 ? Y[i][0] : Y[i][0] + 5D;
+            LinearModelUtil.rls(forgetting, X[i], new double[]{ y }, 0.9, work);
+        }
+        Assert.assertEquals(weights[2] + 5D, forgetting[2], 0.1);
+
+        final double[] sgd = LinearModelUtil.createOnlineParams(3, 1, false, 0);
+        Assert.assertEquals(3, sgd.length);
+        for(int epoch=0; epoch<5; epoch++) {
+            for(int i=0; i<X.length; i++) {
+                Assert.assertTrue(LinearModelUtil.sgd(sgd, X[i], Y[i], 0.05, 0));
+            }
+        }
+        for(int i=0; i<3; i++) {
+            Assert.assertEquals(weights[i], sgd[i], 0.1);
+        }
+        Assert.assertFalse(LinearModelUtil.sgd(sgd, new double[]{ Double.NaN, 0D, 1D }, Y[0], 0.05, 0));
+    }
+
     private static double[][] getX() {
         final double[][] X = new double[4][3];
         X[0] = new double[]{ 0.01D,  0.50D, -0.12D};
@@ -0,0 +1,136 @@
+package com.mercari.solution.util.domain.search;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
+import org.neo4j.dbms.archive.DumpFormatSelector;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class Neo4jUtilTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testParameterizedCypher() {
+        final String cypher = "MATCH (u:User {id: $userId})-[:FOLLOWS]->(f) WHERE f.name <> '$name' AND f.age > $minAge AND u.id = $userId RETURN f.id AS `$id`";
+
+        // parameters in string literals and quoted names are ignored
+        Assert.assertEquals(List.of("userId", "minAge"), Neo4jUtil.extractParameterNames(cypher));
+
+        final String unwindCypher = Neo4jUtil.createUnwindCypher(cypher);
+        Assert.assertEquals("""
+                UNWIND $__rows AS __row
+                CALL {
+                WITH __row
+                MATCH (u:User {id: __row.userId})-[:FOLLOWS]->(f) WHERE f.name <> '$name' AND f.age > __row.minAge AND u.id = __row.userId RETURN f.id AS `$id`
+                }
+                RETURN *, __row.__index AS __index""", unwindCypher);
+
+        // write only cypher has no rows to return
+        final String writeCypher = "MERGE (u:User {id: $userId}) SET u.note = 'RETURN', u.`return` = $minAge";
+        Assert.assertFalse(Neo4jUtil.hasReturnClause(writeCypher));
+        Assert.assertEquals("""
+                UNWIND $__rows AS __row
+                CALL {
+                WITH __row
+                MERGE (u:User {id: __row.userId}) SET u.note = 'RETURN', u.`return` = __row.minAge
+                }""", Neo4jUtil.createUnwindCypher(writeCypher));
+    }
+
+    @Test
+    public void testQueryBatch() throws Exception {
+        final File home = temporaryFolder.newFolder("neo4j");
+        final DatabaseManagementService service = new DatabaseManagementServiceBuilder(home.toPath()).build();
+        try {
+            final GraphDatabaseService graphDB = service.database(Neo4jUtil.DEFAULT_DATABASE_NAME);
+            try(final Transaction tx = graphDB.beginTx()) {
+                tx.execute("""
+                        CREATE (u1:User {id: 1}), (u2:User {id: 2}), (u3:User {id: 3}), (u4:User {id: 4})
+                        CREATE (u1)-[:FOLLOWS]->(u2), (u1)-[:FOLLOWS]->(u3), (u2)-[:FOLLOWS]->(u3)""");
+                tx.commit();
+            }
+
+            // inputs without results and with same parameters are included in a batch
+            final List<Map<String, Object>> values = List.of(
+                    Map.of("userId", 1L), Map.of("userId", 4L), Map.of("userId", 2L), Map.of("userId", 1L));
+
+            final String cypher = "MATCH (u:User {id: $userId})-[:FOLLOWS]->(f) RETURN f.id AS followId ORDER BY followId";
+            try(final Transaction tx = graphDB.beginTx()) {
+                final List<List<Map<String, Object>>> results = Neo4jUtil.queryBatch(tx, Neo4jUtil.createUnwindCypher(cypher), values);
+                Assert.assertEquals(values.size(), results.size());
+                for(int i=0; i<values.size(); i++) {
+                    // results of each input are same as the query executed for the input
+                    final List<Map<String, Object>> expected = new ArrayList<>();
+                    try(final Result result = tx.execute(cypher, Neo4jUtil.formatParameters(values.get(i)))) {
+                        while(result.hasNext()) {
+                            expected.add(result.next());
+                        }
+                    }
+                    Assert.assertEquals(expected, results.get(i));
+                }
+                Assert.assertEquals(List.of(Map.of("followId", 2L), Map.of("followId", 3L)), results.get(0));
+                Assert.assertEquals(List.of(), results.get(1));
+            }
+
+            final String writeCypher = "MERGE (u:User {id: $userId}) SET u.updated = true";
+            try(final Transaction tx = graphDB.beginTx()) {
+                final List<List<Map<String, Object>>> results = Neo4jUtil.queryBatch(tx, Neo4jUtil.createUnwindCypher(writeCypher), List.of(
+                        Map.of("userId", 1L), Map.of("userId", 5L)));
+                Assert.assertEquals(List.of(List.of(), List.of()), results);
+                try(final Result result = tx.execute("MATCH (u:User) WHERE u.updated RETURN count(u) AS count")) {
+                    Assert.assertEquals(2L, result.next().get("count"));
+                }
+            }
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void testDumpToLocalFile() throws Exception {
+        final File home = temporaryFolder.newFolder("neo4j");
+        final DatabaseManagementService service = new DatabaseManagementServiceBuilder(home.toPath()).build();
+        final GraphDatabaseService graphDB = service.database(Neo4jUtil.DEFAULT_DATABASE_NAME);
+        try(final Transaction tx = graphDB.beginTx()) {
+            tx.execute("CREATE (:User {id: 1})-[:FOLLOWS]->(:User {id: 2})");
+            tx.commit();
+        }
+        service.shutdown();
+
+        final String output = temporaryFolder.getRoot().getAbsolutePath() + "/dump/neo4j.dump";
+        Neo4jUtil.dump(home.getAbsolutePath(), Neo4jUtil.DEFAULT_DATABASE_NAME, output, 2, 1024);
+
+        // archive is readable by the decompression of neo4j dump format
+        final byte[] magic = new byte[4];
+        try(final InputStream is = new FileInputStream(output)) {
+            Assert.assertEquals(4, is.read(magic));
+        }
+        Assert.assertEquals("DZV1", new String(magic, StandardCharsets.US_ASCII));
+
+        try(final InputStream is = DumpFormatSelector.decompress(() -> new FileInputStream(output))) {
+            final DataInputStream metadata = new DataInputStream(is);
+            Assert.assertEquals(1, metadata.readInt());
+            Assert.assertTrue(metadata.readLong() > 0);
+            metadata.readLong();
+            // tar entry names are stored in plain text
+            final String archive = new String(is.readAllBytes(), StandardCharsets.ISO_8859_1);
+            Assert.assertTrue(archive.contains("neostore"));
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.mercari.solution.util.domain.sketch;
+
+import org.apache.beam.sdk.util.CoderUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class SketchTest {
+
+    @Test
+    public void testHyperLogLog() throws Exception {
+        final HyperLogLog hll1 = HyperLogLog.of();
+        final HyperLogLog hll2 = HyperLogLog.of();
+        for(int i=0; i<100000; i++) {
+            hll1.add("user" + i);
+            hll1.add("user" + i);
+            hll2.add("user" + (i + 50000));
+        }
+        Assert.assertEquals(100000D, hll1.estimate(), 100000 * 0.02);
+        Assert.assertEquals(200000L, hll1.getCount());
+
+        hll1.merge(hll2);
+        Assert.assertEquals(150000D, hll1.estimate(), 150000 * 0.02);
+
+        final HyperLogLog decoded = CoderUtils.decodeFromByteArray(Sketch.coder(), CoderUtils.encodeToByteArray(Sketch.coder(), hll1));
+        Assert.assertEquals(hll1.estimate(), decoded.estimate());
+        Assert.assertEquals(hll1.getCount(), decoded.getCount());
+
+        // small cardinality is kept in sparse registers and serialized compactly
+        final HyperLogLog small = HyperLogLog.of();
+        for(long i=0; i<100; i++) {
+            small.add(i);
+        }
+        Assert.assertEquals(100D, small.estimate(), 2);
+        Assert.assertTrue(small.toByteArray().length < 1000);
+        final HyperLogLog smallDecoded = (HyperLogLog) Sketch.of(small.toByteArray());
+        Assert.assertEquals(small.estimate(), smallDecoded.estimate());
+
+        // merging sparse into dense and dense into sparse gives same estimate
+        final HyperLogLog sparse = Sketch.copy(small);
+        sparse.merge(hll1);
+        final HyperLogLog dense = Sketch.copy(hll1);
+        dense.merge(small);
+        Assert.assertEquals(dense.estimate(), sparse.estimate());
+    }
+
+    @Test
+    public void testHyperLogLogMidRange() {
+        // between 2.5m and 5m the raw HyperLogLog estimate is biased upward after linear counting is no longer used
+        final int m = 1 << HyperLogLog.DEFAULT_PRECISION;
+        double totalError = 0;
+        int trials = 0;
+        for(int cardinality = (int) (2.5 * m); cardinality <= 5 * m; cardinality += m / 4) {
+            final HyperLogLog hll = HyperLogLog.of();
+            for(int i=0; i<cardinality; i++) {
+                hll.add("mid" + cardinality + "_" + i);
+            }
+            final double error = (hll.estimate() - cardinality) / (double) cardinality;
+            Assert.assertEquals("cardinality: " + cardinality, 0D, error, 0.025);
+            totalError += error;
+            trials++;
+        }
+        // standard error is 1.04 / sqrt(m) = 0.8%, so the mean error over trials must be well within it
+        Assert.assertEquals(0D, totalError / trials, 0.005);
+    }
+
+    @Test
+    public void testKllQuantiles() {
+        final KllQuantiles kll1 = KllQuantiles.of();
+        final KllQuantiles kll2 = KllQuantiles.of();
+        for(int i=0; i<100000; i++) {
+            if(i % 2 == 0) {
+                kll1.add(i);
+            } else {
+                kll2.add(i);
+            }
+        }
+        kll1.merge(kll2);
+        Assert.assertEquals(100000L, kll1.getCount());
+        Assert.assertTrue(kll1.toByteArray().length < 100000);
+
+        final List<Double> quantiles = kll1.quantiles(List.of(0D, 0.1D, 0.5D, 0.9D, 1D));
+        Assert.assertEquals(0D, quantiles.get(0), 0);
+        Assert.assertEquals(10000D, quantiles.get(1), 100000 * 0.02);
+        Assert.assertEquals(50000D, quantiles.get(2), 100000 * 0.02);
+        Assert.assertEquals(90000D, quantiles.get(3), 100000 * 0.02);
+        Assert.assertEquals(99999D, quantiles.get(4), 0);
+
+        final KllQuantiles decoded = (KllQuantiles) Sketch.of(kll1.toByteArray());
+        Assert.assertEquals(kll1.quantiles(List.of(0.5D)), decoded.quantiles(List.of(0.5D)));
+
+        Assert.assertNull(KllQuantiles.of().quantile(0.5D));
+    }
+
+    @Test
+    public void testCountMinTopK() {
+        final CountMinTopK topK1 = CountMinTopK.of(3);
+        final CountMinTopK topK2 = CountMinTopK.of(3);
+        for(int i=0; i<10000; i++) {
+            topK1.add("value" + i);
+            if(i % 10 == 0) {
+                topK1.add("a");
+            }
+            if(i % 20 == 0) {
+                topK2.add("b");
+            }
+            if(i % 50 == 0) {
+                topK2.add("c");
+            }
+        }
+        topK1.merge(topK2);
+
+        final List<Map.Entry<String, Long>> top = topK1.top();
+        Assert.assertEquals(3, top.size());
+        Assert.assertEquals("a", top.get(0).getKey());
+        Assert.assertTrue(top.get(0).getValue() >= 1000L);
+        Assert.assertEquals("b", top.get(1).getKey());
+        Assert.assertEquals("c", top.get(2).getKey());
+
+        final CountMinTopK decoded = (CountMinTopK) Sketch.of(topK1.toByteArray());
+        Assert.assertEquals(top, decoded.top());
+    }
+
+}
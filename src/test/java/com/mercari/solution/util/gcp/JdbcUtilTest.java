@@ -1,11 +1,21 @@
 package com.mercari.solution.util.gcp;
 
+import com.mercari.solution.util.converter.ToStatementConverter;
+import com.mercari.solution.util.schema.AvroSchemaUtil;
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
 import org.apache.commons.codec.binary.Hex;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.sql.DataSource;
 import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -217,4 +227,259 @@ public class JdbcUtilTest {
         Assert.assertFalse(startPosition.isOverTo(stopPosition));
     }
     
+    @Test
+    public void testCreateMultiRowStatement() {
+        final Schema schema = SchemaBuilder.record("root").fields()
+                .requiredString("id")
+                .optionalString("name")
+                .optionalLong("count")
+                .endRecord();
+        final List<String> keyFields = List.of("id");
+
+        Assert.assertEquals(
+                "INSERT INTO mytable (id,name,count) VALUES(?,?,?)",
+                JdbcUtil.createStatement("mytable", schema, JdbcUtil.OP.INSERT, JdbcUtil.DB.MYSQL, keyFields));
+        Assert.assertEquals(
+                "INSERT INTO mytable (id,name,count) VALUES(?,?,?),(?,?,?),(?,?,?)",
+                JdbcUtil.createStatement("mytable", schema, JdbcUtil.OP.INSERT, JdbcUtil.DB.MYSQL, keyFields, 3));
+        Assert.assertEquals(
+                "INSERT INTO mytable (id,name,count) VALUES(?,?,?),(?,?,?) ON DUPLICATE KEY UPDATE `name`=VALUES(`name`),`count`=VALUES(`count`)",
+                JdbcUtil.createStatement("mytable", schema, JdbcUtil.OP.INSERT_OR_UPDATE, JdbcUtil.DB.MYSQL, keyFields, 2));
+        Assert.assertEquals(
+                "INSERT INTO mytable (id,name,count) VALUES(?,?,?),(?,?,?) ON CONFLICT (id) DO UPDATE SET name=EXCLUDED.name,count=EXCLUDED.count",
+                JdbcUtil.createStatement("mytable", schema, JdbcUtil.OP.INSERT_OR_UPDATE, JdbcUtil.DB.POSTGRESQL, keyFields, 2));
+        Assert.assertEquals(
+                "INSERT INTO mytable (id,name,count) VALUES(?,?,?),(?,?,?) ON CONFLICT (id) DO NOTHING",
+                JdbcUtil.createStatement("mytable", schema, JdbcUtil.OP.INSERT_OR_DONOTHING, JdbcUtil.DB.POSTGRESQL, keyFields, 2));
+        Assert.assertEquals(
+                "MERGE INTO mytable (id,name,count) VALUES(?,?,?),(?,?,?)",
+                JdbcUtil.createStatement("mytable", schema, JdbcUtil.OP.INSERT_OR_UPDATE, JdbcUtil.DB.H2, keyFields, 2));
+    }
+
+    @Test
+    public void testExecuteMultiRowStatement() throws Exception {
+        final Schema schema = SchemaBuilder.record("root").fields()
+                .requiredString("id")
+                .optionalString("name")
+                .optionalLong("count")
+                .endRecord();
+        final List<String> keyFields = List.of("id");
+
+        final List<GenericRecord> records = new ArrayList<>();
+        for(int i=0; i<5; i++) {
+            records.add(new GenericRecordBuilder(schema)
+                    .set("id", "id" + i)
+                    .set("name", i % 2 == 0 ? null : "name" + i)
+                    .set("count", (long) i)
+                    .build());
+        }
+
+        final DataSource dataSource = JdbcUtil.getOrCreateSharedDataSource(
+                "org.h2.Driver", "jdbc:h2:mem:multirow;DB_CLOSE_DELAY=-1", "sa", "", 2);
+        Assert.assertSame(dataSource, JdbcUtil.getOrCreateSharedDataSource(
+                "org.h2.Driver", "jdbc:h2:mem:multirow;DB_CLOSE_DELAY=-1", "sa", "", 2));
+
+        try(final Connection connection = dataSource.getConnection()) {
+            try(final Statement statement = connection.createStatement()) {
+                statement.execute(JdbcUtil.buildCreateTableSQL(schema, "mytable", JdbcUtil.DB.H2, keyFields));
+            }
+
+            final int fieldSize = schema.getFields().size();
+            final String multiRowStatement = JdbcUtil.createStatement("mytable", schema, JdbcUtil.OP.INSERT_OR_UPDATE, JdbcUtil.DB.H2, keyFields, 2);
+            final String singleRowStatement = JdbcUtil.createStatement("mytable", schema, JdbcUtil.OP.INSERT_OR_UPDATE, JdbcUtil.DB.H2, keyFields);
+            try(final PreparedStatement statement = connection.prepareStatement(multiRowStatement)) {
+                for(int i=0; i<4; i+=2) {
+                    statement.clearParameters();
+                    ToStatementConverter.convertRecord(records.get(i), statement, 0);
+                    ToStatementConverter.convertRecord(records.get(i + 1), statement, fieldSize);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            try(final PreparedStatement statement = connection.prepareStatement(singleRowStatement)) {
+                ToStatementConverter.convertRecord(records.get(4), statement, 0);
+                statement.executeUpdate();
+                // upsert existing row
+                statement.clearParameters();
+                ToStatementConverter.convertRecord(new GenericRecordBuilder(schema)
+                        .set("id", "id0").set("name", "updated").set("count", 10L).build(), statement, 0);
+                statement.executeUpdate();
+            }
+            connection.commit();
+
+            try(final Statement statement = connection.createStatement();
+                final ResultSet resultSet = statement.executeQuery("SELECT id, name, count FROM mytable ORDER BY id")) {
+                int i = 0;
+                while(resultSet.next()) {
+                    Assert.assertEquals("id" + i, resultSet.getString("id"));
+                    if(i == 0) {
+                        Assert.assertEquals("updated", resultSet.getString("name"));
+                        Assert.assertEquals(10L, resultSet.getLong("count"));
+                    } else {
+                        Assert.assertEquals(i % 2 == 0 ? null : "name" + i, resultSet.getString("name"));
+                        Assert.assertEquals(i, resultSet.getLong("count"));
+                    }
+                    i++;
+                }
+                Assert.assertEquals(5, i);
+            }
+        }
+    }
+
+    @Test
+    public void testExecuteMultiRowStatementWithDuplicatedKey() throws Exception {
+        final Schema schema = SchemaBuilder.record("root").fields()
+                .requiredString("id")
+                .optionalString("name")
+                .optionalLong("count")
+                .endRecord();
+        final List<String> keyFields = List.of("id");
+
+        // id1 appears three times and id2 twice in the same batch
+        final List<GenericRecord> records = new ArrayList<>();
+        records.add(new GenericRecordBuilder(schema).set("id", "id1").set("name", "first").set("count", 1L).build());
+        records.add(new GenericRecordBuilder(schema).set("id", "id2").set("name", "first").set("count", 2L).build());
+        records.add(new GenericRecordBuilder(schema).set("id", "id1").set("name", "second").set("count", 3L).build());
+        records.add(new GenericRecordBuilder(schema).set("id", "id3").set("name", "first").set("count", 4L).build());
+        records.add(new GenericRecordBuilder(schema).set("id", "id2").set("name", "second").set("count", 5L).build());
+        records.add(new GenericRecordBuilder(schema).set("id", "id1").set("name", "third").set("count", 6L).build());
+
+        final List<GenericRecord> deduplicated = JdbcUtil.deduplicateByKey(records, AvroSchemaUtil::getAsString, keyFields);
+        Assert.assertEquals(3, deduplicated.size());
+        Assert.assertEquals(List.of("id3", "id2", "id1"), deduplicated.stream().map(r -> r.get("id").toString()).toList());
+        Assert.assertEquals(List.of(4L, 5L, 6L), deduplicated.stream().map(r -> (Long) r.get("count")).toList());
+
+        // batch without duplicates is returned as is
+        Assert.assertSame(deduplicated, JdbcUtil.deduplicateByKey(deduplicated, AvroSchemaUtil::getAsString, keyFields));
+
+        final DataSource dataSource = JdbcUtil.createDataSource(
+                "org.h2.Driver", "jdbc:h2:mem:multirowduplicated;DB_CLOSE_DELAY=-1", "sa", "");
+        try(final Connection connection = dataSource.getConnection()) {
+            try(final Statement statement = connection.createStatement()) {
+                statement.execute(JdbcUtil.buildCreateTableSQL(schema, "mytable", JdbcUtil.DB.H2, keyFields));
+            }
+
+            final int fieldSize = schema.getFields().size();
+            final String multiRowStatement = JdbcUtil.createStatement("mytable", schema, JdbcUtil.OP.INSERT_OR_UPDATE, JdbcUtil.DB.H2, keyFields, deduplicated.size());
+            try(final PreparedStatement statement = connection.prepareStatement(multiRowStatement)) {
+                for(int row=0; row<deduplicated.size(); row++) {
+                    ToStatementConverter.convertRecord(deduplicated.get(row), statement, row * fieldSize);
+                }
+                Assert.assertEquals(3, statement.executeUpdate());
+            }
+            connection.commit();
+
+            try(final Statement statement = connection.createStatement();
+                final ResultSet resultSet = statement.executeQuery("SELECT id, name, count FROM mytable ORDER BY id")) {
+                Assert.assertTrue(resultSet.next());
+                Assert.assertEquals("id1", resultSet.getString("id"));
+                Assert.assertEquals("third", resultSet.getString("name"));
+                Assert.assertEquals(6L, resultSet.getLong("count"));
+                Assert.assertTrue(resultSet.next());
+                Assert.assertEquals("id2", resultSet.getString("id"));
+                Assert.assertEquals("second", resultSet.getString("name"));
+                Assert.assertEquals(5L, resultSet.getLong("count"));
+                Assert.assertTrue(resultSet.next());
+                Assert.assertEquals("id3", resultSet.getString("id"));
+                Assert.assertEquals(4L, resultSet.getLong("count"));
+                Assert.assertFalse(resultSet.next());
+            }
+        }
+    }
+
+    @Test
+    public void testSplitIndexRangeByQuantiles() throws Exception {
+        final DataSource dataSource = JdbcUtil.createDataSource(
+                "org.h2.Driver", "jdbc:h2:mem:quantiles;DB_CLOSE_DELAY=-1", "sa", "", false);
+
+        try(final Connection connection = dataSource.getConnection()) {
+            try(final Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE skewed (id BIGINT PRIMARY KEY, name VARCHAR(32))");
+            }
+            // dense ids as auto increment and sparse ids after a large gap
+            try(final PreparedStatement statement = connection.prepareStatement("INSERT INTO skewed VALUES (?, ?)")) {
+                for(long i=1; i<=3000; i++) {
+                    statement.setLong(1, i <= 2000 ? i : 1_000_000L * i);
+                    statement.setString(2, "name" + i);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+
+            Assert.assertEquals(3000L, JdbcUtil.estimateRowCount(connection, JdbcUtil.DB.H2, "skewed"));
+
+            final List<Object> quantiles = JdbcUtil.sampleQuantiles(connection, JdbcUtil.DB.H2, "skewed", "id", 30, 100_000L);
+            Assert.assertEquals(29, quantiles.size());
+            for(int i=1; i<quantiles.size(); i++) {
+                Assert.assertTrue((Long) quantiles.get(i - 1) < (Long) quantiles.get(i));
+            }
+
+            final List<JdbcUtil.IndexOffset> from = new ArrayList<>();
+            from.add(JdbcUtil.IndexOffset.of("id", Schema.Type.LONG, true, 1L));
+            final List<JdbcUtil.IndexOffset> to = new ArrayList<>();
+            to.add(JdbcUtil.IndexOffset.of("id", Schema.Type.LONG, true, 3_000_000_000L));
+
+            // uniform split puts all dense ids in the first range
+            final List<JdbcUtil.IndexRange> uniformRanges = JdbcUtil.splitIndexRange(null, from, to, 3);
+            Assert.assertEquals(3, uniformRanges.size());
+            Assert.assertEquals(1999L, countRange(connection, uniformRanges.get(0)));
+
+            final List<JdbcUtil.IndexRange> ranges = JdbcUtil.splitIndexRangeByQuantiles(from, to, quantiles, 3);
+            Assert.assertEquals(3, ranges.size());
+            long total = 0;
+            double ratio = 0;
+            for(final JdbcUtil.IndexRange range : ranges) {
+                final long count = countRange(connection, range);
+                Assert.assertTrue("unbalanced range count: " + count, count > 900 && count < 1100);
+                Assert.assertEquals(9, range.getBoundaries().size());
+                total += count;
+                ratio += range.getRatio();
+            }
+            // first row at from is read separately
+            Assert.assertEquals(2999L, total);
+            Assert.assertEquals(1D, ratio, 0.0001);
+
+            // sampled rows when table is larger than sample size
+            final List<Object> sampled = JdbcUtil.sampleQuantiles(connection, JdbcUtil.DB.H2, "skewed", "id", 4, 1000L);
+            Assert.assertTrue(sampled.size() <= 3);
+            for(int i=1; i<sampled.size(); i++) {
+                Assert.assertTrue((Long) sampled.get(i - 1) < (Long) sampled.get(i));
+            }
+
+            // split remainder at boundaries
+            final JdbcUtil.IndexRange range = ranges.get(0);
+            final List<JdbcUtil.IndexOffset> claimed = new ArrayList<>();
+            claimed.add(JdbcUtil.IndexOffset.of("id", Schema.Type.LONG, true, 500L));
+            final List<JdbcUtil.IndexRange> splitRanges = JdbcUtil
+                    .splitIndexRangeRemainder(range, JdbcUtil.IndexPosition.of(claimed, false), 0.5);
+            Assert.assertEquals(2, splitRanges.size());
+            final long splitPoint = splitRanges.get(0).getTo().getOffsets().get(0).getLongValue();
+            Assert.assertTrue(splitPoint > 500L && splitPoint < range.getTo().getOffsets().get(0).getLongValue());
+            Assert.assertEquals(splitPoint, (long) splitRanges.get(1).getFrom().getOffsets().get(0).getLongValue());
+            Assert.assertTrue(splitRanges.get(1).getFrom().getIsOpen());
+            Assert.assertEquals(range.getTo(), splitRanges.get(1).getTo());
+            Assert.assertEquals(countRange(connection, range), countRange(connection, splitRanges.get(0)) + countRange(connection, splitRanges.get(1)));
+
+            // split at claimed position for checkpoint
+            final List<JdbcUtil.IndexRange> checkpointRanges = JdbcUtil
+                    .splitIndexRangeRemainder(range, JdbcUtil.IndexPosition.of(claimed, false), 0);
+            Assert.assertEquals(2, checkpointRanges.size());
+            Assert.assertEquals(500L, (long) checkpointRanges.get(0).getTo().getOffsets().get(0).getLongValue());
+            Assert.assertEquals(0, JdbcUtil.splitIndexRangeRemainder(range, null, 0).size());
+        }
+    }
+
+    private static long countRange(final Connection connection, final JdbcUtil.IndexRange range) throws Exception {
+        final String query = String.format("SELECT COUNT(*) FROM skewed WHERE id %s ? AND id <= ?",
+                range.getFrom().getIsOpen() ? ">" : ">=");
+        try(final PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setLong(1, range.getFrom().getOffsets().get(0).getLongValue());
+            statement.setLong(2, range.getTo().getOffsets().get(0).getLongValue());
+            try(final ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,81 @@
+package com.mercari.solution.util.gcp;
+
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.Mutation;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class SpannerUtilTest {
+
+    @Test
+    public void testMutationSize() {
+        final Mutation mutation = Mutation.newInsertOrUpdateBuilder("Users")
+                .set("id").to(1L)
+                .set("name").to("abcde")
+                .set("score").to(1.5)
+                .set("tags").toStringArray(List.of("a", "bc"))
+                .set("deleted").to((Boolean) null)
+                .build();
+        Assert.assertEquals(8 + 5 + 8 + 3, SpannerUtil.estimateMutationSize(mutation));
+        Assert.assertEquals(5, SpannerUtil.countMutationCells(mutation));
+
+        final Mutation delete = Mutation.delete("Users", Key.of(1L));
+        Assert.assertEquals(1, SpannerUtil.countMutationCells(delete));
+    }
+
+    @Test
+    public void testCreateMutationBatches() {
+        final List<Mutation> mutations = new ArrayList<>();
+        for(int i=0; i<20; i++) {
+            final long id = (i * 7L) % 20;
+            mutations.add(Mutation.newInsertOrUpdateBuilder(i % 2 == 0 ? "Users" : "Items")
+                    .set("id").to(id)
+                    .set("name").to("name" + id)
+                    .build());
+        }
+        mutations.add(Mutation.delete("Users", Key.of(3L)));
+
+        final Map<String, List<String>> primaryKeys = Map.of("Users", List.of("id"), "Items", List.of("id"));
+
+        // cut by row count
+        final List<List<Mutation>> batchesByRows = SpannerUtil.createMutationBatches(mutations, primaryKeys, 4, 1000, 1000);
+        Assert.assertEquals(6, batchesByRows.size());
+        String prevTable = null;
+        Long prevId = null;
+        int count = 0;
+        for(final List<Mutation> batch : batchesByRows) {
+            Assert.assertTrue(batch.size() <= 4);
+            for(final Mutation mutation : batch) {
+                final long id = Mutation.Op.DELETE.equals(mutation.getOperation())
+                        ? (Long) mutation.getKeySet().getKeys().iterator().next().getParts().iterator().next()
+                        : mutation.asMap().get("id").getInt64();
+                // sorted by table and key
+                if(mutation.getTable().equals(prevTable)) {
+                    Assert.assertTrue(prevId <= id);
+                } else if(prevTable != null) {
+                    Assert.assertTrue(prevTable.compareTo(mutation.getTable()) < 0);
+                }
+                prevTable = mutation.getTable();
+                prevId = id;
+                count++;
+            }
+        }
+        Assert.assertEquals(mutations.size(), count);
+
+        // cut by cells
+        final List<List<Mutation>> batchesByCells = SpannerUtil.createMutationBatches(mutations, primaryKeys, 100, 5, 1000);
+        for(final List<Mutation> batch : batchesByCells) {
+            Assert.assertTrue(batch.stream().mapToLong(SpannerUtil::countMutationCells).sum() <= 5);
+        }
+        Assert.assertEquals(10, batchesByCells.size());
+
+        // cut by bytes, a mutation over the limit is committed alone
+        final List<List<Mutation>> batchesByBytes = SpannerUtil.createMutationBatches(mutations, primaryKeys, 100, 1000, 10);
+        Assert.assertEquals(mutations.size(), batchesByBytes.size());
+    }
+
+}
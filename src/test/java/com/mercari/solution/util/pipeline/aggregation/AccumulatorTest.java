@@ -1,12 +1,23 @@
 package com.mercari.solution.util.pipeline.aggregation;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.mercari.solution.module.DataType;
+import com.mercari.solution.util.domain.sketch.HyperLogLog;
+import com.mercari.solution.util.pipeline.union.UnionValue;
+import com.mercari.solution.util.schema.RowSchemaUtil;
+import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.extensions.avro.coders.AvroCoder;
 import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
+import org.apache.beam.sdk.values.Row;
+import org.joda.time.Instant;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.*;
 
 public class AccumulatorTest {
 
@@ -61,4 +72,159 @@ public class AccumulatorTest {
 
     }
 
+    @Test
+    public void testCompactAccumulator() throws Exception {
+        final Schema inputSchema = Schema.builder()
+                .addField(Schema.Field.of("id", Schema.FieldType.STRING.withNullable(false)))
+                .addField(Schema.Field.of("string", Schema.FieldType.STRING.withNullable(true)))
+                .addField(Schema.Field.of("bool", Schema.FieldType.BOOLEAN.withNullable(false)))
+                .addField(Schema.Field.of("long", Schema.FieldType.INT64.withNullable(false)))
+                .addField(Schema.Field.of("double", Schema.FieldType.DOUBLE.withNullable(true)))
+                .build();
+
+        final JsonArray fields = new JsonArray();
+        fields.add(createField("count", "count", null));
+        fields.add(createField("maxDouble", "max", "double"));
+        fields.add(createField("minLong", "min", "long"));
+        fields.add(createField("sumLong", "sum", "long"));
+        fields.add(createField("avgDouble", "avg", "double"));
+        fields.add(createField("stdLong", "std", "long"));
+        fields.add(createField("arrayAggString", "array_agg", "string"));
+        final JsonObject fieldLast = createField("last", "last", null);
+        final JsonArray targets = new JsonArray();
+        targets.add("id");
+        targets.add("string");
+        targets.add("long");
+        fieldLast.add("fields", targets);
+        fields.add(fieldLast);
+
+        final List<Schema.Field> groupFields = List.of(inputSchema.getField("bool"));
+        final Aggregators aggregators = Aggregators
+                .of("rowInput", groupFields, DataType.ROW, DataType.ROW, inputSchema, fields);
+        final AccumulatorLayout layout = AccumulatorLayout.of(List.of(aggregators));
+        aggregators.setup(layout);
+
+        final List<UnionValue> inputs = new ArrayList<>();
+        for(int i=0; i<10; i++) {
+            final Row row = Row.withSchema(inputSchema)
+                    .withFieldValue("id", "id" + i)
+                    .withFieldValue("string", i % 3 == 0 ? null : "s" + i)
+                    .withFieldValue("bool", true)
+                    .withFieldValue("long", (long)(i * 10 - 30))
+                    .withFieldValue("double", i % 4 == 0 ? null : i * 1.5D)
+                    .build();
+            final long epochMillis = Instant.parse("2022-01-01T00:00:00Z").getMillis() + i * 1000L;
+            inputs.add(new UnionValue(0, DataType.ROW, epochMillis, row));
+        }
+
+        // map based accumulator
+        Accumulator expectedFirst = Accumulator.of();
+        Accumulator expectedSecond = Accumulator.of();
+        // slot indexed accumulator
+        Accumulator actualFirst = Accumulator.of(layout);
+        Accumulator actualSecond = Accumulator.of(layout);
+        for(int i=0; i<inputs.size(); i++) {
+            if(i < 4) {
+                expectedFirst = aggregators.addInput(expectedFirst, inputs.get(i));
+                actualFirst = aggregators.addInput(actualFirst, inputs.get(i));
+            } else {
+                expectedSecond = aggregators.addInput(expectedSecond, inputs.get(i));
+                actualSecond = aggregators.addInput(actualSecond, inputs.get(i));
+            }
+        }
+
+        final Coder<Accumulator> coder = Accumulator.coder(layout);
+        final Accumulator decodedFirst = encodeAndDecode(coder, actualFirst);
+        final Accumulator decodedSecond = encodeAndDecode(coder, actualSecond);
+        Assert.assertFalse(decodedFirst.empty);
+
+        final Accumulator expected = aggregators
+                .mergeAccumulators(Accumulator.of(), List.of(expectedFirst, expectedSecond));
+        final Accumulator actual = encodeAndDecode(coder, aggregators
+                .mergeAccumulators(Accumulator.of(layout), List.of(decodedFirst, decodedSecond)));
+
+        final Map<String, Object> expectedValues = aggregators
+                .extractOutput(expected, new HashMap<>(), RowSchemaUtil::convertPrimitive);
+        final Map<String, Object> actualValues = aggregators
+                .extractOutput(actual, new HashMap<>(), RowSchemaUtil::convertPrimitive);
+        Assert.assertEquals(expectedValues, actualValues);
+        Assert.assertEquals(10L, actualValues.get("count"));
+        Assert.assertEquals(13.5D, actualValues.get("maxDouble"));
+        Assert.assertEquals(-30L, actualValues.get("minLong"));
+        Assert.assertEquals("id9", actualValues.get("last_id"));
+        Assert.assertEquals(
+                expected.get(Schema.FieldType.BOOLEAN, "bool"),
+                actual.get(Schema.FieldType.BOOLEAN, "bool"));
+
+        // empty accumulator
+        final Accumulator empty = encodeAndDecode(coder, Accumulator.of(layout));
+        Assert.assertTrue(empty.empty);
+        Assert.assertNull(empty.getLong("count"));
+    }
+
+    @Test
+    public void testSketchCoder() throws Exception {
+        // encoding of accumulator without sketches is not changed by sketch support
+        final List<String> baseFieldNames = Accumulator.schema().getFields().stream()
+                .map(org.apache.avro.Schema.Field::name)
+                .toList();
+        Assert.assertEquals(List.of(
+                "empty", "ints", "longs", "floats", "doubles", "booleans", "strings",
+                "intsList", "longsList", "floatsList", "doublesList", "stringsList", "boolsList",
+                "doublesMap"), baseFieldNames);
+        Assert.assertNotNull(Accumulator.schema(true).getField("sketchBytes"));
+
+        final HyperLogLog hll = HyperLogLog.of();
+        for(int i=0; i<1000; i++) {
+            hll.add("value" + i);
+        }
+        final Accumulator accumulator = Accumulator.of();
+        accumulator.empty = false;
+        accumulator.putLong("count", 1000L);
+        accumulator.putSketch("distinct", hll);
+
+        // coder does not modify the accumulator being encoded
+        final Coder<Accumulator> coder = Accumulator.coder(null, true);
+        coder.registerByteSizeObserver(accumulator, new ElementByteSizeObserver() {
+            @Override
+            protected void reportElementSize(long elementByteSize) {
+                Assert.assertTrue(elementByteSize > 0);
+            }
+        });
+        final Accumulator decoded = encodeAndDecode(coder, accumulator);
+        Assert.assertTrue(accumulator.sketchBytes.isEmpty());
+        Assert.assertEquals(1000L, decoded.getLong("count").longValue());
+        Assert.assertEquals(hll.estimate(), decoded.<HyperLogLog>getSketch("distinct").estimate());
+
+        // sketch updated after decoding is encoded
+        for(int i=1000; i<2000; i++) {
+            decoded.<HyperLogLog>getSketch("distinct").add("value" + i);
+        }
+        final HyperLogLog updated = encodeAndDecode(coder, decoded).getSketch("distinct");
+        Assert.assertEquals(decoded.<HyperLogLog>getSketch("distinct").estimate(), updated.estimate());
+        Assert.assertTrue(updated.estimate() > hll.estimate());
+
+        // default coder without sketches rejects accumulator with sketches
+        Assert.assertThrows(IllegalStateException.class, () -> encodeAndDecode(Accumulator.coder(null), accumulator));
+    }
+
+    private static JsonObject createField(final String name, final String op, final String field) {
+        final JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("name", name);
+        jsonObject.addProperty("op", op);
+        if(field != null) {
+            jsonObject.addProperty("field", field);
+        }
+        return jsonObject;
+    }
+
+    private static Accumulator encodeAndDecode(final Coder<Accumulator> coder, final Accumulator accumulator) throws Exception {
+        try(ByteArrayOutputStream writer = new ByteArrayOutputStream()) {
+            coder.encode(accumulator, writer);
+            try(ByteArrayInputStream is = new ByteArrayInputStream(writer.toByteArray())) {
+                return coder.decode(is);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,49 @@
+package com.mercari.solution.util.pipeline.aggregation;
+
+import org.apache.beam.sdk.util.SerializableUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HotKeyFanoutTest {
+
+    @Test
+    public void testDetectHotKeys() {
+        final HotKeyFanout fanout = SerializableUtils.clone(HotKeyFanout.of(8, 0.05, 100, 1L << 20));
+
+        int hotFanout = 1;
+        int coldMaxFanout = 1;
+        for(int i=0; i<100_000; i++) {
+            // one key has 1000 times more elements than others
+            if(i % 2 == 0) {
+                hotFanout = fanout.apply("hot");
+            } else {
+                coldMaxFanout = Math.max(coldMaxFanout, fanout.apply("cold" + (i % 1000)));
+            }
+        }
+        Assert.assertEquals(8, hotFanout);
+        Assert.assertEquals(1, coldMaxFanout);
+        Assert.assertTrue(fanout.estimate("hot") >= 50_000);
+    }
+
+    @Test
+    public void testDecay() {
+        final HotKeyFanout fanout = HotKeyFanout.of(4, 0.5, 10, 1000);
+        for(int i=0; i<1000; i++) {
+            Assert.assertTrue(fanout.apply("first") >= 1);
+        }
+        Assert.assertEquals(4, fanout.apply("first").intValue());
+
+        // key distribution shifts and the old hot key is no longer hot
+        for(int i=0; i<5000; i++) {
+            fanout.apply("second");
+        }
+        Assert.assertEquals(4, fanout.apply("second").intValue());
+        Assert.assertEquals(1, fanout.apply("first").intValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFanout() {
+        HotKeyFanout.of(1, 0.1);
+    }
+
+}
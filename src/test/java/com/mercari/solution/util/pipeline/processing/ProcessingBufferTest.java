@@ -1,5 +1,6 @@
 package com.mercari.solution.util.pipeline.processing;
 
+import com.mercari.solution.util.domain.ml.LinearModelUtil;
 import com.mercari.solution.util.pipeline.processing.processor.Processor;
 import org.apache.beam.sdk.coders.Coder;
 import org.joda.time.Instant;
@@ -139,4 +140,90 @@ public class ProcessingBufferTest {
         }
     }
 
+    @Test
+    public void testRingBuffer() throws IOException {
+
+        final ProcessingBuffer buffer = new ProcessingBuffer();
+        buffer.types.put("longs", ProcessingBuffer.FieldType.int64.id);
+        buffer.types.put("strings", ProcessingBuffer.FieldType.string.id);
+        buffer.types.put("doubles", ProcessingBuffer.FieldType.float64.id);
+        buffer.sizes.put("longs", 3);
+        buffer.sizes.put("strings", 0);
+        buffer.sizes.put("doubles", 2);
+        buffer.units.put("longs", Processor.SizeUnit.count.id);
+        buffer.units.put("strings", Processor.SizeUnit.count.id);
+        buffer.units.put("doubles", Processor.SizeUnit.day.id);
+
+        final long baseEpochMillis = Instant.parse("2023-01-01T00:00:00Z").getMillis();
+        for(long i = 0L; i<10L; i++) {
+            final Instant timestamp = Instant.ofEpochMilli(baseEpochMillis + i * 1000L);
+            buffer.add("longs", i, timestamp);
+            buffer.add("strings", "s" + i, timestamp);
+            buffer.add("doubles", (double) i, timestamp);
+        }
+
+        // count based buffers keep max lag + 1 values
+        Assert.assertEquals(4, buffer.values.get("longs").size());
+        Assert.assertEquals(4, buffer.timestamps.get("longs").size());
+        Assert.assertEquals(1, buffer.values.get("strings").size());
+        Assert.assertEquals(Arrays.asList(9L, 8L, 7L, 6L, null), buffer.getValues("longs", 0, 5, Processor.SizeUnit.count));
+        Assert.assertEquals("s9", buffer.get("strings", 0));
+        Assert.assertEquals(baseEpochMillis * 1000L + 6_000_000L, buffer.timestamps.get("longs").get(0).longValue());
+        // time based buffers are not bounded on add
+        Assert.assertEquals(10, buffer.values.get("doubles").size());
+
+        final Coder<ProcessingBuffer> coder = ProcessingBuffer.coder();
+        final ProcessingBuffer decoded;
+        try(final ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            coder.encode(buffer, os);
+            decoded = coder.decode(new ByteArrayInputStream(os.toByteArray()));
+        }
+        Assert.assertTrue(decoded.values.get("longs") instanceof RingList);
+        Assert.assertEquals(buffer.values, decoded.values);
+        Assert.assertEquals(buffer.timestamps, decoded.timestamps);
+        Assert.assertEquals(buffer.sizes, decoded.sizes);
+        Assert.assertEquals(buffer.units, decoded.units);
+        Assert.assertEquals(buffer.types, decoded.types);
+
+        decoded.add("longs", 10L, Instant.ofEpochMilli(baseEpochMillis + 10_000L));
+        Assert.assertEquals(Arrays.asList(10L, 9L, 8L, 7L), decoded.getValues("longs", 0, 4, Processor.SizeUnit.count));
+        Assert.assertEquals(4, decoded.timestamps.get("longs").size());
+
+        // ring list is kept on periodic update
+        decoded.update(Instant.ofEpochMilli(baseEpochMillis + 10_000L));
+        Assert.assertEquals(4, decoded.values.get("longs").size());
+    }
+
+    @Test
+    public void testStateCoder() throws IOException {
+        final ProcessingState state = new ProcessingState();
+        state.putInt("int", 3);
+        state.putInt("nullInt", null);
+        state.putLong("long", -5L);
+        state.putDouble("double", 1.5D);
+        state.strings.put("string", "a");
+        state.doubleLists.put("doubleList", Arrays.asList(1D, null, 3D));
+        state.putMatrix("matrix", Arrays.asList(Arrays.asList(1D, 2D), Arrays.asList(3D, 4D)));
+        state.linearModels.put("model", LinearModelUtil.LinearModel.of(2, 1, new ArrayList<>(List.of(Arrays.asList(0.5D, -1D)))));
+        state.putDoubleArray("params", new double[]{ 0.5D, -1D, Double.NaN, 1e300D });
+
+        final Coder<ProcessingState> coder = ProcessingState.coder();
+        final ProcessingState decoded;
+        try(final ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            coder.encode(state, os);
+            decoded = coder.decode(new ByteArrayInputStream(os.toByteArray()));
+        }
+        Assert.assertEquals(state.ints, decoded.ints);
+        Assert.assertEquals(state.longs, decoded.longs);
+        Assert.assertEquals(state.doubles, decoded.doubles);
+        Assert.assertEquals(state.strings, decoded.strings);
+        Assert.assertEquals(state.doubleLists, decoded.doubleLists);
+        Assert.assertEquals(state.matrices, decoded.matrices);
+        final LinearModelUtil.LinearModel model = decoded.linearModels.get("model");
+        Assert.assertEquals(2, model.getInputSize());
+        Assert.assertEquals(1, model.getOutputSize());
+        Assert.assertEquals(state.linearModels.get("model").getWeights(), model.getWeights());
+        Assert.assertArrayEquals(state.getDoubleArray("params"), decoded.getDoubleArray("params"), 0D);
+    }
+
 }
@@ -0,0 +1,104 @@
+package com.mercari.solution.util.pipeline.processing.processor.window;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.mercari.solution.util.pipeline.processing.ProcessingBuffer;
+import com.mercari.solution.util.pipeline.processing.ProcessingState;
+import com.mercari.solution.util.pipeline.processing.processor.Processor;
+import org.apache.beam.sdk.schemas.Schema;
+import org.joda.time.Instant;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class WindowProcessorTest {
+
+    @Test
+    public void testIncrementalField() {
+        final JsonObject params = new Gson().fromJson("""
+                {
+                  "fields": ["x", "y"],
+                  "ranges": [3, [2, 7], 10]
+                }
+                """, JsonObject.class);
+        assertIncremental(List.of(
+                Sum.of("sum", null, false, params),
+                Avg.of("avg", null, false, params),
+                Count.of("count", null, false, params),
+                Std.of("std", null, false, params),
+                Max.of("max", null, false, params),
+                Max.of("min", null, false, params, true)));
+    }
+
+    @Test
+    public void testIncrementalExpression() {
+        final JsonObject params = new Gson().fromJson("""
+                {
+                  "expressions": ["x_0 - x_1", "x_0 * y_0 / 10", "x - y_0"],
+                  "ranges": [3, [2, 7], 10]
+                }
+                """, JsonObject.class);
+        assertIncremental(List.of(
+                Sum.of("sum", null, false, params),
+                Avg.of("avg", null, false, params),
+                Std.of("std", null, false, params),
+                Max.of("max", null, false, params),
+                Max.of("min", null, false, params, true)));
+    }
+
+    @Test
+    public void testIncrementalArgMax() {
+        final JsonObject params = new Gson().fromJson("""
+                {
+                  "field": "x",
+                  "comparingField": "y",
+                  "ranges": [3, [2, 7], 10]
+                }
+                """, JsonObject.class);
+        assertIncremental(List.of(
+                ArgMax.of("argmax", null, false, params),
+                ArgMax.of("argmin", null, false, params, true)));
+    }
+
+    private static void assertIncremental(final List<WindowProcessor> processors) {
+        final Map<String, Schema.FieldType> types = Map.of("x", Schema.FieldType.INT64, "y", Schema.FieldType.DOUBLE);
+        final Map<String, Integer> sizes = new HashMap<>(Map.of("x", 10, "y", 10));
+        final Map<String, Integer> units = Map.of("x", Processor.SizeUnit.count.id, "y", Processor.SizeUnit.count.id);
+        for(final WindowProcessor processor : processors) {
+            processor.setup();
+            processor.getBufferSizes().forEach((field, size) -> sizes.merge(field, size, Math::max));
+        }
+
+        final ProcessingBuffer buffer = ProcessingBuffer.of(types, sizes, units);
+        final ProcessingState state = new ProcessingState();
+        final Random random = new Random(0);
+        final Instant timestamp = Instant.parse("2024-01-01T00:00:00Z");
+        for(int i=0; i<200; i++) {
+            buffer.add("x", random.nextInt(10) == 0 ? null : (long) random.nextInt(20), timestamp);
+            // duplicated values to check ties
+            buffer.add("y", random.nextInt(10) == 0 ? null : (double) random.nextInt(5), timestamp);
+            // skip some evaluations as if the processor was filtered out by condition
+            if(random.nextInt(7) == 0) {
+                continue;
+            }
+            for(final WindowProcessor processor : processors) {
+                final Map<String, Object> incremental = processor.process(buffer, state, timestamp);
+                final Map<String, Object> exact = processor.process(buffer, new ProcessingState(), timestamp);
+                Assert.assertEquals(exact.keySet(), incremental.keySet());
+                for(final Map.Entry<String, Object> entry : exact.entrySet()) {
+                    final Object actual = incremental.get(entry.getKey());
+                    if(entry.getValue() instanceof Double expected) {
+                        Assert.assertEquals(processor.getName() + ":" + entry.getKey() + " at " + i, expected, (Double) actual, 1e-9);
+                    } else {
+                        Assert.assertEquals(processor.getName() + ":" + entry.getKey() + " at " + i, entry.getValue(), actual);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -278,6 +278,30 @@ public class SelectFunctionTest {
         final JsonObject nestedJsonObject = jsonObject.get("nestedStructField").getAsJsonObject();
         Assert.assertEquals("2023-08-18T00:00:00.000Z", nestedJsonObject.get("timestampField").getAsString());
         Assert.assertEquals("b", nestedJsonObject.get("enumField2").getAsString());
+
+        // test plan
+        final SelectPlan selectPlan = SelectPlan.of(selectFunctions, DataType.ROW, DataType.ROW);
+        selectPlan.setup();
+        final Row nextRow = Row.fromRow(row)
+                .withFieldValue("stringField", "nextStringValue")
+                .withFieldValue("intField", 64)
+                .build();
+        for(final Row input : List.of(row, nextRow, row)) {
+            selectPlan.apply(input, timestamp);
+            final Row planOutput = selectPlan.create(outputSchema, RowSchemaUtil::create);
+            final Row expected = RowSchemaUtil.create(outputSchema,
+                    SelectFunction.apply(selectFunctions, input, DataType.ROW, DataType.ROW, timestamp));
+            Assert.assertEquals(outputSchema, planOutput.getSchema());
+            for(final String field : List.of("longField", "enumField", "renameIntField", "constantStringField",
+                    "expressionField", "hashField", "hashArrayField", "eventTimestampField", "concatField",
+                    "structField", "mapField", "jsonField")) {
+                Assert.assertEquals((Object) expected.getValue(field), planOutput.getValue(field));
+            }
+        }
+        selectPlan.apply(nextRow, timestamp);
+        final Row nextOutput = selectPlan.create(outputSchema, RowSchemaUtil::create);
+        Assert.assertEquals("nextStringValue 64 10", nextOutput.getString("concatField"));
+        Assert.assertEquals((Integer) 64, nextOutput.getInt32("renameIntField"));
     }
 
 }
@@ -0,0 +1,92 @@
+package com.mercari.solution.util.pipeline.union;
+
+import com.mercari.solution.module.DataType;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.RowCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
+import org.apache.beam.sdk.values.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+public class UnionCoderTest {
+
+    @Test
+    public void testCompactCoder() throws Exception {
+        final Schema schema = Schema.builder()
+                .addField("stringField", Schema.FieldType.STRING)
+                .addField("longField", Schema.FieldType.INT64)
+                .build();
+        final List<Coder<?>> coders = List.of(RowCoder.of(schema), StringUtf8Coder.of());
+        final UnionCoder legacyCoder = UnionCoder.of(coders);
+        final UnionCoder compactCoder = UnionCoder.of(coders, List.of(DataType.ROW, DataType.ELEMENT));
+        Assert.assertTrue(compactCoder.isCompact());
+        Assert.assertNotEquals(legacyCoder, compactCoder);
+        Assert.assertEquals(compactCoder, UnionCoder.of(coders, List.of(DataType.ROW, DataType.ELEMENT)));
+
+        final Row row = Row.withSchema(schema)
+                .withFieldValue("stringField", "a")
+                .withFieldValue("longField", 1L)
+                .build();
+        final List<UnionValue> values = List.of(
+                new UnionValue(0, DataType.ROW, BoundedWindow.TIMESTAMP_MIN_VALUE.getMillis(), row),
+                new UnionValue(0, DataType.ROW, BoundedWindow.TIMESTAMP_MAX_VALUE.getMillis(), row),
+                new UnionValue(0, DataType.ROW, 1700000000000L, row),
+                new UnionValue(0, DataType.ROW, 1700000000123L, row),
+                new UnionValue(0, DataType.ROW, -1234L, row),
+                new UnionValue(1, DataType.ELEMENT, 0L, "text"),
+                // data type differs from the index data type
+                new UnionValue(1, DataType.UNKNOWN, 1700000000000L, "text"));
+
+        for(final UnionValue value : values) {
+            final byte[] legacyBytes = encode(legacyCoder, value);
+            final byte[] compactBytes = encode(compactCoder, value);
+            Assert.assertTrue(compactBytes.length <= legacyBytes.length);
+
+            final UnionValue decoded = compactCoder.decode(new ByteArrayInputStream(compactBytes));
+            Assert.assertEquals(value.getIndex(), decoded.getIndex());
+            Assert.assertEquals(value.getType(), decoded.getType());
+            Assert.assertEquals(value.getEpochMillis(), decoded.getEpochMillis());
+            Assert.assertEquals(value.getValue(), decoded.getValue());
+
+            Assert.assertEquals(compactBytes.length, getObservedSize(compactCoder, value));
+            Assert.assertEquals(legacyBytes.length, getObservedSize(legacyCoder, value));
+        }
+
+        // Batch elements with minimum timestamp need only one header byte
+        final UnionValue batchValue = values.get(0);
+        final int valueLength = encode(RowCoder.of(schema), row).length;
+        Assert.assertEquals(1 + valueLength, encode(compactCoder, batchValue).length);
+    }
+
+    private static <T> byte[] encode(final Coder<T> coder, final T value) throws Exception {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        coder.encode(value, os);
+        return os.toByteArray();
+    }
+
+    private static long getObservedSize(final UnionCoder coder, final UnionValue value) throws Exception {
+        final Observer observer = new Observer();
+        coder.registerByteSizeObserver(value, observer);
+        observer.advance();
+        return observer.size;
+    }
+
+    private static class Observer extends ElementByteSizeObserver {
+
+        private long size = 0;
+
+        @Override
+        protected void reportElementSize(long elementByteSize) {
+            size += elementByteSize;
+        }
+
+    }
+
+}